@@ -0,0 +1,68 @@
+package benchmark.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import benchmark.Fixtures;
+import model.User;
+
+/**
+ * A conversion of a valid transaction: Runner.currencyConversion, which converts at the cross rate
+ * and updates the wallet, and User.updatesWallet alone.
+ * Amounts are small, so that the generated balances last the whole run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConversionBenchmark {
+
+    private static final int USERS = 10_000;
+
+    private final User[] users = new User[4096];
+    private final String[] froms = new String[4096];
+    private final String[] tos = new String[4096];
+    private int next;
+
+    @Setup
+    public void setUp() throws Throwable {
+        Configurator.setLevel("Runner", Level.OFF);
+        RunnerHandles.setsConfig(Fixtures.generate(USERS, 0, 42));
+        RunnerHandles.DESERIALIZATION.invokeExact();
+
+        Random random = new Random(42);
+        for (int i = 0; i < users.length; i++) {
+            User user = RunnerHandles.users().get(Fixtures.userName(random.nextInt(USERS)));
+            List<String> currencies = new ArrayList<>(user.getWallet().keySet());
+            users[i] = user;
+            froms[i] = currencies.get(random.nextInt(currencies.size()));
+            do {
+                tos[i] = Fixtures.CURRENCIES[random.nextInt(Fixtures.CURRENCIES.length)];
+            } while (tos[i].equals(froms[i]));
+        }
+    }
+
+    @Benchmark
+    public void currencyConversion() throws Throwable {
+        int i = next++ & 4095;
+        RunnerHandles.CURRENCY_CONVERSION.invokeExact(users[i], froms[i], tos[i], 0.01);
+    }
+
+    @Benchmark
+    public void updatesWallet() {
+        int i = next++ & 4095;
+        users[i].updatesWallet(froms[i], tos[i], 0.01, 0.02);
+    }
+
+}
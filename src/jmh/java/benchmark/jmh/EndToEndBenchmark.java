@@ -0,0 +1,51 @@
+package benchmark.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmark.Fixtures;
+import config.EngineConfig;
+
+/**
+ * A whole generated transactions.txt through Runner.main: loading users.json and fx_rates.json,
+ * parsing, validating and converting every line, and writing users.json. Logging of Runner is off.
+ * Every run starts from freshly generated fixtures, as users.json is rewritten by the run before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EndToEndBenchmark {
+
+    @Param({ "10000" })
+    int users;
+
+    @Param({ "100000" })
+    int lines;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        Configurator.setLevel("Runner", org.apache.logging.log4j.Level.OFF);
+        EngineConfig config = Fixtures.generate(users, lines, 42);
+        RunnerHandles.setsConfig(config);
+    }
+
+    @Benchmark
+    public void main() throws Throwable {
+        RunnerHandles.MAIN.invokeExact(new String[0]);
+    }
+
+}
@@ -0,0 +1,49 @@
+package benchmark.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import benchmark.Fixtures;
+import model.User;
+
+/**
+ * Runner.getsUser for a random existing user, at 1K, 100K and 1M users loaded from a generated users.json.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GetsUserBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    int users;
+
+    private final String[] names = new String[4096];
+    private int next;
+
+    @Setup
+    public void setUp() throws Throwable {
+        RunnerHandles.setsConfig(Fixtures.generate(users, 0, 42));
+        RunnerHandles.DESERIALIZATION.invokeExact();
+
+        Random random = new Random(42);
+        for (int i = 0; i < names.length; i++) {
+            // A new String, as a name split from a line would be, so that its hash code is not cached yet.
+            names[i] = new String(Fixtures.userName(random.nextInt(users)));
+        }
+    }
+
+    @Benchmark
+    public User getsUser() throws Throwable {
+        return (User) RunnerHandles.GETS_USER.invokeExact(names[next++ & 4095]);
+    }
+
+}
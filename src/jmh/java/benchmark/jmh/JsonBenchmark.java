@@ -0,0 +1,67 @@
+package benchmark.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import benchmark.Fixtures;
+import config.EngineConfig;
+import model.User;
+import model.UserRegistry;
+import persistence.WriteBehindPersister;
+
+/**
+ * Jackson reading and writing of users.json at realistic sizes:
+ * Runner.deserialization, which loads users.json and fx_rates.json,
+ * and a flush of users.json after a conversion, which is how wallet updates are serialized.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JsonBenchmark {
+
+    @Param({ "10000", "100000" })
+    int users;
+
+    private UserRegistry registry;
+    private WriteBehindPersister persister;
+    private User user;
+
+    @Setup
+    public void setUp() throws Throwable {
+        EngineConfig config = Fixtures.generate(users, 0, 42);
+        RunnerHandles.setsConfig(config);
+        RunnerHandles.DESERIALIZATION.invokeExact();
+
+        registry = RunnerHandles.users();
+        user = registry.get(Fixtures.userName(0));
+        persister = new WriteBehindPersister(new File(config.getUsersFile()), () -> registry.getUsers(), 0, 0);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        persister.close();
+    }
+
+    @Benchmark
+    public void deserialization() throws Throwable {
+        RunnerHandles.DESERIALIZATION.invokeExact();
+    }
+
+    @Benchmark
+    public void serialization() throws IOException {
+        persister.recordsConversion(user, "usd", "eur", 0, 0);
+        persister.flush();
+    }
+
+}
@@ -0,0 +1,63 @@
+package benchmark.jmh;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import benchmark.Fixtures;
+import model.Transaction;
+import parser.TransactionParser;
+import parser.TransactionRecord;
+
+/**
+ * Parsing of a line of transactions.txt: Runner.parsesTransaction, which splits a String,
+ * versus the TransactionParser, which parses the bytes of the line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParsingBenchmark {
+
+    private final String[] lines = new String[4096];
+    private final byte[][] bytes = new byte[4096][];
+    private final TransactionParser parser = new TransactionParser();
+    private final TransactionRecord record = new TransactionRecord();
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        Path file = Files.createTempFile("fxconvert-bench", ".txt");
+        file.toFile().deleteOnExit();
+        Fixtures.writeTransactions(file, 10_000, lines.length, 42);
+        List<String> written = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = written.get(i);
+            bytes[i] = lines[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public Transaction stringSplit() throws Throwable {
+        Transaction transaction = new Transaction(lines[next++ & 4095]);
+        RunnerHandles.PARSES_TRANSACTION.invokeExact(transaction);
+        return transaction;
+    }
+
+    @Benchmark
+    public TransactionRecord transactionParser() {
+        byte[] line = bytes[next++ & 4095];
+        parser.parses(line, 0, line.length, record);
+        return record;
+    }
+
+}
@@ -0,0 +1,67 @@
+package benchmark.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import model.Transaction;
+import model.User;
+import model.UserRegistry;
+
+import config.EngineConfig;
+
+/**
+ * Handles on the static methods and fields of Runner, which is in the default package
+ * and so cannot be referenced from a JMH benchmark, which must have a package.
+ * The handles are static final, so the JIT calls through them as it would call the methods directly.
+ */
+final class RunnerHandles {
+
+    static final MethodHandle GETS_USER;
+    static final MethodHandle CURRENCY_CONVERSION;
+    static final MethodHandle PARSES_TRANSACTION;
+    static final MethodHandle DESERIALIZATION;
+    static final MethodHandle MAIN;
+
+    private static final Class<?> RUNNER;
+
+    static {
+        try {
+            RUNNER = Class.forName("Runner");
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            GETS_USER = lookup.findStatic(RUNNER, "getsUser", MethodType.methodType(User.class, String.class));
+            CURRENCY_CONVERSION = lookup.findStatic(RUNNER, "currencyConversion",
+                    MethodType.methodType(void.class, User.class, String.class, String.class, double.class));
+            PARSES_TRANSACTION = lookup.unreflect(accessible(RUNNER.getDeclaredMethod("parsesTransaction", Transaction.class)));
+            DESERIALIZATION = lookup.unreflect(accessible(RUNNER.getDeclaredMethod("deserialization")));
+            MAIN = lookup.findStatic(RUNNER, "main", MethodType.methodType(void.class, String[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private RunnerHandles() {
+
+    }
+
+    private static Method accessible(Method method) {
+        method.setAccessible(true);
+        return method;
+    }
+
+    /**
+     * Sets the configuration Runner reads its files and mode from.
+     */
+    static void setsConfig(EngineConfig config) throws ReflectiveOperationException {
+        RUNNER.getField("config").set(null, config);
+    }
+
+    /**
+     * Retrieves the registry of users Runner converts for.
+     */
+    static UserRegistry users() throws ReflectiveOperationException {
+        return (UserRegistry) RUNNER.getField("users").get(null);
+    }
+
+}
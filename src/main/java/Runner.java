@@ -11,6 +11,8 @@
  * 1.2. The currency to be converted from (fromCurrency).
  * 1.3. The currency to be converted to (toCurrency).
  * 1.4. The amount of the fromCurrency to be converted to the toCurrency.
+ * A back-dated transaction has a fifth component, its timestamp,
+ * and is converted at the rates in effect at that time if there is a rate history.
  * -----------------------------------------------------------------------------------------------------
  * 2. A transaction is either valid or invalid.
  * Every invalid transaction is skipped, whilst a currency conversion occurs for a valid transaction.
@@ -21,6 +23,12 @@
  * 3.1. A valid transaction, and the amount and currencies involved in the conversion.
  * 3.2. An invalid transaction, and the reason that the transaction was skipped.
  * -----------------------------------------------------------------------------------------------------
+ * 4. The latency of every stage, the rejections by reason and the conversions by pair of currencies
+ * are published over JMX while transactions are processed, and summarised in the logger at shutdown.
+ * -----------------------------------------------------------------------------------------------------
+ * 5. Instead of reading transactions.txt, the program may serve transactions over TCP until it is stopped,
+ * answering every transaction with its outcome (see ConversionServer).
+ * -----------------------------------------------------------------------------------------------------
  * @author Sheikh Umar
  * -----------------------------------------------------------------------------------------------------
  */
@@ -31,24 +39,60 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.text.DecimalFormat;
-import java.util.ArrayList;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
+import javax.management.JMException;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.exc.StreamReadException;
 import com.fasterxml.jackson.databind.DatabindException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import audit.AuditLog;
+import config.EngineConfig;
+import engine.OrderedChunkExecutor;
+import engine.PersistStage;
+import engine.ShardedExecutor;
+import engine.StageStatistics;
+import engine.StagedPipeline;
+import engine.TransactionNetter;
+import engine.WalletLocks;
+import metrics.EngineMetrics;
 import model.Currency;
+import model.MinorUnits;
+import model.RateTable;
+import model.Transaction;
+import parser.LineReader;
+import parser.MappedChunks;
+import parser.ParsedChunk;
+import parser.ParseError;
+import parser.TransactionParser;
+import parser.Timestamps;
+import parser.TransactionRecord;
+import persistence.StreamingUsersLoader;
+import persistence.WalletJournal;
+import persistence.WalletPersistence;
+import persistence.WalletSnapshot;
+import persistence.WriteBehindPersister;
+import rates.FxQuoter;
+import rates.FxRatesWatcher;
+import rates.RateHistory;
+import server.ConversionServer;
+import validation.RejectionReason;
+import validation.TransactionValidator;
 import model.User;
+import model.UserRegistry;
+import model.WalletStore;
 
 import exceptions.InsufficientAmountForConversionException;
 import exceptions.InvalidAmountException;
 import exceptions.InvalidCurrencyException;
-import exceptions.InvalidNumberOfComponentsException;
 import exceptions.SameCurrencyException;
 import exceptions.UserHasNoCurrencyException;
 import exceptions.UserNotFoundException;
@@ -59,11 +103,9 @@ import org.apache.logging.log4j.LogManager;
 public class Runner {
 	
 	/**
-	 * Constant variables named according to the files it is accessing.
+	 * Settings for this run: the files being accessed, and the mode the program runs in.
 	 */
-	private static final String FX_RATES_FILE = "src/main/resources/fx_rates.json";
-	private static final String TRANSACTIONS_FILE = "src/main/resources/transactions.txt";
-	private static final String USERS_FILE = "src/main/resources/users.json";
+	public static EngineConfig config = EngineConfig.fromSystemProperties();
 	
 	/**
 	 * Logger to log message on validity of every transaction.
@@ -71,61 +113,205 @@ public class Runner {
 	private static final Logger logger = LogManager.getLogger(Runner.class);
 	
 	/**
-	 * List of users from Users.json.
+	 * Registry of users from Users.json, indexed by name.
 	 */
-	public static List <User> users = new ArrayList <> ();
+	public static UserRegistry users = new UserRegistry();
 	
 	/**
-	 * List of currency, and it's respective currency object from fx_rate.json.
+	 * List of currency, and it's respective currency object from the latest fx_rate.json.
 	 */
 	public static Map <String, Currency> currencies = new HashMap <> ();
 	
 	/**
-	 * Currency conversion involving USD.
+	 * Cross rate of every pair of currencies in fx_rates.json, including USD, built from the currencies map.
+	 * It is an immutable snapshot, replaced as a whole when fx_rates.json is reloaded,
+	 * so a transaction reads it once and is converted against a single version of the rates.
+	 */
+	public static volatile RateTable rates = new RateTable(currencies);
+	
+	/**
+	 * Quotes amounts at the latest snapshot of the rates, without a user or a wallet.
+	 */
+	public static final FxQuoter quoter = new FxQuoter(() -> rates);
+	
+	/**
+	 * First component of a quote served instead of a transaction, e.g. "QUOTE cad eur 100".
+	 */
+	static final String QUOTE = "QUOTE";
+	
+	/**
+	 * Reloads fx_rates.json when it changes, if it is watched. Null otherwise.
+	 */
+	private static FxRatesWatcher ratesWatcher;
+	
+	/**
+	 * Every dated rate of the fx_rates.json files in the rate history directory, if there is one. Null otherwise.
+	 * Back-dated transactions are converted at the rates in effect at their timestamp.
+	 */
+	static RateHistory rateHistory;
+	
+	/**
+	 * Makes the wallet updates of valid transactions durable, according to the persistence mode in the configuration.
+	 * Null until the transactions are processed by main.
+	 */
+	static WalletPersistence persister;
+	
+	/**
+	 * Metrics of the run: latencies of every stage, and counters of transactions by outcome and by pair of currencies.
+	 * Replaced by main at the start of every run.
+	 */
+	static EngineMetrics metrics = new EngineMetrics();
+	
+	/**
+	 * Writes the outcome of every transaction to the audit log off the processing threads, if there is one.
+	 * Null otherwise, when every outcome is logged through the logger.
+	 */
+	static AuditLog auditLog;
+	
+	/**
+	 * Serves transactions over TCP, if the program runs as a server. Null otherwise.
+	 */
+	static volatile ConversionServer server;
+	
+	/**
+	 * Locks the user of a served transaction while its wallet is checked and converted,
+	 * and every user while the wallets are written to disk, since connections are served by many threads at once.
+	 * Every other update of a wallet locks out checkpoints, for the flush of users.json at shutdown.
+	 * Replaced at the start of every run.
+	 */
+	static WalletLocks walletLocks = new WalletLocks(1);
+	
+	/**
+	 * Nets the transactions of the last run applied in file order, if they were netted. Null otherwise.
+	 */
+	static TransactionNetter netter;
+	
+	/**
+	 * Number of transactions handed to a shard at a time,
+	 * and number of batches that can wait for a shard before reading pauses.
+	 */
+	private static final int SHARD_BATCH_SIZE = 256;
+	private static final int SHARD_QUEUE_CAPACITY = 64;
+	
+	/**
+	 * Number of transactions handed from one pipeline stage to the next at a time.
+	 */
+	private static final int PIPELINE_BATCH_SIZE = 256;
+	
+	/**
+	 * Convert the user's fromCurrency to the toCurrency, and update the values of the currencies in the user's wallet.
 	 * 
-	 * @param currencyType 	The type of currency involving USD.
-	 * @param currency 		The currency to apply conversion on.
-	 * @param amount 		The amount involved in the conversion.
-	 * @return 				The amount of currency converted to USD.
+	 * @param 	user 					The user involved in the conversion.
+	 * @param 	fromCurrency 			The currency to be converted from.
+	 * @param 	toCurrency   			The currency to be converted to.
+	 * @param 	amount 					The amount for conversion.
+	 * @throws 	IOException 			The exception thrown if there is an error reading or writing to the file system.
 	 */
-	private static double conversionInvolvingUsd(String currencyType, String currency, double amount) {
-        if (currencyType.equals("convert to USD")) {
-			return amount * currencies.get(currency).getInverseRate();
-		}
-		return amount * currencies.get(currency).getRate();
+	public static void currencyConversion(User user, String fromCurrency, String toCurrency, double amount) throws IOException {
+		currencyConversion(rates, user, fromCurrency, toCurrency, amount);
 	}
-
+	
 	/**
-	 * Convert the user's fromCurrency to the toCurrency, and update the values of the currencies in the user's wallet.
+	 * Convert the user's fromCurrency to the toCurrency at a snapshot of the rates,
+	 * and update the values of the currencies in the user's wallet.
+	 * 
+	 * @param 	rates 					The snapshot of the rates the transaction was validated against.
+	 * @param 	user 					The user involved in the conversion.
+	 * @param 	fromCurrency 			The currency to be converted from.
+	 * @param 	toCurrency   			The currency to be converted to.
+	 * @param 	amount 					The amount for conversion.
+	 * @return 							the amount of the toCurrency the amount was converted to.
+	 * @throws 	IOException 			The exception thrown if there is an error reading or writing to the file system.
+	 */
+	static double currencyConversion(RateTable rates, User user, String fromCurrency, String toCurrency, double amount) throws IOException {
+		double amountToIncreaseToCurrencyBy = rates.converts(rates.idOf(fromCurrency), rates.idOf(toCurrency), amount);
+		updatesWallet(user, fromCurrency, toCurrency, amount, amountToIncreaseToCurrencyBy, rates.getVersion());
+		return amountToIncreaseToCurrencyBy;
+	}
+	
+	/**
+	 * Convert the user's fromCurrency to the toCurrency at the rates in effect at a time,
+	 * and update the values of the currencies in the user's wallet.
 	 * 
+	 * @param 	history 				The rate history, in which both currencies are quoted at the time.
+	 * @param 	timestamp 				The time of the back-dated transaction, in milliseconds since the epoch.
 	 * @param 	user 					The user involved in the conversion.
 	 * @param 	fromCurrency 			The currency to be converted from.
 	 * @param 	toCurrency   			The currency to be converted to.
 	 * @param 	amount 					The amount for conversion.
-	 * @throws 	StreamReadException 	The exception thrown if there is an error reading the JSON stream.
-	 * @throws 	DatabindException 		The exception thrown if there is an error binding the JSON data to the object model.
+	 * @return 							the amount of the toCurrency the amount was converted to.
 	 * @throws 	IOException 			The exception thrown if there is an error reading or writing to the file system.
 	 */
-	public static void currencyConversion(User user, String fromCurrency, String toCurrency, double amount) throws StreamReadException, DatabindException, IOException {
-		DecimalFormat df = new DecimalFormat("#.##");
-		double amountToIncreaseToCurrencyBy;
+	static double currencyConversion(RateHistory history, long timestamp, User user, String fromCurrency, String toCurrency, double amount) throws IOException {
+		double amountToIncreaseToCurrencyBy = history.converts(fromCurrency, toCurrency, amount, timestamp);
 		
-		if (toCurrency.equals("usd")) {
-			amountToIncreaseToCurrencyBy = conversionInvolvingUsd("convert to USD", fromCurrency, amount);
-
-		} else if (fromCurrency.equals("usd")) {
-			amountToIncreaseToCurrencyBy = conversionInvolvingUsd("convert from USD", toCurrency, amount);
-
-		} else {
-			double amountToConvertInUsd = conversionInvolvingUsd("convert to USD", fromCurrency, amount);
-			amountToIncreaseToCurrencyBy = conversionInvolvingUsd("convert from USD", toCurrency, amountToConvertInUsd);
+		// Converted at the rates in effect at the timestamp, rather than at a version of fx_rates.json.
+		updatesWallet(user, fromCurrency, toCurrency, amount, amountToIncreaseToCurrencyBy, AuditLog.UNKNOWN_RATES_VERSION);
+		return amountToIncreaseToCurrencyBy;
+	}
+	
+	/**
+	 * Updates the values of the currencies in the user's wallet after a conversion, and records the update.
+	 * 
+	 * @param 	user 							The user involved in the conversion.
+	 * @param 	fromCurrency 					The currency converted from.
+	 * @param 	toCurrency   					The currency converted to.
+	 * @param 	amount 							The amount of the fromCurrency converted.
+	 * @param 	amountToIncreaseToCurrencyBy 	The amount of the toCurrency it was converted to.
+	 * @param 	ratesVersion 					The version of fx_rates.json it was converted at, or AuditLog.UNKNOWN_RATES_VERSION.
+	 * @throws 	IOException 					The exception thrown if there is an error reading or writing to the file system.
+	 */
+	private static void updatesWallet(User user, String fromCurrency, String toCurrency, double amount, double amountToIncreaseToCurrencyBy, long ratesVersion) throws IOException {
+		// users.json may be flushed at shutdown from another thread, which waits for the wallet to be updated.
+		walletLocks.locksUpdate();
+		try {
+			user.updatesWallet(fromCurrency, toCurrency, amount, amountToIncreaseToCurrencyBy);
+			logsConversion(user, fromCurrency, toCurrency, amount, amountToIncreaseToCurrencyBy, ratesVersion);
+			
+			// Record the update of the user's wallet, to be written to users.json.
+			serialization(user, fromCurrency, toCurrency, amount, amountToIncreaseToCurrencyBy);
+		} finally {
+			walletLocks.unlocksUpdate();
+		}
+	}
+	
+	/**
+	 * Logs a conversion, both on the console and in a log file, or records it in the audit log if there is one.
+	 * 
+	 * @param 	user 							The user involved in the conversion.
+	 * @param 	fromCurrency 					The currency converted from.
+	 * @param 	toCurrency   					The currency converted to.
+	 * @param 	amount 							The amount of the fromCurrency converted.
+	 * @param 	amountToIncreaseToCurrencyBy 	The amount of the toCurrency it was converted to.
+	 * @param 	ratesVersion 					The version of fx_rates.json it was converted at, or AuditLog.UNKNOWN_RATES_VERSION.
+	 */
+	private static void logsConversion(User user, String fromCurrency, String toCurrency, double amount, double amountToIncreaseToCurrencyBy, long ratesVersion) {
+		if (auditLog != null) {
+			auditLog.recordsConversion(user.getName(), fromCurrency, toCurrency, amount, amountToIncreaseToCurrencyBy, ratesVersion);
+		} else if (logger.isInfoEnabled()) {
+	        logger.info("Valid Transaction: Success! Converted {}{} to {}{} for {} at version {} of the rates.", fromCurrency, MinorUnits.of(fromCurrency).formats(amount), toCurrency, MinorUnits.of(toCurrency).formats(amountToIncreaseToCurrencyBy), user.getName(), versionOf(ratesVersion));
 		}
-
-		user.updatesWallet(fromCurrency, toCurrency, amount, amountToIncreaseToCurrencyBy);
-        logger.info("Valid Transaction: Success! Converted {}{} to {}{} for {}.", fromCurrency, df.format(amount), toCurrency, df.format(amountToIncreaseToCurrencyBy), user.getName());
-		
-		// Update user's profile in users.json with updated values and currencies in wallet.
-		serialization();
+	}
+	
+	/**
+	 * Retrieves a version of the rates as it is answered and logged.
+	 * 
+	 * @param ratesVersion 	The version of fx_rates.json, or AuditLog.UNKNOWN_RATES_VERSION.
+	 * @return 				the version, or "-" if it is unknown.
+	 */
+	private static String versionOf(long ratesVersion) {
+		return ratesVersion == AuditLog.UNKNOWN_RATES_VERSION ? "-" : Long.toString(ratesVersion);
+	}
+	
+	/**
+	 * Retrieves the version of the rates a transaction is checked and converted against.
+	 * 
+	 * @param transaction 	The transaction.
+	 * @return 				the version of fx_rates.json it was validated against, or AuditLog.UNKNOWN_RATES_VERSION
+	 * 						if it was not validated, or is back-dated and converted at the rates in effect at its timestamp.
+	 */
+	private static long ratesVersionOf(Transaction transaction) {
+		return transaction.hasTimestamp() && rateHistory != null ? AuditLog.UNKNOWN_RATES_VERSION : transaction.getRatesVersion();
 	}
 	
 	/**
@@ -139,7 +325,7 @@ public class Runner {
 	public static void isSufficientAmountForConversion(User user,
 													   String fromCurrency,
 													   double amountToConvert) throws InsufficientAmountForConversionException {
-		if (user.getCurrencyValueInWallet(fromCurrency) < amountToConvert) {
+		if (TransactionValidator.checksSufficientAmount(user, fromCurrency, amountToConvert) != RejectionReason.NONE) {
 			throw new InsufficientAmountForConversionException();
 		}
 	}
@@ -152,7 +338,7 @@ public class Runner {
 	 * @throws 	UserHasNoCurrencyException 		The exception thrown if the user does not have the FROM currency in his/her wallet.
 	 */
 	public static void doesUserHaveCurrency(User user, String fromCurrency) throws UserHasNoCurrencyException {
-		if (!user.isCurrencyInWallet(fromCurrency)) {
+		if (TransactionValidator.checksUserHasCurrency(user, fromCurrency) != RejectionReason.NONE) {
 			throw new UserHasNoCurrencyException();
 		}
 	}
@@ -164,7 +350,7 @@ public class Runner {
 	 * @throws 	InvalidAmountException 		The exception thrown if the amount to convert is less than or equal to 0.
 	 */
 	public static void isValidAmount(double amountToConvert) throws InvalidAmountException {
-		if (amountToConvert <= 0) {
+		if (TransactionValidator.checksAmount(amountToConvert) != RejectionReason.NONE) {
 			throw new InvalidAmountException();
 		}
 	}
@@ -176,7 +362,7 @@ public class Runner {
 	 * @throws 	InvalidCurrencyException 		The exception thrown if the currency provided does not exist.
 	 */
 	public static void isValidCurrency(String currency) throws InvalidCurrencyException {
-        if (!currency.equals("usd") && !currencies.containsKey(currency)) {
+        if (TransactionValidator.checksCurrency(rates, currency) != RejectionReason.NONE) {
 			throw new InvalidCurrencyException();
 		}
 	}
@@ -189,7 +375,7 @@ public class Runner {
 	 * @throws 	SameCurrencyException 		The exception thrown if the 2 currencies provided for conversion are the same.
 	 */
 	public static void isSameCurrency(String toCurrency, String fromCurrency) throws SameCurrencyException {
-		if (toCurrency.equals(fromCurrency)) {
+		if (TransactionValidator.checksSameCurrency(toCurrency, fromCurrency) != RejectionReason.NONE) {
 			throw new SameCurrencyException();
 		}
 	}
@@ -201,36 +387,35 @@ public class Runner {
 	 * @throws 	UserNotFoundException 		The exception thrown if the user cannot be found.
 	 */
 	public static User getsUser(String name) throws UserNotFoundException {
-        for (User currentUser : users) {
-            if (currentUser.getName().equals(name)) {
-                return currentUser;
-            }
-        }
-		throw new UserNotFoundException();
-	}
-	
-	/**
-	 * Checks that a transaction has 4 components.
-	 * 
-	 * @param 	transaction 							An array containing the components of a transaction.
-	 * @throws 	InvalidNumberOfComponentsException 		The exception thrown if the transaction does not have 4 components.
-	 */
-	private static void isValidTransaction(String[] transaction) throws InvalidNumberOfComponentsException {
-		if (transaction.length != 4) {
-			throw new InvalidNumberOfComponentsException();
+		User user = users.get(name);
+		if (user == null) {
+			throw new UserNotFoundException();
 		}
+		return user;
 	}
 	
 	/**
 	 * Execution of the serialization for users.json after a valid transaction.
+	 * Depending on the persistence mode, the conversion is either batched by the write-behind persister,
+	 * or appended to the journal.
 	 * 
-	 * @throws DatabindException 	The exception thrown if there is an error binding the JSON data to the object model.
-	 * @throws IOException 			The exception thrown if there is an error reading or writing to the file system.
+	 * @param user 							The user involved in the conversion.
+	 * @param fromCurrency 					The currency converted from.
+	 * @param toCurrency 					The currency converted to.
+	 * @param amount 						The amount of the fromCurrency converted.
+	 * @param amountToIncreaseToCurrencyBy 	The amount of the toCurrency received.
+	 * @throws IOException 					The exception thrown if there is an error reading or writing to the file system.
 	 */
-	private static void serialization() throws DatabindException, IOException {
-		File destination = new File(USERS_FILE);
-		ObjectMapper objectMapper = new ObjectMapper();
-		objectMapper.writeValue(destination, users);
+	private static void serialization(User user,
+									  String fromCurrency,
+									  String toCurrency,
+									  double amount,
+									  double amountToIncreaseToCurrencyBy) throws IOException {
+		if (persister != null) {
+			long start = System.nanoTime();
+			persister.recordsConversion(user, fromCurrency, toCurrency, amount, amountToIncreaseToCurrencyBy);
+			metrics.getPersist().records(System.nanoTime() - start);
+		}
 	}
 	
 	/**
@@ -246,23 +431,865 @@ public class Runner {
 		/*
 		 * Extract every entry in users.json,
 		 * parse it into a User object,
-		 * and add it to the users list
+		 * and add it to the users registry,
+		 * streaming through users.json on as many threads as configured.
 		 */
-		users = objectMapper.readValue(
-					new File(USERS_FILE),
-					objectMapper.getTypeFactory().constructCollectionType(List.class, User.class)
-				);
+		users = StreamingUsersLoader.loads(new File(config.getUsersFile()), config.getLoaderThreads(), newsUserRegistry());
+		
+		deserializesCurrencies(objectMapper);
+	}
+	
+	/**
+	 * Loads the users and currencies kept in memory for every transaction.
+	 * The users are read from the wallet snapshot instead of users.json if it is at least as recent as users.json,
+	 * which it is once it has been written at shutdown.
+	 * 
+	 * @throws IOException 	The exception thrown if there is an error reading users.json, the snapshot or fx_rates.json.
+	 */
+	private static void loadsResidentState() throws IOException {
+		File snapshotFile = new File(config.getWalletSnapshot());
+		if (config.getWalletSnapshot().isEmpty() || !snapshotFile.exists()
+				|| snapshotFile.lastModified() < new File(config.getUsersFile()).lastModified()) {
+			deserialization();
+			return;
+		}
+		long start = System.nanoTime();
+		users = WalletSnapshot.reads(snapshotFile, newsUserRegistry());
+		logger.info("Loaded {} users from the wallet snapshot in {} ms.", users.size(), (System.nanoTime() - start) / 1_000_000);
+		deserializesCurrencies(new ObjectMapper());
+	}
+	
+	/**
+	 * Creates the empty registry the users are loaded into,
+	 * holding them off the heap in a WalletStore if configured.
+	 * 
+	 * @return the registry.
+	 */
+	private static UserRegistry newsUserRegistry() {
+		return config.isOffHeapWallets() ? new UserRegistry(new WalletStore()) : new UserRegistry();
+	}
+	
+	/**
+	 * Execution of deserialization of fx_rates.json before processing transactions.
+	 * 
+	 * @param objectMapper 			The ObjectMapper used to read fx_rates.json.
+	 * @throws IOException 			The exception thrown if there is an error reading or writing to the file system.
+	 */
+	private static void deserializesCurrencies(ObjectMapper objectMapper) throws IOException {
 		
 		/*
 		 * Extract every entry in fx_rates.json,
 		 * form a Currency object, 
 		 * and add it to the currencies hashmap,
-		 * where the key-value mappings are currencyCode-Currency object
+		 * where the key-value mappings are currencyCode-Currency object.
+		 * Then precompute the cross rate of every pair of currencies for conversions.
+		 */
+		publishesRates(FxRatesWatcher.reads(new File(config.getFxRatesFile()), objectMapper));
+	}
+	
+	/**
+	 * Publishes the currencies of a new version of fx_rates.json as the next snapshot of the rates.
+	 * Transactions already validated keep converting against the snapshot they read.
+	 * 
+	 * @param newCurrencies 	The currencies of fx_rates.json.
+	 */
+	private static synchronized void publishesRates(Map <String, Currency> newCurrencies) {
+		RateTable newRates = new RateTable(newCurrencies, rates.getVersion() + 1);
+		currencies = newCurrencies;
+		rates = newRates;
+	}
+	
+	/**
+	 * Validates a single transaction, and carries out the currency conversion if it is valid.
+	 * The outcome is logged both on the console and in a log file.
+	 * 
+	 * @param line 	A line from transactions.txt.
+	 */
+	static void processesTransaction(String line) {
+		Transaction transaction = new Transaction(line);
+		
+		/*
+		 * 1. Unless users and currencies are resident in memory,
+		 * deserialize the users.json and fx_rates.json files
+		 * to populate the users registry and currencies map respectively.
 		 */
-		currencies = objectMapper.readValue(
-				new File(FX_RATES_FILE),
-	            objectMapper.getTypeFactory().constructMapType(HashMap.class, String.class, Currency.class)
-	    );
+		if (!config.isResidentState()) {
+			try {
+				deserialization();
+			} catch (IOException e) {
+				transaction.setRejection(rejectionOf(e));
+			}
+		}
+		
+		/*
+		 * 2. Read the transaction
+		 * and determine if it is a valid or invalid transaction.
+		 * Finally, logging is carried out for every transaction
+		 * both on the console and in a log file.
+		 */
+		parsesTransaction(transaction);
+		validatesTransaction(transaction);
+		appliesTransaction(transaction);
+		logsOutcome(transaction);
+	}
+	
+	/**
+	 * Validates a transaction received by the server, carries out the currency conversion if it is valid,
+	 * and answers with its outcome. The checks of the user's wallet and the conversion are atomic:
+	 * they hold the lock of the user's stripe, so transactions of other users are applied at the same time.
+	 * A line starting with QUOTE is quoted instead, without taking a lock.
+	 * 
+	 * @param line 	A transaction, in the format of a line from transactions.txt, or a quote.
+	 * @return 		"OK fromCurrency amount toCurrency convertedAmount ratesVersion" if it is valid, "REJECTED reason ratesVersion" otherwise,
+	 * 				where ratesVersion is the version of fx_rates.json the transaction was validated against, or "-" (see ratesVersionOf).
+	 */
+	static String servesTransaction(String line) {
+		if (line.startsWith(QUOTE + " ")) {
+			return servesQuote(line);
+		}
+		Transaction transaction = new Transaction(line);
+		parsesTransaction(transaction);
+		validatesTransaction(transaction);
+		if (!transaction.isRejected()) {
+			walletLocks.locks(transaction.getUsername());
+			try {
+				appliesTransaction(transaction);
+			} finally {
+				walletLocks.unlocks(transaction.getUsername());
+			}
+		}
+		if (persister.isCheckpointDue()) {
+			walletLocks.locksAll();
+			try {
+				// Another connection may have taken the checkpoint while this one waited.
+				checkpointsIfDue();
+			} catch (IOException e) {
+				logger.fatal("Unable to write the wallets to disk: {}", e.getMessage());
+			} finally {
+				walletLocks.unlocksAll();
+			}
+		}
+		logsOutcome(transaction);
+		
+		if (transaction.isRejected()) {
+			return "REJECTED " + transaction.getRejection().name() + " " + versionOf(ratesVersionOf(transaction));
+		}
+		String fromCurrency = transaction.getFromCurrency();
+		String toCurrency = transaction.getToCurrency();
+		return "OK " + fromCurrency + " " + MinorUnits.of(fromCurrency).formats(transaction.getAmount())
+				+ " " + toCurrency + " " + MinorUnits.of(toCurrency).formats(transaction.getConvertedAmount())
+				+ " " + versionOf(ratesVersionOf(transaction));
+	}
+	
+	/**
+	 * Quotes an amount at the latest rates, and answers with the amount it buys, without touching a wallet.
+	 * 
+	 * @param line 	A quote, "QUOTE fromCurrency toCurrency amount".
+	 * @return 		"OK fromCurrency amount toCurrency quotedAmount ratesVersion" if it is valid, "REJECTED reason ratesVersion" otherwise,
+	 * 				where ratesVersion is the version of fx_rates.json the quote was checked against, or "-".
+	 */
+	static String servesQuote(String line) {
+		String[] components = line.split(" ");
+		if (components.length != TransactionValidator.COMPONENTS) {
+			return "REJECTED " + RejectionReason.INVALID_NUMBER_OF_COMPONENTS.name() + " -";
+		}
+		String fromCurrency = components[1];
+		String toCurrency = components[2];
+		double amount;
+		try {
+			amount = Double.parseDouble(components[3]);
+		} catch (NumberFormatException e) {
+			return "REJECTED " + RejectionReason.UNPARSABLE_AMOUNT.name() + " -";
+		}
+		
+		RateTable snapshot = quoter.getRates();
+		double quotedAmount = FxQuoter.quotes(snapshot, fromCurrency, toCurrency, amount);
+		if (Double.isNaN(quotedAmount)) {
+			return "REJECTED " + FxQuoter.checks(snapshot, fromCurrency, toCurrency, amount).name() + " " + snapshot.getVersion();
+		}
+		return "OK " + fromCurrency + " " + MinorUnits.of(fromCurrency).formats(amount)
+				+ " " + toCurrency + " " + MinorUnits.of(toCurrency).formats(quotedAmount)
+				+ " " + snapshot.getVersion();
+	}
+	
+	/**
+	 * Splits a transaction into its components, and parses the amount.
+	 * A transaction without exactly 4 components, or 5 with a timestamp, is rejected.
+	 * An amount that cannot be parsed is only reported once the checks before it in validation have passed.
+	 * 
+	 * @param transaction 	The transaction.
+	 */
+	static void parsesTransaction(Transaction transaction) {
+		if (transaction.isRejected()) {
+			return;
+		}
+		
+		long start = System.nanoTime();
+		splitsTransaction(transaction);
+		metrics.getParse().records(System.nanoTime() - start);
+	}
+	
+	/**
+	 * Splits a transaction into its components, and parses the amount and the timestamp, if any.
+	 * 
+	 * @param transaction 	The transaction.
+	 */
+	private static void splitsTransaction(Transaction transaction) {
+		String[] transactionComponents = transaction.getLine().split(" ");
+		long timestamp = transactionComponents.length == TransactionValidator.COMPONENTS_WITH_TIMESTAMP
+				? Timestamps.parses(transactionComponents[4])
+				: Timestamps.NONE;
+		transaction.setRejection(TransactionValidator.checksComponents(transactionComponents.length, timestamp));
+		if (transaction.isRejected()) {
+			return;
+		}
+		
+		transaction.setTimestamp(timestamp);
+		
+		transaction.setComponents(transactionComponents[0], transactionComponents[1], transactionComponents[2]);
+		try {
+			transaction.setAmount(Double.parseDouble(transactionComponents[3]));
+		} catch (NumberFormatException e) {
+			transaction.setAmountUnparsable(true);
+		}
+	}
+	
+	/**
+	 * Fills a transaction from a record parsed from bytes, using the interned names of its user and currencies.
+	 * A record that could not be parsed rejects the transaction with the same reason as the String parser.
+	 * 
+	 * @param record 		The parsed record.
+	 * @param parser 		The parser holding the symbols of the record.
+	 * @param transaction 	The transaction to fill.
+	 */
+	static void readsRecord(TransactionRecord record, TransactionParser parser, Transaction transaction) {
+		if (record.getError() == ParseError.INVALID_NUMBER_OF_COMPONENTS) {
+			readsParsedLine(null, null, null, 0, Timestamps.NONE, record.getError(), transaction);
+		} else {
+			readsParsedLine(parser.getUsers().nameOf(record.getUserId()),
+					parser.getCurrencies().nameOf(record.getFromCurrencyId()),
+					parser.getCurrencies().nameOf(record.getToCurrencyId()),
+					record.getAmount(), record.getTimestamp(), record.getError(), transaction);
+		}
+	}
+	
+	/**
+	 * Fills a transaction from a line of a parsed chunk.
+	 * 
+	 * @param chunk 		The parsed chunk.
+	 * @param line 			The index of the line in the chunk.
+	 * @param transaction 	The transaction to fill.
+	 */
+	static void readsParsedLine(ParsedChunk chunk, int line, Transaction transaction) {
+		readsParsedLine(chunk.getUsername(line), chunk.getFromCurrency(line), chunk.getToCurrency(line),
+				chunk.getAmount(line), chunk.getTimestamp(line), chunk.getError(line), transaction);
+	}
+	
+	/**
+	 * Fills a transaction from the components of a parsed line.
+	 * A line that could not be parsed rejects the transaction with the same reason as the String parser.
+	 * 
+	 * @param username 		The name of the user.
+	 * @param fromCurrency 	The currency to be converted from.
+	 * @param toCurrency 	The currency to be converted to.
+	 * @param amount 		The amount to be converted.
+	 * @param timestamp 	The timestamp of a back-dated transaction, or Timestamps.NONE.
+	 * @param error 		The reason the line could not be parsed, or NONE.
+	 * @param transaction 	The transaction to fill.
+	 */
+	private static void readsParsedLine(String username,
+										String fromCurrency,
+										String toCurrency,
+										double amount,
+										long timestamp,
+										ParseError error,
+										Transaction transaction) {
+		transaction.clears();
+		if (error == ParseError.INVALID_NUMBER_OF_COMPONENTS) {
+			transaction.setRejection(RejectionReason.INVALID_NUMBER_OF_COMPONENTS);
+			return;
+		}
+		
+		transaction.setComponents(username, fromCurrency, toCurrency);
+		transaction.setTimestamp(timestamp);
+		if (error == ParseError.INVALID_AMOUNT) {
+			transaction.setAmountUnparsable(true);
+		} else {
+			transaction.setAmount(amount);
+		}
+	}
+	
+	/**
+	 * Runs the checks of a transaction that do not depend on the user's wallet:
+	 * the user exists, the currencies are different and valid, and the amount is valid.
+	 * 
+	 * @param transaction 	The parsed transaction.
+	 */
+	static void validatesTransaction(Transaction transaction) {
+		if (transaction.isRejected()) {
+			return;
+		}
+		
+		// Read the rates once, so that the transaction is validated and converted against the same snapshot.
+		long start = System.nanoTime();
+		RateTable snapshot = rates;
+		transaction.setRates(snapshot);
+		transaction.setRejection(TransactionValidator.validates(transaction, users, snapshot, rateHistory));
+		metrics.getValidate().records(System.nanoTime() - start);
+	}
+	
+	/**
+	 * Runs the checks of a transaction against the user's wallet,
+	 * and carries out the currency conversion if they pass.
+	 * 
+	 * @param transaction 	The validated transaction.
+	 */
+	static void appliesTransaction(Transaction transaction) {
+		if (transaction.isRejected()) {
+			return;
+		}
+		
+		long start = System.nanoTime();
+		transaction.setRejection(TransactionValidator.checksWallet(transaction));
+		if (!transaction.isRejected()) {
+			convertsTransaction(transaction);
+		}
+		metrics.getConvert().records(System.nanoTime() - start);
+	}
+	
+	/**
+	 * Carries out the currency conversion of a transaction that passed every check,
+	 * at the rates in effect at its timestamp if it is back-dated.
+	 * 
+	 * @param transaction 	The valid transaction.
+	 */
+	private static void convertsTransaction(Transaction transaction) {
+		try {
+			if (transaction.hasTimestamp() && rateHistory != null) {
+				transaction.setConvertedAmount(currencyConversion(rateHistory, transaction.getTimestamp(), transaction.getUser(), transaction.getFromCurrency(), transaction.getToCurrency(), transaction.getAmount()));
+			} else {
+				transaction.setConvertedAmount(currencyConversion(transaction.getRates(), transaction.getUser(), transaction.getFromCurrency(), transaction.getToCurrency(), transaction.getAmount()));
+			}
+		} catch (IOException e) {
+			transaction.setRejection(rejectionOf(e));
+		}
+	}
+	
+	/**
+	 * Applies a validated transaction read in file order, and writes every wallet to disk if it is due.
+	 * If transactions are netted, it joins the group of the transactions before it if it can,
+	 * and the group is applied first otherwise.
+	 * 
+	 * @param transaction 	The validated transaction.
+	 * @param netter 		The netter that filled the transaction, or null if transactions are not netted.
+	 * @throws IOException 	The exception thrown if there is an error writing to the file system.
+	 */
+	private static void appliesInFileOrder(Transaction transaction, TransactionNetter netter) throws IOException {
+		if (netter != null) {
+			if (netter.adds(transaction)) {
+				return;
+			}
+			appliesNettedGroup(netter);
+			checkpointsIfDue();
+			if (netter.adds(transaction)) {
+				return;
+			}
+		}
+		appliesTransaction(transaction);
+		logsOutcome(transaction);
+		checkpointsIfDue();
+	}
+	
+	/**
+	 * Applies a group of transactions of the same user and currency pair as a single update of the wallet,
+	 * and logs the outcome of every transaction of the group, in order, as if they had been applied one at a time.
+	 * 
+	 * @param netter 	The netter holding the group, which is emptied.
+	 */
+	private static void appliesNettedGroup(TransactionNetter netter) {
+		int size = netter.size();
+		if (size == 1) {
+			appliesTransaction(netter.get(0));
+			logsOutcome(netter.get(0));
+		} else if (size > 1) {
+			long start = System.nanoTime();
+			netter.nets();
+			Transaction first = netter.get(0);
+			RejectionReason failure = RejectionReason.NONE;
+			if (netter.getConversions() > 0) {
+				walletLocks.locksUpdate();
+				try {
+					first.getUser().updatesWallet(first.getFromCurrency(), first.getToCurrency(), netter.getNettedAmount(), netter.getNettedConvertedAmount());
+					serialization(first.getUser(), first.getFromCurrency(), first.getToCurrency(), netter.getNettedAmount(), netter.getNettedConvertedAmount());
+				} catch (IOException e) {
+					failure = rejectionOf(e);
+				} finally {
+					walletLocks.unlocksUpdate();
+				}
+			}
+			metrics.getConvert().records((System.nanoTime() - start) / size, size);
+			
+			for (int i = 0; i < size; i++) {
+				Transaction transaction = netter.get(i);
+				if (!transaction.isRejected()) {
+					logsConversion(transaction.getUser(), transaction.getFromCurrency(), transaction.getToCurrency(), transaction.getAmount(), transaction.getConvertedAmount(), ratesVersionOf(transaction));
+					transaction.setRejection(failure);
+				}
+				logsOutcome(transaction);
+			}
+		}
+		netter.clears();
+	}
+	
+	/**
+	 * Applies the last group of netted transactions, and logs how many transactions were netted.
+	 * 
+	 * @param netter 		The netter, or null if transactions are not netted.
+	 * @throws IOException 	The exception thrown if there is an error writing to the file system.
+	 */
+	private static void finishesNetting(TransactionNetter netter) throws IOException {
+		if (netter == null) {
+			return;
+		}
+		appliesNettedGroup(netter);
+		checkpointsIfDue();
+		logger.info("Netted {} transactions in {} groups, each applied as one update of a wallet. {} were rejected inside a group, where it would have been split.",
+				netter.getNettedTransactions(), netter.getGroups(), netter.getSplits());
+	}
+	
+	/**
+	 * Creates the netter of the transactions applied in file order, if they are netted.
+	 * 
+	 * @return the netter, or null if transactions are not netted.
+	 */
+	private static TransactionNetter newsNetter() {
+		netter = config.getNettingWindow() > 1 ? new TransactionNetter(config.getNettingWindow()) : null;
+		return netter;
+	}
+	
+	/**
+	 * Logs the reason a transaction was skipped, both on the console and in a log file,
+	 * or records it in the audit log if there is one.
+	 * Valid transactions are logged by the currency conversion.
+	 * 
+	 * @param transaction 	The processed transaction.
+	 */
+	static void logsOutcome(Transaction transaction) {
+		String username = transaction.getUsername();
+		String fromCurrency = transaction.getFromCurrency();
+		metrics.recordsOutcome(transaction.getRejection(), fromCurrency, transaction.getToCurrency(), transaction.getAmount());
+		
+		// Valid transactions are audited by the currency conversion.
+		if (auditLog != null) {
+			if (transaction.isRejected()) {
+				auditLog.recordsRejection(transaction.getRejection(), username, fromCurrency, transaction.getToCurrency(),
+						transaction.isAmountUnparsable() ? Double.NaN : transaction.getAmount(), ratesVersionOf(transaction));
+			}
+			return;
+		}
+		
+		switch (transaction.getRejection()) {
+		case NONE:
+			break;
+		case INSUFFICIENT_AMOUNT:
+            logger.error("Skipped Transaction: {} has insufficient amount of {} (FROM currency).", username, fromCurrency);
+            break;
+		case USER_HAS_NO_CURRENCY:
+            logger.error("Skipped Transaction: {} does not have {} (FROM currency).", username, fromCurrency);
+            break;
+		case INVALID_NUMBER_OF_COMPONENTS:
+        	logger.error("Skipped Transaction: Transaction does not have exactly 4 components as required.");
+        	break;
+		case INVALID_CURRENCY:
+        	logger.error("Skipped Transaction: One or both of the currencies is invalid.");
+        	break;
+		case INVALID_AMOUNT:
+        	logger.error("Skipped Transaction: Amount to convert is less than or equal to 0.");
+        	break;
+		case USER_NOT_FOUND:
+            logger.error("Skipped Transaction: User called {} not found.", username);
+            break;
+		case SAME_CURRENCY:
+        	logger.error("Skipped Transaction: Both the FROM and TO currencies are the same.");
+        	break;
+		case UNPARSABLE_AMOUNT:
+        	logger.error("Unable to parse string to a double for the amount of conversion.");
+        	break;
+		case UNPARSABLE_JSON:
+        	logger.fatal("Unable to parse the JSON file.");
+        	break;
+		default:
+			logger.fatal("Unable to access the transactions.txt file.");
+		}
+	}
+	
+	/**
+	 * Retrieves the reason a transaction is rejected when a file cannot be read or written.
+	 * 
+	 * @param e 	The exception thrown.
+	 * @return 		UNPARSABLE_JSON if a JSON file cannot be parsed, INACCESSIBLE_FILE otherwise.
+	 */
+	private static RejectionReason rejectionOf(IOException e) {
+		return e instanceof JsonProcessingException ? RejectionReason.UNPARSABLE_JSON : RejectionReason.INACCESSIBLE_FILE;
+	}
+	
+	/**
+	 * Hashes the username of a transaction, without splitting the transaction.
+	 * Transactions of the same user always have the same hash.
+	 * 
+	 * @param transaction 	A line from transactions.txt.
+	 * @return 				the hash of the first component of the transaction.
+	 */
+	static int hashesUsername(String transaction) {
+		int hash = 0;
+		for (int i = 0; i < transaction.length() && transaction.charAt(i) != ' '; i++) {
+			hash = 31 * hash + transaction.charAt(i);
+		}
+		return hash;
+	}
+	
+	/**
+	 * Writes every wallet to disk if the persistence policy requires it.
+	 * Must only be called while no transaction is being processed.
+	 * 
+	 * @throws IOException 	The exception thrown if there is an error writing to the file system.
+	 */
+	private static void checkpointsIfDue() throws IOException {
+		if (persister.isCheckpointDue()) {
+			checkpoints();
+		}
+	}
+	
+	/**
+	 * Writes every wallet to disk.
+	 * Must only be called while no transaction is being processed.
+	 * 
+	 * @throws IOException 	The exception thrown if there is an error writing to the file system.
+	 */
+	private static void checkpoints() throws IOException {
+		long start = System.nanoTime();
+		persister.checkpoint();
+		metrics.getCheckpoint().records(System.nanoTime() - start);
+	}
+	
+	/**
+	 * Processes every transaction one at a time, in file order,
+	 * parsing every line straight from the bytes of transactions.txt into a single reused record and transaction.
+	 * Users and currencies are resident, so a name seen before is found without creating a String.
+	 * 
+	 * @param inputStream 		The stream of transactions.txt.
+	 * @throws IOException 		The exception thrown if there is an error reading or writing to the file system.
+	 */
+	private static void processesParsedLines(InputStream inputStream) throws IOException {
+		LineReader lineReader = new LineReader(inputStream);
+		TransactionParser parser = new TransactionParser();
+		TransactionRecord record = new TransactionRecord();
+		TransactionNetter netter = newsNetter();
+		Transaction transaction = new Transaction();
+		while (lineReader.readsLine()) {
+			if (netter != null) {
+				transaction = netter.getsNext();
+			}
+			long start = System.nanoTime();
+			parser.parses(lineReader.getBuffer(), lineReader.getStart(), lineReader.getEnd(), record);
+			readsRecord(record, parser, transaction);
+			metrics.getParse().records(System.nanoTime() - start);
+			validatesTransaction(transaction);
+			appliesInFileOrder(transaction, netter);
+		}
+		finishesNetting(netter);
+	}
+	
+	/**
+	 * Processes transactions.txt through memory mappings of chunks of the file, aligned to lines.
+	 * Chunks are parsed in parallel, and their transactions are applied in file order on this thread,
+	 * so every user's transactions are applied in the same order as with sequential processing.
+	 * 
+	 * @throws IOException 		The exception thrown if there is an error reading or writing to the file system.
+	 */
+	private static void processesMappedFile() throws IOException {
+		int threads = config.getIngestionThreads() > 0 ? config.getIngestionThreads() : Runtime.getRuntime().availableProcessors();
+		ThreadLocal <TransactionParser> parsers = ThreadLocal.withInitial(TransactionParser::new);
+		TransactionNetter netter = newsNetter();
+		Transaction single = new Transaction();
+		
+		try (FileChannel channel = FileChannel.open(Paths.get(config.getTransactionsFile()), StandardOpenOption.READ)) {
+			long[] boundaries = MappedChunks.splits(channel, config.getIngestionChunkBytes());
+			new OrderedChunkExecutor <ParsedChunk> (threads).runs(boundaries.length - 1, chunk -> {
+				try {
+					// Lines of a chunk are parsed at once, so every line is recorded with the mean latency of the chunk.
+					long start = System.nanoTime();
+					ParsedChunk parsedChunk = MappedChunks.parses(channel, boundaries[chunk], boundaries[chunk + 1], parsers.get());
+					if (parsedChunk.size() > 0) {
+						metrics.getParse().records((System.nanoTime() - start) / parsedChunk.size(), parsedChunk.size());
+					}
+					return parsedChunk;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, parsedChunk -> {
+				for (int line = 0; line < parsedChunk.size(); line++) {
+					Transaction transaction = netter != null ? netter.getsNext() : single;
+					readsParsedLine(parsedChunk, line, transaction);
+					validatesTransaction(transaction);
+					try {
+						appliesInFileOrder(transaction, netter);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+			});
+			finishesNetting(netter);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} catch (IOException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Unable to process the chunks of transactions.txt.", e);
+		}
+	}
+	
+	/**
+	 * Processes every transaction one at a time, in file order.
+	 * 
+	 * @param bufferedReader 	The reader of transactions.txt.
+	 * @throws IOException 		The exception thrown if there is an error reading or writing to the file system.
+	 */
+	private static void processesSequentially(BufferedReader bufferedReader) throws IOException {
+		String transaction;
+		while ((transaction = bufferedReader.readLine()) != null) {
+			processesTransaction(transaction);
+			checkpointsIfDue();
+		}
+	}
+	
+	/**
+	 * Processes transactions in parallel on N shards, where every user belongs to one shard.
+	 * Conversions of different users never touch the same wallet, and the transactions of a user
+	 * are applied in file order by its shard, so the wallets end up exactly as with sequential processing.
+	 * 
+	 * @param bufferedReader 	The reader of transactions.txt.
+	 * @throws IOException 		The exception thrown if there is an error reading or writing to the file system.
+	 */
+	private static void processesInParallel(BufferedReader bufferedReader) throws IOException {
+		String transaction;
+		long lines = 0;
+		try (ShardedExecutor <String> executor = new ShardedExecutor <> (
+				config.getShards(), SHARD_QUEUE_CAPACITY, SHARD_BATCH_SIZE, Runner::hashesUsername, Runner::processesTransaction)) {
+			while ((transaction = bufferedReader.readLine()) != null) {
+				executor.submit(transaction);
+				
+				// Wallets are only written to disk once every shard is idle.
+				if (++lines % SHARD_BATCH_SIZE == 0 && persister.isCheckpointDue()) {
+					executor.awaitsIdle();
+					checkpoints();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while processing transactions in parallel.");
+		}
+		checkpointsIfDue();
+	}
+	
+	/**
+	 * Processes transactions through a pipeline of stages: read, parse, validate, apply and persist.
+	 * Every stage runs on its own thread (a virtual thread where available), connected by bounded queues,
+	 * so reading transactions.txt and writing to disk overlap with validation and the conversions.
+	 * Every stage handles transactions in file order, so the outcome is the same as sequential processing.
+	 * 
+	 * @param bufferedReader 	The reader of transactions.txt.
+	 * @throws IOException 		The exception thrown if there is an error reading or writing to the file system.
+	 */
+	private static void processesInPipeline(BufferedReader bufferedReader) throws IOException {
+		PersistStage persistStage = new PersistStage(persister, config.getPipelineQueueCapacity() * PIPELINE_BATCH_SIZE, config.isVirtualThreads());
+		persister = persistStage;
+		
+		StagedPipeline <Transaction> pipeline = new StagedPipeline <Transaction> (config.getPipelineQueueCapacity(), PIPELINE_BATCH_SIZE, config.isVirtualThreads())
+				.addsStage("parse", Runner::parsesTransaction)
+				.addsStage("validate", Runner::validatesTransaction)
+				.addsStage("apply", transaction -> {
+					appliesTransaction(transaction);
+					logsOutcome(transaction);
+					try {
+						checkpointsIfDue();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+		
+		try {
+			pipeline.runs("read", () -> {
+				String line = bufferedReader.readLine();
+				return line == null ? null : new Transaction(line);
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} catch (IOException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Unable to process transactions in the pipeline.", e);
+		} finally {
+			for (StageStatistics statistics : pipeline.getStatistics()) {
+				logger.info("Pipeline stage {}", statistics);
+			}
+			logger.info("Pipeline stage {}", persistStage.getStatistics());
+		}
+	}
+	
+	/**
+	 * Serves transactions over TCP until the server is closed, or the JVM is stopped.
+	 * Once stopped, the JVM waits for the wallets to be written to disk by main.
+	 * 
+	 * @throws IOException 		The exception thrown if the port cannot be bound.
+	 */
+	private static void servesConnections() throws IOException {
+		ConversionServer conversionServer = new ConversionServer(config.getServerPort(), config.isVirtualThreads(), Runner::servesTransaction);
+		Thread mainThread = Thread.currentThread();
+		Thread shutdownHook = new Thread(() -> {
+			try {
+				conversionServer.close();
+				mainThread.join();
+			} catch (IOException e) {
+				logger.error("Unable to close the server: {}", e.getMessage());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "server-shutdown");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+		
+		server = conversionServer;
+		conversionServer.starts();
+		logger.info("Serving transactions on port {}.", conversionServer.getPort());
+		try {
+			conversionServer.awaitsClose();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			conversionServer.close();
+		} finally {
+			server = null;
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (IllegalStateException e) {
+				// The JVM is shutting down, and the hook waits for main.
+			}
+		}
+		logger.info("Served {} connections. {} of {} wallet locks waited for another connection.", conversionServer.getConnectionsAccepted(),
+				walletLocks.getContendedAcquisitions(), walletLocks.getAcquisitions());
+	}
+	
+	/**
+	 * Starts reloading fx_rates.json whenever it changes, if it is resident in memory and watched.
+	 * 
+	 * @throws IOException 	The exception thrown if the directory of fx_rates.json cannot be watched.
+	 */
+	private static void watchesRates() throws IOException {
+		if (config.isResidentState() && config.isWatchFxRates()) {
+			ratesWatcher = new FxRatesWatcher(new File(config.getFxRatesFile()), newCurrencies -> {
+				publishesRates(newCurrencies);
+				logger.info("Reloaded fx_rates.json as version {} of the rates.", rates.getVersion());
+			});
+		}
+	}
+	
+	/**
+	 * Loads the rate history, if there is a rate history directory in the configuration.
+	 * 
+	 * @throws IOException 	The exception thrown if a file of the rate history cannot be read or parsed.
+	 */
+	private static void loadsRateHistory() throws IOException {
+		if (!config.getFxRatesHistory().isEmpty()) {
+			long start = System.nanoTime();
+			rateHistory = RateHistory.loads(new File(config.getFxRatesHistory()), new ObjectMapper());
+			logger.info("Loaded {} rates of {} currencies in the rate history in {} ms.", rateHistory.numberOfRates(), rateHistory.size(), (System.nanoTime() - start) / 1_000_000);
+		}
+	}
+	
+	/**
+	 * Opens the persistence of wallet updates, according to the persistence mode in the configuration,
+	 * and loads users.json and fx_rates.json if they are resident in memory.
+	 * 
+	 * @return 				the persistence of wallet updates.
+	 * @throws IOException 	The exception thrown if there is an error reading or writing to the file system.
+	 */
+	private static WalletPersistence opensPersistence() throws IOException {
+		// Balances are held in minor units, so the minor units of every currency are known before any wallet is loaded.
+		MinorUnits.configures(config.getMinorUnits());
+		loadsRateHistory();
+		
+        if (config.isResidentState() && EngineConfig.JOURNAL.equals(config.getPersistenceMode())) {
+        	
+        	/*
+        	 * In journal mode, the users are recovered from the latest snapshot and the journal after it,
+        	 * and every valid transaction is appended to the journal, which is synced to disk
+        	 * every N transactions and every T milliseconds.
+        	 */
+        	WalletJournal journal = new WalletJournal(
+        			new File(config.getJournalFile()),
+        			new File(config.getSnapshotFile()),
+        			new File(config.getUsersFile()),
+        			() -> users.getUsers(),
+        			config.getSnapshotEveryRecords(),
+        			config.getFlushEveryTransactions(),
+        			config.getFlushIntervalMillis()
+        	);
+        	long start = System.nanoTime();
+        	users = journal.recovers(newsUserRegistry());
+        	logger.info("Recovered {} users up to journal record {} in {} ms.", users.size(), journal.getSequence(), (System.nanoTime() - start) / 1_000_000);
+        	deserializesCurrencies(new ObjectMapper());
+        	watchesRates();
+        	return journal;
+        } 
+        
+    	/*
+    	 * In resident mode, users.json and fx_rates.json are deserialized once,
+    	 * and the users registry and currencies map are kept in memory for every transaction.
+    	 */
+    	if (config.isResidentState()) {
+    		loadsResidentState();
+    	}
+    	watchesRates();
+    	
+    	/*
+    	 * Valid transactions mark their user dirty, and users.json is written
+    	 * every N transactions, every T milliseconds, and at shutdown.
+    	 * When users.json is reloaded before every transaction, it has to be written after every transaction.
+    	 * In streaming mode, only the dirty users are re-encoded, and the clean users are copied from users.json.
+    	 */
+    	return new WriteBehindPersister(
+    			new File(config.getUsersFile()),
+    			() -> users.getUsers(),
+    			config.isResidentState() ? config.getFlushEveryTransactions() : 1,
+    			config.getFlushIntervalMillis(),
+    			EngineConfig.STREAMING.equals(config.getPersistenceMode()),
+    			walletLocks.getCheckpointLock()
+    	);
+	}
+	
+	/**
+	 * Starts the metrics of a new run, and publishes them over JMX.
+	 */
+	private static void startsMetrics() {
+		metrics = new EngineMetrics();
+		try {
+			metrics.registers();
+		} catch (JMException e) {
+			logger.warn("Unable to publish the metrics over JMX: {}", e.getMessage());
+		}
+	}
+	
+	/**
+	 * Summarises the metrics of the run in the logger, and removes them from JMX.
+	 */
+	private static void stopsMetrics() {
+		for (String line : metrics.summarises()) {
+			logger.info("Metrics {}", line);
+		}
+		try {
+			metrics.unregisters();
+		} catch (JMException e) {
+			logger.warn("Unable to remove the metrics from JMX: {}", e.getMessage());
+		}
 	}
 	
 	/**
@@ -273,96 +1300,57 @@ public class Runner {
 	 * @throws NumberFormatException 	Exception thrown if the string cannot be parsed to a double.
 	 */
 	public static void main(String[] args) throws IOException, NumberFormatException {
-		double amount;
-		String username = null;
-		String transaction;
-		String fromCurrency = null;
-		String toCurrency;
-		InputStream inputStream = new FileInputStream(TRANSACTIONS_FILE);
+		boolean serves = config.getServerPort() >= 0 && config.isResidentState();
+		InputStream inputStream = serves ? InputStream.nullInputStream() : new FileInputStream(config.getTransactionsFile());
         InputStreamReader inputStreamReader = new InputStreamReader(inputStream);	
         BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
         
         logger.info("Starting application...");
-        while ((transaction = bufferedReader.readLine()) != null) {
-			/*
-			 * Using try-with-resources ensure the resources are automatically closed
-			 * after usage. This prevents resource leaks.
-			 */
-			try {    
-				
-					/*
-					 * 1. Deserialize the users.json and fx_rates.json files
-					 * to populate the users list and currencies map respectively.
-					 */
-					deserialization();
-					
-					/*
-					 * 2. Read every line in the transaction
-					 * and determine if it is a valid or invalid transaction.
-					 * Finally, logging is carried out for every transaction
-					 * both on the console and in a log file.
-					 */
-					String[] transactionComponents = transaction.split(" ");
-					isValidTransaction(transactionComponents);
-					username = transactionComponents[0];
-					User user = getsUser(username);
-					fromCurrency = transactionComponents[1];
-					toCurrency = transactionComponents[2];
-					isSameCurrency(toCurrency, fromCurrency);
-					isValidCurrency(fromCurrency);
-					isValidCurrency(toCurrency);
-					amount = Double.parseDouble(transactionComponents[3]);
-					isValidAmount(amount);
-					doesUserHaveCurrency(user, fromCurrency);
-					isSufficientAmountForConversion(user, fromCurrency, amount);
-					currencyConversion(user, fromCurrency, toCurrency, amount);
-					
-	        } catch (InsufficientAmountForConversionException e) {
-
-                logger.error("Skipped Transaction: {} has insufficient amount of {} (FROM currency).", username, fromCurrency);
-	        	
-	        } catch (UserHasNoCurrencyException e) {
-
-                logger.error("Skipped Transaction: {} does not have {} (FROM currency).", username, fromCurrency);
-	        	
-	        } catch (InvalidNumberOfComponentsException e) {
-	        	
-	        	logger.error("Skipped Transaction: Transaction does not have exactly 4 components as required.");
-	        	
-	        } catch (InvalidCurrencyException e) {
-	        	
-	        	logger.error("Skipped Transaction: One or both of the currencies is invalid.");
-	        	
-	        } catch (InvalidAmountException e) {
-	        	
-	        	logger.error("Skipped Transaction: Amount to convert is less than or equal to 0.");
-	        	
-	        } catch (UserNotFoundException e) {
-
-                logger.error("Skipped Transaction: User called {} not found.", username);
-	        	
-	        } catch (SameCurrencyException e) {
-	        	
-	        	logger.error("Skipped Transaction: Both the FROM and TO currencies are the same.");	
-	            
-	        } catch (NumberFormatException e) {
-	        	
-	        	logger.error("Unable to parse string to a double for the amount of conversion.");
-	            
-	        } catch (JsonProcessingException e) {
-
-	        	logger.fatal("Unable to parse the JSON file.");
-
-			} catch (NullPointerException | IOException e) {
-
-				logger.fatal("Unable to access the transactions.txt file.");
-
-	        }
-		}
+        startsMetrics();
+        if (!config.getAuditLog().isEmpty()) {
+        	auditLog = new AuditLog(new File(config.getAuditLog()), config.getAuditFlushBytes(), config.getAuditFlushIntervalMillis());
+        }
+        walletLocks = new WalletLocks(config.getWalletLockStripes());
+        persister = opensPersistence();
+        
+        /*
+         * Users are only served, sharded, pipelined or ingested in chunks when they are resident in memory,
+         * since reloading users.json replaces every user.
+         */
+        if (serves) {
+        	servesConnections();
+        } else if (config.isMappedIngestion() && config.isResidentState()) {
+        	processesMappedFile();
+        } else if (config.getShards() > 1 && config.isResidentState()) {
+        	processesInParallel(bufferedReader);
+        } else if (config.isPipeline() && config.isResidentState()) {
+        	processesInPipeline(bufferedReader);
+        } else if (config.isResidentState()) {
+        	// The reader has not read from the stream yet, so the parser reads every byte.
+        	processesParsedLines(inputStream);
+        } else {
+        	processesSequentially(bufferedReader);
+        }
+        
+        if (ratesWatcher != null) {
+        	ratesWatcher.close();
+        	ratesWatcher = null;
+        }
+        persister.close();
+        persister = null;
+        if (config.isResidentState() && !config.getWalletSnapshot().isEmpty()) {
+        	// Written after the last write of users.json, so that it is preferred at the next startup.
+        	WalletSnapshot.writes(users.getUsers(), new File(config.getWalletSnapshot()));
+        }
+        if (auditLog != null) {
+        	auditLog.close();
+        	auditLog = null;
+        }
 		bufferedReader.close();
 		inputStream.close();
 		inputStreamReader.close();
 		logger.info("All transactions have been processed, and users.json has been updated for valid transactions.");
+		stopsMetrics();
 		logger.info("Shutting down application...");
     }
 
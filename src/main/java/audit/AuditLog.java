@@ -0,0 +1,478 @@
+/**
+ * --------------------------------------------------------------------------------
+ * AuditLog.java
+ * --------------------------------------------------------------------------------
+ * An AuditLog writes a fixed-field record of the outcome of every transaction to a file,
+ * off the threads processing transactions, without allocating.
+ * --------------------------------------------------------------------------------
+ * 1. A thread processing transactions claims the next slot of a ring buffer
+ *    of preallocated fields, fills it in and publishes it. It only waits
+ *    if the writer is a whole ring behind.
+ * 2. The writer thread formats every published record into a direct buffer,
+ *    which is written to the file once it holds flushBytes bytes,
+ *    or flushIntervalMillis milliseconds after the last write, and at close.
+ * 3. Nothing is formatted through a String, and no location is captured.
+ * --------------------------------------------------------------------------------
+ * Every record is a line of fields separated by " | ":
+ * epoch millis | sequence | outcome | user | FROM currency | TO currency | amount | converted amount | rates version
+ * The outcome is CONVERTED, or the exception a rejection stands for, e.g. UserNotFoundException.
+ * A field that is unknown, such as the user of a line that could not be split, is "-".
+ * The rates version is the version of fx_rates.json the transaction was validated against.
+ * --------------------------------------------------------------------------------
+ */
+
+package audit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import model.MinorUnits;
+import validation.RejectionReason;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class AuditLog implements AutoCloseable {
+
+	/**
+	 * Logger to log a failure to write the audit log.
+	 */
+	private static final Logger logger = LogManager.getLogger(AuditLog.class);
+
+	/**
+	 * Number of records in the ring buffer, a power of 2.
+	 */
+	static final int CAPACITY = 1 << 14;
+
+	/**
+	 * Outcome of a valid transaction.
+	 */
+	private static final byte[] CONVERTED = ascii("CONVERTED");
+
+	/**
+	 * Separator of the fields, and value of an unknown field.
+	 */
+	private static final byte[] SEPARATOR = ascii(" | ");
+	private static final byte[] UNKNOWN = ascii("-");
+
+	/**
+	 * Name of the exception of every rejection reason, by ordinal.
+	 */
+	private static final byte[][] REJECTIONS = new byte[RejectionReason.values().length][];
+
+	static {
+		for (RejectionReason reason : RejectionReason.values()) {
+			REJECTIONS[reason.ordinal()] = reason == RejectionReason.NONE ? CONVERTED : ascii(reason.getExceptionName());
+		}
+	}
+
+	/**
+	 * Bytes a record can take at most besides its user and currencies: three longs, an outcome, two amounts and the separators.
+	 */
+	private static final int MAX_FIXED_BYTES = 192;
+
+	/**
+	 * Version of the rates of a transaction that was not validated against any.
+	 */
+	public static final long UNKNOWN_RATES_VERSION = -1;
+
+	/**
+	 * Fields of every slot of the ring buffer. Amounts are in minor units of their currency,
+	 * and an amount that is unknown or cannot be held in minor units is Long.MIN_VALUE.
+	 */
+	private final long[] times = new long[CAPACITY];
+	private final byte[] outcomes = new byte[CAPACITY];
+	private final String[] usernames = new String[CAPACITY];
+	private final String[] fromCurrencies = new String[CAPACITY];
+	private final String[] toCurrencies = new String[CAPACITY];
+	private final long[] amounts = new long[CAPACITY];
+	private final long[] convertedAmounts = new long[CAPACITY];
+	private final long[] ratesVersions = new long[CAPACITY];
+
+	/**
+	 * The sequence of the record published in every slot, next sequence to be claimed,
+	 * and next sequence to be written, after which the slot of every earlier sequence can be reused.
+	 */
+	private final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+	private final AtomicLong claimed = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+
+	/**
+	 * The file the records are appended to, and the buffer they are formatted into.
+	 */
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+
+	/**
+	 * Digits of a long being formatted, from the last one.
+	 */
+	private final byte[] digits = new byte[20];
+
+	/**
+	 * Number of bytes, and number of milliseconds, after which the buffer is written to the file.
+	 */
+	private final int flushBytes;
+	private final long flushIntervalNanos;
+
+	/**
+	 * The thread writing the records.
+	 */
+	private final Thread writer;
+	private volatile boolean closed;
+
+	/**
+	 * The first failure to write the file, rethrown at close.
+	 */
+	private volatile IOException failure;
+
+	/**
+	 * Creation of an audit log appending to a file, and start of its writer thread.
+	 *
+	 * @param file 					The file of the audit log, created if it does not exist.
+	 * @param flushBytes 			Number of bytes after which records are written to the file.
+	 * @param flushIntervalMillis 	Number of milliseconds after which records are written to the file.
+	 * @throws IOException 			The exception thrown if the file cannot be opened.
+	 */
+	public AuditLog(File file, int flushBytes, long flushIntervalMillis) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		this.flushBytes = Math.max(flushBytes, 1);
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(flushIntervalMillis, 1));
+		this.buffer = ByteBuffer.allocateDirect(this.flushBytes + MAX_FIXED_BYTES * 4);
+		for (int slot = 0; slot < CAPACITY; slot++) {
+			published.set(slot, -1);
+		}
+
+		this.writer = new Thread(this::writes, "audit-log-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Records a valid transaction.
+	 *
+	 * @param username 			The user involved in the conversion.
+	 * @param fromCurrency 		The currency converted from.
+	 * @param toCurrency 		The currency converted to.
+	 * @param amount 			The amount of the fromCurrency converted.
+	 * @param convertedAmount 	The amount of the toCurrency received.
+	 */
+	public void recordsConversion(String username, String fromCurrency, String toCurrency, double amount, double convertedAmount) {
+		recordsConversion(username, fromCurrency, toCurrency, amount, convertedAmount, UNKNOWN_RATES_VERSION);
+	}
+
+	/**
+	 * Records a valid transaction, with the version of the rates it was converted at.
+	 *
+	 * @param username 			The user involved in the conversion.
+	 * @param fromCurrency 		The currency converted from.
+	 * @param toCurrency 		The currency converted to.
+	 * @param amount 			The amount of the fromCurrency converted.
+	 * @param convertedAmount 	The amount of the toCurrency received.
+	 * @param ratesVersion 		The version of fx_rates.json, or UNKNOWN_RATES_VERSION.
+	 */
+	public void recordsConversion(String username, String fromCurrency, String toCurrency, double amount, double convertedAmount, long ratesVersion) {
+		records(RejectionReason.NONE, username, fromCurrency, toCurrency, amount, convertedAmount, ratesVersion);
+	}
+
+	/**
+	 * Records a rejected transaction.
+	 *
+	 * @param rejection 		The reason the transaction was rejected.
+	 * @param username 			The user of the transaction, or null if it is unknown.
+	 * @param fromCurrency 		The currency to be converted from, or null if it is unknown.
+	 * @param toCurrency 		The currency to be converted to, or null if it is unknown.
+	 * @param amount 			The amount to be converted, or NaN if it is unknown.
+	 */
+	public void recordsRejection(RejectionReason rejection, String username, String fromCurrency, String toCurrency, double amount) {
+		recordsRejection(rejection, username, fromCurrency, toCurrency, amount, UNKNOWN_RATES_VERSION);
+	}
+
+	/**
+	 * Records a rejected transaction, with the version of the rates it was validated against.
+	 *
+	 * @param rejection 		The reason the transaction was rejected.
+	 * @param username 			The user of the transaction, or null if it is unknown.
+	 * @param fromCurrency 		The currency to be converted from, or null if it is unknown.
+	 * @param toCurrency 		The currency to be converted to, or null if it is unknown.
+	 * @param amount 			The amount to be converted, or NaN if it is unknown.
+	 * @param ratesVersion 		The version of fx_rates.json, or UNKNOWN_RATES_VERSION if the transaction was not validated.
+	 */
+	public void recordsRejection(RejectionReason rejection, String username, String fromCurrency, String toCurrency, double amount, long ratesVersion) {
+		records(rejection, username, fromCurrency, toCurrency, amount, Double.NaN, ratesVersion);
+	}
+
+	/**
+	 * Claims the next slot, waiting for the writer if it is a whole ring behind, and publishes a record in it.
+	 */
+	private void records(RejectionReason outcome, String username, String fromCurrency, String toCurrency, double amount, double convertedAmount, long ratesVersion) {
+		long sequence = claimed.getAndIncrement();
+		while (sequence - written.get() >= CAPACITY) {
+			LockSupport.unpark(writer);
+			Thread.onSpinWait();
+		}
+
+		int slot = (int) sequence & (CAPACITY - 1);
+		times[slot] = System.currentTimeMillis();
+		outcomes[slot] = (byte) outcome.ordinal();
+		usernames[slot] = username;
+		fromCurrencies[slot] = fromCurrency;
+		toCurrencies[slot] = toCurrency;
+		amounts[slot] = minorUnitsOf(fromCurrency, amount);
+		convertedAmounts[slot] = minorUnitsOf(toCurrency, convertedAmount);
+		ratesVersions[slot] = ratesVersion;
+		// The volatile write publishes every field above to the writer.
+		published.set(slot, sequence);
+	}
+
+	/**
+	 * Retrieves the number of records published.
+	 *
+	 * @return the number of records.
+	 */
+	public long getRecords() {
+		return claimed.get();
+	}
+
+	/**
+	 * Writes every record published, then stops the writer thread and closes the file.
+	 *
+	 * @throws IOException 	The exception thrown if the file could not be written.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		channel.close();
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Loop of the writer thread: formats every record as soon as it is published,
+	 * and writes the buffer once it is large enough, or old enough.
+	 */
+	private void writes() {
+		long lastWriteNanos = System.nanoTime();
+		long idleNanos = 0;
+		while (true) {
+			boolean closing = closed;
+			long sequence = written.get();
+			int slot = (int) sequence & (CAPACITY - 1);
+			if (published.get(slot) == sequence) {
+				if (buffer.position() > 0 && buffer.remaining() < bytesOf(slot)) {
+					flushes();
+					lastWriteNanos = System.nanoTime();
+				}
+				formats(slot);
+				written.lazySet(sequence + 1);
+				idleNanos = 0;
+				if (buffer.position() >= flushBytes) {
+					flushes();
+					lastWriteNanos = System.nanoTime();
+				}
+				continue;
+			}
+
+			// Nothing is published: write what is buffered if it is old enough, or if this is the end.
+			if (closing && sequence == claimed.get()) {
+				flushes();
+				return;
+			}
+			if (buffer.position() > 0 && System.nanoTime() - lastWriteNanos >= flushIntervalNanos) {
+				flushes();
+				lastWriteNanos = System.nanoTime();
+			}
+			idleNanos = Math.min(Math.max(idleNanos * 2, 1_000), 1_000_000);
+			LockSupport.parkNanos(idleNanos);
+		}
+	}
+
+	/**
+	 * Formats the record of a slot at the end of the buffer.
+	 */
+	private void formats(int slot) {
+		putsLong(times[slot]);
+		buffer.put(SEPARATOR);
+		putsLong(published.get(slot));
+		buffer.put(SEPARATOR);
+		buffer.put(REJECTIONS[outcomes[slot]]);
+		buffer.put(SEPARATOR);
+		putsString(usernames[slot]);
+		buffer.put(SEPARATOR);
+		putsString(fromCurrencies[slot]);
+		buffer.put(SEPARATOR);
+		putsString(toCurrencies[slot]);
+		buffer.put(SEPARATOR);
+		putsAmount(fromCurrencies[slot], amounts[slot]);
+		buffer.put(SEPARATOR);
+		putsAmount(toCurrencies[slot], convertedAmounts[slot]);
+		buffer.put(SEPARATOR);
+		putsLong(ratesVersions[slot] < 0 ? Long.MIN_VALUE : ratesVersions[slot]);
+		buffer.put((byte) '\n');
+
+		// Release the Strings of the record, so that they are not kept alive by the ring.
+		usernames[slot] = null;
+		fromCurrencies[slot] = null;
+		toCurrencies[slot] = null;
+	}
+
+	/**
+	 * Retrieves the number of bytes a record can take at most.
+	 */
+	private int bytesOf(int slot) {
+		return MAX_FIXED_BYTES + 4 * (lengthOf(usernames[slot]) + lengthOf(fromCurrencies[slot]) + lengthOf(toCurrencies[slot]));
+	}
+
+	private static int lengthOf(String value) {
+		return value == null ? 0 : value.length();
+	}
+
+	/**
+	 * Writes the buffer to the file. After a failure, records are still consumed, so that transactions never wait on the file.
+	 */
+	private void flushes() {
+		buffer.flip();
+		try {
+			while (failure == null && buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (IOException e) {
+			logger.error("Unable to write the audit log, later records are dropped: {}", e.getMessage());
+			failure = e;
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Appends a long in decimal.
+	 */
+	private void putsLong(long value) {
+		if (value == Long.MIN_VALUE) {
+			buffer.put(UNKNOWN);
+			return;
+		}
+		if (value < 0) {
+			buffer.put((byte) '-');
+			value = -value;
+		}
+		putsDigits(value, 1);
+	}
+
+	/**
+	 * Appends the digits of a non-negative long, with leading zeros up to a number of digits.
+	 */
+	private void putsDigits(long value, int minimumDigits) {
+		int start = digits.length;
+		do {
+			digits[--start] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+		while (digits.length - start < minimumDigits) {
+			digits[--start] = '0';
+		}
+		buffer.put(digits, start, digits.length - start);
+	}
+
+	/**
+	 * Appends an amount in minor units as a decimal of the scale of its currency, e.g. 1234 as 12.34.
+	 */
+	private void putsAmount(String currency, long minor) {
+		if (minor == Long.MIN_VALUE || currency == null) {
+			buffer.put(UNKNOWN);
+			return;
+		}
+		int scale = MinorUnits.of(currency).getScale();
+		if (minor < 0) {
+			buffer.put((byte) '-');
+			minor = -minor;
+		}
+		long unit = pow10(scale);
+		putsDigits(minor / unit, 1);
+		if (scale > 0) {
+			buffer.put((byte) '.');
+			putsDigits(minor % unit, scale);
+		}
+	}
+
+	/**
+	 * Appends a String in UTF-8, or UNKNOWN if it is null.
+	 */
+	private void putsString(String value) {
+		if (value == null) {
+			buffer.put(UNKNOWN);
+			return;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (buffer.remaining() < MAX_FIXED_BYTES) {
+				// A name too long for the buffer is cut, leaving room for the rest of the record.
+				return;
+			}
+			if (c < 0x80) {
+				buffer.put((byte) c);
+			} else if (c < 0x800) {
+				buffer.put((byte) (0xC0 | (c >> 6)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				buffer.put((byte) (0xF0 | (codePoint >> 18)));
+				buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+			} else {
+				buffer.put((byte) (0xE0 | (c >> 12)));
+				buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+	}
+
+	/**
+	 * Converts an amount to minor units of its currency.
+	 *
+	 * @return the amount in minor units, or Long.MIN_VALUE if it is unknown or cannot be held in minor units.
+	 */
+	private static long minorUnitsOf(String currency, double amount) {
+		if (currency == null || Double.isNaN(amount)) {
+			return Long.MIN_VALUE;
+		}
+		try {
+			return MinorUnits.of(currency).toMinor(amount);
+		} catch (ArithmeticException e) {
+			return Long.MIN_VALUE;
+		}
+	}
+
+	/**
+	 * Retrieves a power of 10.
+	 */
+	private static long pow10(int exponent) {
+		long power = 1;
+		for (int i = 0; i < exponent; i++) {
+			power *= 10;
+		}
+		return power;
+	}
+
+	/**
+	 * Encodes a String of ASCII characters.
+	 */
+	private static byte[] ascii(String value) {
+		return value.getBytes(StandardCharsets.US_ASCII);
+	}
+
+}
@@ -0,0 +1,756 @@
+/**
+ * --------------------------------------------------------------------------------
+ * EngineConfig.java
+ * --------------------------------------------------------------------------------
+ * An EngineConfig holds the settings used by the Runner for a single run:
+ * the locations of the files it accesses, and the mode it runs in.
+ * --------------------------------------------------------------------------------
+ * Every setting has a default, and can be overridden with a system property, e.g. -Dfxconvert.users=/tmp/users.json
+ * The defaults keep the original locations of the files and the original output of the program,
+ * but keep users.json and fx_rates.json resident in memory: reloading both of them for every line,
+ * as the original program did, takes -Dfxconvert.residentState=false
+ * --------------------------------------------------------------------------------
+ */
+
+package config;
+
+public class EngineConfig {
+
+	/**
+	 * Prefix of every system property read by {@link #fromSystemProperties()}.
+	 */
+	public static final String PROPERTY_PREFIX = "fxconvert.";
+
+	/**
+	 * Default locations of the files accessed by the Runner.
+	 */
+	public static final String DEFAULT_FX_RATES_FILE = "src/main/resources/fx_rates.json";
+	public static final String DEFAULT_TRANSACTIONS_FILE = "src/main/resources/transactions.txt";
+	public static final String DEFAULT_USERS_FILE = "src/main/resources/users.json";
+	public static final String DEFAULT_JOURNAL_FILE = "src/main/resources/users.journal";
+	public static final String DEFAULT_SNAPSHOT_FILE = "src/main/resources/users.snapshot.json";
+
+	/**
+	 * Persistence modes: users.json is either rewritten by a write-behind persister,
+	 * rewritten by a write-behind persister that re-encodes only the dirty users,
+	 * or every conversion is appended to a journal that is compacted into snapshots.
+	 */
+	public static final String WRITE_BEHIND = "writeBehind";
+	public static final String STREAMING = "streaming";
+	public static final String JOURNAL = "journal";
+
+	/**
+	 * Location of fx_rates.json.
+	 */
+	private String fxRatesFile = DEFAULT_FX_RATES_FILE;
+
+	/**
+	 * Location of transactions.txt.
+	 */
+	private String transactionsFile = DEFAULT_TRANSACTIONS_FILE;
+
+	/**
+	 * Location of users.json.
+	 */
+	private String usersFile = DEFAULT_USERS_FILE;
+
+	/**
+	 * True if users.json and fx_rates.json are loaded once at startup and kept in memory
+	 * for the whole run, false if they are reloaded before every transaction.
+	 */
+	private boolean residentState = true;
+
+	/**
+	 * Number of valid transactions after which users.json is written. 0 disables this trigger.
+	 */
+	private int flushEveryTransactions = 1000;
+
+	/**
+	 * Number of milliseconds after which users.json is written. 0 disables this trigger.
+	 */
+	private long flushIntervalMillis = 1000;
+
+	/**
+	 * How wallet updates are made durable: {@value #WRITE_BEHIND}, {@value #STREAMING} or {@value #JOURNAL}.
+	 */
+	private String persistenceMode = WRITE_BEHIND;
+
+	/**
+	 * Location of the journal, and of the snapshot it is compacted into.
+	 */
+	private String journalFile = DEFAULT_JOURNAL_FILE;
+	private String snapshotFile = DEFAULT_SNAPSHOT_FILE;
+
+	/**
+	 * Number of journal records after which the journal is compacted into a snapshot. 0 disables this trigger.
+	 */
+	private int snapshotEveryRecords = 100_000;
+
+	/**
+	 * Number of shards transactions are processed on in parallel, where every user belongs to one shard.
+	 * 1 processes transactions sequentially.
+	 */
+	private int shards = 1;
+
+	/**
+	 * True to process transactions through a pipeline of stages (read, parse, validate, apply, persist),
+	 * each on its own thread.
+	 */
+	private boolean pipeline = false;
+
+	/**
+	 * Number of batches of transactions that can wait between two pipeline stages.
+	 */
+	private int pipelineQueueCapacity = 64;
+
+	/**
+	 * True to run pipeline stages and server connections on virtual threads where the JVM supports them (Java 21 or higher).
+	 */
+	private boolean virtualThreads = true;
+
+	/**
+	 * True to read transactions.txt through memory mappings of chunks of the file, parsed in parallel.
+	 */
+	private boolean mappedIngestion = false;
+
+	/**
+	 * Number of bytes aimed at in every chunk of transactions.txt.
+	 */
+	private int ingestionChunkBytes = 8 * 1024 * 1024;
+
+	/**
+	 * Number of threads parsing chunks of transactions.txt. 0 uses one thread per available processor.
+	 */
+	private int ingestionThreads = 0;
+
+	/**
+	 * Minor units of the currencies that are not held in 2 decimals rounded HALF_EVEN,
+	 * e.g. jpy=0,krw=0:HALF_UP (see MinorUnits).
+	 */
+	private String minorUnits = "";
+
+	/**
+	 * True if fx_rates.json is reloaded whenever it changes while it is resident in memory.
+	 */
+	private boolean watchFxRates = false;
+
+	/**
+	 * Location of the directory of dated fx_rates.json files that back-dated transactions are converted against,
+	 * or empty if there is no rate history.
+	 */
+	private String fxRatesHistory = "";
+
+	/**
+	 * Location of the audit log of every transaction, or empty if transactions are logged through the logger.
+	 */
+	private String auditLog = "";
+
+	/**
+	 * Number of bytes, and number of milliseconds, after which records of the audit log are written to its file.
+	 */
+	private int auditFlushBytes = 65536;
+	private long auditFlushIntervalMillis = 100;
+
+	/**
+	 * Location of the binary wallet snapshot, preferred to users.json at startup when it is at least as recent,
+	 * and written at shutdown, or empty if users.json is always loaded.
+	 */
+	private String walletSnapshot = "";
+
+	/**
+	 * Number of threads parsing users.json at startup.
+	 */
+	private int loaderThreads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * True if the resident users and their wallets are held off the heap in a WalletStore.
+	 */
+	private boolean offHeapWallets = false;
+
+	/**
+	 * Port on which transactions are served over TCP instead of read from transactions.txt,
+	 * 0 for any free port, or -1 to process transactions.txt.
+	 */
+	private int serverPort = -1;
+
+	/**
+	 * Number of stripes of the locks of the users whose transactions are served, 1 to apply them one at a time.
+	 */
+	private int walletLockStripes = 1024;
+
+	/**
+	 * Largest number of consecutive transactions of the same user and currency pair netted into one update of the wallet,
+	 * 0 or 1 to apply every transaction alone.
+	 */
+	private int nettingWindow = 0;
+
+	/**
+	 * Default no-args constructor with the default settings.
+	 */
+	public EngineConfig() {
+
+	}
+
+	/**
+	 * Creates a configuration from the default settings,
+	 * overridden by any fxconvert.* system property that is set.
+	 *
+	 * @return the configuration for this run.
+	 */
+	public static EngineConfig fromSystemProperties() {
+		EngineConfig config = new EngineConfig();
+		config.setFxRatesFile(System.getProperty(PROPERTY_PREFIX + "fxRates", DEFAULT_FX_RATES_FILE));
+		config.setTransactionsFile(System.getProperty(PROPERTY_PREFIX + "transactions", DEFAULT_TRANSACTIONS_FILE));
+		config.setUsersFile(System.getProperty(PROPERTY_PREFIX + "users", DEFAULT_USERS_FILE));
+		config.setResidentState(Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "residentState", "true")));
+		config.setFlushEveryTransactions(Integer.parseInt(System.getProperty(PROPERTY_PREFIX + "flushEveryTransactions", "1000")));
+		config.setFlushIntervalMillis(Long.parseLong(System.getProperty(PROPERTY_PREFIX + "flushIntervalMillis", "1000")));
+		config.setPersistenceMode(System.getProperty(PROPERTY_PREFIX + "persistenceMode", WRITE_BEHIND));
+		config.setJournalFile(System.getProperty(PROPERTY_PREFIX + "journal", DEFAULT_JOURNAL_FILE));
+		config.setSnapshotFile(System.getProperty(PROPERTY_PREFIX + "snapshot", DEFAULT_SNAPSHOT_FILE));
+		config.setSnapshotEveryRecords(Integer.parseInt(System.getProperty(PROPERTY_PREFIX + "snapshotEveryRecords", "100000")));
+		config.setShards(Integer.parseInt(System.getProperty(PROPERTY_PREFIX + "shards", "1")));
+		config.setPipeline(Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "pipeline", "false")));
+		config.setPipelineQueueCapacity(Integer.parseInt(System.getProperty(PROPERTY_PREFIX + "pipelineQueueCapacity", "64")));
+		config.setVirtualThreads(Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "virtualThreads", "true")));
+		config.setMappedIngestion(Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "mappedIngestion", "false")));
+		config.setIngestionChunkBytes(Integer.parseInt(System.getProperty(PROPERTY_PREFIX + "ingestionChunkBytes", "8388608")));
+		config.setIngestionThreads(Integer.parseInt(System.getProperty(PROPERTY_PREFIX + "ingestionThreads", "0")));
+		config.setMinorUnits(System.getProperty(PROPERTY_PREFIX + "minorUnits", ""));
+		config.setWatchFxRates(Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "watchFxRates", "false")));
+		config.setFxRatesHistory(System.getProperty(PROPERTY_PREFIX + "fxRatesHistory", ""));
+		config.setAuditLog(System.getProperty(PROPERTY_PREFIX + "auditLog", ""));
+		config.setAuditFlushBytes(Integer.parseInt(System.getProperty(PROPERTY_PREFIX + "auditFlushBytes", "65536")));
+		config.setAuditFlushIntervalMillis(Long.parseLong(System.getProperty(PROPERTY_PREFIX + "auditFlushIntervalMillis", "100")));
+		config.setWalletSnapshot(System.getProperty(PROPERTY_PREFIX + "walletSnapshot", ""));
+		config.setLoaderThreads(Integer.parseInt(System.getProperty(PROPERTY_PREFIX + "loaderThreads", String.valueOf(Runtime.getRuntime().availableProcessors()))));
+		config.setOffHeapWallets(Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "offHeapWallets", "false")));
+		config.setServerPort(Integer.parseInt(System.getProperty(PROPERTY_PREFIX + "serverPort", "-1")));
+		config.setWalletLockStripes(Integer.parseInt(System.getProperty(PROPERTY_PREFIX + "walletLockStripes", "1024")));
+		config.setNettingWindow(Integer.parseInt(System.getProperty(PROPERTY_PREFIX + "nettingWindow", "0")));
+		return config;
+	}
+
+	/**
+	 * Retrieves the location of fx_rates.json.
+	 *
+	 * @return the location of fx_rates.json.
+	 */
+	public String getFxRatesFile() {
+		return fxRatesFile;
+	}
+
+	/**
+	 * Retrieves the location of transactions.txt.
+	 *
+	 * @return the location of transactions.txt.
+	 */
+	public String getTransactionsFile() {
+		return transactionsFile;
+	}
+
+	/**
+	 * Retrieves the location of users.json.
+	 *
+	 * @return the location of users.json.
+	 */
+	public String getUsersFile() {
+		return usersFile;
+	}
+
+	/**
+	 * Checks if users and currencies are kept in memory for the whole run.
+	 *
+	 * @return true if users.json and fx_rates.json are loaded once, false if they are reloaded per transaction.
+	 */
+	public boolean isResidentState() {
+		return residentState;
+	}
+
+	/**
+	 * Retrieves the number of valid transactions after which users.json is written.
+	 *
+	 * @return the number of transactions, or 0 if this trigger is disabled.
+	 */
+	public int getFlushEveryTransactions() {
+		return flushEveryTransactions;
+	}
+
+	/**
+	 * Retrieves the number of milliseconds after which users.json is written.
+	 *
+	 * @return the number of milliseconds, or 0 if this trigger is disabled.
+	 */
+	public long getFlushIntervalMillis() {
+		return flushIntervalMillis;
+	}
+
+	/**
+	 * Retrieves how wallet updates are made durable.
+	 *
+	 * @return {@value #WRITE_BEHIND}, {@value #STREAMING} or {@value #JOURNAL}.
+	 */
+	public String getPersistenceMode() {
+		return persistenceMode;
+	}
+
+	/**
+	 * Retrieves the location of the journal.
+	 *
+	 * @return the location of the journal.
+	 */
+	public String getJournalFile() {
+		return journalFile;
+	}
+
+	/**
+	 * Retrieves the location of the snapshot the journal is compacted into.
+	 *
+	 * @return the location of the snapshot.
+	 */
+	public String getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	/**
+	 * Retrieves the number of journal records after which the journal is compacted into a snapshot.
+	 *
+	 * @return the number of records, or 0 if this trigger is disabled.
+	 */
+	public int getSnapshotEveryRecords() {
+		return snapshotEveryRecords;
+	}
+
+	/**
+	 * Retrieves the number of shards transactions are processed on in parallel.
+	 *
+	 * @return the number of shards, or 1 if transactions are processed sequentially.
+	 */
+	public int getShards() {
+		return shards;
+	}
+
+	/**
+	 * Checks if transactions are processed through a pipeline of stages.
+	 *
+	 * @return true if transactions are pipelined, false otherwise.
+	 */
+	public boolean isPipeline() {
+		return pipeline;
+	}
+
+	/**
+	 * Retrieves the number of batches of transactions that can wait between two pipeline stages.
+	 *
+	 * @return the capacity of every queue between two stages.
+	 */
+	public int getPipelineQueueCapacity() {
+		return pipelineQueueCapacity;
+	}
+
+	/**
+	 * Checks if pipeline stages run on virtual threads where the JVM supports them.
+	 *
+	 * @return true to use virtual threads where available, false to always use platform threads.
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * Checks if transactions.txt is read through memory mappings of chunks of the file, parsed in parallel.
+	 *
+	 * @return true if transactions.txt is memory mapped, false otherwise.
+	 */
+	public boolean isMappedIngestion() {
+		return mappedIngestion;
+	}
+
+	/**
+	 * Retrieves the number of bytes aimed at in every chunk of transactions.txt.
+	 *
+	 * @return the number of bytes in a chunk.
+	 */
+	public int getIngestionChunkBytes() {
+		return ingestionChunkBytes;
+	}
+
+	/**
+	 * Retrieves the number of threads parsing chunks of transactions.txt.
+	 *
+	 * @return the number of threads, or 0 for one thread per available processor.
+	 */
+	public int getIngestionThreads() {
+		return ingestionThreads;
+	}
+
+	/**
+	 * Retrieves the minor units of the currencies that are not held in 2 decimals rounded HALF_EVEN.
+	 *
+	 * @return a list of currency=scale[:roundingMode], which may be empty.
+	 */
+	public String getMinorUnits() {
+		return minorUnits;
+	}
+
+	/**
+	 * Checks if fx_rates.json is reloaded whenever it changes.
+	 *
+	 * @return true if fx_rates.json is watched, false otherwise.
+	 */
+	public boolean isWatchFxRates() {
+		return watchFxRates;
+	}
+
+	/**
+	 * Retrieves the location of the directory of the rate history.
+	 *
+	 * @return the location of the directory, or empty if there is no rate history.
+	 */
+	public String getFxRatesHistory() {
+		return fxRatesHistory;
+	}
+
+	/**
+	 * Retrieves the location of the audit log.
+	 *
+	 * @return the location of the audit log, or empty if transactions are logged through the logger.
+	 */
+	public String getAuditLog() {
+		return auditLog;
+	}
+
+	/**
+	 * Retrieves the number of bytes after which records of the audit log are written to its file.
+	 *
+	 * @return the number of bytes.
+	 */
+	public int getAuditFlushBytes() {
+		return auditFlushBytes;
+	}
+
+	/**
+	 * Retrieves the number of milliseconds after which records of the audit log are written to its file.
+	 *
+	 * @return the number of milliseconds.
+	 */
+	public long getAuditFlushIntervalMillis() {
+		return auditFlushIntervalMillis;
+	}
+
+	/**
+	 * Retrieves the location of the binary wallet snapshot.
+	 *
+	 * @return the location of the snapshot, or empty if users.json is always loaded.
+	 */
+	public String getWalletSnapshot() {
+		return walletSnapshot;
+	}
+
+	/**
+	 * Retrieves the number of threads parsing users.json at startup.
+	 *
+	 * @return the number of threads.
+	 */
+	public int getLoaderThreads() {
+		return loaderThreads;
+	}
+
+	/**
+	 * Checks if the resident users and their wallets are held off the heap.
+	 *
+	 * @return true if they are held in a WalletStore, false if they are held on the heap.
+	 */
+	public boolean isOffHeapWallets() {
+		return offHeapWallets;
+	}
+
+	/**
+	 * Retrieves the port on which transactions are served over TCP.
+	 *
+	 * @return the port, 0 for any free port, or -1 if transactions.txt is processed instead.
+	 */
+	public int getServerPort() {
+		return serverPort;
+	}
+
+	/**
+	 * Retrieves the number of stripes of the locks of the users whose transactions are served.
+	 *
+	 * @return the number of stripes.
+	 */
+	public int getWalletLockStripes() {
+		return walletLockStripes;
+	}
+
+	/**
+	 * Retrieves the largest number of consecutive transactions of the same user and currency pair netted into one update of the wallet.
+	 *
+	 * @return the netting window, 0 or 1 if transactions are not netted.
+	 */
+	public int getNettingWindow() {
+		return nettingWindow;
+	}
+
+	/**
+	 * Sets the location of fx_rates.json.
+	 *
+	 * @param fxRatesFile The location of fx_rates.json.
+	 */
+	public void setFxRatesFile(String fxRatesFile) {
+		this.fxRatesFile = fxRatesFile;
+	}
+
+	/**
+	 * Sets the location of transactions.txt.
+	 *
+	 * @param transactionsFile The location of transactions.txt.
+	 */
+	public void setTransactionsFile(String transactionsFile) {
+		this.transactionsFile = transactionsFile;
+	}
+
+	/**
+	 * Sets the location of users.json.
+	 *
+	 * @param usersFile The location of users.json.
+	 */
+	public void setUsersFile(String usersFile) {
+		this.usersFile = usersFile;
+	}
+
+	/**
+	 * Sets whether users and currencies are kept in memory for the whole run.
+	 *
+	 * @param residentState True to load users.json and fx_rates.json once, false to reload them per transaction.
+	 */
+	public void setResidentState(boolean residentState) {
+		this.residentState = residentState;
+	}
+
+	/**
+	 * Sets the number of valid transactions after which users.json is written.
+	 *
+	 * @param flushEveryTransactions The number of transactions, or 0 to disable this trigger.
+	 */
+	public void setFlushEveryTransactions(int flushEveryTransactions) {
+		this.flushEveryTransactions = flushEveryTransactions;
+	}
+
+	/**
+	 * Sets the number of milliseconds after which users.json is written.
+	 *
+	 * @param flushIntervalMillis The number of milliseconds, or 0 to disable this trigger.
+	 */
+	public void setFlushIntervalMillis(long flushIntervalMillis) {
+		this.flushIntervalMillis = flushIntervalMillis;
+	}
+
+	/**
+	 * Sets how wallet updates are made durable.
+	 *
+	 * @param persistenceMode {@value #WRITE_BEHIND}, {@value #STREAMING} or {@value #JOURNAL}.
+	 */
+	public void setPersistenceMode(String persistenceMode) {
+		this.persistenceMode = persistenceMode;
+	}
+
+	/**
+	 * Sets the location of the journal.
+	 *
+	 * @param journalFile The location of the journal.
+	 */
+	public void setJournalFile(String journalFile) {
+		this.journalFile = journalFile;
+	}
+
+	/**
+	 * Sets the location of the snapshot the journal is compacted into.
+	 *
+	 * @param snapshotFile The location of the snapshot.
+	 */
+	public void setSnapshotFile(String snapshotFile) {
+		this.snapshotFile = snapshotFile;
+	}
+
+	/**
+	 * Sets the number of journal records after which the journal is compacted into a snapshot.
+	 *
+	 * @param snapshotEveryRecords The number of records, or 0 to disable this trigger.
+	 */
+	public void setSnapshotEveryRecords(int snapshotEveryRecords) {
+		this.snapshotEveryRecords = snapshotEveryRecords;
+	}
+
+	/**
+	 * Sets the number of shards transactions are processed on in parallel.
+	 *
+	 * @param shards The number of shards, or 1 to process transactions sequentially.
+	 */
+	public void setShards(int shards) {
+		this.shards = shards;
+	}
+
+	/**
+	 * Sets whether transactions are processed through a pipeline of stages.
+	 *
+	 * @param pipeline True to pipeline transactions, false otherwise.
+	 */
+	public void setPipeline(boolean pipeline) {
+		this.pipeline = pipeline;
+	}
+
+	/**
+	 * Sets the number of batches of transactions that can wait between two pipeline stages.
+	 *
+	 * @param pipelineQueueCapacity The capacity of every queue between two stages.
+	 */
+	public void setPipelineQueueCapacity(int pipelineQueueCapacity) {
+		this.pipelineQueueCapacity = pipelineQueueCapacity;
+	}
+
+	/**
+	 * Sets whether pipeline stages run on virtual threads where the JVM supports them.
+	 *
+	 * @param virtualThreads True to use virtual threads where available, false to always use platform threads.
+	 */
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * Sets whether transactions.txt is read through memory mappings of chunks of the file, parsed in parallel.
+	 *
+	 * @param mappedIngestion True to memory map transactions.txt, false otherwise.
+	 */
+	public void setMappedIngestion(boolean mappedIngestion) {
+		this.mappedIngestion = mappedIngestion;
+	}
+
+	/**
+	 * Sets the number of bytes aimed at in every chunk of transactions.txt.
+	 *
+	 * @param ingestionChunkBytes The number of bytes in a chunk.
+	 */
+	public void setIngestionChunkBytes(int ingestionChunkBytes) {
+		this.ingestionChunkBytes = ingestionChunkBytes;
+	}
+
+	/**
+	 * Sets the number of threads parsing chunks of transactions.txt.
+	 *
+	 * @param ingestionThreads The number of threads, or 0 for one thread per available processor.
+	 */
+	public void setIngestionThreads(int ingestionThreads) {
+		this.ingestionThreads = ingestionThreads;
+	}
+
+	/**
+	 * Sets the minor units of the currencies that are not held in 2 decimals rounded HALF_EVEN.
+	 *
+	 * @param minorUnits A list of currency=scale[:roundingMode], e.g. jpy=0,krw=0:HALF_UP.
+	 */
+	public void setMinorUnits(String minorUnits) {
+		this.minorUnits = minorUnits;
+	}
+
+	/**
+	 * Sets whether fx_rates.json is reloaded whenever it changes while it is resident in memory.
+	 *
+	 * @param watchFxRates True to watch fx_rates.json, false otherwise.
+	 */
+	public void setWatchFxRates(boolean watchFxRates) {
+		this.watchFxRates = watchFxRates;
+	}
+
+	/**
+	 * Sets the location of the directory of dated fx_rates.json files that back-dated transactions are converted against.
+	 *
+	 * @param fxRatesHistory The location of the directory, or empty for no rate history.
+	 */
+	public void setFxRatesHistory(String fxRatesHistory) {
+		this.fxRatesHistory = fxRatesHistory;
+	}
+
+	/**
+	 * Sets the location of the audit log of every transaction.
+	 *
+	 * @param auditLog The location of the audit log, or empty to log transactions through the logger.
+	 */
+	public void setAuditLog(String auditLog) {
+		this.auditLog = auditLog;
+	}
+
+	/**
+	 * Sets the number of bytes after which records of the audit log are written to its file.
+	 *
+	 * @param auditFlushBytes The number of bytes.
+	 */
+	public void setAuditFlushBytes(int auditFlushBytes) {
+		this.auditFlushBytes = auditFlushBytes;
+	}
+
+	/**
+	 * Sets the number of milliseconds after which records of the audit log are written to its file.
+	 *
+	 * @param auditFlushIntervalMillis The number of milliseconds.
+	 */
+	public void setAuditFlushIntervalMillis(long auditFlushIntervalMillis) {
+		this.auditFlushIntervalMillis = auditFlushIntervalMillis;
+	}
+
+	/**
+	 * Sets the location of the binary wallet snapshot.
+	 *
+	 * @param walletSnapshot The location of the snapshot, or empty to always load users.json.
+	 */
+	public void setWalletSnapshot(String walletSnapshot) {
+		this.walletSnapshot = walletSnapshot;
+	}
+
+	/**
+	 * Sets the number of threads parsing users.json at startup.
+	 *
+	 * @param loaderThreads The number of threads, or 1 to parse users.json on the calling thread.
+	 */
+	public void setLoaderThreads(int loaderThreads) {
+		this.loaderThreads = loaderThreads;
+	}
+
+	/**
+	 * Sets whether the resident users and their wallets are held off the heap.
+	 *
+	 * @param offHeapWallets True to hold them in a WalletStore, false to hold them on the heap.
+	 */
+	public void setOffHeapWallets(boolean offHeapWallets) {
+		this.offHeapWallets = offHeapWallets;
+	}
+
+	/**
+	 * Sets the port on which transactions are served over TCP.
+	 *
+	 * @param serverPort The port, 0 for any free port, or -1 to process transactions.txt instead.
+	 */
+	public void setServerPort(int serverPort) {
+		this.serverPort = serverPort;
+	}
+
+	/**
+	 * Sets the number of stripes of the locks of the users whose transactions are served.
+	 *
+	 * @param walletLockStripes The number of stripes, rounded up to a power of 2, or 1 to apply served transactions one at a time.
+	 */
+	public void setWalletLockStripes(int walletLockStripes) {
+		this.walletLockStripes = walletLockStripes;
+	}
+
+	/**
+	 * Sets the largest number of consecutive transactions of the same user and currency pair netted into one update of the wallet.
+	 *
+	 * @param nettingWindow The netting window, 0 or 1 to apply every transaction alone.
+	 */
+	public void setNettingWindow(int nettingWindow) {
+		this.nettingWindow = nettingWindow;
+	}
+
+}
@@ -0,0 +1,97 @@
+/**
+ * --------------------------------------------------------------------------------
+ * OrderedChunkExecutor.java
+ * --------------------------------------------------------------------------------
+ * An OrderedChunkExecutor processes the chunks of an input in parallel,
+ * and hands their results to a single consumer in the order of the chunks.
+ * --------------------------------------------------------------------------------
+ * 1. Chunks are processed by a fixed number of worker threads.
+ * 2. The results are consumed on the calling thread, chunk 0 first,
+ *    so every item is consumed in input order, e.g. the transactions of every user in file order.
+ * 3. At most two chunks per worker are in flight, so a slow consumer
+ *    bounds the memory held by results waiting to be consumed.
+ * --------------------------------------------------------------------------------
+ */
+
+package engine;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+public class OrderedChunkExecutor <R> {
+
+	/**
+	 * Number of chunks in flight per worker.
+	 */
+	private static final int CHUNKS_PER_WORKER = 2;
+
+	/**
+	 * Number of worker threads.
+	 */
+	private final int workers;
+
+	/**
+	 * Creation of an executor.
+	 *
+	 * @param workers Number of worker threads processing chunks.
+	 */
+	public OrderedChunkExecutor(int workers) {
+		if (workers < 1) {
+			throw new IllegalArgumentException("At least one worker is required: " + workers);
+		}
+		this.workers = workers;
+	}
+
+	/**
+	 * Processes every chunk on the workers, and consumes the results in the order of the chunks.
+	 *
+	 * @param chunks 		The number of chunks.
+	 * @param processor 	Processes a chunk, given its index, into a result.
+	 * @param consumer 		Consumes the result of a chunk, on the calling thread.
+	 * @throws Exception 	The first exception thrown by the processor or by the consumer.
+	 */
+	public void runs(int chunks, IntFunction <? extends R> processor, Consumer <? super R> consumer) throws Exception {
+		AtomicInteger threads = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(workers,
+				task -> Threads.creates("ingest-" + threads.getAndIncrement(), false, task));
+		try {
+			Deque <Future <? extends R>> inFlight = new ArrayDeque <> ();
+			int submitted = 0;
+			while (submitted < chunks || !inFlight.isEmpty()) {
+				while (submitted < chunks && inFlight.size() < workers * CHUNKS_PER_WORKER) {
+					int chunk = submitted++;
+					inFlight.add(executor.submit(() -> processor.apply(chunk)));
+				}
+				consumer.accept(waitsFor(inFlight.poll()));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Waits for the result of a chunk.
+	 *
+	 * @param future 		The future result of the chunk.
+	 * @return 				the result.
+	 * @throws Exception 	The exception thrown by the processor.
+	 */
+	private R waitsFor(Future <? extends R> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+}
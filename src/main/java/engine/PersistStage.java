@@ -0,0 +1,245 @@
+/**
+ * --------------------------------------------------------------------------------
+ * PersistStage.java
+ * --------------------------------------------------------------------------------
+ * A PersistStage is the last stage of the pipeline: it makes conversions durable
+ * on its own thread, so that writing the journal overlaps with applying the next transactions.
+ * --------------------------------------------------------------------------------
+ * It wraps the persistence of wallet updates:
+ * 1. Recorded conversions are queued, and recorded by the stage in the same order.
+ * 2. A checkpoint waits until every queued conversion has been recorded,
+ *    and is taken by the stage while the caller, the only thread applying conversions, waits.
+ * --------------------------------------------------------------------------------
+ */
+
+package engine;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import model.User;
+import persistence.WalletPersistence;
+
+public class PersistStage implements WalletPersistence {
+
+	/**
+	 * The persistence wrapped by the stage.
+	 */
+	private final WalletPersistence persistence;
+
+	/**
+	 * Queue of conversions and checkpoints waiting for the stage.
+	 */
+	private final BlockingQueue <Object> queue;
+
+	/**
+	 * The statistics of the stage, and its thread.
+	 */
+	private final StageStatistics statistics;
+	private final Thread thread;
+
+	/**
+	 * The first failure of the stage, rethrown to the caller.
+	 */
+	private volatile IOException failure;
+
+	/**
+	 * A conversion waiting to be recorded.
+	 */
+	private static final class Conversion {
+		private final User user;
+		private final String fromCurrency;
+		private final String toCurrency;
+		private final double amountToConvert;
+		private final double amountToIncreaseToCurrencyBy;
+
+		private Conversion(User user, String fromCurrency, String toCurrency, double amountToConvert, double amountToIncreaseToCurrencyBy) {
+			this.user = user;
+			this.fromCurrency = fromCurrency;
+			this.toCurrency = toCurrency;
+			this.amountToConvert = amountToConvert;
+			this.amountToIncreaseToCurrencyBy = amountToIncreaseToCurrencyBy;
+		}
+	}
+
+	/**
+	 * An action taken by the stage once every conversion queued before it has been recorded.
+	 */
+	private static final class Barrier {
+		private final boolean closes;
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		private Barrier(boolean closes) {
+			this.closes = closes;
+		}
+	}
+
+	/**
+	 * Creation of the stage, and start of its thread.
+	 *
+	 * @param persistence 		The persistence wrapped by the stage.
+	 * @param queueCapacity 	Number of conversions that can wait before the caller blocks.
+	 * @param virtualThread 	True to run the stage on a virtual thread, where available.
+	 */
+	public PersistStage(WalletPersistence persistence, int queueCapacity, boolean virtualThread) {
+		this.persistence = persistence;
+		this.queue = new ArrayBlockingQueue <> (queueCapacity);
+		this.statistics = new StageStatistics("persist", queue, 1);
+		this.thread = Threads.creates("persist", virtualThread, this::runs);
+		this.thread.start();
+	}
+
+	/**
+	 * Queues the conversion to be recorded by the stage.
+	 */
+	@Override
+	public void recordsConversion(User user,
+								  String fromCurrency,
+								  String toCurrency,
+								  double amountToConvert,
+								  double amountToIncreaseToCurrencyBy) throws IOException {
+		checksFailure();
+		puts(new Conversion(user, fromCurrency, toCurrency, amountToConvert, amountToIncreaseToCurrencyBy));
+	}
+
+	/**
+	 * Checks if the wrapped persistence requires a checkpoint.
+	 */
+	@Override
+	public boolean isCheckpointDue() {
+		return persistence.isCheckpointDue();
+	}
+
+	/**
+	 * Waits until every queued conversion has been recorded, and takes a checkpoint.
+	 */
+	@Override
+	public void checkpoint() throws IOException {
+		awaits(new Barrier(false));
+	}
+
+	/**
+	 * Waits until every queued conversion has been recorded, closes the wrapped persistence, and stops the stage.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!thread.isAlive()) {
+			return;
+		}
+		awaits(new Barrier(true));
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Retrieves the statistics of the stage.
+	 *
+	 * @return the statistics.
+	 */
+	public StageStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Queues a barrier, and waits until the stage has reached it.
+	 *
+	 * @param barrier 		The barrier.
+	 * @throws IOException 	The first failure of the stage.
+	 */
+	private void awaits(Barrier barrier) throws IOException {
+		puts(barrier);
+		try {
+			barrier.done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the persist stage.");
+		}
+		checksFailure();
+	}
+
+	/**
+	 * Queues a conversion or a barrier.
+	 *
+	 * @param item 			The conversion or barrier.
+	 * @throws IOException 	The exception thrown if the caller is interrupted while the queue is full.
+	 */
+	private void puts(Object item) throws IOException {
+		try {
+			queue.put(item);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while queueing for the persist stage.");
+		}
+	}
+
+	/**
+	 * Rethrows the first failure of the stage to the caller.
+	 *
+	 * @throws IOException The first failure of the stage.
+	 */
+	private void checksFailure() throws IOException {
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Records the first failure of the stage.
+	 *
+	 * @param e The failure.
+	 */
+	private void fails(Exception e) {
+		if (failure == null) {
+			failure = e instanceof IOException ? (IOException) e : new IOException("The persist stage failed.", e);
+		}
+	}
+
+	/**
+	 * Records every queued conversion, and takes every queued checkpoint, until the stage is closed.
+	 */
+	private void runs() {
+		try {
+			while (true) {
+				Object item = queue.take();
+				long start = System.nanoTime();
+				if (item instanceof Conversion) {
+					Conversion conversion = (Conversion) item;
+					try {
+						if (failure == null) {
+							persistence.recordsConversion(conversion.user, conversion.fromCurrency, conversion.toCurrency,
+									conversion.amountToConvert, conversion.amountToIncreaseToCurrencyBy);
+						}
+					} catch (IOException | RuntimeException e) {
+						fails(e);
+					}
+				} else {
+					Barrier barrier = (Barrier) item;
+					try {
+						if (barrier.closes) {
+							persistence.close();
+						} else if (failure == null) {
+							persistence.checkpoint();
+						}
+					} catch (IOException | RuntimeException e) {
+						fails(e);
+					} finally {
+						barrier.done.countDown();
+					}
+					if (barrier.closes) {
+						return;
+					}
+				}
+				statistics.records(1, System.nanoTime() - start);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
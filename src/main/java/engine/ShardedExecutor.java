@@ -0,0 +1,221 @@
+/**
+ * --------------------------------------------------------------------------------
+ * ShardedExecutor.java
+ * --------------------------------------------------------------------------------
+ * A ShardedExecutor applies tasks in parallel on N worker shards,
+ * while keeping the order of every task with the same key.
+ * --------------------------------------------------------------------------------
+ * 1. The key of every task (e.g. the username of a transaction) is hashed to a shard.
+ * 2. Every shard is a single worker thread, so the tasks of a key are applied
+ *    one at a time, in the order they were submitted.
+ * 3. Tasks are handed to a shard in batches through a bounded queue,
+ *    so the submitting thread blocks when a shard falls behind.
+ * --------------------------------------------------------------------------------
+ * Tasks are submitted from a single thread. That thread can wait until every
+ * submitted task has been applied, e.g. to write every wallet to disk while no shard is running.
+ * --------------------------------------------------------------------------------
+ */
+
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+public class ShardedExecutor <T> implements AutoCloseable {
+
+	/**
+	 * Batch handed to a shard to stop its worker.
+	 */
+	private static final List <Object> STOP = new ArrayList <> ();
+
+	/**
+	 * Hashes the key of a task, and applies a task.
+	 */
+	private final ToIntFunction <? super T> keyHash;
+	private final Consumer <? super T> handler;
+
+	/**
+	 * Number of tasks handed to a shard at a time.
+	 */
+	private final int batchSize;
+
+	/**
+	 * For every shard: its queue of batches, its worker,
+	 * the batch being filled by the submitting thread,
+	 * the number of tasks submitted to it, and the number of tasks it has applied.
+	 */
+	private final List <BlockingQueue <List <Object>>> queues = new ArrayList <> ();
+	private final List <Thread> workers = new ArrayList <> ();
+	private final List <List <Object>> pendingBatches = new ArrayList <> ();
+	private final long[] submitted;
+	private final AtomicLong[] applied;
+
+	/**
+	 * The first failure thrown by a task, rethrown to the submitting thread.
+	 */
+	private volatile Throwable failure;
+
+	/**
+	 * Creation of an executor, and start of its workers.
+	 *
+	 * @param shards 			Number of shards, each with one worker thread.
+	 * @param queueCapacity 	Number of batches that can wait for a shard before the submitting thread blocks.
+	 * @param batchSize 		Number of tasks handed to a shard at a time.
+	 * @param keyHash 			Hashes the key of a task. Tasks with the same key must have the same hash.
+	 * @param handler 			Applies a task.
+	 */
+	public ShardedExecutor(int shards, int queueCapacity, int batchSize, ToIntFunction <? super T> keyHash, Consumer <? super T> handler) {
+		if (shards < 1) {
+			throw new IllegalArgumentException("At least one shard is required: " + shards);
+		}
+		this.keyHash = keyHash;
+		this.handler = handler;
+		this.batchSize = batchSize;
+		this.submitted = new long[shards];
+		this.applied = new AtomicLong[shards];
+
+		for (int shard = 0; shard < shards; shard++) {
+			BlockingQueue <List <Object>> queue = new ArrayBlockingQueue <> (queueCapacity);
+			AtomicLong appliedTasks = new AtomicLong();
+			Thread worker = new Thread(() -> runs(queue, appliedTasks), "shard-" + shard);
+			worker.setDaemon(true);
+
+			queues.add(queue);
+			workers.add(worker);
+			pendingBatches.add(new ArrayList <> (batchSize));
+			applied[shard] = appliedTasks;
+			worker.start();
+		}
+	}
+
+	/**
+	 * Retrieves the shard of a key hash.
+	 *
+	 * @param hash 		The hash of the key of a task.
+	 * @param shards 	The number of shards.
+	 * @return 			the shard, between 0 and shards - 1.
+	 */
+	public static int shardOf(int hash, int shards) {
+		// Spread the high bits, as HashMap does, since String hashes of similar keys differ in the low bits only.
+		return Math.floorMod(hash ^ (hash >>> 16), shards);
+	}
+
+	/**
+	 * Submits a task to the shard of its key.
+	 *
+	 * @param task 						The task to apply.
+	 * @throws InterruptedException 	The exception thrown if the submitting thread is interrupted while a shard is full.
+	 */
+	public void submit(T task) throws InterruptedException {
+		checksFailure();
+		int shard = shardOf(keyHash.applyAsInt(task), workers.size());
+		List <Object> batch = pendingBatches.get(shard);
+		batch.add(task);
+		submitted[shard]++;
+		if (batch.size() >= batchSize) {
+			handsOver(shard);
+		}
+	}
+
+	/**
+	 * Waits until every submitted task has been applied.
+	 *
+	 * @throws InterruptedException 	The exception thrown if the submitting thread is interrupted while waiting.
+	 */
+	public void awaitsIdle() throws InterruptedException {
+		for (int shard = 0; shard < workers.size(); shard++) {
+			if (!pendingBatches.get(shard).isEmpty()) {
+				handsOver(shard);
+			}
+		}
+		for (int shard = 0; shard < workers.size(); shard++) {
+			while (applied[shard].get() < submitted[shard]) {
+				checksFailure();
+				TimeUnit.MICROSECONDS.sleep(50);
+			}
+		}
+		checksFailure();
+	}
+
+	/**
+	 * Retrieves the number of shards.
+	 *
+	 * @return the number of shards.
+	 */
+	public int getShards() {
+		return workers.size();
+	}
+
+	/**
+	 * Waits until every submitted task has been applied, and stops the workers.
+	 *
+	 * @throws InterruptedException 	The exception thrown if the submitting thread is interrupted while waiting.
+	 */
+	@Override
+	public void close() throws InterruptedException {
+		try {
+			awaitsIdle();
+		} finally {
+			for (BlockingQueue <List <Object>> queue : queues) {
+				queue.put(STOP);
+			}
+			for (Thread worker : workers) {
+				worker.join();
+			}
+		}
+	}
+
+	/**
+	 * Hands the batch being filled for a shard over to its worker.
+	 *
+	 * @param shard 					The shard.
+	 * @throws InterruptedException 	The exception thrown if the submitting thread is interrupted while the shard is full.
+	 */
+	private void handsOver(int shard) throws InterruptedException {
+		queues.get(shard).put(pendingBatches.get(shard));
+		pendingBatches.set(shard, new ArrayList <> (batchSize));
+	}
+
+	/**
+	 * Rethrows the first failure of a task to the submitting thread.
+	 */
+	private void checksFailure() {
+		if (failure != null) {
+			throw new IllegalStateException("A shard failed to apply a task.", failure);
+		}
+	}
+
+	/**
+	 * Applies every batch handed to a shard, in order, until it is stopped.
+	 *
+	 * @param queue 			The queue of the shard.
+	 * @param appliedTasks 		The number of tasks applied by the shard.
+	 */
+	@SuppressWarnings("unchecked")
+	private void runs(BlockingQueue <List <Object>> queue, AtomicLong appliedTasks) {
+		try {
+			List <Object> batch;
+			while ((batch = queue.take()) != STOP) {
+				for (Object task : batch) {
+					if (failure == null) {
+						try {
+							handler.accept((T) task);
+						} catch (RuntimeException | Error e) {
+							failure = e;
+						}
+					}
+				}
+				appliedTasks.addAndGet(batch.size());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
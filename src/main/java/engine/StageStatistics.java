@@ -0,0 +1,125 @@
+/**
+ * --------------------------------------------------------------------------------
+ * StageStatistics.java
+ * --------------------------------------------------------------------------------
+ * StageStatistics are the counters of a single stage of the engine:
+ * the number of items it processed, the time it spent processing them,
+ * and the depth of the queue feeding it.
+ * --------------------------------------------------------------------------------
+ * Counters are written by the thread of the stage, and can be read from any thread.
+ * --------------------------------------------------------------------------------
+ */
+
+package engine;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StageStatistics {
+
+	/**
+	 * The name of the stage.
+	 */
+	private final String name;
+
+	/**
+	 * The queue feeding the stage, or null for the stage that reads the input.
+	 * Every element of the queue is a batch of batchSize items.
+	 */
+	private final BlockingQueue <?> queue;
+	private final int batchSize;
+
+	/**
+	 * Number of items processed, and nanoseconds spent processing them.
+	 */
+	private final AtomicLong processed = new AtomicLong();
+	private final AtomicLong busyNanos = new AtomicLong();
+
+	/**
+	 * Largest number of items seen waiting in the queue.
+	 */
+	private volatile int maxQueueDepth;
+
+	/**
+	 * Creation of the statistics of a stage.
+	 *
+	 * @param name 			The name of the stage.
+	 * @param queue 		The queue feeding the stage, or null if there is none.
+	 * @param batchSize 	The number of items in every batch of the queue.
+	 */
+	public StageStatistics(String name, BlockingQueue <?> queue, int batchSize) {
+		this.name = name;
+		this.queue = queue;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Records items processed by the stage, and samples the depth of its queue.
+	 *
+	 * @param items 	The number of items processed.
+	 * @param nanos 	The nanoseconds spent processing them.
+	 */
+	void records(int items, long nanos) {
+		processed.addAndGet(items);
+		busyNanos.addAndGet(nanos);
+		int depth = getQueueDepth();
+		if (depth > maxQueueDepth) {
+			maxQueueDepth = depth;
+		}
+	}
+
+	/**
+	 * Retrieves the name of the stage.
+	 *
+	 * @return the name of the stage.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Retrieves the number of items processed by the stage.
+	 *
+	 * @return the number of items processed.
+	 */
+	public long getProcessed() {
+		return processed.get();
+	}
+
+	/**
+	 * Retrieves the time the stage spent processing items, excluding the time it waited for them.
+	 *
+	 * @return the time spent, in nanoseconds.
+	 */
+	public long getBusyNanos() {
+		return busyNanos.get();
+	}
+
+	/**
+	 * Retrieves the number of items waiting in the queue feeding the stage.
+	 *
+	 * @return the number of items waiting, rounded to whole batches.
+	 */
+	public int getQueueDepth() {
+		return queue == null ? 0 : queue.size() * batchSize;
+	}
+
+	/**
+	 * Retrieves the largest number of items seen waiting in the queue feeding the stage.
+	 *
+	 * @return the largest number of items waiting, rounded to whole batches.
+	 */
+	public int getMaxQueueDepth() {
+		return maxQueueDepth;
+	}
+
+	/**
+	 * Summary of the statistics, for logging.
+	 */
+	@Override
+	public String toString() {
+		return String.format("%s: processed=%d busy=%dms queueDepth=%d maxQueueDepth=%d",
+				name, getProcessed(), getBusyNanos() / 1_000_000, getQueueDepth(), getMaxQueueDepth());
+	}
+
+}
@@ -0,0 +1,241 @@
+/**
+ * --------------------------------------------------------------------------------
+ * StagedPipeline.java
+ * --------------------------------------------------------------------------------
+ * A StagedPipeline passes every item read from a source through a chain of stages,
+ * e.g. read -> parse -> validate -> apply.
+ * --------------------------------------------------------------------------------
+ * 1. Every stage runs on its own thread (a virtual thread where available),
+ *    so that I/O in one stage overlaps with CPU work in the others.
+ * 2. Stages are connected by bounded queues of batches. A stage that falls behind
+ *    blocks the stages before it, which keeps memory flat however large the input is.
+ * 3. Every stage handles one item at a time, in the order they were read,
+ *    so the pipeline processes items in exactly the same order as a single loop.
+ * 4. Every stage reports the items it processed, its busy time and its queue depth.
+ * --------------------------------------------------------------------------------
+ */
+
+package engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+public class StagedPipeline <T> {
+
+	/**
+	 * Batch that marks the end of the input.
+	 */
+	private static final List <Object> END = new ArrayList <> ();
+
+	/**
+	 * Number of batches that can wait between two stages, and the number of items in a batch.
+	 */
+	private final int queueCapacity;
+	private final int batchSize;
+
+	/**
+	 * True to run the stages on virtual threads, where available.
+	 */
+	private final boolean virtualThreads;
+
+	/**
+	 * The names of the stages, and the stages, in order.
+	 */
+	private final List <String> names = new ArrayList <> ();
+	private final List <Consumer <? super T>> stages = new ArrayList <> ();
+
+	/**
+	 * The statistics of the source and of every stage in the last run.
+	 */
+	private final List <StageStatistics> statistics = new ArrayList <> ();
+
+	/**
+	 * The first failure of the source or of a stage.
+	 */
+	private volatile Throwable failure;
+
+	/**
+	 * Creation of a pipeline without stages.
+	 *
+	 * @param queueCapacity 	Number of batches that can wait between two stages.
+	 * @param batchSize 		Number of items handed from one stage to the next at a time.
+	 * @param virtualThreads 	True to run the stages on virtual threads, where available.
+	 */
+	public StagedPipeline(int queueCapacity, int batchSize, boolean virtualThreads) {
+		this.queueCapacity = queueCapacity;
+		this.batchSize = batchSize;
+		this.virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * Adds a stage at the end of the pipeline.
+	 *
+	 * @param name 		The name of the stage.
+	 * @param stage 	Processes an item.
+	 * @return 			this pipeline.
+	 */
+	public StagedPipeline <T> addsStage(String name, Consumer <? super T> stage) {
+		names.add(name);
+		stages.add(stage);
+		return this;
+	}
+
+	/**
+	 * Reads every item from the source and passes it through every stage,
+	 * and waits until the last item has left the last stage.
+	 *
+	 * @param sourceName 	The name of the stage reading the source.
+	 * @param source 		Reads the next item, or returns null at the end of the input.
+	 * @throws Exception 	The first exception thrown by the source or by a stage.
+	 */
+	public void runs(String sourceName, Callable <? extends T> source) throws Exception {
+		if (stages.isEmpty()) {
+			throw new IllegalStateException("A pipeline requires at least one stage.");
+		}
+		failure = null;
+		statistics.clear();
+		statistics.add(new StageStatistics(sourceName, null, batchSize));
+
+		List <BlockingQueue <List <Object>>> queues = new ArrayList <> ();
+		for (int i = 0; i < stages.size(); i++) {
+			BlockingQueue <List <Object>> queue = new ArrayBlockingQueue <> (queueCapacity);
+			queues.add(queue);
+			statistics.add(new StageStatistics(names.get(i), queue, batchSize));
+		}
+
+		List <Thread> threads = new ArrayList <> ();
+		threads.add(Threads.creates(sourceName, virtualThreads, () -> reads(source, queues.get(0), statistics.get(0))));
+		for (int i = 0; i < stages.size(); i++) {
+			BlockingQueue <List <Object>> next = i + 1 < queues.size() ? queues.get(i + 1) : null;
+			int stage = i;
+			threads.add(Threads.creates(names.get(i), virtualThreads,
+					() -> processes(stages.get(stage), queues.get(stage), next, statistics.get(stage + 1))));
+		}
+
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		if (failure instanceof Exception) {
+			throw (Exception) failure;
+		} else if (failure != null) {
+			throw (Error) failure;
+		}
+	}
+
+	/**
+	 * Retrieves the statistics of the source and of every stage in the last run.
+	 *
+	 * @return the statistics, in the order of the stages.
+	 */
+	public List <StageStatistics> getStatistics() {
+		return Collections.unmodifiableList(statistics);
+	}
+
+	/**
+	 * Reads every item from the source, and hands them to the first stage in batches.
+	 *
+	 * @param source 		Reads the next item.
+	 * @param queue 		The queue of the first stage.
+	 * @param statistics 	The statistics of the source.
+	 */
+	private void reads(Callable <? extends T> source, BlockingQueue <List <Object>> queue, StageStatistics statistics) {
+		try {
+			List <Object> batch = new ArrayList <> (batchSize);
+			long start = System.nanoTime();
+			T item;
+			while (failure == null && (item = source.call()) != null) {
+				batch.add(item);
+				if (batch.size() == batchSize) {
+					statistics.records(batch.size(), System.nanoTime() - start);
+					queue.put(batch);
+					batch = new ArrayList <> (batchSize);
+					start = System.nanoTime();
+				}
+			}
+			if (!batch.isEmpty()) {
+				statistics.records(batch.size(), System.nanoTime() - start);
+				queue.put(batch);
+			}
+		} catch (Exception | Error e) {
+			fails(e);
+		} finally {
+			ends(queue);
+		}
+	}
+
+	/**
+	 * Processes every batch handed to a stage, and hands it to the next stage.
+	 * After a failure, batches are drained without being processed, so that no stage stays blocked.
+	 *
+	 * @param stage 		Processes an item.
+	 * @param queue 		The queue of the stage.
+	 * @param next 			The queue of the next stage, or null for the last stage.
+	 * @param statistics 	The statistics of the stage.
+	 */
+	@SuppressWarnings("unchecked")
+	private void processes(Consumer <? super T> stage,
+						   BlockingQueue <List <Object>> queue,
+						   BlockingQueue <List <Object>> next,
+						   StageStatistics statistics) {
+		try {
+			List <Object> batch;
+			while ((batch = queue.take()) != END) {
+				if (failure == null) {
+					long start = System.nanoTime();
+					try {
+						for (Object item : batch) {
+							stage.accept((T) item);
+						}
+					} catch (RuntimeException | Error e) {
+						fails(e);
+					}
+					statistics.records(batch.size(), System.nanoTime() - start);
+				}
+				if (next != null) {
+					next.put(batch);
+				}
+			}
+		} catch (InterruptedException e) {
+			fails(e);
+			Thread.currentThread().interrupt();
+		} finally {
+			if (next != null) {
+				ends(next);
+			}
+		}
+	}
+
+	/**
+	 * Records the first failure.
+	 *
+	 * @param e The failure.
+	 */
+	private synchronized void fails(Throwable e) {
+		if (failure == null) {
+			failure = e;
+		}
+	}
+
+	/**
+	 * Marks the end of the input for a stage.
+	 *
+	 * @param queue The queue of the stage.
+	 */
+	private void ends(BlockingQueue <List <Object>> queue) {
+		try {
+			queue.put(END);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+/**
+ * --------------------------------------------------------------------------------
+ * Threads.java
+ * --------------------------------------------------------------------------------
+ * Creates the threads that run the stages of the engine.
+ * --------------------------------------------------------------------------------
+ * On Java 21 or higher, virtual threads are used, so a stage blocked on I/O or
+ * on a full queue does not hold on to a platform thread.
+ * On Java 17, the engine falls back to platform threads.
+ * The program is compiled for Java 17, so virtual threads are looked up reflectively.
+ * --------------------------------------------------------------------------------
+ */
+
+package engine;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+public final class Threads {
+
+	/**
+	 * Factory of virtual threads, or null if virtual threads are not available.
+	 */
+	private static final ThreadFactory VIRTUAL_THREAD_FACTORY = virtualThreadFactory();
+
+	/**
+	 * Static methods only.
+	 */
+	private Threads() {
+
+	}
+
+	/**
+	 * Checks if virtual threads are available in this JVM.
+	 *
+	 * @return true on Java 21 or higher, false otherwise.
+	 */
+	public static boolean isVirtualAvailable() {
+		return VIRTUAL_THREAD_FACTORY != null;
+	}
+
+	/**
+	 * Creates an unstarted thread.
+	 *
+	 * @param name 		The name of the thread.
+	 * @param virtual 	True to create a virtual thread if they are available, false for a platform thread.
+	 * @param task 		The task run by the thread.
+	 * @return 			the thread.
+	 */
+	public static Thread creates(String name, boolean virtual, Runnable task) {
+		Thread thread;
+		if (virtual && VIRTUAL_THREAD_FACTORY != null) {
+			thread = VIRTUAL_THREAD_FACTORY.newThread(task);
+		} else {
+			thread = new Thread(task);
+			thread.setDaemon(true);
+		}
+		thread.setName(name);
+		return thread;
+	}
+
+	/**
+	 * Looks up Thread.ofVirtual().factory().
+	 *
+	 * @return the factory of virtual threads, or null if virtual threads are not available.
+	 */
+	private static ThreadFactory virtualThreadFactory() {
+		try {
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+			return (ThreadFactory) factory.invoke(ofVirtual.invoke(null));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,262 @@
+/**
+ * --------------------------------------------------------------------------------
+ * TransactionNetter.java
+ * --------------------------------------------------------------------------------
+ * A TransactionNetter merges a run of consecutive transactions of the same user
+ * and currency pair into a single update of the user's wallet.
+ * --------------------------------------------------------------------------------
+ * 1. Transactions join the group while they have the same user, currencies and snapshot
+ *    of the rates as the first one, up to the size of the window.
+ * 2. The checks of the user's wallet are run for every transaction of the group in order,
+ *    on the balance left by the transactions before it, so every transaction is accepted
+ *    or rejected exactly as if they had been applied one at a time.
+ * 3. Every accepted transaction keeps its own converted amount, and the wallet is updated
+ *    once by the sum of their amounts, in minor units, as the conversions one at a time would.
+ * --------------------------------------------------------------------------------
+ * A transaction rejected inside a group is where the group would have been split
+ * if it had been applied as separate runs; it is counted as a split.
+ * Transactions are held in a fixed array of reused transactions, filled by a single thread.
+ * --------------------------------------------------------------------------------
+ */
+
+package engine;
+
+import model.CurrencyCodes;
+import model.MinorUnits;
+import model.RateTable;
+import model.Transaction;
+import model.User;
+import validation.RejectionReason;
+
+public final class TransactionNetter {
+
+	/**
+	 * Reused transactions: the group, followed by the transaction filled next.
+	 */
+	private final Transaction[] group;
+
+	/**
+	 * Largest number of transactions in a group.
+	 */
+	private final int window;
+
+	/**
+	 * Number of transactions in the group.
+	 */
+	private int size;
+
+	/**
+	 * Number of transactions of the group accepted by the last netting,
+	 * and the sums of their amounts of both currencies, in minor units.
+	 */
+	private int conversions;
+	private long nettedMinorUnits;
+	private long nettedConvertedMinorUnits;
+
+	/**
+	 * Number of groups netted, of the transactions in them,
+	 * and of the transactions rejected inside them.
+	 */
+	private long groups;
+	private long nettedTransactions;
+	private long splits;
+
+	/**
+	 * Creation of a netter of groups of up to a number of transactions.
+	 *
+	 * @param window 	The largest number of transactions in a group, at least 1.
+	 */
+	public TransactionNetter(int window) {
+		if (window < 1) {
+			throw new IllegalArgumentException("The netting window must be at least 1, not " + window + ".");
+		}
+		this.window = window;
+		this.group = new Transaction[window + 1];
+		for (int i = 0; i <= window; i++) {
+			this.group[i] = new Transaction();
+		}
+	}
+
+	/**
+	 * Retrieves the transaction to fill with the next line, which is not in the group.
+	 *
+	 * @return the next transaction.
+	 */
+	public Transaction getsNext() {
+		return group[size];
+	}
+
+	/**
+	 * Adds the next transaction to the group, if it can be netted with the transactions in it.
+	 * A transaction rejected before the checks of the wallet, or back-dated, is never netted.
+	 *
+	 * @param transaction 	The transaction retrieved by getsNext, validated.
+	 * @return 				true if the transaction joined the group, false if the group has to be applied first,
+	 * 						or the transaction applied alone.
+	 */
+	public boolean adds(Transaction transaction) {
+		if (transaction.isRejected() || transaction.hasTimestamp() || size == window) {
+			return false;
+		}
+		if (size > 0) {
+			Transaction first = group[0];
+			// Users are compared by name, since a user in the off-heap WalletStore is a new view on every lookup.
+			if (!transaction.getUsername().equals(first.getUsername())
+					|| transaction.getRates() != first.getRates()
+					|| !transaction.getFromCurrency().equals(first.getFromCurrency())
+					|| !transaction.getToCurrency().equals(first.getToCurrency())) {
+				return false;
+			}
+		}
+		size++;
+		return true;
+	}
+
+	/**
+	 * Runs the checks of the user's wallet for every transaction of a group of at least one transaction, in order,
+	 * on the balance left by the transactions accepted before it, without updating the wallet.
+	 * Every accepted transaction is given its converted amount, and every other one its rejection.
+	 */
+	public void nets() {
+		Transaction first = group[0];
+		User user = first.getUser();
+		RateTable rates = first.getRates();
+		String fromCurrency = first.getFromCurrency();
+		String toCurrency = first.getToCurrency();
+		int fromId = rates.idOf(fromCurrency);
+		int toId = rates.idOf(toCurrency);
+		MinorUnits fromUnits = MinorUnits.of(fromCurrency);
+		MinorUnits toUnits = MinorUnits.of(toCurrency);
+
+		int index = indexOf(user, CurrencyCodes.codeOf(fromCurrency));
+		boolean held = index >= 0;
+		long balance = held ? user.getsMinorUnitsAt(index) : 0;
+		conversions = 0;
+		nettedMinorUnits = 0;
+		nettedConvertedMinorUnits = 0;
+		for (int i = 0; i < size; i++) {
+			Transaction transaction = group[i];
+			if (!held) {
+				transaction.setRejection(RejectionReason.USER_HAS_NO_CURRENCY);
+			} else if (fromUnits.toMajor(balance) < transaction.getAmount()) {
+				transaction.setRejection(RejectionReason.INSUFFICIENT_AMOUNT);
+			} else {
+				double convertedAmount = rates.converts(fromId, toId, transaction.getAmount());
+				long minorUnits = fromUnits.toMinor(transaction.getAmount());
+				transaction.setConvertedAmount(convertedAmount);
+				balance = Math.subtractExact(balance, minorUnits);
+				nettedMinorUnits = Math.addExact(nettedMinorUnits, minorUnits);
+				nettedConvertedMinorUnits = Math.addExact(nettedConvertedMinorUnits, toUnits.toMinor(convertedAmount));
+				conversions++;
+
+				// A currency with a balance of zero is removed from the wallet.
+				held = balance != 0;
+				continue;
+			}
+			splits++;
+		}
+		groups++;
+		nettedTransactions += size;
+	}
+
+	/**
+	 * Empties the group, keeping the next transaction.
+	 */
+	public void clears() {
+		Transaction next = group[size];
+		group[size] = group[0];
+		group[0] = next;
+		size = 0;
+	}
+
+	/**
+	 * Retrieves the number of transactions in the group.
+	 *
+	 * @return the number of transactions.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Retrieves a transaction of the group.
+	 *
+	 * @param index 	The index of the transaction, in the order it was added.
+	 * @return 			the transaction.
+	 */
+	public Transaction get(int index) {
+		return group[index];
+	}
+
+	/**
+	 * Retrieves the number of transactions of the group accepted by the last netting.
+	 *
+	 * @return the number of accepted transactions.
+	 */
+	public int getConversions() {
+		return conversions;
+	}
+
+	/**
+	 * Retrieves the sum of the amounts of the accepted transactions.
+	 *
+	 * @return the amount of the FROM currency to take from the wallet, which rounds to the sum of their minor units.
+	 */
+	public double getNettedAmount() {
+		return MinorUnits.of(group[0].getFromCurrency()).toRoundTrippingMajor(nettedMinorUnits);
+	}
+
+	/**
+	 * Retrieves the sum of the converted amounts of the accepted transactions, each rounded to minor units.
+	 *
+	 * @return the amount of the TO currency to add to the wallet, which rounds to the sum of their minor units.
+	 */
+	public double getNettedConvertedAmount() {
+		return MinorUnits.of(group[0].getToCurrency()).toRoundTrippingMajor(nettedConvertedMinorUnits);
+	}
+
+	/**
+	 * Retrieves the number of groups netted.
+	 *
+	 * @return the number of groups.
+	 */
+	public long getGroups() {
+		return groups;
+	}
+
+	/**
+	 * Retrieves the number of transactions in the groups netted.
+	 *
+	 * @return the number of netted transactions.
+	 */
+	public long getNettedTransactions() {
+		return nettedTransactions;
+	}
+
+	/**
+	 * Retrieves the number of transactions rejected inside a netted group,
+	 * where the group would have been split.
+	 *
+	 * @return the number of splits.
+	 */
+	public long getSplits() {
+		return splits;
+	}
+
+	/**
+	 * Retrieves the index of a currency in a user's wallet.
+	 *
+	 * @param user 	The user.
+	 * @param code 	The code of 16 bits of the currency (see CurrencyCodes).
+	 * @return 		the index of the currency, or -1 if it is not in the wallet.
+	 */
+	private static int indexOf(User user, int code) {
+		for (int i = 0; i < user.getsNumberOfCurrenciesInWallet(); i++) {
+			if (user.getsCurrencyCodeAt(i) == code) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+}
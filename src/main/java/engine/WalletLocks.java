@@ -0,0 +1,177 @@
+/**
+ * --------------------------------------------------------------------------------
+ * WalletLocks.java
+ * --------------------------------------------------------------------------------
+ * WalletLocks make the checks of a user's wallet and the conversion that follows them
+ * atomic, when the transactions of a user may be applied by several threads at once.
+ * --------------------------------------------------------------------------------
+ * 1. Every user is locked by one of a fixed number of stripes, found by the hash of its name,
+ *    so conversions of users on different stripes never wait for each other.
+ * 2. A conversion also holds a shared lock, which a checkpoint holds exclusively,
+ *    so every wallet is written to disk while no conversion is being applied.
+ *    A wallet updated by the only thread that updates it holds just the shared lock,
+ *    so that a flush at shutdown, from another thread, never writes it half-updated.
+ * 3. Every acquisition of a stripe that had to wait is counted,
+ *    which measures the contention on hot users.
+ * --------------------------------------------------------------------------------
+ * Locks are reentrant, and must be released by the thread that acquired them.
+ * --------------------------------------------------------------------------------
+ */
+
+package engine;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public final class WalletLocks {
+
+	/**
+	 * Largest number of stripes.
+	 */
+	private static final int MAX_STRIPES = 1 << 16;
+
+	/**
+	 * Lock of every stripe of users.
+	 */
+	private final ReentrantLock[] stripes;
+
+	/**
+	 * Mask of the hash of a name, to the index of its stripe.
+	 */
+	private final int mask;
+
+	/**
+	 * Held shared by every conversion, and exclusively by a checkpoint.
+	 */
+	private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+
+	/**
+	 * Number of acquisitions of a stripe, and of those that had to wait for another thread.
+	 */
+	private final LongAdder acquisitions = new LongAdder();
+	private final LongAdder contendedAcquisitions = new LongAdder();
+
+	/**
+	 * Creation of the locks of users.
+	 *
+	 * @param stripes 	The number of stripes, rounded up to a power of 2. 1 serialises every conversion.
+	 */
+	public WalletLocks(int stripes) {
+		if (stripes < 1 || stripes > MAX_STRIPES) {
+			throw new IllegalArgumentException("The number of stripes must be between 1 and " + MAX_STRIPES + ", not " + stripes + ".");
+		}
+		int size = 1;
+		while (size < stripes) {
+			size <<= 1;
+		}
+		this.stripes = new ReentrantLock[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = new ReentrantLock();
+		}
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Locks a user before its wallet is checked and converted.
+	 *
+	 * @param username 	The name of the user.
+	 */
+	public void locks(String username) {
+		checkpointLock.readLock().lock();
+		ReentrantLock stripe = stripeOf(username);
+		acquisitions.increment();
+		if (!stripe.tryLock()) {
+			contendedAcquisitions.increment();
+			stripe.lock();
+		}
+	}
+
+	/**
+	 * Unlocks a user locked by this thread.
+	 *
+	 * @param username 	The name of the user.
+	 */
+	public void unlocks(String username) {
+		stripeOf(username).unlock();
+		checkpointLock.readLock().unlock();
+	}
+
+	/**
+	 * Locks out checkpoints while a wallet is updated, without locking its user,
+	 * which is only updated by the calling thread.
+	 */
+	public void locksUpdate() {
+		checkpointLock.readLock().lock();
+	}
+
+	/**
+	 * Unlocks checkpoints after a wallet is updated.
+	 */
+	public void unlocksUpdate() {
+		checkpointLock.readLock().unlock();
+	}
+
+	/**
+	 * Retrieves the lock held by a checkpoint, which waits for every conversion being applied.
+	 *
+	 * @return the exclusive lock taken by locksAll.
+	 */
+	public Lock getCheckpointLock() {
+		return checkpointLock.writeLock();
+	}
+
+	/**
+	 * Waits for every conversion being applied, and locks every user, before a checkpoint.
+	 */
+	public void locksAll() {
+		checkpointLock.writeLock().lock();
+	}
+
+	/**
+	 * Unlocks every user after a checkpoint.
+	 */
+	public void unlocksAll() {
+		checkpointLock.writeLock().unlock();
+	}
+
+	/**
+	 * Retrieves the number of stripes.
+	 *
+	 * @return the number of stripes, a power of 2.
+	 */
+	public int getStripes() {
+		return stripes.length;
+	}
+
+	/**
+	 * Retrieves the number of times a user was locked.
+	 *
+	 * @return the number of acquisitions of a stripe.
+	 */
+	public long getAcquisitions() {
+		return acquisitions.sum();
+	}
+
+	/**
+	 * Retrieves the number of times a user was locked after waiting for another thread.
+	 *
+	 * @return the number of acquisitions of a stripe that was held by another thread.
+	 */
+	public long getContendedAcquisitions() {
+		return contendedAcquisitions.sum();
+	}
+
+	/**
+	 * Retrieves the stripe of a user, spreading the bits of the hash of its name.
+	 *
+	 * @param username 	The name of the user.
+	 * @return 			the lock of the stripe.
+	 */
+	private ReentrantLock stripeOf(String username) {
+		int hash = username.hashCode() * 0x9E3779B9;
+		return stripes[(hash ^ (hash >>> 16)) & mask];
+	}
+
+}
@@ -0,0 +1,160 @@
+/**
+ * --------------------------------------------------------------------------------
+ * CurrencyPairCounters.java
+ * --------------------------------------------------------------------------------
+ * CurrencyPairCounters count the conversions of every pair of currencies,
+ * and the volume converted from the FROM currency, without allocating.
+ * --------------------------------------------------------------------------------
+ * 1. A pair is keyed by the 16-bit codes of its currencies (see CurrencyCodes).
+ * 2. Keys are kept in an open-addressing table, claimed with a compare-and-set,
+ *    so counting a conversion never takes a lock.
+ * 3. Volumes are summed in minor units of the FROM currency (see MinorUnits).
+ * --------------------------------------------------------------------------------
+ * Conversions of pairs beyond the capacity of the table are only counted in total.
+ * --------------------------------------------------------------------------------
+ */
+
+package metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import model.CurrencyCodes;
+import model.MinorUnits;
+
+public class CurrencyPairCounters {
+
+	/**
+	 * Number of pairs that can be counted, a power of 2 above the pairs of 150 currencies.
+	 */
+	static final int CAPACITY = 1 << 15;
+
+	/**
+	 * Value of a slot of the table that no pair has claimed.
+	 */
+	private static final long EMPTY = -1;
+
+	/**
+	 * For every slot: the pair that claimed it, its number of conversions,
+	 * and the volume converted from its FROM currency, in minor units.
+	 */
+	private final AtomicLongArray keys = new AtomicLongArray(CAPACITY);
+	private final AtomicLongArray conversions = new AtomicLongArray(CAPACITY);
+	private final AtomicLongArray volumes = new AtomicLongArray(CAPACITY);
+
+	/**
+	 * Number of conversions of pairs that could not be given a slot.
+	 */
+	private final LongAdder overflow = new LongAdder();
+
+	/**
+	 * Creation of counters of no conversions.
+	 */
+	public CurrencyPairCounters() {
+		for (int slot = 0; slot < CAPACITY; slot++) {
+			keys.set(slot, EMPTY);
+		}
+	}
+
+	/**
+	 * Counts a conversion of a pair of currencies.
+	 *
+	 * @param fromCurrency 	The currency converted from.
+	 * @param toCurrency 	The currency converted to.
+	 * @param amount 		The amount of the fromCurrency converted.
+	 */
+	public void counts(String fromCurrency, String toCurrency, double amount) {
+		int slot = slotOf(keyOf(CurrencyCodes.registers(fromCurrency), CurrencyCodes.registers(toCurrency)));
+		if (slot < 0) {
+			overflow.increment();
+			return;
+		}
+		conversions.incrementAndGet(slot);
+		volumes.addAndGet(slot, MinorUnits.of(fromCurrency).toMinor(amount));
+	}
+
+	/**
+	 * Retrieves the number of conversions of every pair counted, e.g. eur/gbp.
+	 *
+	 * @return the number of conversions by pair, in the order the pairs were first counted in every slot.
+	 */
+	public Map <String, Long> getConversions() {
+		Map <String, Long> conversionsByPair = new LinkedHashMap <> ();
+		for (int slot = 0; slot < CAPACITY; slot++) {
+			long key = keys.get(slot);
+			if (key != EMPTY) {
+				conversionsByPair.put(nameOf(key), conversions.get(slot));
+			}
+		}
+		return conversionsByPair;
+	}
+
+	/**
+	 * Retrieves the volume converted from the FROM currency of every pair counted, e.g. eur/gbp.
+	 *
+	 * @return the volume by pair, in the FROM currency.
+	 */
+	public Map <String, Double> getVolumes() {
+		Map <String, Double> volumesByPair = new LinkedHashMap <> ();
+		for (int slot = 0; slot < CAPACITY; slot++) {
+			long key = keys.get(slot);
+			if (key != EMPTY) {
+				String fromCurrency = CurrencyCodes.unpacks(fromCodeOf(key));
+				volumesByPair.put(nameOf(key), MinorUnits.of(fromCurrency).toMajor(volumes.get(slot)));
+			}
+		}
+		return volumesByPair;
+	}
+
+	/**
+	 * Retrieves the number of conversions of pairs beyond the capacity of the counters.
+	 *
+	 * @return the number of conversions not counted by pair.
+	 */
+	public long getOverflow() {
+		return overflow.sum();
+	}
+
+	/**
+	 * Retrieves the key of a pair of currencies from their 16-bit codes, and the codes from the key.
+	 */
+	private static long keyOf(int fromCode, int toCode) {
+		return ((long) fromCode << 16) | toCode;
+	}
+
+	private static int fromCodeOf(long key) {
+		return (int) (key >>> 16);
+	}
+
+	private static int toCodeOf(long key) {
+		return (int) (key & 0xFFFF);
+	}
+
+	/**
+	 * Retrieves the name of a pair of currencies.
+	 */
+	private static String nameOf(long key) {
+		return CurrencyCodes.unpacks(fromCodeOf(key)) + "/" + CurrencyCodes.unpacks(toCodeOf(key));
+	}
+
+	/**
+	 * Finds the slot of a pair, claiming the first empty slot after its hash if it has none.
+	 *
+	 * @param key 	The key of the pair.
+	 * @return 		the slot of the pair, or -1 if every slot is claimed by another pair.
+	 */
+	private int slotOf(long key) {
+		int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 49);
+		for (int probe = 0; probe < CAPACITY; probe++) {
+			long claimed = keys.get(slot);
+			if (claimed == key || (claimed == EMPTY && (keys.compareAndSet(slot, EMPTY, key) || keys.get(slot) == key))) {
+				return slot;
+			}
+			slot = (slot + 1) & (CAPACITY - 1);
+		}
+		return -1;
+	}
+
+}
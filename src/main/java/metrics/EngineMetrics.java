@@ -0,0 +1,262 @@
+/**
+ * --------------------------------------------------------------------------------
+ * EngineMetrics.java
+ * --------------------------------------------------------------------------------
+ * EngineMetrics are the metrics of a run of the engine, recorded by every processing mode:
+ * --------------------------------------------------------------------------------
+ * 1. Latency histograms of the stages of a transaction: parse, validate, convert and persist,
+ *    and of writing every wallet to disk (checkpoint).
+ * 2. Counters of transactions, valid and rejected, and of rejections by reason.
+ * 3. Counters of conversions and volume by pair of currencies.
+ * --------------------------------------------------------------------------------
+ * The latency of a conversion includes recording its wallet update, which is also persist.
+ * Recording never allocates nor takes a lock, so metrics are always on.
+ * The metrics are published as an MXBean, and summarised in the log at shutdown.
+ * --------------------------------------------------------------------------------
+ */
+
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import validation.RejectionReason;
+
+public class EngineMetrics implements EngineMetricsMXBean {
+
+	/**
+	 * Name of the MXBean.
+	 */
+	public static final String OBJECT_NAME = "fxconvert:type=EngineMetrics";
+
+	/**
+	 * Number of pairs of currencies in the summary, by number of conversions.
+	 */
+	private static final int PAIRS_IN_SUMMARY = 10;
+
+	/**
+	 * Latencies of every stage.
+	 */
+	private final LatencyHistogram parse = new LatencyHistogram("parse");
+	private final LatencyHistogram validate = new LatencyHistogram("validate");
+	private final LatencyHistogram convert = new LatencyHistogram("convert");
+	private final LatencyHistogram persist = new LatencyHistogram("persist");
+	private final LatencyHistogram checkpoint = new LatencyHistogram("checkpoint");
+
+	/**
+	 * Number of transactions with every outcome, indexed by the ordinal of their RejectionReason (NONE for valid ones).
+	 */
+	private final AtomicLongArray outcomes = new AtomicLongArray(RejectionReason.values().length);
+
+	/**
+	 * Conversions and volume by pair of currencies.
+	 */
+	private final CurrencyPairCounters currencyPairs = new CurrencyPairCounters();
+
+	/**
+	 * Time the metrics started.
+	 */
+	private final long startNanos = System.nanoTime();
+
+	/**
+	 * Records the outcome of a processed transaction, and its pair of currencies if it is valid.
+	 *
+	 * @param rejection 	The reason the transaction was rejected, or NONE.
+	 * @param fromCurrency 	The currency converted from.
+	 * @param toCurrency 	The currency converted to.
+	 * @param amount 		The amount of the fromCurrency converted.
+	 */
+	public void recordsOutcome(RejectionReason rejection, String fromCurrency, String toCurrency, double amount) {
+		outcomes.incrementAndGet(rejection.ordinal());
+		if (rejection == RejectionReason.NONE) {
+			currencyPairs.counts(fromCurrency, toCurrency, amount);
+		}
+	}
+
+	/**
+	 * Retrieves the histogram of the latencies of parsing a line.
+	 *
+	 * @return the histogram, to record latencies in.
+	 */
+	public LatencyHistogram getParse() {
+		return parse;
+	}
+
+	/**
+	 * Retrieves the histogram of the latencies of validating a transaction.
+	 *
+	 * @return the histogram, to record latencies in.
+	 */
+	public LatencyHistogram getValidate() {
+		return validate;
+	}
+
+	/**
+	 * Retrieves the histogram of the latencies of converting a valid transaction.
+	 *
+	 * @return the histogram, to record latencies in.
+	 */
+	public LatencyHistogram getConvert() {
+		return convert;
+	}
+
+	/**
+	 * Retrieves the histogram of the latencies of recording a wallet update.
+	 *
+	 * @return the histogram, to record latencies in.
+	 */
+	public LatencyHistogram getPersist() {
+		return persist;
+	}
+
+	/**
+	 * Retrieves the histogram of the latencies of writing every wallet to disk.
+	 *
+	 * @return the histogram, to record latencies in.
+	 */
+	public LatencyHistogram getCheckpoint() {
+		return checkpoint;
+	}
+
+	@Override
+	public LatencySummary getParseLatency() {
+		return parse.summarises();
+	}
+
+	@Override
+	public LatencySummary getValidateLatency() {
+		return validate.summarises();
+	}
+
+	@Override
+	public LatencySummary getConvertLatency() {
+		return convert.summarises();
+	}
+
+	@Override
+	public LatencySummary getPersistLatency() {
+		return persist.summarises();
+	}
+
+	@Override
+	public LatencySummary getCheckpointLatency() {
+		return checkpoint.summarises();
+	}
+
+	@Override
+	public long getTransactions() {
+		long transactions = 0;
+		for (int outcome = 0; outcome < outcomes.length(); outcome++) {
+			transactions += outcomes.get(outcome);
+		}
+		return transactions;
+	}
+
+	@Override
+	public long getValidTransactions() {
+		return outcomes.get(RejectionReason.NONE.ordinal());
+	}
+
+	@Override
+	public long getRejectedTransactions() {
+		return getTransactions() - getValidTransactions();
+	}
+
+	@Override
+	public double getTransactionsPerSecond() {
+		long elapsedNanos = System.nanoTime() - startNanos;
+		return elapsedNanos <= 0 ? 0 : getTransactions() * 1e9 / elapsedNanos;
+	}
+
+	@Override
+	public Map <String, Long> getRejections() {
+		Map <String, Long> rejections = new LinkedHashMap <> ();
+		for (RejectionReason reason : RejectionReason.values()) {
+			if (reason != RejectionReason.NONE) {
+				rejections.put(reason.getExceptionName(), outcomes.get(reason.ordinal()));
+			}
+		}
+		return rejections;
+	}
+
+	@Override
+	public Map <String, Long> getCurrencyPairConversions() {
+		return currencyPairs.getConversions();
+	}
+
+	@Override
+	public Map <String, Double> getCurrencyPairVolumes() {
+		return currencyPairs.getVolumes();
+	}
+
+	/**
+	 * Publishes the metrics as an MXBean of the platform MBean server, replacing the metrics of an earlier run.
+	 *
+	 * @throws JMException 	The exception thrown if the MXBean cannot be registered.
+	 */
+	public void registers() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		try {
+			server.registerMBean(this, name);
+		} catch (InstanceAlreadyExistsException e) {
+			server.unregisterMBean(name);
+			server.registerMBean(this, name);
+		}
+	}
+
+	/**
+	 * Removes the metrics from the platform MBean server, if they are the metrics published.
+	 *
+	 * @throws JMException 	The exception thrown if the MXBean cannot be unregistered.
+	 */
+	public void unregisters() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		try {
+			server.unregisterMBean(name);
+		} catch (InstanceNotFoundException e) {
+			// Already replaced or removed.
+		}
+	}
+
+	/**
+	 * Summarises the metrics, one line for the transactions, one for every stage,
+	 * one for the rejections, and one for the pairs of currencies with the most conversions.
+	 *
+	 * @return the lines of the summary.
+	 */
+	public List <String> summarises() {
+		List <String> summary = new ArrayList <> ();
+		summary.add(String.format("transactions=%d valid=%d rejected=%d throughput=%.0f/s",
+				getTransactions(), getValidTransactions(), getRejectedTransactions(), getTransactionsPerSecond()));
+		for (LatencyHistogram histogram : new LatencyHistogram[] { parse, validate, convert, persist, checkpoint }) {
+			summary.add(histogram.toString());
+		}
+
+		Map <String, Long> rejections = new LinkedHashMap <> ();
+		getRejections().forEach((exception, count) -> {
+			if (count > 0) {
+				rejections.put(exception, count);
+			}
+		});
+		summary.add("rejections: " + rejections);
+
+		List <Map.Entry <String, Long>> pairs = new ArrayList <> (getCurrencyPairConversions().entrySet());
+		pairs.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+		summary.add("top currency pairs: " + pairs.subList(0, Math.min(PAIRS_IN_SUMMARY, pairs.size())));
+		return summary;
+	}
+
+}
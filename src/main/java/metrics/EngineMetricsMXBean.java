@@ -0,0 +1,56 @@
+/**
+ * --------------------------------------------------------------------------------
+ * EngineMetricsMXBean.java
+ * --------------------------------------------------------------------------------
+ * The metrics of the engine published over JMX, e.g. to JConsole or VisualVM,
+ * under the name fxconvert:type=EngineMetrics.
+ * --------------------------------------------------------------------------------
+ */
+
+package metrics;
+
+import java.util.Map;
+
+public interface EngineMetricsMXBean {
+
+	/**
+	 * Latencies of parsing a line, validating a transaction, converting a valid transaction,
+	 * recording its wallet update, and writing every wallet to disk.
+	 */
+	LatencySummary getParseLatency();
+
+	LatencySummary getValidateLatency();
+
+	LatencySummary getConvertLatency();
+
+	LatencySummary getPersistLatency();
+
+	LatencySummary getCheckpointLatency();
+
+	/**
+	 * Number of transactions processed, valid and rejected.
+	 */
+	long getTransactions();
+
+	long getValidTransactions();
+
+	long getRejectedTransactions();
+
+	/**
+	 * Number of transactions processed per second since the metrics started.
+	 */
+	double getTransactionsPerSecond();
+
+	/**
+	 * Number of rejected transactions by the exception they stand for, e.g. UserNotFoundException.
+	 */
+	Map <String, Long> getRejections();
+
+	/**
+	 * Number of conversions, and volume converted from the FROM currency, by pair of currencies, e.g. eur/gbp.
+	 */
+	Map <String, Long> getCurrencyPairConversions();
+
+	Map <String, Double> getCurrencyPairVolumes();
+
+}
@@ -0,0 +1,211 @@
+/**
+ * --------------------------------------------------------------------------------
+ * LatencyHistogram.java
+ * --------------------------------------------------------------------------------
+ * A LatencyHistogram counts latencies in nanoseconds in log-linear buckets,
+ * so that recording a latency is a few shifts and one atomic increment, without allocating.
+ * --------------------------------------------------------------------------------
+ * 1. Latencies below 32 ns have a bucket each.
+ * 2. Every power of 2 above is split into 16 buckets of equal width,
+ *    so a percentile is at most 1/16 (6.25%) above the latency it stands for.
+ * --------------------------------------------------------------------------------
+ * Latencies can be recorded from many threads at once, and read from any thread.
+ * --------------------------------------------------------------------------------
+ */
+
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+
+	/**
+	 * Number of buckets of every power of 2, as bits, and latencies below which every latency has its own bucket.
+	 */
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+
+	/**
+	 * Number of buckets, up to the largest power of 2 of a long.
+	 */
+	private static final int BUCKETS = LINEAR_BUCKETS + (63 - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS;
+
+	/**
+	 * The name of the stage whose latencies are recorded.
+	 */
+	private final String name;
+
+	/**
+	 * Number of latencies recorded in every bucket.
+	 */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * Number, total and largest of the latencies recorded.
+	 */
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * Creation of an empty histogram.
+	 *
+	 * @param name 	The name of the stage whose latencies are recorded.
+	 */
+	public LatencyHistogram(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param nanos 	The latency, in nanoseconds. A negative latency is recorded as 0.
+	 */
+	public void records(long nanos) {
+		records(nanos, 1);
+	}
+
+	/**
+	 * Records the same latency many times, e.g. the latency of every line of a chunk parsed at once.
+	 *
+	 * @param nanos 	The latency, in nanoseconds. A negative latency is recorded as 0.
+	 * @param times 	The number of times the latency is recorded.
+	 */
+	public void records(long nanos, int times) {
+		if (times <= 0) {
+			return;
+		}
+		long latency = Math.max(nanos, 0);
+		counts.addAndGet(bucketOf(latency), times);
+		count.add(times);
+		totalNanos.add(latency * times);
+		long max = maxNanos.get();
+		while (latency > max && !maxNanos.compareAndSet(max, latency)) {
+			max = maxNanos.get();
+		}
+	}
+
+	/**
+	 * Retrieves the name of the stage whose latencies are recorded.
+	 *
+	 * @return the name of the stage.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Retrieves the number of latencies recorded.
+	 *
+	 * @return the number of latencies.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Retrieves the total of the latencies recorded.
+	 *
+	 * @return the total, in nanoseconds.
+	 */
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	/**
+	 * Retrieves the largest latency recorded.
+	 *
+	 * @return the largest latency, in nanoseconds, or 0 if none was recorded.
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * Retrieves a percentile of the latencies recorded.
+	 *
+	 * @param percentile 	The percentile, from 0 to 100.
+	 * @return 				the upper bound of the bucket of the percentile, in nanoseconds, at most the largest latency,
+	 * 						or 0 if none was recorded.
+	 */
+	public long getPercentileNanos(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			snapshot[bucket] = counts.get(bucket);
+			total += snapshot[bucket];
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100));
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += snapshot[bucket];
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(bucket), getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+
+	/**
+	 * Summarises the latencies recorded.
+	 *
+	 * @return the summary of the latencies.
+	 */
+	public LatencySummary summarises() {
+		long count = getCount();
+		return new LatencySummary(count,
+				count == 0 ? 0 : getTotalNanos() / count,
+				getPercentileNanos(50),
+				getPercentileNanos(90),
+				getPercentileNanos(99),
+				getPercentileNanos(99.9),
+				getMaxNanos());
+	}
+
+	/**
+	 * Retrieves the bucket of a latency.
+	 *
+	 * @param nanos 	The latency, in nanoseconds, 0 or more.
+	 * @return 			the index of the bucket.
+	 */
+	static int bucketOf(long nanos) {
+		if (nanos < LINEAR_BUCKETS) {
+			return (int) nanos;
+		}
+		int powerOf2 = 63 - Long.numberOfLeadingZeros(nanos);
+		int shift = powerOf2 - SUB_BUCKET_BITS;
+		int subBucket = (int) (nanos >>> shift) - SUB_BUCKETS;
+		return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Retrieves the largest latency of a bucket.
+	 *
+	 * @param bucket 	The index of the bucket.
+	 * @return 			the largest latency in the bucket, in nanoseconds.
+	 */
+	static long upperBoundOf(int bucket) {
+		if (bucket < LINEAR_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+		long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * Summary of the latencies, for logging.
+	 */
+	@Override
+	public String toString() {
+		return name + ": " + summarises();
+	}
+
+}
@@ -0,0 +1,127 @@
+/**
+ * --------------------------------------------------------------------------------
+ * LatencySummary.java
+ * --------------------------------------------------------------------------------
+ * A LatencySummary is an immutable summary of the latencies of a stage:
+ * their number, mean, percentiles and largest, in nanoseconds.
+ * --------------------------------------------------------------------------------
+ * It is published over JMX as composite data, with an item for every getter.
+ * --------------------------------------------------------------------------------
+ */
+
+package metrics;
+
+import java.beans.ConstructorProperties;
+
+public class LatencySummary {
+
+	/**
+	 * Number of latencies.
+	 */
+	private final long count;
+
+	/**
+	 * Mean, percentiles and largest of the latencies, in nanoseconds.
+	 */
+	private final long meanNanos;
+	private final long p50Nanos;
+	private final long p90Nanos;
+	private final long p99Nanos;
+	private final long p999Nanos;
+	private final long maxNanos;
+
+	/**
+	 * Creation of a summary of latencies.
+	 *
+	 * @param count 		The number of latencies.
+	 * @param meanNanos 	The mean latency.
+	 * @param p50Nanos 		The 50th percentile.
+	 * @param p90Nanos 		The 90th percentile.
+	 * @param p99Nanos 		The 99th percentile.
+	 * @param p999Nanos 	The 99.9th percentile.
+	 * @param maxNanos 		The largest latency.
+	 */
+	@ConstructorProperties({ "count", "meanNanos", "p50Nanos", "p90Nanos", "p99Nanos", "p999Nanos", "maxNanos" })
+	public LatencySummary(long count, long meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+		this.count = count;
+		this.meanNanos = meanNanos;
+		this.p50Nanos = p50Nanos;
+		this.p90Nanos = p90Nanos;
+		this.p99Nanos = p99Nanos;
+		this.p999Nanos = p999Nanos;
+		this.maxNanos = maxNanos;
+	}
+
+	/**
+	 * Retrieves the number of latencies.
+	 *
+	 * @return the number of latencies.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Retrieves the mean latency.
+	 *
+	 * @return the mean latency, in nanoseconds.
+	 */
+	public long getMeanNanos() {
+		return meanNanos;
+	}
+
+	/**
+	 * Retrieves the 50th percentile of the latencies.
+	 *
+	 * @return the 50th percentile, in nanoseconds.
+	 */
+	public long getP50Nanos() {
+		return p50Nanos;
+	}
+
+	/**
+	 * Retrieves the 90th percentile of the latencies.
+	 *
+	 * @return the 90th percentile, in nanoseconds.
+	 */
+	public long getP90Nanos() {
+		return p90Nanos;
+	}
+
+	/**
+	 * Retrieves the 99th percentile of the latencies.
+	 *
+	 * @return the 99th percentile, in nanoseconds.
+	 */
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+	/**
+	 * Retrieves the 99.9th percentile of the latencies.
+	 *
+	 * @return the 99.9th percentile, in nanoseconds.
+	 */
+	public long getP999Nanos() {
+		return p999Nanos;
+	}
+
+	/**
+	 * Retrieves the largest latency.
+	 *
+	 * @return the largest latency, in nanoseconds.
+	 */
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	/**
+	 * Summary of the latencies in microseconds, for logging.
+	 */
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.2fus p50=%.2fus p90=%.2fus p99=%.2fus p99.9=%.2fus max=%.2fus",
+				count, meanNanos / 1e3, p50Nanos / 1e3, p90Nanos / 1e3, p99Nanos / 1e3, p999Nanos / 1e3, maxNanos / 1e3);
+	}
+
+}
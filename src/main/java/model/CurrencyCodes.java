@@ -0,0 +1,140 @@
+/**
+ * ----------------------------------------------------------------------------------------
+ * CurrencyCodes.java
+ * ----------------------------------------------------------------------------------------
+ * Packs currency codes of 3 lowercase letters (e.g. usd) into 15 bits: 5 bits per letter.
+ * ----------------------------------------------------------------------------------------
+ * A packed code is a small int that can index an array directly,
+ * so neither the rate table nor a wallet has to hash or store the String of a code.
+ * ----------------------------------------------------------------------------------------
+ * Any other code (e.g. USDT, found in users.json) is registered once and given
+ * a code of 16 bits above every packed code, so a wallet can hold any currency by code.
+ * ----------------------------------------------------------------------------------------
+ */
+
+package model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class CurrencyCodes {
+
+	/**
+	 * Number of packed codes, and the value returned for a code that cannot be packed.
+	 */
+	public static final int PACKED_CODES = 1 << 15;
+	public static final int UNPACKABLE = -1;
+
+	/**
+	 * Number of codes of 16 bits: packed codes, then the codes of registered currencies.
+	 */
+	public static final int CODES_OF_16_BITS = 1 << 16;
+
+	/**
+	 * The String of every code that has been unpacked or registered, so every code has a single String.
+	 */
+	private static final String[] CODES = new String[CODES_OF_16_BITS];
+
+	/**
+	 * The code of every registered currency whose code cannot be packed, and the next code to register.
+	 */
+	private static final Map <String, Integer> REGISTERED_CODES = new ConcurrentHashMap <> ();
+	private static int nextRegisteredCode = PACKED_CODES;
+
+	/**
+	 * Static methods only.
+	 */
+	private CurrencyCodes() {
+
+	}
+
+	/**
+	 * Packs a currency code of 3 lowercase letters into 15 bits.
+	 *
+	 * @param code 	The currency code.
+	 * @return 		the packed code, or UNPACKABLE if the code is not 3 lowercase letters.
+	 */
+	public static int packs(String code) {
+		if (code.length() != 3) {
+			return UNPACKABLE;
+		}
+		int packedCode = 0;
+		for (int i = 0; i < 3; i++) {
+			int letter = code.charAt(i) - 'a';
+			if (letter < 0 || letter >= 26) {
+				return UNPACKABLE;
+			}
+			packedCode = (packedCode << 5) | letter;
+		}
+		return packedCode;
+	}
+
+	/**
+	 * Retrieves the code of 16 bits of a currency: its packed code, or its registered code.
+	 *
+	 * @param code 	The currency code.
+	 * @return 		the code of 16 bits, or UNPACKABLE if the code cannot be packed and has not been registered.
+	 */
+	public static int codeOf(String code) {
+		int packedCode = packs(code);
+		if (packedCode != UNPACKABLE) {
+			return packedCode;
+		}
+		Integer registeredCode = REGISTERED_CODES.get(code);
+		return registeredCode == null ? UNPACKABLE : registeredCode;
+	}
+
+	/**
+	 * Retrieves the code of 16 bits of a currency, registering the currency if its code cannot be packed.
+	 *
+	 * @param code 						The currency code.
+	 * @return 							the code of 16 bits.
+	 * @throws IllegalStateException 	The exception thrown if every code of 16 bits is taken.
+	 */
+	public static int registers(String code) {
+		int codeOf16Bits = codeOf(code);
+		return codeOf16Bits != UNPACKABLE ? codeOf16Bits : registersOther(code);
+	}
+
+	/**
+	 * Registers a currency whose code cannot be packed.
+	 *
+	 * @param code 						The currency code.
+	 * @return 							the registered code.
+	 * @throws IllegalStateException 	The exception thrown if every code of 16 bits is taken.
+	 */
+	private static synchronized int registersOther(String code) {
+		Integer registeredCode = REGISTERED_CODES.get(code);
+		if (registeredCode != null) {
+			return registeredCode;
+		}
+		if (nextRegisteredCode == CODES_OF_16_BITS) {
+			throw new IllegalStateException("Too many currency codes that are not 3 lowercase letters: " + code);
+		}
+		// Publish the String before the code, so that a thread given the code finds its String.
+		CODES[nextRegisteredCode] = code;
+		REGISTERED_CODES.put(code, nextRegisteredCode);
+		return nextRegisteredCode++;
+	}
+
+	/**
+	 * Unpacks a code of 16 bits into its currency code.
+	 *
+	 * @param packedCode 	The packed code, or the registered code.
+	 * @return 				the currency code, the same String for every call.
+	 */
+	public static String unpacks(int packedCode) {
+		String code = CODES[packedCode];
+		if (code == null && packedCode < PACKED_CODES) {
+			code = new String(new char[] {
+					(char) ('a' + (packedCode >>> 10)),
+					(char) ('a' + ((packedCode >>> 5) & 31)),
+					(char) ('a' + (packedCode & 31))
+			});
+			// A race only creates an equal String twice.
+			CODES[packedCode] = code;
+		}
+		return code;
+	}
+
+}
@@ -0,0 +1,289 @@
+/**
+ * ----------------------------------------------------------------------------------------
+ * MinorUnits.java
+ * ----------------------------------------------------------------------------------------
+ * MinorUnits converts the amounts of a currency to and from a whole number of its minor units
+ * (e.g. cents), which is how every balance of a wallet is held.
+ * ----------------------------------------------------------------------------------------
+ * 1. Every currency has a scale (the number of decimals of its minor unit) and a rounding mode.
+ *    By default it is 2 decimals rounded HALF_EVEN, which is what DecimalFormat("#.##") did.
+ * 2. An amount is rounded HALF_EVEN on the exact decimal value of the double, as DecimalFormat does,
+ *    without formatting it to a String and parsing it back. Any other rounding mode is applied
+ *    to the shortest decimal of the double, e.g. 0.29 rather than 0.28999..., so that an amount
+ *    of two decimals is never moved by a FLOOR, a CEILING or a tie.
+ * 3. Balances are then added and subtracted as longs, so they never drift.
+ * ----------------------------------------------------------------------------------------
+ * The minor units of a currency are configured before users.json is loaded,
+ * since every balance in a wallet is held in the minor units of its currency.
+ * ----------------------------------------------------------------------------------------
+ */
+
+package model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+public final class MinorUnits {
+
+	/**
+	 * Minor units of every currency that has not been configured: 2 decimals, rounded HALF_EVEN.
+	 */
+	public static final MinorUnits DEFAULT = new MinorUnits(2, RoundingMode.HALF_EVEN);
+
+	/**
+	 * Largest number of decimals of a minor unit, so that 10^scale is an exact double.
+	 */
+	public static final int MAX_SCALE = 9;
+
+	/**
+	 * Above this magnitude, every double is a whole number of minor units.
+	 */
+	private static final double WHOLE = 0x1p52;
+
+	/**
+	 * Below this magnitude, a long holds every whole number.
+	 */
+	private static final double LONG_RANGE = 0x1p63;
+
+	/**
+	 * The minor units of every currency, indexed by its code of 16 bits (see CurrencyCodes).
+	 */
+	private static final MinorUnits[] BY_CODE = new MinorUnits[CurrencyCodes.CODES_OF_16_BITS];
+
+	static {
+		Arrays.fill(BY_CODE, DEFAULT);
+	}
+
+	/**
+	 * Number of decimals of the minor unit, 10^scale, and the rounding mode.
+	 */
+	private final int scale;
+	private final double factor;
+	private final RoundingMode roundingMode;
+
+	/**
+	 * Creation of the minor units of a currency.
+	 *
+	 * @param scale 		The number of decimals of the minor unit, between 0 and MAX_SCALE.
+	 * @param roundingMode 	The rounding mode of an amount to a whole number of minor units.
+	 */
+	public MinorUnits(int scale, RoundingMode roundingMode) {
+		if (scale < 0 || scale > MAX_SCALE) {
+			throw new IllegalArgumentException("The scale of minor units must be between 0 and " + MAX_SCALE + ": " + scale);
+		}
+		this.scale = scale;
+		this.factor = Math.pow(10, scale);
+		this.roundingMode = roundingMode;
+	}
+
+	/**
+	 * Retrieves the minor units of a currency.
+	 *
+	 * @param currency 	The currency code.
+	 * @return 			the minor units of the currency.
+	 */
+	public static MinorUnits of(String currency) {
+		int code = CurrencyCodes.codeOf(currency);
+		return code == CurrencyCodes.UNPACKABLE ? DEFAULT : BY_CODE[code];
+	}
+
+	/**
+	 * Retrieves the minor units of a currency.
+	 *
+	 * @param code 	The code of 16 bits of the currency.
+	 * @return 		the minor units of the currency.
+	 */
+	static MinorUnits of(int code) {
+		return BY_CODE[code];
+	}
+
+	/**
+	 * Configures the minor units of a currency.
+	 *
+	 * @param currency 	The currency code.
+	 * @param units 	The minor units of the currency.
+	 */
+	public static void configures(String currency, MinorUnits units) {
+		BY_CODE[CurrencyCodes.registers(currency)] = units;
+	}
+
+	/**
+	 * Configures the minor units of every currency in a list of the form
+	 * {@code jpy=0,krw=0:HALF_UP}, i.e. currency=scale, optionally followed by :roundingMode.
+	 *
+	 * @param specification 				The list, which may be empty.
+	 * @throws IllegalArgumentException 	The exception thrown if the list is malformed.
+	 */
+	public static void configures(String specification) {
+		for (String entry : specification.split(",")) {
+			if (entry.isBlank()) {
+				continue;
+			}
+			String[] currencyAndUnits = entry.trim().split("=");
+			if (currencyAndUnits.length != 2) {
+				throw new IllegalArgumentException("Minor units must be given as currency=scale[:roundingMode]: " + entry);
+			}
+			String[] scaleAndMode = currencyAndUnits[1].split(":");
+			RoundingMode roundingMode = scaleAndMode.length > 1 ? RoundingMode.valueOf(scaleAndMode[1]) : DEFAULT.roundingMode;
+			configures(currencyAndUnits[0], new MinorUnits(Integer.parseInt(scaleAndMode[0]), roundingMode));
+		}
+	}
+
+	/**
+	 * Retrieves the number of decimals of the minor unit.
+	 *
+	 * @return the scale.
+	 */
+	public int getScale() {
+		return scale;
+	}
+
+	/**
+	 * Retrieves the rounding mode of an amount to a whole number of minor units.
+	 *
+	 * @return the rounding mode.
+	 */
+	public RoundingMode getRoundingMode() {
+		return roundingMode;
+	}
+
+	/**
+	 * Rounds an amount to a whole number of minor units, on the exact decimal value of the amount
+	 * if the rounding mode is HALF_EVEN, and on its shortest decimal otherwise.
+	 *
+	 * @param amount 				The amount.
+	 * @return 						the number of minor units.
+	 * @throws ArithmeticException 	The exception thrown if the amount is not finite, does not fit in a long,
+	 * 								or has to be rounded while the rounding mode is UNNECESSARY.
+	 */
+	public long toMinor(double amount) {
+		double scaled = amount * factor;
+		if (!(Math.abs(scaled) < LONG_RANGE)) {
+			throw new ArithmeticException("The amount does not fit in minor units: " + amount);
+		}
+		if (roundingMode != RoundingMode.HALF_EVEN) {
+			return BigDecimal.valueOf(amount).setScale(scale, roundingMode).unscaledValue().longValueExact();
+		}
+		if (Math.abs(scaled) >= WHOLE) {
+			return (long) scaled;
+		}
+
+		// The exact product is scaled + error, since fma rounds only once.
+		double error = Math.fma(amount, factor, -scaled);
+		double floor = Math.floor(scaled);
+		double fraction = scaled - floor;
+		if (fraction == 0 && error < 0) {
+			// The exact product is just below a whole number, so its fraction is just below 1.
+			return rounds((long) floor - 1, 1, false);
+		}
+		if (fraction == 0 && error == 0) {
+			return (long) floor;
+		}
+		// The fraction is above 0, below 1, and at least twice the error away from either, so only its half matters.
+		double aboveHalf = fraction - 0.5;
+		int comparedToHalf = fraction < 0.25 || aboveHalf < -error ? -1 : (aboveHalf > -error ? 1 : 0);
+		return rounds((long) floor, comparedToHalf, comparedToHalf == 0);
+	}
+
+	/**
+	 * Checks that an amount is finite and fits in a long once converted to minor units,
+	 * i.e. that toMinor does not throw for it because of its size.
+	 *
+	 * @param amount 	The amount.
+	 * @return 			true if the amount fits in minor units, false otherwise.
+	 */
+	public boolean fits(double amount) {
+		return Math.abs(amount * factor) < LONG_RANGE;
+	}
+
+	/**
+	 * Converts a number of minor units to an amount.
+	 *
+	 * @param minor 	The number of minor units.
+	 * @return 			the closest double to the amount.
+	 */
+	public double toMajor(long minor) {
+		return minor / factor;
+	}
+
+	/**
+	 * Converts a number of minor units to an amount that toMinor rounds back to the same number of minor units,
+	 * whatever the rounding mode, e.g. to record a sum of rounded amounts.
+	 *
+	 * @param minor 	The number of minor units.
+	 * @return 			the closest double to the amount that rounds to the number of minor units.
+	 */
+	public double toRoundTrippingMajor(long minor) {
+		double amount = toMajor(minor);
+		long rounded = toMinor(amount);
+		while (rounded != minor) {
+			amount = rounded < minor ? Math.nextUp(amount) : Math.nextDown(amount);
+			rounded = toMinor(amount);
+		}
+		return amount;
+	}
+
+	/**
+	 * Formats an amount as DecimalFormat("#.##") does for 2 decimals: rounded to the minor unit,
+	 * without grouping, and without trailing zeros in the decimals.
+	 *
+	 * @param amount 	The amount.
+	 * @return 			the formatted amount.
+	 */
+	public String formats(double amount) {
+		long minor = toMinor(amount);
+		// DecimalFormat keeps the sign of a negative amount rounded to 0.
+		return minor == 0 && amount < 0 ? "-0" : formatsMinor(minor);
+	}
+
+	/**
+	 * Formats a number of minor units as DecimalFormat("#.##") does for 2 decimals.
+	 *
+	 * @param minor 	The number of minor units.
+	 * @return 			the formatted amount.
+	 */
+	public String formatsMinor(long minor) {
+		StringBuilder formatted = new StringBuilder(24);
+		if (minor < 0) {
+			formatted.append('-');
+		}
+		long magnitude = Math.abs(minor);
+		long unit = (long) factor;
+		formatted.append(magnitude / unit);
+		long decimals = magnitude % unit;
+		int digits = scale;
+		while (decimals != 0 && decimals % 10 == 0) {
+			decimals /= 10;
+			digits--;
+		}
+		if (decimals != 0) {
+			formatted.append('.');
+			String decimalDigits = Long.toString(decimals);
+			for (int i = decimalDigits.length(); i < digits; i++) {
+				formatted.append('0');
+			}
+			formatted.append(decimalDigits);
+		}
+		return formatted.toString();
+	}
+
+	@Override
+	public String toString() {
+		return scale + ":" + roundingMode;
+	}
+
+	/**
+	 * Rounds HALF_EVEN to one of the two whole numbers of minor units around the exact product.
+	 *
+	 * @param floor 			The whole number below the exact product.
+	 * @param comparedToHalf 	The sign of the fraction of the exact product above floor minus 0.5.
+	 * @param tie 				True if the fraction is exactly 0.5.
+	 * @return 					floor or floor + 1.
+	 */
+	private static long rounds(long floor, int comparedToHalf, boolean tie) {
+		boolean up = tie ? (floor & 1) != 0 : comparedToHalf > 0;
+		return up ? floor + 1 : floor;
+	}
+
+}
@@ -0,0 +1,205 @@
+/**
+ * ----------------------------------------------------------------------------------------
+ * RateTable.java
+ * ----------------------------------------------------------------------------------------
+ * A RateTable holds the rate of every pair of currencies in fx_rates.json, including USD,
+ * so that a conversion is a single multiplication by a precomputed cross rate.
+ * ----------------------------------------------------------------------------------------
+ * 1. Every currency gets a dense id when fx_rates.json is loaded: USD is 0,
+ *    and every other currency follows in alphabetical order.
+ * 2. The cross rates are kept in a flat matrix, where the rate from the currency with id f
+ *    to the currency with id t is at index f * size + t.
+ * 3. A currency code of 3 lowercase letters is packed into 15 bits (see CurrencyCodes), which index
+ *    the id of the currency directly, so finding an id does not hash the code.
+ * ----------------------------------------------------------------------------------------
+ * A RateTable is immutable, so it is a consistent snapshot of fx_rates.json:
+ * a new version of fx_rates.json is a new RateTable with the next version number,
+ * published to every thread by replacing a single reference.
+ * ----------------------------------------------------------------------------------------
+ * Only the rates are kept here. The descriptive fields of a currency (acronym, alphaCode,
+ * numericCode, name, date) stay in its Currency, which conversions never read.
+ * ----------------------------------------------------------------------------------------
+ */
+
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RateTable {
+
+	/**
+	 * Code of the currency every rate in fx_rates.json is quoted against.
+	 */
+	public static final String USD = "usd";
+
+	/**
+	 * Id returned for a currency that is not in the table.
+	 */
+	public static final int UNKNOWN = -1;
+
+	/**
+	 * The code of every id, and the id of every packed code (or UNKNOWN).
+	 */
+	private final String[] codes;
+	private final short[] idsByPackedCode;
+
+	/**
+	 * Ids of codes that are not 3 lowercase letters, which cannot be packed.
+	 */
+	private final Map <String, Integer> idsByOtherCode = new HashMap <> ();
+
+	/**
+	 * The cross rate of every pair of currencies, row by row.
+	 */
+	private final double[] crossRates;
+
+	/**
+	 * The version of fx_rates.json the table was built from, which increases with every load.
+	 */
+	private final long version;
+
+	/**
+	 * Creation of a table of version 0 from the currencies of fx_rates.json.
+	 *
+	 * @param currencies The currencies, by code, each with its rate from USD and its inverse rate to USD.
+	 */
+	public RateTable(Map <String, Currency> currencies) {
+		this(currencies, 0);
+	}
+
+	/**
+	 * Creation of a table from the currencies of a version of fx_rates.json.
+	 *
+	 * @param currencies 	The currencies, by code, each with its rate from USD and its inverse rate to USD.
+	 * @param version 		The version of fx_rates.json.
+	 */
+	public RateTable(Map <String, Currency> currencies, long version) {
+		this.version = version;
+		List <String> sortedCodes = new ArrayList <> (currencies.keySet());
+		sortedCodes.remove(USD);
+		Collections.sort(sortedCodes);
+		sortedCodes.add(0, USD);
+
+		int size = sortedCodes.size();
+		this.codes = sortedCodes.toArray(new String[size]);
+		this.idsByPackedCode = new short[CurrencyCodes.PACKED_CODES];
+		Arrays.fill(idsByPackedCode, (short) UNKNOWN);
+
+		// Rates from USD, and inverse rates to USD, of every id. USD converts to itself at 1.
+		double[] rates = new double[size];
+		double[] inverseRates = new double[size];
+		for (int id = 0; id < size; id++) {
+			int packedCode = CurrencyCodes.packs(codes[id]);
+			if (packedCode == CurrencyCodes.UNPACKABLE) {
+				idsByOtherCode.put(codes[id], id);
+			} else {
+				idsByPackedCode[packedCode] = (short) id;
+			}
+			Currency currency = currencies.get(codes[id]);
+			rates[id] = id == 0 && currency == null ? 1 : currency.getRate();
+			inverseRates[id] = id == 0 && currency == null ? 1 : currency.getInverseRate();
+		}
+
+		/*
+		 * Converting from a currency to USD multiplies by its inverse rate,
+		 * and converting from USD to a currency multiplies by its rate,
+		 * so the rate of a pair goes through USD once, here, instead of on every conversion.
+		 */
+		this.crossRates = new double[size * size];
+		for (int from = 0; from < size; from++) {
+			for (int to = 0; to < size; to++) {
+				if (from == to) {
+					crossRates[from * size + to] = 1;
+				} else if (to == 0) {
+					crossRates[from * size + to] = inverseRates[from];
+				} else if (from == 0) {
+					crossRates[from * size + to] = rates[to];
+				} else {
+					crossRates[from * size + to] = inverseRates[from] * rates[to];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the version of fx_rates.json the table was built from.
+	 *
+	 * @return the version.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Retrieves the id of a currency.
+	 *
+	 * @param code 	The currency code, e.g. usd.
+	 * @return 		the id of the currency, or UNKNOWN if it is not in fx_rates.json.
+	 */
+	public int idOf(String code) {
+		int packedCode = CurrencyCodes.packs(code);
+		if (packedCode != CurrencyCodes.UNPACKABLE) {
+			return idsByPackedCode[packedCode];
+		}
+		Integer id = idsByOtherCode.get(code);
+		return id == null ? UNKNOWN : id;
+	}
+
+	/**
+	 * Checks if a currency is in the table.
+	 *
+	 * @param code 	The currency code.
+	 * @return 		true if the currency is USD or in fx_rates.json, false otherwise.
+	 */
+	public boolean contains(String code) {
+		return idOf(code) != UNKNOWN;
+	}
+
+	/**
+	 * Retrieves the code of a currency.
+	 *
+	 * @param id 	The id of the currency.
+	 * @return 		the currency code.
+	 */
+	public String codeOf(int id) {
+		return codes[id];
+	}
+
+	/**
+	 * Retrieves the number of currencies in the table, including USD.
+	 *
+	 * @return the number of currencies.
+	 */
+	public int size() {
+		return codes.length;
+	}
+
+	/**
+	 * Retrieves the rate from one currency to another.
+	 *
+	 * @param fromId 	The id of the currency to be converted from.
+	 * @param toId 		The id of the currency to be converted to.
+	 * @return 			the amount of the toCurrency for 1 of the fromCurrency.
+	 */
+	public double rateOf(int fromId, int toId) {
+		return crossRates[fromId * codes.length + toId];
+	}
+
+	/**
+	 * Converts an amount from one currency to another.
+	 *
+	 * @param fromId 	The id of the currency to be converted from.
+	 * @param toId 		The id of the currency to be converted to.
+	 * @param amount 	The amount of the fromCurrency.
+	 * @return 			the amount of the toCurrency.
+	 */
+	public double converts(int fromId, int toId, double amount) {
+		return amount * crossRates[fromId * codes.length + toId];
+	}
+
+}
@@ -0,0 +1,326 @@
+/**
+ * ----------------------------------------------------------------------------------------
+ * Transaction.java
+ * ----------------------------------------------------------------------------------------
+ * A Transaction is a line from transactions.txt on its way through
+ * parsing, validation and the currency conversion.
+ * ----------------------------------------------------------------------------------------
+ * It comprises of the line, its four components once parsed, its optional timestamp,
+ * the user involved once found, and the reason it was rejected, if it is invalid.
+ * A valid transaction also holds the snapshot of the rates it was validated and converted against.
+ * A transaction reused for many lines keeps one view of a user held in a WalletStore,
+ * pointed at the user of every line, so that finding the user allocates nothing.
+ * A rejection is a RejectionReason rather than an exception, so rejecting a transaction throws nothing.
+ * ----------------------------------------------------------------------------------------
+ */
+
+package model;
+
+import parser.Timestamps;
+import validation.RejectionReason;
+
+public class Transaction {
+
+	/**
+	 * The line from transactions.txt, or null if the transaction was parsed from bytes.
+	 */
+	private final String line;
+
+	/**
+	 * The four components of the transaction.
+	 */
+	private String username;
+	private String fromCurrency;
+	private String toCurrency;
+	private double amount;
+
+	/**
+	 * The time the transaction took place, in milliseconds since the epoch,
+	 * or Timestamps.NONE if it takes place at the current rates.
+	 */
+	private long timestamp = Timestamps.NONE;
+
+	/**
+	 * True if the amount could not be parsed to a double.
+	 * It is only reported once every check before it has passed.
+	 */
+	private boolean amountUnparsable;
+
+	/**
+	 * The user involved in the transaction, once found.
+	 */
+	private User user;
+
+	/**
+	 * The view of the user held in a WalletStore, kept when the transaction is cleared, or null.
+	 */
+	private User view;
+
+	/**
+	 * The snapshot of fx_rates.json the transaction is validated and converted against, once validated.
+	 */
+	private RateTable rates;
+
+	/**
+	 * The amount of the toCurrency the amount was converted to, once the transaction is applied.
+	 */
+	private double convertedAmount;
+
+	/**
+	 * The reason the transaction was rejected, or NONE if it is valid so far.
+	 */
+	private RejectionReason rejection = RejectionReason.NONE;
+
+	/**
+	 * Creation of a transaction from a line of transactions.txt.
+	 *
+	 * @param line The line from transactions.txt.
+	 */
+	public Transaction(String line) {
+		this.line = line;
+	}
+
+	/**
+	 * Creation of a transaction without a line, reused for every line parsed from bytes.
+	 */
+	public Transaction() {
+		this(null);
+	}
+
+	/**
+	 * Retrieves the line from transactions.txt.
+	 *
+	 * @return the line.
+	 */
+	public String getLine() {
+		return line;
+	}
+
+	/**
+	 * Clears every field, so that the transaction can be reused for the next line.
+	 */
+	public void clears() {
+		username = null;
+		fromCurrency = null;
+		toCurrency = null;
+		amount = 0;
+		timestamp = Timestamps.NONE;
+		amountUnparsable = false;
+		user = null;
+		rates = null;
+		convertedAmount = 0;
+		rejection = RejectionReason.NONE;
+	}
+
+	/**
+	 * Retrieves the name of the user.
+	 *
+	 * @return the name of the user, or null if the transaction has not been parsed.
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Retrieves the currency to be converted from.
+	 *
+	 * @return the currency to be converted from.
+	 */
+	public String getFromCurrency() {
+		return fromCurrency;
+	}
+
+	/**
+	 * Retrieves the currency to be converted to.
+	 *
+	 * @return the currency to be converted to.
+	 */
+	public String getToCurrency() {
+		return toCurrency;
+	}
+
+	/**
+	 * Retrieves the amount of the fromCurrency to be converted.
+	 *
+	 * @return the amount to be converted.
+	 */
+	public double getAmount() {
+		return amount;
+	}
+
+	/**
+	 * Retrieves the time the transaction took place.
+	 *
+	 * @return the milliseconds since the epoch, or Timestamps.NONE if the transaction has no timestamp.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Checks if the transaction is back-dated with a timestamp.
+	 *
+	 * @return true if the transaction has a timestamp, false otherwise.
+	 */
+	public boolean hasTimestamp() {
+		return timestamp != Timestamps.NONE;
+	}
+
+	/**
+	 * Checks if the amount could not be parsed.
+	 *
+	 * @return true if the amount could not be parsed to a double, false otherwise.
+	 */
+	public boolean isAmountUnparsable() {
+		return amountUnparsable;
+	}
+
+	/**
+	 * Retrieves the user involved in the transaction.
+	 *
+	 * @return the user, or null if the user has not been found.
+	 */
+	public User getUser() {
+		return user;
+	}
+
+	/**
+	 * Retrieves the snapshot of fx_rates.json the transaction is validated and converted against.
+	 *
+	 * @return the rates, or null if the transaction has not been validated.
+	 */
+	public RateTable getRates() {
+		return rates;
+	}
+
+	/**
+	 * Retrieves the version of fx_rates.json the transaction is validated and converted against.
+	 *
+	 * @return the version of the rates, or -1 if the transaction has not been validated.
+	 */
+	public long getRatesVersion() {
+		return rates == null ? -1 : rates.getVersion();
+	}
+
+	/**
+	 * Retrieves the amount of the toCurrency the amount was converted to.
+	 *
+	 * @return the converted amount, or 0 if the transaction has not been applied.
+	 */
+	public double getConvertedAmount() {
+		return convertedAmount;
+	}
+
+	/**
+	 * Retrieves the reason the transaction was rejected.
+	 *
+	 * @return the reason, or NONE if the transaction is valid so far.
+	 */
+	public RejectionReason getRejection() {
+		return rejection;
+	}
+
+	/**
+	 * Checks if the transaction has been rejected.
+	 *
+	 * @return true if the transaction has been rejected, false otherwise.
+	 */
+	public boolean isRejected() {
+		return rejection != RejectionReason.NONE;
+	}
+
+	/**
+	 * Sets the four components of the transaction.
+	 *
+	 * @param username 		The name of the user.
+	 * @param fromCurrency 	The currency to be converted from.
+	 * @param toCurrency 	The currency to be converted to.
+	 */
+	public void setComponents(String username, String fromCurrency, String toCurrency) {
+		this.username = username;
+		this.fromCurrency = fromCurrency;
+		this.toCurrency = toCurrency;
+	}
+
+	/**
+	 * Sets the amount of the fromCurrency to be converted.
+	 *
+	 * @param amount The amount to be converted.
+	 */
+	public void setAmount(double amount) {
+		this.amount = amount;
+	}
+
+	/**
+	 * Sets the time the transaction took place.
+	 *
+	 * @param timestamp The milliseconds since the epoch, or Timestamps.NONE.
+	 */
+	public void setTimestamp(long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Sets whether the amount could not be parsed.
+	 *
+	 * @param amountUnparsable True if the amount could not be parsed to a double.
+	 */
+	public void setAmountUnparsable(boolean amountUnparsable) {
+		this.amountUnparsable = amountUnparsable;
+	}
+
+	/**
+	 * Sets the user involved in the transaction.
+	 *
+	 * @param user The user.
+	 */
+	public void setUser(User user) {
+		this.user = user;
+	}
+
+	/**
+	 * Retrieves the view of a user held in a WalletStore, to be pointed at the user of the transaction.
+	 *
+	 * @return the view, or null if no user of the transaction has been found in a store.
+	 */
+	User getView() {
+		return view;
+	}
+
+	/**
+	 * Sets the view of a user held in a WalletStore, kept for every line the transaction is reused for.
+	 *
+	 * @param view 	The view.
+	 */
+	void setView(User view) {
+		this.view = view;
+	}
+
+	/**
+	 * Sets the snapshot of fx_rates.json the transaction is validated and converted against.
+	 *
+	 * @param rates The rates.
+	 */
+	public void setRates(RateTable rates) {
+		this.rates = rates;
+	}
+
+	/**
+	 * Sets the amount of the toCurrency the amount was converted to.
+	 *
+	 * @param convertedAmount The converted amount.
+	 */
+	public void setConvertedAmount(double convertedAmount) {
+		this.convertedAmount = convertedAmount;
+	}
+
+	/**
+	 * Rejects the transaction, unless the reason is NONE.
+	 *
+	 * @param rejection The reason the transaction was rejected.
+	 */
+	public void setRejection(RejectionReason rejection) {
+		this.rejection = rejection;
+	}
+
+}
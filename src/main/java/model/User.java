@@ -8,14 +8,22 @@
  * Example: A user has SGD100. Hence, the user's wallet SGD100 in this format: SGD-100,
  * where the key is the currency, and the value of the value of 100.
  * ----------------------------------------------------------------------------------------
+ * The wallet is kept compact: balances and currency codes packed into 16 bits
+ * (see CurrencyCodes) share a single long[] (see WalletHoldings) instead of a HashMap of boxed balances.
+ * Every balance is a whole number of the minor units of its currency (see MinorUnits),
+ * so updates are exact additions and subtractions of longs.
+ * It is still read and written by Jackson as a map of currency to value.
+ * ----------------------------------------------------------------------------------------
+ * A user may also be a view of a slot of a WalletStore, which holds its name and wallet off the heap.
+ * A view holds no state of its own, so views of the same slot see the same wallet.
+ * ----------------------------------------------------------------------------------------
  * @author Sheikh Umar
  * ----------------------------------------------------------------------------------------
  */
 
 package model;
 
-import java.text.DecimalFormat;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -28,7 +36,27 @@ public class User {
 	 * and a wallet to store at least 1 currency and it's value.
 	 */
 	private String name;
-	private Map <String, Double> wallet;
+	
+	/**
+	 * The balance of every currency in the wallet, or null if the user has no wallet.
+	 */
+	@JsonIgnore
+	private long[] holdings;
+	
+	/**
+	 * True if the user's wallet has been updated since users.json was last written.
+	 */
+	@JsonIgnore
+	private boolean dirty;
+	
+	/**
+	 * The store holding the user's name and wallet, and the index of the user in it, if the user is a view of a slot.
+	 */
+	@JsonIgnore
+	private WalletStore store;
+	
+	@JsonIgnore
+	private int slot;
 	
 	/**
 	 * Creation of a user based on user's name.
@@ -37,7 +65,56 @@ public class User {
 	 */
 	public User(String name) {
 		this.name = name;
-		this.wallet = new HashMap <String, Double> ();
+		this.holdings = WalletHoldings.EMPTY;
+	}
+	
+	/**
+	 * Creation of a user from the currencies of its wallet and their balances, e.g. as read from a wallet snapshot.
+	 * 
+	 * @param name 			The user's name.
+	 * @param packedCodes 	The packed code of every currency (see CurrencyCodes).
+	 * @param balances 		The balance of every currency, in its minor units.
+	 * @param size 			The number of currencies, or -1 if the user has no wallet.
+	 * @return 				the user.
+	 */
+	public static User restores(String name, int[] packedCodes, long[] balances, int size) {
+		User user = new User(name);
+		user.holdings = size < 0 ? null : WalletHoldings.of(packedCodes, balances, size);
+		return user;
+	}
+	
+	/**
+	 * Creation of a view of the slot of a user in a store.
+	 * 
+	 * @param store 	The store.
+	 * @param slot 		The index of the user in the store.
+	 * @param name 		The user's name, or null to read it from the store when it is first retrieved.
+	 */
+	User(WalletStore store, int slot, String name) {
+		this.store = store;
+		this.slot = slot;
+		this.name = name;
+	}
+	
+	/**
+	 * Points a view at the slot of another user in its store, instead of a new view being created.
+	 * 
+	 * @param slot 	The index of the user in the store.
+	 * @param name 	The user's name.
+	 */
+	void views(int slot, String name) {
+		this.slot = slot;
+		this.name = name;
+	}
+	
+	/**
+	 * Checks if the user is a view of the slot of a user in a store.
+	 * 
+	 * @param store The store.
+	 * @return 		true if the user is a view of a slot of the store, false otherwise.
+	 */
+	boolean isViewOf(WalletStore store) {
+		return this.store == store;
 	}
 	
 	/**
@@ -53,16 +130,28 @@ public class User {
 	 * @return the user's name.
 	 */
 	public String getName() {
+		if (this.name == null && this.store != null) {
+			this.name = this.store.nameOf(this.slot);
+		}
 		return this.name;
 	}
 
 	/**
 	 * Retrieves the user's wallet.
 	 * 
-	 * @return the user's wallet.
+	 * @return a copy of the user's wallet, in the order currencies were added, or null if the user has no wallet.
 	 */
 	public Map<String, Double> getWallet() {
-		return this.wallet;
+		int size = getsNumberOfCurrenciesInWallet();
+		if (size < 0) {
+			return null;
+		}
+		Map <String, Double> wallet = new LinkedHashMap <> ();
+		for (int i = 0; i < size; i++) {
+			int code = getsCurrencyCodeAt(i);
+			wallet.put(CurrencyCodes.unpacks(code), MinorUnits.of(code).toMajor(getsMinorUnitsAt(i)));
+		}
+		return wallet;
 	}
 	
 	/**
@@ -71,19 +160,31 @@ public class User {
 	 * @param name The user's name.
 	 */
 	public void setName(String name) {
-		
+		if (this.store != null) {
+			throw new UnsupportedOperationException("The name of a user in a wallet store cannot be changed.");
+		}
 		this.name = name;
 	}
 	
 	/**
 	 * Setters for Jackson Deserialisation.
 	 * 
-	 * @param wallet a {@code HashMap} where the key is a {@code String} representing the currency code,
+	 * @param wallet a {@code Map} where the key is a {@code String} representing the currency code,
 	 * and the value is a {@code Double} representing the amount of that currency.
 	 */
 	
-	public void setWallet(HashMap <String, Double> wallet) {
-		this.wallet = wallet;
+	public void setWallet(Map <String, Double> wallet) {
+		if (this.store != null) {
+			this.store.clears(this.slot, wallet != null);
+		} else {
+			this.holdings = wallet == null ? null : WalletHoldings.EMPTY;
+		}
+		if (wallet == null) {
+			return;
+		}
+		for (Map.Entry <String, Double> currency : wallet.entrySet()) {
+			puts(currency.getKey(), currency.getValue());
+		}
 	}
 
 	/**
@@ -94,7 +195,7 @@ public class User {
 	 * @param amount  	The amount of this currency to be reflected in the user's wallet
 	 */
 	public void addCurrencyToWallet(String currency, double amount) {
-		this.wallet.put(currency, amount);
+		puts(currency, amount);
 	}
 	
 	/**
@@ -105,9 +206,14 @@ public class User {
 	 * @param amountOfIncrease The amount to increase the value of the currency in the user's wallet.
 	 */
 	public void increaseCurrencyValueInWallet(String currency, double amountOfIncrease) {
-		DecimalFormat df = new DecimalFormat("#.##");
-		String newAmount = df.format(this.wallet.getOrDefault(currency, 0.0) + amountOfIncrease);
-		this.wallet.put(currency, Double.valueOf(newAmount));
+		int code = CurrencyCodes.registers(currency);
+		int index = indexOfCode(code);
+		long increase = MinorUnits.of(code).toMinor(amountOfIncrease);
+		if (index >= 0) {
+			setsMinorUnitsAt(index, Math.addExact(getsMinorUnitsAt(index), increase));
+		} else {
+			addsHolding(code, increase);
+		}
 	}
 
 	/**
@@ -118,11 +224,11 @@ public class User {
 	 * @param amountOfDecrease The amount to decrease the value of the currency in the user's wallet.
 	 */
 	public void decreaseCurrencyValueInWallet(String currency, double amountOfDecrease) {
-		DecimalFormat df = new DecimalFormat("#.##");
-		if (this.wallet.containsKey(currency)) {
-			double currentAmount = this.wallet.get(currency);
-			String newAmount = df.format(currentAmount - amountOfDecrease);
-			this.wallet.put(currency, Double.valueOf(newAmount));
+		int code = CurrencyCodes.codeOf(currency);
+		int index = indexOfCode(code);
+		if (index >= 0) {
+			long decrease = MinorUnits.of(code).toMinor(amountOfDecrease);
+			setsMinorUnitsAt(index, Math.subtractExact(getsMinorUnitsAt(index), decrease));
 		}
 	}
 	
@@ -134,7 +240,7 @@ public class User {
 	 * @return True if the value of the currency in the user's wallet is 0, false otherwise.
 	 */
 	public boolean isValueOfCurrencyInWalletEqualToZero(String currency) {
-		return this.wallet.get(currency) == 0;
+		return getCurrencyValueInWallet(currency) == 0;
 	}
 	
 	/**
@@ -143,8 +249,8 @@ public class User {
 	 * @param currency The currency to remove from the user's wallet.
 	 */
 	public void removesCurrencyWithValueOfZero(String currency) {
-		if (this.wallet.get(currency) == 0) {
-			this.wallet.remove(currency);
+		if (getCurrencyValueInWallet(currency) == 0) {
+			removes(currency);
 		}
 	}
 	
@@ -156,9 +262,11 @@ public class User {
 	 * @thrown NullPointerException if currency is not in the user's wallet.
 	 */
 	public double getCurrencyValueInWallet(String currency) {
-		if (this.wallet.containsKey(currency)) {
-			return this.wallet.get(currency);
-		} throw new NullPointerException(currency + " is not in " + this.name + "'s wallet");
+		int code = CurrencyCodes.codeOf(currency);
+		int index = indexOfCode(code);
+		if (index >= 0) {
+			return MinorUnits.of(code).toMajor(getsMinorUnitsAt(index));
+		} throw new NullPointerException(currency + " is not in " + getName() + "'s wallet");
 	}
 
 	/**
@@ -168,8 +276,7 @@ public class User {
 	 * @return {@code true} if the currency exists in the user's wallet, {@code false} otherwise.
 	 */
 	public boolean isCurrencyInWallet(String currency) {
-		
-		return wallet.containsKey(currency);
+		return indexOfCode(CurrencyCodes.codeOf(currency)) >= 0;
 	}
 	
 	/**
@@ -184,6 +291,9 @@ public class User {
 							  String toCurrency,
 							  double amountToConvert,
 							  double amountToIncreaseToCurrencyBy) {
+		// 0. Mark the user for the next write of users.json
+		marksDirty(true);
+		
 		// 1. Increase value of toCurrency
 		this.increaseCurrencyValueInWallet(toCurrency, amountToIncreaseToCurrencyBy);
 		
@@ -196,6 +306,23 @@ public class User {
 		}
 	}
 	
+	/**
+	 * Checks if the user's wallet has been updated since users.json was last written.
+	 * 
+	 * @return true if the user has to be written to users.json, false otherwise.
+	 */
+	@JsonIgnore
+	public boolean isDirty() {
+		return this.store != null ? this.store.isDirty(this.slot) : this.dirty;
+	}
+	
+	/**
+	 * Marks the user as written to users.json.
+	 */
+	public void marksClean() {
+		marksDirty(false);
+	}
+	
 	/**
 	 * Retrieves number of currencies in a user's wallet.
 	 * 
@@ -203,7 +330,127 @@ public class User {
 	 */
 	@JsonIgnore
 	public int getsNumberOfCurrenciesInWallet() {
-		return this.wallet == null ? -1 : this.wallet.size();
+		if (this.store != null) {
+			return this.store.sizeOf(this.slot);
+		}
+		if (this.holdings == null) {
+			return -1;
+		}
+		return WalletHoldings.sizeOf(this.holdings);
+	}
+	
+	/**
+	 * Retrieves the packed code of the currency at an index of the user's wallet (see CurrencyCodes).
+	 * 
+	 * @param index The index of the currency, from 0 to the number of currencies in the wallet.
+	 * @return 		the packed code of the currency.
+	 */
+	public int getsCurrencyCodeAt(int index) {
+		if (this.store != null) {
+			return this.store.codeAt(this.slot, index);
+		}
+		return WalletHoldings.codeAt(this.holdings, WalletHoldings.sizeOf(this.holdings), index);
+	}
+	
+	/**
+	 * Retrieves the balance of the currency at an index of the user's wallet, in its minor units.
+	 * 
+	 * @param index The index of the currency, from 0 to the number of currencies in the wallet.
+	 * @return 		the balance of the currency, in minor units.
+	 */
+	public long getsMinorUnitsAt(int index) {
+		if (this.store != null) {
+			return this.store.balanceAt(this.slot, index);
+		}
+		return WalletHoldings.balanceAt(this.holdings, index);
+	}
+	
+	/**
+	 * Sets the value of a currency in the user's wallet, adding the currency if it is not in the wallet.
+	 * 
+	 * @param currency 	The currency.
+	 * @param amount 	The value of the currency.
+	 */
+	private void puts(String currency, double amount) {
+		int packedCode = CurrencyCodes.registers(currency);
+		int index = indexOfCode(packedCode);
+		long balance = MinorUnits.of(packedCode).toMinor(amount);
+		if (index >= 0) {
+			setsMinorUnitsAt(index, balance);
+		} else {
+			addsHolding(packedCode, balance);
+		}
+	}
+	
+	/**
+	 * Removes a currency from the user's wallet.
+	 * 
+	 * @param currency The currency.
+	 */
+	private void removes(String currency) {
+		int index = indexOfCode(CurrencyCodes.codeOf(currency));
+		if (index < 0) {
+			return;
+		}
+		if (this.store != null) {
+			this.store.removes(this.slot, index);
+		} else {
+			this.holdings = WalletHoldings.removes(this.holdings, index);
+		}
+	}
+	
+	/**
+	 * Retrieves the index of a currency in the user's wallet.
+	 * 
+	 * @param packedCode 	The packed code of the currency.
+	 * @return 				the index of the currency, or -1 if it is not in the wallet.
+	 */
+	private int indexOfCode(int packedCode) {
+		if (this.store != null) {
+			return this.store.indexOf(this.slot, packedCode);
+		}
+		return WalletHoldings.indexOf(this.holdings, packedCode);
+	}
+	
+	/**
+	 * Sets the balance of the currency at an index of the user's wallet.
+	 * 
+	 * @param index 	The index of the currency.
+	 * @param balance 	The balance of the currency, in minor units.
+	 */
+	private void setsMinorUnitsAt(int index, long balance) {
+		if (this.store != null) {
+			this.store.setsBalanceAt(this.slot, index, balance);
+		} else {
+			WalletHoldings.setsBalanceAt(this.holdings, index, balance);
+		}
+	}
+	
+	/**
+	 * Adds a currency at the end of the user's wallet.
+	 * 
+	 * @param packedCode 	The packed code of the currency.
+	 * @param balance 		The balance of the currency, in minor units.
+	 */
+	private void addsHolding(int packedCode, long balance) {
+		if (this.store != null) {
+			this.store.adds(this.slot, packedCode, balance);
+		} else {
+			this.holdings = WalletHoldings.adds(this.holdings, packedCode, balance);
+		}
+	}
+	
+	/**
+	 * Marks the user as updated, or as written to users.json.
+	 * 
+	 * @param dirty True if the user has been updated, false if it has been written.
+	 */
+	private void marksDirty(boolean dirty) {
+		if (this.store != null) {
+			this.store.marksDirty(this.slot, dirty);
+		} else {
+			this.dirty = dirty;
+		}
 	}
 	
 }
@@ -0,0 +1,220 @@
+/**
+ * ----------------------------------------------------------------------------------------
+ * UserRegistry.java
+ * ----------------------------------------------------------------------------------------
+ * A UserRegistry holds every user from users.json.
+ * ----------------------------------------------------------------------------------------
+ * Users are kept in the order they were added, which is the order they are serialized in,
+ * and are indexed by name, so that a user is found in O(1) instead of a scan of every user.
+ * A user with the same name as an earlier one is kept, and written back to users.json,
+ * but a lookup by name finds the first one, as the scan did.
+ * ----------------------------------------------------------------------------------------
+ * The registry is serialized by Jackson as the list of its users,
+ * so users.json keeps the same format.
+ * ----------------------------------------------------------------------------------------
+ * A registry may instead keep its users off the heap in a WalletStore,
+ * in which case every user retrieved from it is a view of the user's slot.
+ * ----------------------------------------------------------------------------------------
+ */
+
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class UserRegistry implements Iterable <User> {
+
+	/**
+	 * Every user, in the order they were added.
+	 */
+	private final List <User> users;
+
+	/**
+	 * The first user with every name, indexed by name.
+	 */
+	private final Map <String, User> usersByName;
+
+	/**
+	 * The store holding every user off the heap, instead of the list and the map, or null.
+	 */
+	private final WalletStore store;
+
+	/**
+	 * Creation of an empty registry.
+	 */
+	public UserRegistry() {
+		this.users = new ArrayList <> ();
+		this.usersByName = new HashMap <> ();
+		this.store = null;
+	}
+
+	/**
+	 * Creation of an empty registry, holding its users in a store.
+	 *
+	 * @param store The store, which must be empty.
+	 */
+	public UserRegistry(WalletStore store) {
+		if (store.size() > 0) {
+			throw new IllegalArgumentException("The wallet store of a new registry must be empty.");
+		}
+		this.users = null;
+		this.usersByName = null;
+		this.store = store;
+	}
+
+	/**
+	 * Creation of a registry holding the users, in the same order.
+	 * Also used by Jackson to deserialise users.json into a registry.
+	 *
+	 * @param users The users to add to the registry.
+	 */
+	@JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+	public UserRegistry(List <User> users) {
+		this.users = new ArrayList <> (users.size());
+		this.usersByName = new HashMap <> (Math.max(16, (int) (users.size() / 0.75f) + 1));
+		this.store = null;
+		for (User user : users) {
+			add(user);
+		}
+	}
+
+	/**
+	 * Bulk loads every user from users.json.
+	 *
+	 * @param usersFile 	The users.json file.
+	 * @param objectMapper 	The ObjectMapper used to read users.json.
+	 * @return 				a registry holding every user in users.json.
+	 * @throws IOException 	The exception thrown if there is an error reading or parsing users.json.
+	 */
+	public static UserRegistry load(File usersFile, ObjectMapper objectMapper) throws IOException {
+		return objectMapper.readValue(usersFile, UserRegistry.class);
+	}
+
+	/**
+	 * Adds a user to the end of the registry, and indexes it by name,
+	 * unless a user with the same name is already in the registry.
+	 * A registry holding its users in a store copies the wallet of the user to the store.
+	 *
+	 * @param user 	The user to add.
+	 * @return 		true if the user is found by its name, false if an earlier user with the same name is found instead.
+	 */
+	public boolean add(User user) {
+		if (store != null) {
+			return copies(user);
+		}
+		users.add(user);
+		return usersByName.putIfAbsent(user.getName(), user) == null;
+	}
+
+	/**
+	 * Retrieves a user by name.
+	 *
+	 * @param name 	The name of the user.
+	 * @return 		the user, or null if there is no user with that name.
+	 */
+	public User get(String name) {
+		if (store != null) {
+			int slot = store.indexOf(name);
+			return slot == WalletStore.NOT_FOUND ? null : new User(store, slot, name);
+		}
+		return usersByName.get(name);
+	}
+
+	/**
+	 * Retrieves the user of a transaction by name. A registry holding its users in a store
+	 * points the view kept by the transaction at the user, and only creates a view for the first line of the transaction.
+	 *
+	 * @param name 			The name of the user.
+	 * @param transaction 	The transaction, which keeps the view.
+	 * @return 				the user, or null if there is no user with that name.
+	 */
+	public User get(String name, Transaction transaction) {
+		if (store == null) {
+			return usersByName.get(name);
+		}
+		int slot = store.indexOf(name);
+		if (slot == WalletStore.NOT_FOUND) {
+			return null;
+		}
+		User view = transaction.getView();
+		if (view == null || !view.isViewOf(store)) {
+			view = new User(store, slot, name);
+			transaction.setView(view);
+		} else {
+			view.views(slot, name);
+		}
+		return view;
+	}
+
+	/**
+	 * Checks if a user with the name is in the registry.
+	 *
+	 * @param name 	The name of the user.
+	 * @return 		true if there is a user with that name, false otherwise.
+	 */
+	public boolean contains(String name) {
+		if (store != null) {
+			return store.indexOf(name) != WalletStore.NOT_FOUND;
+		}
+		return usersByName.containsKey(name);
+	}
+
+	/**
+	 * Retrieves the number of users in the registry.
+	 *
+	 * @return the number of users.
+	 */
+	public int size() {
+		return store != null ? store.size() : users.size();
+	}
+
+	/**
+	 * Retrieves every user, in the order they were added.
+	 * This is the value Jackson serialises for the registry.
+	 *
+	 * @return an unmodifiable view of the users.
+	 */
+	@JsonValue
+	public List <User> getUsers() {
+		if (store != null) {
+			return store.users();
+		}
+		return Collections.unmodifiableList(users);
+	}
+
+	/**
+	 * Iterates over every user, in the order they were added.
+	 */
+	@Override
+	public Iterator <User> iterator() {
+		return getUsers().iterator();
+	}
+
+	/**
+	 * Copies a user and its wallet to the end of the store.
+	 *
+	 * @param user 	The user to copy.
+	 * @return 		true if the user is found by its name, false if an earlier user with the same name is found instead.
+	 */
+	private boolean copies(User user) {
+		int slot = store.addsUser(user.getName());
+		int size = user.getsNumberOfCurrenciesInWallet();
+		store.clears(slot, size >= 0);
+		for (int i = 0; i < size; i++) {
+			store.adds(slot, user.getsCurrencyCodeAt(i), user.getsMinorUnitsAt(i));
+		}
+		store.marksDirty(slot, user.isDirty());
+		return store.isIndexed(slot);
+	}
+
+}
@@ -0,0 +1,183 @@
+/**
+ * ----------------------------------------------------------------------------------------
+ * WalletHoldings.java
+ * ----------------------------------------------------------------------------------------
+ * Operations on the holdings of a wallet packed into a single long[],
+ * which takes a fraction of the heap of a HashMap of boxed balances.
+ * ----------------------------------------------------------------------------------------
+ * For a wallet of n currencies, the array has n + ceil(n / 4) longs:
+ * 1. holdings[0 .. n) are the balance of every currency, in its minor units (see MinorUnits).
+ * 2. holdings[n ..) are the packed codes (see CurrencyCodes) of every currency,
+ *    4 codes of 16 bits per long, in the same order as the balances.
+ * The length of the array is always exactly that, so n is derived from it:
+ * n = floor(4 * length / 5).
+ * ----------------------------------------------------------------------------------------
+ * Arrays are never shared between wallets. Adding or removing a currency creates a new array.
+ * ----------------------------------------------------------------------------------------
+ */
+
+package model;
+
+final class WalletHoldings {
+
+	/**
+	 * Holdings of an empty wallet.
+	 */
+	static final long[] EMPTY = new long[0];
+
+	/**
+	 * Number of codes packed in every long, and the number of bits of every code.
+	 */
+	private static final int CODES_PER_LONG = 4;
+	private static final int BITS_PER_CODE = 16;
+
+	/**
+	 * Static methods only.
+	 */
+	private WalletHoldings() {
+
+	}
+
+	/**
+	 * Retrieves the number of currencies in the holdings.
+	 *
+	 * @param holdings 	The holdings, or null if the user has no wallet.
+	 * @return 			the number of currencies, 0 if the user has no wallet.
+	 */
+	static int sizeOf(long[] holdings) {
+		return holdings == null ? 0 : 4 * holdings.length / 5;
+	}
+
+	/**
+	 * Retrieves the index of a currency in the holdings.
+	 *
+	 * @param holdings 		The holdings.
+	 * @param packedCode 	The packed code of the currency.
+	 * @return 				the index of the currency, or -1 if it is not in the holdings.
+	 */
+	static int indexOf(long[] holdings, int packedCode) {
+		int size = sizeOf(holdings);
+		for (int i = 0; i < size; i++) {
+			if (codeAt(holdings, size, i) == packedCode) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Retrieves the packed code of the currency at an index.
+	 *
+	 * @param holdings 	The holdings.
+	 * @param size 		The number of currencies in the holdings.
+	 * @param index 	The index of the currency.
+	 * @return 			the packed code of the currency.
+	 */
+	static int codeAt(long[] holdings, int size, int index) {
+		return (int) (holdings[size + index / CODES_PER_LONG] >>> (BITS_PER_CODE * (index % CODES_PER_LONG))) & 0xFFFF;
+	}
+
+	/**
+	 * Retrieves the balance of the currency at an index.
+	 *
+	 * @param holdings 	The holdings.
+	 * @param index 	The index of the currency.
+	 * @return 			the balance of the currency, in minor units.
+	 */
+	static long balanceAt(long[] holdings, int index) {
+		return holdings[index];
+	}
+
+	/**
+	 * Sets the balance of the currency at an index.
+	 *
+	 * @param holdings 	The holdings.
+	 * @param index 	The index of the currency.
+	 * @param balance 	The balance of the currency, in minor units.
+	 */
+	static void setsBalanceAt(long[] holdings, int index, long balance) {
+		holdings[index] = balance;
+	}
+
+	/**
+	 * Adds a currency at the end of the holdings.
+	 *
+	 * @param holdings 		The holdings, without the currency.
+	 * @param packedCode 	The packed code of the currency.
+	 * @param balance 		The balance of the currency, in minor units.
+	 * @return 				new holdings, with the currency.
+	 */
+	static long[] adds(long[] holdings, int packedCode, long balance) {
+		int size = sizeOf(holdings);
+		long[] added = allocates(size + 1);
+		for (int i = 0; i < size; i++) {
+			added[i] = holdings[i];
+			setsCodeAt(added, size + 1, i, codeAt(holdings, size, i));
+		}
+		setsBalanceAt(added, size, balance);
+		setsCodeAt(added, size + 1, size, packedCode);
+		return added;
+	}
+
+	/**
+	 * Removes the currency at an index, keeping the order of the other currencies.
+	 *
+	 * @param holdings 	The holdings.
+	 * @param index 	The index of the currency.
+	 * @return 			new holdings, without the currency.
+	 */
+	static long[] removes(long[] holdings, int index) {
+		int size = sizeOf(holdings);
+		long[] removed = allocates(size - 1);
+		for (int i = 0, j = 0; i < size; i++) {
+			if (i != index) {
+				removed[j] = holdings[i];
+				setsCodeAt(removed, size - 1, j, codeAt(holdings, size, i));
+				j++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Creates the holdings of currencies and their balances, in the same order.
+	 *
+	 * @param packedCodes 	The packed code of every currency.
+	 * @param balances 		The balance of every currency, in minor units.
+	 * @param size 			The number of currencies.
+	 * @return 				new holdings, with every currency.
+	 */
+	static long[] of(int[] packedCodes, long[] balances, int size) {
+		long[] holdings = allocates(size);
+		for (int i = 0; i < size; i++) {
+			setsBalanceAt(holdings, i, balances[i]);
+			setsCodeAt(holdings, size, i, packedCodes[i]);
+		}
+		return holdings;
+	}
+
+	/**
+	 * Allocates the holdings of a number of currencies.
+	 *
+	 * @param size 	The number of currencies.
+	 * @return 		the holdings, with every balance and code at 0.
+	 */
+	private static long[] allocates(int size) {
+		return size == 0 ? EMPTY : new long[size + (size + CODES_PER_LONG - 1) / CODES_PER_LONG];
+	}
+
+	/**
+	 * Sets the packed code of the currency at an index.
+	 *
+	 * @param holdings 		The holdings.
+	 * @param size 			The number of currencies in the holdings.
+	 * @param index 		The index of the currency.
+	 * @param packedCode 	The packed code of the currency.
+	 */
+	private static void setsCodeAt(long[] holdings, int size, int index, int packedCode) {
+		int shift = BITS_PER_CODE * (index % CODES_PER_LONG);
+		int word = size + index / CODES_PER_LONG;
+		holdings[word] = (holdings[word] & ~(0xFFFFL << shift)) | ((long) packedCode << shift);
+	}
+
+}
@@ -0,0 +1,580 @@
+/**
+ * ----------------------------------------------------------------------------------------
+ * WalletStore.java
+ * ----------------------------------------------------------------------------------------
+ * A WalletStore holds the name and wallet of every user off the heap, in direct ByteBuffers,
+ * so that tens of millions of wallets leave the heap small, and the GC has nothing to trace.
+ * ----------------------------------------------------------------------------------------
+ * 1. Every user has a slot of 64 bytes, at the index of the user in the order users were added:
+ *    [int next][int size][long name offset][int name length][int name hash][int flags]
+ *    [3 x short currency code][pad][3 x long balance in minor units].
+ *    A wallet of more than 3 currencies continues in overflow slots of the same layout,
+ *    chained by next, so every slot has the same size.
+ * 2. Names are appended as UTF-16 chars to an arena, and indexed by an open-addressing table
+ *    of slot indices, also off the heap, so a user is found by name without allocating.
+ *    Only the first user with a name is indexed: a later user with the same name is kept,
+ *    so that it is written back to users.json, but is never found by name.
+ * 3. Buffers are allocated in chunks as the store grows, so no buffer is larger than 2 GB.
+ * ----------------------------------------------------------------------------------------
+ * Reads and updates of balances only read and write the buffers, and never allocate.
+ * Users are only added while users.json is loaded. Every user is updated by one thread at a time,
+ * and overflow slots are allocated under a lock.
+ * ----------------------------------------------------------------------------------------
+ */
+
+package model;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+public final class WalletStore {
+
+	/**
+	 * Index returned for a name that is not in the store.
+	 */
+	public static final int NOT_FOUND = -1;
+
+	/**
+	 * Number of currencies held by every slot.
+	 */
+	static final int CURRENCIES_PER_SLOT = 3;
+
+	/**
+	 * Size of a slot, and the offsets of its fields.
+	 */
+	private static final int SLOT_SHIFT = 6;
+	private static final int NEXT = 0;
+	private static final int SIZE = 4;
+	private static final int NAME_OFFSET = 8;
+	private static final int NAME_LENGTH = 16;
+	private static final int NAME_HASH = 20;
+	private static final int FLAGS = 24;
+	private static final int CODES = 28;
+	private static final int BALANCES = 40;
+
+	/**
+	 * Flags of a user: the user has a wallet (which may be empty), has been updated since users.json was last written,
+	 * and is in the index, being the first user with its name.
+	 */
+	private static final int HAS_WALLET = 1;
+	private static final int DIRTY = 2;
+	private static final int INDEXED = 4;
+
+	/**
+	 * Size of every chunk of 64 MB by default, and the largest number of chunks of a buffer,
+	 * which covers 2^31 slots, chars of names or index entries.
+	 */
+	private static final int DEFAULT_CHUNK_SHIFT = 26;
+	private static final int MAX_CHUNKS = 1 << 12;
+
+	/**
+	 * Smallest capacity of the index, which is grown when it is half full.
+	 */
+	private static final int MIN_INDEX_CAPACITY = 1 << 10;
+
+	/**
+	 * Size of every chunk of every buffer.
+	 */
+	private final int chunkShift;
+	private final int chunkMask;
+
+	/**
+	 * Slots of the users, overflow slots, the arena of names, and the index of names.
+	 */
+	private final ByteBuffer[] userSlots = new ByteBuffer[MAX_CHUNKS];
+	private final ByteBuffer[] overflowSlots = new ByteBuffer[MAX_CHUNKS];
+	private final ByteBuffer[] names = new ByteBuffer[MAX_CHUNKS];
+	private ByteBuffer[] index;
+
+	/**
+	 * Number of users, overflow slots, bytes of the arena of names, and the capacity of the index.
+	 */
+	private int size;
+	private int overflowSize;
+	private long namesSize;
+	private int indexCapacity;
+
+	/**
+	 * Creation of an empty store.
+	 */
+	public WalletStore() {
+		this(DEFAULT_CHUNK_SHIFT);
+	}
+
+	/**
+	 * Creation of an empty store, with chunks of a given size.
+	 *
+	 * @param chunkShift 	The log2 of the size of a chunk, e.g. 26 for 64 MB.
+	 */
+	WalletStore(int chunkShift) {
+		this.chunkShift = chunkShift;
+		this.chunkMask = (1 << chunkShift) - 1;
+		this.indexCapacity = MIN_INDEX_CAPACITY;
+		this.index = allocatesIndex(indexCapacity);
+	}
+
+	/**
+	 * Retrieves the number of users in the store.
+	 *
+	 * @return the number of users.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Retrieves the number of bytes held off the heap by the store.
+	 *
+	 * @return the capacity of every chunk allocated.
+	 */
+	public long getOffHeapBytes() {
+		long bytes = 0;
+		for (ByteBuffer[] buffers : new ByteBuffer[][] { userSlots, overflowSlots, names, index }) {
+			for (ByteBuffer buffer : buffers) {
+				if (buffer != null) {
+					bytes += buffer.capacity();
+				}
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Adds a user with no wallet to the end of the store.
+	 * The user is indexed by name, unless a user with the same name is already in the store.
+	 *
+	 * @param name 	The name of the user.
+	 * @return 		the index of the new user.
+	 */
+	public int addsUser(String name) {
+		int hash = hashOf(name);
+		boolean indexed = indexOf(name, hash) == NOT_FOUND;
+		if (size == Integer.MAX_VALUE >>> 1) {
+			throw new IllegalStateException("The wallet store is full.");
+		}
+		int user = size++;
+		int slot = slotOf(user);
+		ensuresChunk(userSlots, chunkOfSlot(user));
+
+		if (namesSize + 2L * name.length() > ((long) MAX_CHUNKS << chunkShift)) {
+			throw new IllegalStateException("The names of the wallet store are full.");
+		}
+		long nameOffset = namesSize;
+		if ((nameOffset & chunkMask) + 2L * name.length() > (1L << chunkShift)) {
+			// A name never straddles two chunks.
+			nameOffset = ((nameOffset >>> chunkShift) + 1) << chunkShift;
+		}
+		ByteBuffer arena = ensuresChunk(names, (int) (nameOffset >>> chunkShift));
+		int offset = (int) (nameOffset & chunkMask);
+		for (int i = 0; i < name.length(); i++) {
+			arena.putChar(offset + 2 * i, name.charAt(i));
+		}
+		namesSize = nameOffset + 2L * name.length();
+
+		ByteBuffer slots = userSlots[chunkOfSlot(user)];
+		slots.putInt(slot + NEXT, 0);
+		slots.putInt(slot + SIZE, 0);
+		slots.putLong(slot + NAME_OFFSET, nameOffset);
+		slots.putInt(slot + NAME_LENGTH, name.length());
+		slots.putInt(slot + NAME_HASH, hash);
+		slots.putInt(slot + FLAGS, indexed ? INDEXED : 0);
+
+		if (indexed) {
+			if (2L * size > indexCapacity) {
+				growsIndex();
+			}
+			indexes(user, hash);
+		}
+		return user;
+	}
+
+	/**
+	 * Retrieves the index of a user by name, without allocating.
+	 *
+	 * @param name 	The name of the user.
+	 * @return 		the index of the user, or NOT_FOUND if there is no user with that name.
+	 */
+	public int indexOf(String name) {
+		return indexOf(name, hashOf(name));
+	}
+
+	/**
+	 * Retrieves the name of a user.
+	 *
+	 * @param user 	The index of the user.
+	 * @return 		a new String of the name.
+	 */
+	public String nameOf(int user) {
+		ByteBuffer slots = userSlots[chunkOfSlot(user)];
+		int slot = slotOf(user);
+		long nameOffset = slots.getLong(slot + NAME_OFFSET);
+		char[] chars = new char[slots.getInt(slot + NAME_LENGTH)];
+		ByteBuffer arena = names[(int) (nameOffset >>> chunkShift)];
+		int offset = (int) (nameOffset & chunkMask);
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = arena.getChar(offset + 2 * i);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Retrieves a view of a user.
+	 *
+	 * @param user 	The index of the user.
+	 * @return 		a User reading and writing the slot of the user.
+	 */
+	public User userAt(int user) {
+		return new User(this, user, null);
+	}
+
+	/**
+	 * Retrieves a view of every user, in the order they were added.
+	 * Every user read from the list is a new view of its slot.
+	 *
+	 * @return an unmodifiable list of every user.
+	 */
+	public List <User> users() {
+		return new UserViews();
+	}
+
+	/**
+	 * Retrieves the number of currencies in the wallet of a user.
+	 *
+	 * @param user 	The index of the user.
+	 * @return 		the number of currencies, or -1 if the user has no wallet.
+	 */
+	int sizeOf(int user) {
+		ByteBuffer slots = userSlots[chunkOfSlot(user)];
+		int slot = slotOf(user);
+		return (slots.getInt(slot + FLAGS) & HAS_WALLET) == 0 ? -1 : slots.getInt(slot + SIZE);
+	}
+
+	/**
+	 * Retrieves the position of a currency in the wallet of a user.
+	 *
+	 * @param user 			The index of the user.
+	 * @param packedCode 	The packed code of the currency.
+	 * @return 				the position of the currency, or -1 if it is not in the wallet.
+	 */
+	int indexOf(int user, int packedCode) {
+		int size = sizeOf(user);
+		int reference = user;
+		for (int i = 0; i < size; i++) {
+			if (i > 0 && i % CURRENCIES_PER_SLOT == 0) {
+				reference = bufferOf(reference).getInt(offsetOf(reference) + NEXT);
+			}
+			if ((bufferOf(reference).getShort(offsetOf(reference) + CODES + 2 * (i % CURRENCIES_PER_SLOT)) & 0xFFFF) == packedCode) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Retrieves the packed code of the currency at a position of the wallet of a user.
+	 *
+	 * @param user 		The index of the user.
+	 * @param position 	The position of the currency.
+	 * @return 			the packed code of the currency.
+	 */
+	int codeAt(int user, int position) {
+		int reference = referenceOf(user, position);
+		return bufferOf(reference).getShort(offsetOf(reference) + CODES + 2 * (position % CURRENCIES_PER_SLOT)) & 0xFFFF;
+	}
+
+	/**
+	 * Retrieves the balance of the currency at a position of the wallet of a user.
+	 *
+	 * @param user 		The index of the user.
+	 * @param position 	The position of the currency.
+	 * @return 			the balance, in minor units.
+	 */
+	long balanceAt(int user, int position) {
+		int reference = referenceOf(user, position);
+		return bufferOf(reference).getLong(offsetOf(reference) + BALANCES + 8 * (position % CURRENCIES_PER_SLOT));
+	}
+
+	/**
+	 * Sets the balance of the currency at a position of the wallet of a user.
+	 *
+	 * @param user 		The index of the user.
+	 * @param position 	The position of the currency.
+	 * @param balance 	The balance, in minor units.
+	 */
+	void setsBalanceAt(int user, int position, long balance) {
+		int reference = referenceOf(user, position);
+		bufferOf(reference).putLong(offsetOf(reference) + BALANCES + 8 * (position % CURRENCIES_PER_SLOT), balance);
+	}
+
+	/**
+	 * Adds a currency at the end of the wallet of a user, giving the user a wallet if it has none.
+	 *
+	 * @param user 			The index of the user.
+	 * @param packedCode 	The packed code of the currency.
+	 * @param balance 		The balance, in minor units.
+	 */
+	void adds(int user, int packedCode, long balance) {
+		ByteBuffer slots = userSlots[chunkOfSlot(user)];
+		int slot = slotOf(user);
+		int position = Math.max(sizeOf(user), 0);
+		int reference = user;
+		for (int i = CURRENCIES_PER_SLOT; i <= position; i += CURRENCIES_PER_SLOT) {
+			int next = bufferOf(reference).getInt(offsetOf(reference) + NEXT);
+			if (next == 0) {
+				next = allocatesOverflow();
+				bufferOf(reference).putInt(offsetOf(reference) + NEXT, next);
+			}
+			reference = next;
+		}
+		int entry = position % CURRENCIES_PER_SLOT;
+		bufferOf(reference).putShort(offsetOf(reference) + CODES + 2 * entry, (short) packedCode);
+		bufferOf(reference).putLong(offsetOf(reference) + BALANCES + 8 * entry, balance);
+		slots.putInt(slot + SIZE, position + 1);
+		slots.putInt(slot + FLAGS, slots.getInt(slot + FLAGS) | HAS_WALLET);
+	}
+
+	/**
+	 * Removes the currency at a position of the wallet of a user, keeping the order of the other currencies.
+	 * Overflow slots are kept for the currencies the user may add later.
+	 *
+	 * @param user 		The index of the user.
+	 * @param position 	The position of the currency.
+	 */
+	void removes(int user, int position) {
+		int size = sizeOf(user);
+		for (int i = position; i < size - 1; i++) {
+			int reference = referenceOf(user, i);
+			int nextReference = referenceOf(user, i + 1);
+			int entry = i % CURRENCIES_PER_SLOT;
+			int nextEntry = (i + 1) % CURRENCIES_PER_SLOT;
+			bufferOf(reference).putShort(offsetOf(reference) + CODES + 2 * entry,
+					bufferOf(nextReference).getShort(offsetOf(nextReference) + CODES + 2 * nextEntry));
+			bufferOf(reference).putLong(offsetOf(reference) + BALANCES + 8 * entry,
+					bufferOf(nextReference).getLong(offsetOf(nextReference) + BALANCES + 8 * nextEntry));
+		}
+		userSlots[chunkOfSlot(user)].putInt(slotOf(user) + SIZE, size - 1);
+	}
+
+	/**
+	 * Empties the wallet of a user.
+	 *
+	 * @param user 			The index of the user.
+	 * @param hasWallet 	True to leave the user an empty wallet, false to leave the user no wallet.
+	 */
+	void clears(int user, boolean hasWallet) {
+		ByteBuffer slots = userSlots[chunkOfSlot(user)];
+		int slot = slotOf(user);
+		slots.putInt(slot + SIZE, 0);
+		int flags = slots.getInt(slot + FLAGS);
+		slots.putInt(slot + FLAGS, hasWallet ? flags | HAS_WALLET : flags & ~HAS_WALLET);
+	}
+
+	/**
+	 * Checks if a user is the first user with its name, which is the one found by name.
+	 *
+	 * @param user 	The index of the user.
+	 * @return 		true if the user is indexed, false if an earlier user has the same name.
+	 */
+	boolean isIndexed(int user) {
+		return (userSlots[chunkOfSlot(user)].getInt(slotOf(user) + FLAGS) & INDEXED) != 0;
+	}
+
+	/**
+	 * Checks if a user has been updated since users.json was last written.
+	 *
+	 * @param user 	The index of the user.
+	 * @return 		true if the user is dirty, false otherwise.
+	 */
+	boolean isDirty(int user) {
+		return (userSlots[chunkOfSlot(user)].getInt(slotOf(user) + FLAGS) & DIRTY) != 0;
+	}
+
+	/**
+	 * Marks a user as updated, or as written to users.json.
+	 *
+	 * @param user 		The index of the user.
+	 * @param dirty 	True if the user has been updated, false if it has been written.
+	 */
+	void marksDirty(int user, boolean dirty) {
+		ByteBuffer slots = userSlots[chunkOfSlot(user)];
+		int slot = slotOf(user);
+		int flags = slots.getInt(slot + FLAGS);
+		slots.putInt(slot + FLAGS, dirty ? flags | DIRTY : flags & ~DIRTY);
+	}
+
+	/**
+	 * Retrieves the reference of the slot holding a position of the wallet of a user.
+	 * A reference is the index of a user slot, or the complement of the index of an overflow slot.
+	 *
+	 * @param user 		The index of the user.
+	 * @param position 	The position in the wallet.
+	 * @return 			the reference of the slot.
+	 */
+	private int referenceOf(int user, int position) {
+		int reference = user;
+		for (int i = position / CURRENCIES_PER_SLOT; i > 0; i--) {
+			reference = bufferOf(reference).getInt(offsetOf(reference) + NEXT);
+		}
+		return reference;
+	}
+
+	private ByteBuffer bufferOf(int reference) {
+		return reference >= 0 ? userSlots[chunkOfSlot(reference)] : overflowSlots[chunkOfSlot(~reference)];
+	}
+
+	private int offsetOf(int reference) {
+		return slotOf(reference >= 0 ? reference : ~reference);
+	}
+
+	private int chunkOfSlot(int slotIndex) {
+		return (int) (((long) slotIndex << SLOT_SHIFT) >>> chunkShift);
+	}
+
+	private int slotOf(int slotIndex) {
+		return (int) (((long) slotIndex << SLOT_SHIFT) & chunkMask);
+	}
+
+	/**
+	 * Allocates an overflow slot.
+	 *
+	 * @return the reference of the slot.
+	 */
+	private synchronized int allocatesOverflow() {
+		int overflow = overflowSize++;
+		ByteBuffer slots = ensuresChunk(overflowSlots, chunkOfSlot(overflow));
+		slots.putInt(slotOf(overflow) + NEXT, 0);
+		return ~overflow;
+	}
+
+	/**
+	 * Allocates the chunk of a buffer if it has not been allocated yet.
+	 *
+	 * @param chunks 	The chunks of the buffer.
+	 * @param chunk 	The index of the chunk.
+	 * @return 			the chunk.
+	 */
+	private ByteBuffer ensuresChunk(ByteBuffer[] chunks, int chunk) {
+		if (chunks[chunk] == null) {
+			chunks[chunk] = ByteBuffer.allocateDirect(1 << chunkShift);
+		}
+		return chunks[chunk];
+	}
+
+	/**
+	 * Retrieves the index of a user by name and hash.
+	 */
+	private int indexOf(String name, int hash) {
+		int mask = indexCapacity - 1;
+		for (int i = hash & mask; ; i = (i + 1) & mask) {
+			int entry = indexEntryAt(i);
+			if (entry == 0) {
+				return NOT_FOUND;
+			}
+			int user = entry - 1;
+			if (hasName(user, name, hash)) {
+				return user;
+			}
+		}
+	}
+
+	/**
+	 * Checks if a user has a name, comparing the hashes first, then the chars in the arena.
+	 */
+	private boolean hasName(int user, String name, int hash) {
+		ByteBuffer slots = userSlots[chunkOfSlot(user)];
+		int slot = slotOf(user);
+		if (slots.getInt(slot + NAME_HASH) != hash || slots.getInt(slot + NAME_LENGTH) != name.length()) {
+			return false;
+		}
+		long nameOffset = slots.getLong(slot + NAME_OFFSET);
+		ByteBuffer arena = names[(int) (nameOffset >>> chunkShift)];
+		int offset = (int) (nameOffset & chunkMask);
+		for (int i = 0; i < name.length(); i++) {
+			if (arena.getChar(offset + 2 * i) != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a user to the index.
+	 */
+	private void indexes(int user, int hash) {
+		int mask = indexCapacity - 1;
+		int i = hash & mask;
+		while (indexEntryAt(i) != 0) {
+			i = (i + 1) & mask;
+		}
+		ByteBuffer chunk = index[(int) (((long) i << 2) >>> chunkShift)];
+		chunk.putInt((int) (((long) i << 2) & chunkMask), user + 1);
+	}
+
+	private int indexEntryAt(int i) {
+		return index[(int) (((long) i << 2) >>> chunkShift)].getInt((int) (((long) i << 2) & chunkMask));
+	}
+
+	/**
+	 * Doubles the capacity of the index, and adds every indexed user to it again.
+	 */
+	private void growsIndex() {
+		if (indexCapacity == 1 << 30) {
+			throw new IllegalStateException("The index of the wallet store is full.");
+		}
+		indexCapacity <<= 1;
+		index = allocatesIndex(indexCapacity);
+		for (int user = 0; user < size - 1; user++) {
+			if (isIndexed(user)) {
+				indexes(user, userSlots[chunkOfSlot(user)].getInt(slotOf(user) + NAME_HASH));
+			}
+		}
+	}
+
+	/**
+	 * Allocates an empty index.
+	 *
+	 * @param capacity 	The number of entries of the index, a power of two.
+	 * @return 			the chunks of the index.
+	 */
+	private ByteBuffer[] allocatesIndex(int capacity) {
+		long bytes = 4L * capacity;
+		int chunkSize = (int) Math.min(bytes, 1L << chunkShift);
+		ByteBuffer[] chunks = new ByteBuffer[(int) ((bytes + chunkSize - 1) / chunkSize)];
+		for (int i = 0; i < chunks.length; i++) {
+			// Direct buffers are zeroed, so every entry starts empty.
+			chunks[i] = ByteBuffer.allocateDirect(chunkSize);
+		}
+		return chunks;
+	}
+
+	/**
+	 * Hashes a name, spreading the bits of its String hash, which is cached by the String.
+	 */
+	private static int hashOf(String name) {
+		int hash = name.hashCode() * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * A list of a view of every user, created when it is read.
+	 */
+	private final class UserViews extends AbstractList <User> implements RandomAccess {
+
+		@Override
+		public User get(int user) {
+			if (user < 0 || user >= size) {
+				throw new IndexOutOfBoundsException("User " + user + " of " + size);
+			}
+			return userAt(user);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+	}
+
+}
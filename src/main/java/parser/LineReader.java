@@ -0,0 +1,173 @@
+/**
+ * --------------------------------------------------------------------------------
+ * LineReader.java
+ * --------------------------------------------------------------------------------
+ * A LineReader reads the lines of a stream into a reusable byte buffer,
+ * without creating a String per line.
+ * --------------------------------------------------------------------------------
+ * Lines end as they do for BufferedReader.readLine: at "\n", "\r" or "\r\n",
+ * or at the end of the stream. The current line is the bytes between
+ * getStart() and getEnd() of getBuffer(), and is only valid until the next line is read.
+ * --------------------------------------------------------------------------------
+ */
+
+package parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+public class LineReader {
+
+	/**
+	 * Default size of the buffer, which grows to hold the longest line.
+	 */
+	private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The stream the lines are read from.
+	 */
+	private final InputStream inputStream;
+
+	/**
+	 * The bytes read, the index of the next unread byte, and the number of bytes in the buffer.
+	 */
+	private byte[] buffer;
+	private int position;
+	private int limit;
+
+	/**
+	 * True if the last line ended with "\r", so that a "\n" right after it is skipped.
+	 */
+	private boolean skipLineFeed;
+
+	/**
+	 * True once the end of the stream is reached.
+	 */
+	private boolean endOfStream;
+
+	/**
+	 * Start and end of the current line.
+	 */
+	private int start;
+	private int end;
+
+	/**
+	 * Creation of a reader with the default buffer size.
+	 *
+	 * @param inputStream The stream the lines are read from.
+	 */
+	public LineReader(InputStream inputStream) {
+		this(inputStream, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creation of a reader.
+	 *
+	 * @param inputStream 	The stream the lines are read from.
+	 * @param bufferSize 	The initial size of the buffer.
+	 */
+	public LineReader(InputStream inputStream, int bufferSize) {
+		this.inputStream = inputStream;
+		this.buffer = new byte[Math.max(1, bufferSize)];
+	}
+
+	/**
+	 * Reads the next line.
+	 *
+	 * @return 				true if a line was read, false at the end of the stream.
+	 * @throws IOException 	The exception thrown if there is an error reading the stream.
+	 */
+	public boolean readsLine() throws IOException {
+		if (skipLineFeed) {
+			if (position == limit) {
+				fills();
+			}
+			if (position < limit && buffer[position] == '\n') {
+				position++;
+			}
+			skipLineFeed = false;
+		}
+
+		int scanned = position;
+		while (true) {
+			for (int i = scanned; i < limit; i++) {
+				byte b = buffer[i];
+				if (b == '\n' || b == '\r') {
+					start = position;
+					end = i;
+					position = i + 1;
+					skipLineFeed = b == '\r';
+					return true;
+				}
+			}
+			scanned = limit - position;
+			if (!fills()) {
+				if (position == limit) {
+					return false;
+				}
+				start = position;
+				end = limit;
+				position = limit;
+				return true;
+			}
+			scanned += position;
+		}
+	}
+
+	/**
+	 * Retrieves the buffer holding the current line.
+	 *
+	 * @return the buffer.
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Retrieves the index of the first byte of the current line.
+	 *
+	 * @return the index of the first byte.
+	 */
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * Retrieves the index after the last byte of the current line, excluding the line terminator.
+	 *
+	 * @return the index after the last byte.
+	 */
+	public int getEnd() {
+		return end;
+	}
+
+	/**
+	 * Moves the unread bytes to the start of the buffer, growing it if it is full,
+	 * and reads more bytes after them.
+	 *
+	 * @return 				true if bytes were read, false at the end of the stream.
+	 * @throws IOException 	The exception thrown if there is an error reading the stream.
+	 */
+	private boolean fills() throws IOException {
+		if (endOfStream) {
+			return false;
+		}
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		} else if (limit == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+
+		int read = inputStream.read(buffer, limit, buffer.length - limit);
+		if (read < 0) {
+			endOfStream = true;
+			return false;
+		}
+		limit += read;
+		return true;
+	}
+
+}
@@ -0,0 +1,159 @@
+/**
+ * --------------------------------------------------------------------------------
+ * MappedChunks.java
+ * --------------------------------------------------------------------------------
+ * Splits a transactions file into chunks that can be parsed independently,
+ * and parses a chunk through a memory mapping of the file.
+ * --------------------------------------------------------------------------------
+ * 1. Every chunk boundary is moved forward to just after a line terminator,
+ *    so no line is split between two chunks, and every chunk starts at the start of a line.
+ * 2. A chunk is mapped with FileChannel.map, so its bytes are read from the page cache
+ *    without a copy through a stream or a decoder. A mapping is limited to 2GB,
+ *    so multi-GB files are always read as several chunks.
+ * --------------------------------------------------------------------------------
+ */
+
+package parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+public final class MappedChunks {
+
+	/**
+	 * Largest number of bytes in a chunk, the largest mapping of a FileChannel.
+	 */
+	public static final int MAX_CHUNK_BYTES = Integer.MAX_VALUE;
+
+	/**
+	 * Number of bytes read at a time while looking for a line terminator.
+	 */
+	private static final int SCAN_BYTES = 4096;
+
+	/**
+	 * Static methods only.
+	 */
+	private MappedChunks() {
+
+	}
+
+	/**
+	 * Splits a file into chunks of about chunkBytes bytes, each ending just after a line terminator
+	 * (or at the end of the file).
+	 *
+	 * @param channel 		The channel of the file.
+	 * @param chunkBytes 	The number of bytes aimed at in every chunk.
+	 * @return 				the boundaries of the chunks: chunk i is from boundaries[i] to boundaries[i + 1].
+	 * @throws IOException 	The exception thrown if there is an error reading the file.
+	 */
+	public static long[] splits(FileChannel channel, int chunkBytes) throws IOException {
+		if (chunkBytes < 1) {
+			throw new IllegalArgumentException("A chunk must have at least one byte: " + chunkBytes);
+		}
+		long size = channel.size();
+		long[] boundaries = new long[(int) Math.min(Integer.MAX_VALUE - 1, size / chunkBytes + 2)];
+		int chunks = 0;
+		boundaries[0] = 0;
+		ByteBuffer scan = ByteBuffer.allocate(SCAN_BYTES + 1);
+
+		long start = 0;
+		while (start < size) {
+			long end = size - start <= chunkBytes ? size : alignsToLine(channel, start + chunkBytes, size, scan);
+			boundaries[++chunks] = end;
+			start = end;
+		}
+		return Arrays.copyOf(boundaries, chunks + 1);
+	}
+
+	/**
+	 * Parses every line of a chunk into a ParsedChunk, through a memory mapping of the chunk.
+	 *
+	 * @param channel 		The channel of the file.
+	 * @param start 		The position of the first byte of the chunk.
+	 * @param end 			The position after the last byte of the chunk.
+	 * @param parser 		The parser of the lines.
+	 * @return 				the parsed lines, in order.
+	 * @throws IOException 	The exception thrown if there is an error mapping the file.
+	 */
+	public static ParsedChunk parses(FileChannel channel, long start, long end, TransactionParser parser) throws IOException {
+		MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+		LineReader lineReader = new LineReader(new ByteBufferInputStream(mapped));
+		TransactionRecord record = new TransactionRecord();
+		ParsedChunk chunk = new ParsedChunk();
+		while (lineReader.readsLine()) {
+			parser.parses(lineReader.getBuffer(), lineReader.getStart(), lineReader.getEnd(), record);
+			chunk.adds(record, parser);
+		}
+		return chunk;
+	}
+
+	/**
+	 * Finds the first position at or after a position that is just after a line terminator.
+	 * A "\r" only ends a line if it is not followed by "\n", so "\r\n" is never split.
+	 *
+	 * @param channel 		The channel of the file.
+	 * @param position 		The position to start from.
+	 * @param size 			The size of the file.
+	 * @param scan 			A buffer to read bytes into.
+	 * @return 				the position after the next line terminator, or the size of the file if there is none.
+	 * @throws IOException 	The exception thrown if there is an error reading the file.
+	 */
+	private static long alignsToLine(FileChannel channel, long position, long size, ByteBuffer scan) throws IOException {
+		// Read from the byte before the position, which may be the terminator of a line.
+		long offset = position - 1;
+		while (offset < size) {
+			scan.clear();
+			int read = 0;
+			while (scan.hasRemaining() && offset + read < size) {
+				int bytes = channel.read(scan, offset + read);
+				if (bytes < 0) {
+					break;
+				}
+				read += bytes;
+			}
+			// The last byte read is only looked at as the byte after a "\r".
+			int last = offset + read >= size ? read : read - 1;
+			for (int i = 0; i < last; i++) {
+				byte b = scan.get(i);
+				if (b == '\n' || (b == '\r' && (i + 1 >= read || scan.get(i + 1) != '\n'))) {
+					return offset + i + 1;
+				}
+			}
+			offset += last;
+		}
+		return size;
+	}
+
+	/**
+	 * Reads the bytes of a buffer as a stream.
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int read = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, read);
+			return read;
+		}
+
+	}
+
+}
@@ -0,0 +1,32 @@
+/**
+ * --------------------------------------------------------------------------------
+ * ParseError.java
+ * --------------------------------------------------------------------------------
+ * The reasons a line of transactions.txt cannot be parsed into a transaction.
+ * --------------------------------------------------------------------------------
+ * They are the same categories as the exceptions thrown by the String parser:
+ * INVALID_NUMBER_OF_COMPONENTS for InvalidNumberOfComponentsException,
+ * and INVALID_AMOUNT for the NumberFormatException of Double.parseDouble.
+ * --------------------------------------------------------------------------------
+ */
+
+package parser;
+
+public enum ParseError {
+
+	/**
+	 * The line was parsed.
+	 */
+	NONE,
+
+	/**
+	 * The line does not have exactly 4 components.
+	 */
+	INVALID_NUMBER_OF_COMPONENTS,
+
+	/**
+	 * The amount cannot be parsed to a double.
+	 */
+	INVALID_AMOUNT
+
+}
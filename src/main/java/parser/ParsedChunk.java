@@ -0,0 +1,142 @@
+/**
+ * --------------------------------------------------------------------------------
+ * ParsedChunk.java
+ * --------------------------------------------------------------------------------
+ * A ParsedChunk holds every line of a chunk of transactions.txt once parsed,
+ * in the order of the lines, column by column.
+ * --------------------------------------------------------------------------------
+ * Names are the interned Strings of the parser that parsed the chunk,
+ * so a chunk costs a few array slots per line rather than an object per line.
+ * --------------------------------------------------------------------------------
+ */
+
+package parser;
+
+import java.util.Arrays;
+
+public class ParsedChunk {
+
+	/**
+	 * Initial number of lines the columns can hold. The columns grow as lines are added.
+	 */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * The columns: the user, the currencies, the amount, the timestamp and the parse error of every line.
+	 */
+	private String[] usernames = new String[INITIAL_CAPACITY];
+	private String[] fromCurrencies = new String[INITIAL_CAPACITY];
+	private String[] toCurrencies = new String[INITIAL_CAPACITY];
+	private double[] amounts = new double[INITIAL_CAPACITY];
+	private long[] timestamps = new long[INITIAL_CAPACITY];
+	private ParseError[] errors = new ParseError[INITIAL_CAPACITY];
+
+	/**
+	 * Number of lines in the chunk.
+	 */
+	private int size;
+
+	/**
+	 * Default no-args constructor of an empty chunk.
+	 */
+	public ParsedChunk() {
+
+	}
+
+	/**
+	 * Adds a parsed line at the end of the chunk.
+	 *
+	 * @param record 	The parsed line.
+	 * @param parser 	The parser holding the symbols of the record.
+	 */
+	public void adds(TransactionRecord record, TransactionParser parser) {
+		if (size == errors.length) {
+			int capacity = size * 2;
+			usernames = Arrays.copyOf(usernames, capacity);
+			fromCurrencies = Arrays.copyOf(fromCurrencies, capacity);
+			toCurrencies = Arrays.copyOf(toCurrencies, capacity);
+			amounts = Arrays.copyOf(amounts, capacity);
+			timestamps = Arrays.copyOf(timestamps, capacity);
+			errors = Arrays.copyOf(errors, capacity);
+		}
+		if (record.getError() != ParseError.INVALID_NUMBER_OF_COMPONENTS) {
+			usernames[size] = parser.getUsers().nameOf(record.getUserId());
+			fromCurrencies[size] = parser.getCurrencies().nameOf(record.getFromCurrencyId());
+			toCurrencies[size] = parser.getCurrencies().nameOf(record.getToCurrencyId());
+		}
+		amounts[size] = record.getAmount();
+		timestamps[size] = record.getTimestamp();
+		errors[size] = record.getError();
+		size++;
+	}
+
+	/**
+	 * Retrieves the number of lines in the chunk.
+	 *
+	 * @return the number of lines.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Retrieves the name of the user of a line.
+	 *
+	 * @param line 	The index of the line in the chunk.
+	 * @return 		the name of the user, or null if the line has not got 4 components.
+	 */
+	public String getUsername(int line) {
+		return usernames[line];
+	}
+
+	/**
+	 * Retrieves the currency to be converted from of a line.
+	 *
+	 * @param line 	The index of the line in the chunk.
+	 * @return 		the currency, or null if the line has not got 4 components.
+	 */
+	public String getFromCurrency(int line) {
+		return fromCurrencies[line];
+	}
+
+	/**
+	 * Retrieves the currency to be converted to of a line.
+	 *
+	 * @param line 	The index of the line in the chunk.
+	 * @return 		the currency, or null if the line has not got 4 components.
+	 */
+	public String getToCurrency(int line) {
+		return toCurrencies[line];
+	}
+
+	/**
+	 * Retrieves the amount to be converted of a line.
+	 *
+	 * @param line 	The index of the line in the chunk.
+	 * @return 		the amount, or 0 if it could not be parsed.
+	 */
+	public double getAmount(int line) {
+		return amounts[line];
+	}
+
+	/**
+	 * Retrieves the timestamp of a line.
+	 *
+	 * @param line 	The index of the line in the chunk.
+	 * @return 		the milliseconds since the epoch, or Timestamps.NONE if the line has no timestamp.
+	 */
+	public long getTimestamp(int line) {
+		return timestamps[line];
+	}
+
+	/**
+	 * Retrieves the reason a line could not be parsed.
+	 *
+	 * @param line 	The index of the line in the chunk.
+	 * @return 		the reason, or NONE if the line was parsed.
+	 */
+	public ParseError getError(int line) {
+		return errors[line];
+	}
+
+}
@@ -0,0 +1,235 @@
+/**
+ * --------------------------------------------------------------------------------
+ * SymbolTable.java
+ * --------------------------------------------------------------------------------
+ * A SymbolTable interns tokens read from a byte buffer, e.g. user names and currencies,
+ * and gives every distinct token a dense id: 0, 1, 2, ...
+ * --------------------------------------------------------------------------------
+ * A token already in the table is found without creating a String or any other object.
+ * The String of a token is created once, when the token is first seen,
+ * and the same String is returned for every later occurrence of the token.
+ * Tokens are decoded as UTF-8.
+ * --------------------------------------------------------------------------------
+ * The table holds at most a maximum number of tokens, so that a feed of many distinct
+ * or garbage names does not grow the heap without bound. A new token interned into
+ * a full table evicts every token, and ids start again from 0. An id is therefore only
+ * valid until the next token is interned, which is when a parsed line is resolved.
+ * --------------------------------------------------------------------------------
+ */
+
+package parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class SymbolTable {
+
+	/**
+	 * Marks an empty slot of the hash table.
+	 */
+	private static final long EMPTY = 0;
+
+	/**
+	 * Default maximum number of tokens, far above the names of the users of a typical feed.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 1 << 16;
+
+	/**
+	 * Open-addressed hash table, with linear probing. Its length is a power of two.
+	 * Every slot packs the hash of a token in its high 32 bits and its id + 1 in its low 32 bits,
+	 * so a probe only reads the bytes of a token when the hashes match.
+	 */
+	private long[] slots;
+
+	/**
+	 * For every id: the bytes of its token, and the String of its token.
+	 */
+	private byte[][] tokens;
+	private String[] names;
+
+	/**
+	 * Number of distinct tokens interned, the maximum number of tokens, and the number of times every token was evicted.
+	 */
+	private int size;
+	private final int maxSize;
+	private long evictions;
+
+	/**
+	 * Creation of an empty table.
+	 */
+	public SymbolTable() {
+		this(64);
+	}
+
+	/**
+	 * Creation of an empty table sized for a number of distinct tokens.
+	 *
+	 * @param expectedSize The number of distinct tokens expected.
+	 */
+	public SymbolTable(int expectedSize) {
+		this(expectedSize, Math.max(DEFAULT_MAX_SIZE, expectedSize));
+	}
+
+	/**
+	 * Creation of an empty table sized for a number of distinct tokens, and holding at most a maximum number of tokens.
+	 *
+	 * @param expectedSize 	The number of distinct tokens expected.
+	 * @param maxSize 		The maximum number of tokens, at least 1.
+	 */
+	public SymbolTable(int expectedSize, int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("A symbol table must hold at least 1 token: " + maxSize);
+		}
+		this.maxSize = maxSize;
+		expectedSize = Math.min(expectedSize, maxSize);
+		int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+		this.slots = new long[capacity];
+		this.tokens = new byte[Math.max(16, expectedSize)][];
+		this.names = new String[tokens.length];
+	}
+
+	/**
+	 * Retrieves the id of a token, and interns the token if it is not in the table yet,
+	 * evicting every token if the table is full.
+	 *
+	 * @param buffer 	The buffer holding the token.
+	 * @param start 	The index of the first byte of the token.
+	 * @param end 		The index after the last byte of the token.
+	 * @return 			the id of the token.
+	 */
+	public int interns(byte[] buffer, int start, int end) {
+		int hash = hashes(buffer, start, end);
+		int mask = slots.length - 1;
+		for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			long entry = slots[slot];
+			if (entry == EMPTY) {
+				return adds(buffer, start, end, hash, slot);
+			}
+			if ((int) (entry >>> 32) == hash) {
+				int id = (int) entry - 1;
+				if (Arrays.equals(tokens[id], 0, tokens[id].length, buffer, start, end)) {
+					return id;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the id of a token.
+	 *
+	 * @param name 	The token.
+	 * @return 		the id of the token.
+	 */
+	public int interns(String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		return interns(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Retrieves the String of a token.
+	 *
+	 * @param id 	The id of the token.
+	 * @return 		the String of the token, the same instance for every call.
+	 */
+	public String nameOf(int id) {
+		return names[id];
+	}
+
+	/**
+	 * Retrieves the number of distinct tokens interned since the table was created, or last full.
+	 *
+	 * @return the number of tokens.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Retrieves the number of times every token was evicted from the full table.
+	 *
+	 * @return the number of evictions.
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Adds a token that is not in the table yet.
+	 *
+	 * @param buffer 	The buffer holding the token.
+	 * @param start 	The index of the first byte of the token.
+	 * @param end 		The index after the last byte of the token.
+	 * @param hash 		The hash of the token.
+	 * @param slot 		The empty slot found for the token.
+	 * @return 			the id of the token.
+	 */
+	private int adds(byte[] buffer, int start, int end, int hash, int slot) {
+		if (size == maxSize) {
+			// The slot found for the token is still empty once every slot is.
+			evicts();
+		}
+		int id = size++;
+		if (id == tokens.length) {
+			tokens = Arrays.copyOf(tokens, Math.min(id * 2, maxSize));
+			names = Arrays.copyOf(names, Math.min(id * 2, maxSize));
+		}
+		tokens[id] = Arrays.copyOfRange(buffer, start, end);
+		names[id] = new String(buffer, start, end - start, StandardCharsets.UTF_8);
+		slots[slot] = ((long) hash << 32) | (id + 1);
+
+		// Keep the table at most half full, so probes stay short.
+		if (size * 2 > slots.length) {
+			rehashes(slots.length * 2);
+		}
+		return id;
+	}
+
+	/**
+	 * Evicts every token, keeping the arrays, which are as large as a full table needs.
+	 */
+	private void evicts() {
+		Arrays.fill(slots, EMPTY);
+		Arrays.fill(tokens, 0, size, null);
+		Arrays.fill(names, 0, size, null);
+		size = 0;
+		evictions++;
+	}
+
+	/**
+	 * Moves every id to a larger hash table.
+	 *
+	 * @param capacity The length of the new hash table, a power of two.
+	 */
+	private void rehashes(int capacity) {
+		long[] oldSlots = slots;
+		slots = new long[capacity];
+		int mask = capacity - 1;
+		for (long entry : oldSlots) {
+			if (entry != EMPTY) {
+				int slot = (int) (entry >>> 32) & mask;
+				while (slots[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = entry;
+			}
+		}
+	}
+
+	/**
+	 * Hashes the bytes of a token.
+	 *
+	 * @param buffer 	The buffer holding the token.
+	 * @param start 	The index of the first byte of the token.
+	 * @param end 		The index after the last byte of the token.
+	 * @return 			the hash of the token.
+	 */
+	private static int hashes(byte[] buffer, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + buffer[i];
+		}
+		// Spread the high bits, as HashMap does, since only the low bits select a slot.
+		return hash ^ (hash >>> 16);
+	}
+
+}
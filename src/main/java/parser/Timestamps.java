@@ -0,0 +1,143 @@
+/**
+ * --------------------------------------------------------------------------------
+ * Timestamps.java
+ * --------------------------------------------------------------------------------
+ * Parses the optional timestamp of a transaction, its fifth component,
+ * to milliseconds since the epoch, without allocating.
+ * --------------------------------------------------------------------------------
+ * Two forms of ISO-8601 in UTC are accepted:
+ * 1. A date, e.g. 2022-09-13, which is the start of that day.
+ * 2. An instant to the second, e.g. 2022-09-13T11:55:01Z.
+ * --------------------------------------------------------------------------------
+ */
+
+package parser;
+
+import java.nio.charset.StandardCharsets;
+
+public final class Timestamps {
+
+	/**
+	 * Value of a missing or invalid timestamp.
+	 */
+	public static final long NONE = Long.MIN_VALUE;
+
+	/**
+	 * Lengths of a date, and of an instant to the second.
+	 */
+	private static final int DATE_LENGTH = 10;
+	private static final int INSTANT_LENGTH = 20;
+
+	/**
+	 * Milliseconds in a second and in a day.
+	 */
+	private static final long MILLIS_PER_SECOND = 1000;
+	private static final long MILLIS_PER_DAY = 86_400_000;
+
+	/**
+	 * Static methods only.
+	 */
+	private Timestamps() {
+
+	}
+
+	/**
+	 * Parses a timestamp.
+	 *
+	 * @param timestamp 	The timestamp.
+	 * @return 				the milliseconds since the epoch, or NONE if it is not a date or an instant.
+	 */
+	public static long parses(String timestamp) {
+		byte[] bytes = timestamp.getBytes(StandardCharsets.ISO_8859_1);
+		return parses(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Parses a timestamp from a byte buffer.
+	 *
+	 * @param buffer 	The buffer holding the timestamp.
+	 * @param start 	The index of the first byte of the timestamp.
+	 * @param end 		The index after the last byte of the timestamp.
+	 * @return 			the milliseconds since the epoch, or NONE if it is not a date or an instant.
+	 */
+	public static long parses(byte[] buffer, int start, int end) {
+		int length = end - start;
+		if ((length != DATE_LENGTH && length != INSTANT_LENGTH)
+				|| buffer[start + 4] != '-' || buffer[start + 7] != '-') {
+			return NONE;
+		}
+		int year = digits(buffer, start, 4);
+		int month = digits(buffer, start + 5, 2);
+		int day = digits(buffer, start + 8, 2);
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+			return NONE;
+		}
+		long millis = daysSinceEpoch(year, month, day) * MILLIS_PER_DAY;
+		if (length == DATE_LENGTH) {
+			return millis;
+		}
+
+		if (buffer[start + 10] != 'T' || buffer[start + 13] != ':' || buffer[start + 16] != ':' || buffer[start + 19] != 'Z') {
+			return NONE;
+		}
+		int hour = digits(buffer, start + 11, 2);
+		int minute = digits(buffer, start + 14, 2);
+		int second = digits(buffer, start + 17, 2);
+		if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+			return NONE;
+		}
+		return millis + ((hour * 60L + minute) * 60 + second) * MILLIS_PER_SECOND;
+	}
+
+	/**
+	 * Parses a fixed number of decimal digits.
+	 *
+	 * @param buffer 	The buffer holding the digits.
+	 * @param start 	The index of the first digit.
+	 * @param count 	The number of digits.
+	 * @return 			the number, or -1 if a byte is not a digit.
+	 */
+	private static int digits(byte[] buffer, int start, int count) {
+		int number = 0;
+		for (int i = start; i < start + count; i++) {
+			if (buffer[i] < '0' || buffer[i] > '9') {
+				return -1;
+			}
+			number = number * 10 + (buffer[i] - '0');
+		}
+		return number;
+	}
+
+	/**
+	 * Retrieves the number of days in a month of the proleptic Gregorian calendar.
+	 *
+	 * @param year 		The year.
+	 * @param month 	The month, from 1 to 12.
+	 * @return 			the number of days.
+	 */
+	private static int daysInMonth(int year, int month) {
+		if (month == 2) {
+			return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+		}
+		return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+	}
+
+	/**
+	 * Retrieves the number of days from 1970-01-01 to a date of the proleptic Gregorian calendar.
+	 *
+	 * @param year 		The year.
+	 * @param month 	The month, from 1 to 12.
+	 * @param day 		The day of the month.
+	 * @return 			the number of days, negative before 1970.
+	 */
+	private static long daysSinceEpoch(int year, int month, int day) {
+		// Years start in March, so that the leap day is the last day of a year.
+		int y = month <= 2 ? year - 1 : year;
+		int era = Math.floorDiv(y, 400);
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146_097L + dayOfEra - 719_468;
+	}
+
+}
@@ -0,0 +1,184 @@
+/**
+ * --------------------------------------------------------------------------------
+ * TransactionParser.java
+ * --------------------------------------------------------------------------------
+ * A TransactionParser parses lines of transactions.txt straight from a byte buffer
+ * into a reusable TransactionRecord, without allocating per line:
+ * --------------------------------------------------------------------------------
+ * 1. The line is split on single spaces exactly as String.split(" ") splits it,
+ *    so the same lines have exactly 4 components, or 5 with a timestamp (see Timestamps).
+ * 2. The user and the currencies are interned to ids in symbol tables,
+ *    so a name seen before is resolved without creating a String.
+ * 3. A plain decimal amount (e.g. 100, -2.5, +.75) is parsed from its digits
+ *    to exactly the same double as Double.parseDouble. Any other amount
+ *    (e.g. 1e3, NaN) is passed to Double.parseDouble, which allocates.
+ * --------------------------------------------------------------------------------
+ * A parser is not thread-safe: every thread parsing lines needs its own parser.
+ * --------------------------------------------------------------------------------
+ */
+
+package parser;
+
+import java.nio.charset.StandardCharsets;
+
+public class TransactionParser {
+
+	/**
+	 * Number of components of a transaction, without and with its optional timestamp.
+	 */
+	private static final int COMPONENTS = 4;
+	private static final int COMPONENTS_WITH_TIMESTAMP = 5;
+
+	/**
+	 * Largest number of digits parsed without Double.parseDouble.
+	 * Any mantissa of 15 digits is below 2^53, so it is an exact double.
+	 */
+	private static final int MAX_FAST_DIGITS = 15;
+
+	/**
+	 * Powers of ten that are exact doubles. Dividing an exact mantissa by one of them is
+	 * a single correctly rounded operation, so the result is the double closest to the decimal.
+	 */
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * Symbols of the users and of the currencies.
+	 */
+	private final SymbolTable users;
+	private final SymbolTable currencies;
+
+	/**
+	 * Start and end of every component of the line being parsed.
+	 */
+	private final int[] bounds = new int[COMPONENTS_WITH_TIMESTAMP * 2];
+
+	/**
+	 * Creation of a parser with empty symbol tables.
+	 */
+	public TransactionParser() {
+		this(new SymbolTable(), new SymbolTable());
+	}
+
+	/**
+	 * Creation of a parser interning into the symbol tables.
+	 *
+	 * @param users 		The symbols of the users.
+	 * @param currencies 	The symbols of the currencies.
+	 */
+	public TransactionParser(SymbolTable users, SymbolTable currencies) {
+		this.users = users;
+		this.currencies = currencies;
+	}
+
+	/**
+	 * Retrieves the symbols of the users.
+	 *
+	 * @return the symbols of the users.
+	 */
+	public SymbolTable getUsers() {
+		return users;
+	}
+
+	/**
+	 * Retrieves the symbols of the currencies.
+	 *
+	 * @return the symbols of the currencies.
+	 */
+	public SymbolTable getCurrencies() {
+		return currencies;
+	}
+
+	/**
+	 * Parses a line into a record. If the line cannot be parsed, the error of the record says why.
+	 *
+	 * @param buffer 	The buffer holding the line.
+	 * @param start 	The index of the first byte of the line.
+	 * @param end 		The index after the last byte of the line, excluding the line terminator.
+	 * @param record 	The record to overwrite with the transaction.
+	 */
+	public void parses(byte[] buffer, int start, int end, TransactionRecord record) {
+		// String.split drops trailing empty components, i.e. trailing spaces.
+		int last = end;
+		while (last > start && buffer[last - 1] == ' ') {
+			last--;
+		}
+
+		int components = 0;
+		if (last > start) {
+			int componentStart = start;
+			for (int i = start; i <= last && components <= COMPONENTS_WITH_TIMESTAMP; i++) {
+				if (i == last || buffer[i] == ' ') {
+					if (components < COMPONENTS_WITH_TIMESTAMP) {
+						bounds[components * 2] = componentStart;
+						bounds[components * 2 + 1] = i;
+					}
+					components++;
+					componentStart = i + 1;
+				}
+			}
+		}
+		long timestamp = components == COMPONENTS_WITH_TIMESTAMP ? Timestamps.parses(buffer, bounds[8], bounds[9]) : Timestamps.NONE;
+		if (components != COMPONENTS && timestamp == Timestamps.NONE) {
+			// A fifth component that is not a timestamp is one component too many.
+			record.sets(-1, -1, -1, 0, ParseError.INVALID_NUMBER_OF_COMPONENTS);
+			return;
+		}
+
+		int userId = users.interns(buffer, bounds[0], bounds[1]);
+		int fromCurrencyId = currencies.interns(buffer, bounds[2], bounds[3]);
+		int toCurrencyId = currencies.interns(buffer, bounds[4], bounds[5]);
+		try {
+			record.sets(userId, fromCurrencyId, toCurrencyId, parsesAmount(buffer, bounds[6], bounds[7]), ParseError.NONE);
+		} catch (NumberFormatException e) {
+			record.sets(userId, fromCurrencyId, toCurrencyId, 0, ParseError.INVALID_AMOUNT);
+		}
+		record.setsTimestamp(timestamp);
+	}
+
+	/**
+	 * Parses an amount to the same double as Double.parseDouble.
+	 *
+	 * @param buffer 					The buffer holding the amount.
+	 * @param start 					The index of the first byte of the amount.
+	 * @param end 						The index after the last byte of the amount.
+	 * @return 							the amount.
+	 * @throws NumberFormatException 	The exception thrown if the amount cannot be parsed to a double.
+	 */
+	public static double parsesAmount(byte[] buffer, int start, int end) throws NumberFormatException {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+			negative = buffer[i] == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean point = false;
+		for (; i < end; i++) {
+			byte b = buffer[i];
+			if (b >= '0' && b <= '9' && digits < MAX_FAST_DIGITS) {
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if (point) {
+					fractionDigits++;
+				}
+			} else if (b == '.' && !point) {
+				point = true;
+			} else {
+				return Double.parseDouble(new String(buffer, start, end - start, StandardCharsets.UTF_8));
+			}
+		}
+		if (digits == 0) {
+			return Double.parseDouble(new String(buffer, start, end - start, StandardCharsets.UTF_8));
+		}
+
+		double amount = mantissa / POWERS_OF_TEN[fractionDigits];
+		return negative ? -amount : amount;
+	}
+
+}
@@ -0,0 +1,127 @@
+/**
+ * --------------------------------------------------------------------------------
+ * TransactionRecord.java
+ * --------------------------------------------------------------------------------
+ * A TransactionRecord is a line of transactions.txt parsed by a TransactionParser.
+ * --------------------------------------------------------------------------------
+ * It is mutable, so a single record is reused for every line:
+ * the user and the currencies are ids interned by the parser,
+ * the amount is a primitive double, and the optional timestamp is in milliseconds since the epoch.
+ * --------------------------------------------------------------------------------
+ */
+
+package parser;
+
+public class TransactionRecord {
+
+	/**
+	 * The ids of the user, of the currency to be converted from, and of the currency to be converted to.
+	 */
+	private int userId;
+	private int fromCurrencyId;
+	private int toCurrencyId;
+
+	/**
+	 * The amount of the fromCurrency to be converted.
+	 */
+	private double amount;
+
+	/**
+	 * The timestamp of the transaction, or Timestamps.NONE if the line has no timestamp.
+	 */
+	private long timestamp = Timestamps.NONE;
+
+	/**
+	 * The reason the line could not be parsed, or NONE.
+	 */
+	private ParseError error = ParseError.NONE;
+
+	/**
+	 * Default no-args constructor of an empty record.
+	 */
+	public TransactionRecord() {
+
+	}
+
+	/**
+	 * Retrieves the id of the user.
+	 *
+	 * @return the id of the user in the user symbols of the parser, or -1 if the line has not got 4 components.
+	 */
+	public int getUserId() {
+		return userId;
+	}
+
+	/**
+	 * Retrieves the id of the currency to be converted from.
+	 *
+	 * @return the id of the currency in the currency symbols of the parser.
+	 */
+	public int getFromCurrencyId() {
+		return fromCurrencyId;
+	}
+
+	/**
+	 * Retrieves the id of the currency to be converted to.
+	 *
+	 * @return the id of the currency in the currency symbols of the parser.
+	 */
+	public int getToCurrencyId() {
+		return toCurrencyId;
+	}
+
+	/**
+	 * Retrieves the amount of the fromCurrency to be converted.
+	 *
+	 * @return the amount, or 0 if it could not be parsed.
+	 */
+	public double getAmount() {
+		return amount;
+	}
+
+	/**
+	 * Retrieves the timestamp of the transaction.
+	 *
+	 * @return the milliseconds since the epoch, or Timestamps.NONE if the line has no timestamp.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Retrieves the reason the line could not be parsed.
+	 *
+	 * @return the reason, or NONE if the line was parsed.
+	 */
+	public ParseError getError() {
+		return error;
+	}
+
+	/**
+	 * Sets every field of the record, without a timestamp.
+	 *
+	 * @param userId 			The id of the user.
+	 * @param fromCurrencyId 	The id of the currency to be converted from.
+	 * @param toCurrencyId 		The id of the currency to be converted to.
+	 * @param amount 			The amount to be converted.
+	 * @param error 			The reason the line could not be parsed, or NONE.
+	 */
+	void sets(int userId, int fromCurrencyId, int toCurrencyId, double amount, ParseError error) {
+		this.userId = userId;
+		this.fromCurrencyId = fromCurrencyId;
+		this.toCurrencyId = toCurrencyId;
+		this.amount = amount;
+		this.timestamp = Timestamps.NONE;
+		this.error = error;
+	}
+
+	/**
+	 * Sets the timestamp of the transaction.
+	 *
+	 * @param timestamp 	The milliseconds since the epoch.
+	 */
+	void setsTimestamp(long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+}
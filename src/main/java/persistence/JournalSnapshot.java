@@ -0,0 +1,84 @@
+/**
+ * --------------------------------------------------------------------------------
+ * JournalSnapshot.java
+ * --------------------------------------------------------------------------------
+ * A JournalSnapshot is the state of every wallet after a given journal record.
+ * It comprises of the sequence number of the last record applied to the users,
+ * and the users themselves, in the same format as users.json.
+ * --------------------------------------------------------------------------------
+ */
+
+package persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import model.User;
+
+public class JournalSnapshot {
+
+	/**
+	 * Sequence number of the last journal record included in the snapshot.
+	 */
+	private long sequence;
+
+	/**
+	 * Every user, with their wallet after the last record included in the snapshot.
+	 */
+	private List <User> users = new ArrayList <> ();
+
+	/**
+	 * Creation of a snapshot.
+	 *
+	 * @param sequence 	Sequence number of the last journal record included in the snapshot.
+	 * @param users 	Every user, with their wallet.
+	 */
+	public JournalSnapshot(long sequence, List <User> users) {
+		this.sequence = sequence;
+		this.users = users;
+	}
+
+	/**
+	 * Default no-args constructor for Jackson Deserialisation.
+	 */
+	public JournalSnapshot() {
+
+	}
+
+	/**
+	 * Retrieves the sequence number of the last journal record included in the snapshot.
+	 *
+	 * @return the sequence number.
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Retrieves every user in the snapshot.
+	 *
+	 * @return the users.
+	 */
+	public List <User> getUsers() {
+		return users;
+	}
+
+	/**
+	 * Setters for Jackson Deserialisation.
+	 *
+	 * @param sequence Sequence number of the last journal record included in the snapshot.
+	 */
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Setters for Jackson Deserialisation.
+	 *
+	 * @param users Every user in the snapshot.
+	 */
+	public void setUsers(List <User> users) {
+		this.users = users;
+	}
+
+}
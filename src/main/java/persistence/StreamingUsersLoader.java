@@ -0,0 +1,427 @@
+/**
+ * --------------------------------------------------------------------------------
+ * StreamingUsersLoader.java
+ * --------------------------------------------------------------------------------
+ * A StreamingUsersLoader loads users.json by walking its top-level array with a JsonParser,
+ * and creating every user straight from its tokens, instead of databinding the whole
+ * list of users and their wallets as maps first.
+ * --------------------------------------------------------------------------------
+ * 1. Every wallet is read into reused arrays of codes and balances in minor units,
+ *    which become the packed holdings of the user, so the only objects left behind
+ *    by a user are the ones it keeps.
+ * 2. With more than one thread, users.json is memory-mapped and split into byte ranges
+ *    of whole users, found by a scan of the bytes that skips over strings.
+ *    The ranges are parsed in parallel on a ForkJoinPool, and their users are added
+ *    to the registry in the order of the file.
+ * --------------------------------------------------------------------------------
+ * The users loaded are the same as those databound by UserRegistry.load:
+ * a missing wallet is no wallet, a currency given twice keeps its first position and last value,
+ * and an unknown field is an error.
+ * --------------------------------------------------------------------------------
+ */
+
+package persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+
+import model.CurrencyCodes;
+import model.MinorUnits;
+import model.User;
+import model.UserRegistry;
+
+public final class StreamingUsersLoader {
+
+	/**
+	 * Number of byte ranges parsed by every thread, so that a thread done early takes another range.
+	 */
+	private static final int RANGES_PER_THREAD = 4;
+
+	/**
+	 * Smallest users.json split into ranges. A smaller file is parsed by a single thread.
+	 */
+	private static final long MIN_PARALLEL_LENGTH = 1 << 20;
+
+	/**
+	 * Largest number of digits of a number of minor units converted from its digits, below 2^53.
+	 */
+	private static final int MAX_EXACT_DIGITS = 15;
+
+	/**
+	 * Powers of ten, up to the largest scale of minor units.
+	 */
+	private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L };
+
+	/**
+	 * Factory of the parser of a whole users.json.
+	 */
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	/**
+	 * Factory of the parsers of the ranges, every one of which is read as an array that may end with a comma.
+	 */
+	private static final JsonFactory RANGE_FACTORY = JsonFactory.builder().enable(JsonReadFeature.ALLOW_TRAILING_COMMA).build();
+
+	/**
+	 * Brackets around a range of users that does not start or end users.json.
+	 */
+	private static final byte[] START_ARRAY = "[".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] END_ARRAY = "]".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Reused arrays of the codes and balances of the wallet being read.
+	 */
+	private int[] packedCodes = new int[16];
+	private long[] balances = new long[16];
+
+	/**
+	 * Every user is created by a single loader, which is not shared between threads.
+	 */
+	private StreamingUsersLoader() {
+
+	}
+
+	/**
+	 * Loads every user from users.json.
+	 *
+	 * @param usersFile 	The users.json file.
+	 * @param threads 		The number of threads parsing users.json.
+	 * @return 				a registry holding every user in users.json.
+	 * @throws IOException 	The exception thrown if there is an error reading or parsing users.json.
+	 */
+	public static UserRegistry loads(File usersFile, int threads) throws IOException {
+		return loads(usersFile, threads, new UserRegistry());
+	}
+
+	/**
+	 * Loads every user from users.json into a registry, e.g. one holding its users in a WalletStore.
+	 *
+	 * @param usersFile 	The users.json file.
+	 * @param threads 		The number of threads parsing users.json.
+	 * @param users 		The empty registry to add every user to, in order.
+	 * @return 				the registry.
+	 * @throws IOException 	The exception thrown if there is an error reading or parsing users.json.
+	 */
+	public static UserRegistry loads(File usersFile, int threads, UserRegistry users) throws IOException {
+		if (threads <= 1 || usersFile.length() < MIN_PARALLEL_LENGTH) {
+			try (JsonParser parser = JSON_FACTORY.createParser(usersFile)) {
+				new StreamingUsersLoader().readsUsers(parser, users::add);
+			}
+			return users;
+		}
+		return loadsInParallel(usersFile, threads, users);
+	}
+
+	/**
+	 * Loads every user from byte ranges of a memory-mapped users.json, parsed in parallel.
+	 *
+	 * @param usersFile 	The users.json file.
+	 * @param threads 		The number of threads parsing users.json.
+	 * @param users 		The empty registry to add every user to, in order.
+	 * @return 				the registry.
+	 * @throws IOException 	The exception thrown if there is an error reading or parsing users.json.
+	 */
+	private static UserRegistry loadsInParallel(File usersFile, int threads, UserRegistry users) throws IOException {
+		MappedByteBuffer bytes;
+		try (FileChannel channel = FileChannel.open(usersFile.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				return loads(usersFile, 1, users);
+			}
+			bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		int[] boundaries = splits(bytes, threads * RANGES_PER_THREAD);
+
+		List <Callable <List <User>>> tasks = new ArrayList <> (boundaries.length - 1);
+		for (int i = 0; i < boundaries.length - 1; i++) {
+			ByteBuffer range = bytes.slice(boundaries[i], boundaries[i + 1] - boundaries[i]);
+			boolean first = i == 0;
+			boolean last = i == boundaries.length - 2;
+			tasks.add(() -> {
+				List <User> rangeUsers = new ArrayList <> ();
+				try (JsonParser parser = RANGE_FACTORY.createParser(inputStreamOf(range, first, last))) {
+					new StreamingUsersLoader().readsUsers(parser, rangeUsers::add);
+				}
+				return rangeUsers;
+			});
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			List <Future <List <User>>> ranges = pool.invokeAll(tasks);
+			for (Future <List <User>> range : ranges) {
+				for (User user : range.get()) {
+					users.add(user);
+				}
+			}
+			return users;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading " + usersFile, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Unable to load " + usersFile, e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Splits users.json into ranges of whole users: every boundary but the first and the last
+	 * is just after a comma between two users.
+	 *
+	 * @param bytes 	The bytes of users.json.
+	 * @param ranges 	The number of ranges wanted.
+	 * @return 			the boundaries of the ranges, from 0 to the length of users.json, at most ranges + 1 of them.
+	 */
+	static int[] splits(ByteBuffer bytes, int ranges) {
+		int length = bytes.limit();
+		int[] boundaries = new int[ranges + 1];
+		int count = 1;
+		long nextBoundary = (long) length / ranges;
+		int depth = 0;
+		boolean inString = false;
+		for (int i = 0; i < length; i++) {
+			byte b = bytes.get(i);
+			if (inString) {
+				if (b == '\\') {
+					i++;
+				} else if (b == '"') {
+					inString = false;
+				}
+			} else if (b == '"') {
+				inString = true;
+			} else if (b == '{' || b == '[') {
+				depth++;
+			} else if (b == '}' || b == ']') {
+				depth--;
+			} else if (b == ',' && depth == 1 && i >= nextBoundary && count < ranges) {
+				boundaries[count++] = i + 1;
+				nextBoundary = (long) length * count / ranges;
+			}
+		}
+		boundaries[count++] = length;
+		return Arrays.copyOf(boundaries, count);
+	}
+
+	/**
+	 * Reads a range of users.json as an array of users.
+	 *
+	 * @param range 	The bytes of the range.
+	 * @param first 	True if the range starts users.json, and so its array.
+	 * @param last 		True if the range ends users.json, and so its array.
+	 * @return 			the bytes of the range, between brackets where users.json has none.
+	 */
+	private static InputStream inputStreamOf(ByteBuffer range, boolean first, boolean last) {
+		InputStream inputStream = new ByteBufferInputStream(range);
+		if (!first) {
+			inputStream = new SequenceInputStream(new ByteBufferInputStream(ByteBuffer.wrap(START_ARRAY)), inputStream);
+		}
+		if (!last) {
+			inputStream = new SequenceInputStream(inputStream, new ByteBufferInputStream(ByteBuffer.wrap(END_ARRAY)));
+		}
+		return inputStream;
+	}
+
+	/**
+	 * Reads every user of an array of users.
+	 *
+	 * @param parser 		The parser, before the array.
+	 * @param users 		Receives every user, in order.
+	 * @throws IOException 	The exception thrown if there is an error reading the users, or they are not an array of users.
+	 */
+	private void readsUsers(JsonParser parser, Consumer <User> users) throws IOException {
+		if (parser.nextToken() != JsonToken.START_ARRAY) {
+			throw new JsonParseException(parser, "users.json is not an array of users.");
+		}
+		JsonToken token;
+		while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+			users.accept(readsUser(parser));
+		}
+		if (token != JsonToken.END_ARRAY) {
+			throw new JsonParseException(parser, "A user of users.json is not an object.");
+		}
+	}
+
+	/**
+	 * Reads a user.
+	 *
+	 * @param parser 		The parser, at the start of the user.
+	 * @return 				the user.
+	 * @throws IOException 	The exception thrown if there is an error reading the user, or it has an unknown field.
+	 */
+	private User readsUser(JsonParser parser) throws IOException {
+		String name = null;
+		int size = -1;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if (value.isStructStart() && !"wallet".equals(field)) {
+				throw new JsonParseException(parser, "The field \"" + field + "\" of a user is not a value.");
+			}
+			if ("name".equals(field)) {
+				name = value == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+			} else if ("wallet".equals(field)) {
+				size = value == JsonToken.VALUE_NULL ? -1 : readsWallet(parser);
+			} else {
+				throw new JsonParseException(parser, "Unrecognized field \"" + field + "\" of a user.");
+			}
+		}
+		return User.restores(name, packedCodes, balances, size);
+	}
+
+	/**
+	 * Reads a wallet into the reused arrays of codes and balances.
+	 *
+	 * @param parser 		The parser, at the start of the wallet.
+	 * @return 				the number of currencies in the wallet.
+	 * @throws IOException 	The exception thrown if there is an error reading the wallet, or a value is not a number.
+	 */
+	private int readsWallet(JsonParser parser) throws IOException {
+		if (parser.currentToken() != JsonToken.START_OBJECT) {
+			throw new JsonParseException(parser, "The wallet of a user is not an object.");
+		}
+		int size = 0;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String currency = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			MinorUnits units = MinorUnits.of(currency);
+			long balance;
+			if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+				balance = minorUnitsOf(parser, units);
+			} else if (value == JsonToken.VALUE_STRING) {
+				try {
+					balance = units.toMinor(Double.parseDouble(parser.getText().trim()));
+				} catch (NumberFormatException e) {
+					throw new JsonParseException(parser, "The value of " + currency + " is not a number.", e);
+				}
+			} else {
+				throw new JsonParseException(parser, "The value of " + currency + " is not a number.");
+			}
+
+			int packedCode = CurrencyCodes.registers(currency);
+			int index = indexOf(packedCode, size);
+			if (index >= 0) {
+				balances[index] = balance;
+				continue;
+			}
+			if (size == packedCodes.length) {
+				packedCodes = Arrays.copyOf(packedCodes, size * 2);
+				balances = Arrays.copyOf(balances, size * 2);
+			}
+			packedCodes[size] = packedCode;
+			balances[size] = balance;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Converts a number to minor units, as MinorUnits.toMinor converts the double it is parsed to.
+	 * A number of at most 15 digits, with no more decimals than the minor units, is converted from its digits,
+	 * since its double is then close enough to it to be rounded back to it. Any other number is parsed to a double.
+	 *
+	 * @param parser 		The parser, at the number.
+	 * @param units 		The minor units of the currency.
+	 * @return 				the number of minor units.
+	 * @throws IOException 	The exception thrown if there is an error reading the number.
+	 */
+	private static long minorUnitsOf(JsonParser parser, MinorUnits units) throws IOException {
+		char[] text = parser.getTextCharacters();
+		int start = parser.getTextOffset();
+		int end = start + parser.getTextLength();
+		boolean negative = start < end && text[start] == '-';
+		long digits = 0;
+		int numberOfDigits = 0;
+		int decimals = -1;
+		for (int i = negative ? start + 1 : start; i < end; i++) {
+			char c = text[i];
+			if (c >= '0' && c <= '9') {
+				digits = digits * 10 + (c - '0');
+				numberOfDigits++;
+				if (decimals >= 0) {
+					decimals++;
+				}
+			} else if (c == '.' && decimals < 0) {
+				decimals = 0;
+			} else {
+				// An exponent.
+				return units.toMinor(parser.getDoubleValue());
+			}
+		}
+		int scale = units.getScale();
+		decimals = Math.max(decimals, 0);
+		if (numberOfDigits + scale - decimals > MAX_EXACT_DIGITS || decimals > scale) {
+			return units.toMinor(parser.getDoubleValue());
+		}
+		long minor = digits * POWERS_OF_TEN[scale - decimals];
+		return negative ? -minor : minor;
+	}
+
+	/**
+	 * Retrieves the index of a currency in the wallet being read.
+	 *
+	 * @param packedCode 	The packed code of the currency.
+	 * @param size 			The number of currencies read so far.
+	 * @return 				the index of the currency, or -1 if it has not been read yet.
+	 */
+	private int indexOf(int packedCode, int size) {
+		for (int i = 0; i < size; i++) {
+			if (packedCodes[i] == packedCode) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * An input stream of the remaining bytes of a buffer.
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+
+	}
+
+}
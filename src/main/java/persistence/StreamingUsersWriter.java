@@ -0,0 +1,244 @@
+/**
+ * --------------------------------------------------------------------------------
+ * StreamingUsersWriter.java
+ * --------------------------------------------------------------------------------
+ * A StreamingUsersWriter rewrites users.json by re-encoding only the users that are
+ * dirty since the last flush, instead of re-serializing every user through databind.
+ * --------------------------------------------------------------------------------
+ * 1. Every write records where every user starts in users.json.
+ * 2. The next write copies every run of clean users from the previous users.json
+ *    as one range of bytes, and encodes every dirty user with a JsonGenerator.
+ * 3. The first write, or a write after users.json changed behind the writer's back,
+ *    encodes every user, since there are no ranges to copy from.
+ * --------------------------------------------------------------------------------
+ * The output is byte for byte what an ObjectMapper writes for the list of users,
+ * so users.json can be read back, or rewritten by databind, as before.
+ * --------------------------------------------------------------------------------
+ */
+
+package persistence;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import model.User;
+
+public class StreamingUsersWriter {
+
+	/**
+	 * Size of the buffer between the JsonGenerator and the file.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * ObjectMapper of the encoded users. The output is neither closed nor flushed by Jackson,
+	 * so that it is written to the file in whole buffers.
+	 */
+	private final ObjectMapper objectMapper = new ObjectMapper()
+			.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+			.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+
+	/**
+	 * Byte offset of every user in the last users.json written, followed by the offset of its closing bracket,
+	 * and the length of that users.json. Null before the first write, or after a failed write.
+	 */
+	private long[] offsets;
+	private long length;
+
+	/**
+	 * Number of users encoded and copied by the last write.
+	 */
+	private int usersEncoded;
+	private int usersCopied;
+
+	/**
+	 * Writes the users to a temporary file, syncs it to disk, and renames it over users.json.
+	 * Clean users are copied from users.json if it is the last file written, and dirty users are encoded.
+	 *
+	 * @param users 			The users to write, in the order they are serialized.
+	 * @param temporaryFile 	The temporary file, in the same directory as users.json.
+	 * @param destination 		The users.json file.
+	 * @throws IOException 		The exception thrown if there is an error reading, writing or renaming the files.
+	 */
+	public void writesAtomically(List <User> users, File temporaryFile, File destination) throws IOException {
+		long[] previousOffsets = offsets;
+		boolean copies = previousOffsets != null && previousOffsets.length == users.size() + 1 && destination.length() == length;
+		offsets = null;
+		long[] writtenOffsets = new long[users.size() + 1];
+		long writtenLength;
+		usersEncoded = 0;
+		usersCopied = 0;
+
+		try (FileChannel previous = copies ? FileChannel.open(destination.toPath(), StandardOpenOption.READ) : null;
+			 FileOutputStream outputStream = new FileOutputStream(temporaryFile)) {
+			ChannelOutput output = new ChannelOutput(outputStream.getChannel());
+			output.write('[');
+			int firstClean = -1;
+			for (int i = 0; i < users.size(); i++) {
+				User user = users.get(i);
+				if (copies && !user.isDirty()) {
+					if (firstClean < 0) {
+						firstClean = i;
+					}
+					continue;
+				}
+				if (firstClean >= 0) {
+					copies(previous, previousOffsets, firstClean, i, output, writtenOffsets);
+					firstClean = -1;
+				}
+				writtenOffsets[i] = output.getPosition();
+				encodes(user, output);
+				if (i < users.size() - 1) {
+					output.write(',');
+				}
+			}
+			if (firstClean >= 0) {
+				copies(previous, previousOffsets, firstClean, users.size(), output, writtenOffsets);
+			}
+			writtenOffsets[users.size()] = output.getPosition();
+			output.write(']');
+			output.flush();
+			writtenLength = output.getPosition();
+			outputStream.getFD().sync();
+		}
+		WriteBehindPersister.movesAtomically(temporaryFile, destination);
+		offsets = writtenOffsets;
+		length = writtenLength;
+	}
+
+	/**
+	 * Retrieves the number of users encoded by the last write.
+	 *
+	 * @return the number of users encoded with a JsonGenerator.
+	 */
+	public int getUsersEncoded() {
+		return usersEncoded;
+	}
+
+	/**
+	 * Retrieves the number of users copied from the previous users.json by the last write.
+	 *
+	 * @return the number of users copied as bytes.
+	 */
+	public int getUsersCopied() {
+		return usersCopied;
+	}
+
+	/**
+	 * Encodes a user, as an ObjectMapper encodes it in a list of users.
+	 *
+	 * @param user 			The user.
+	 * @param output 		The output.
+	 * @throws IOException 	The exception thrown if there is an error writing the user.
+	 */
+	private void encodes(User user, OutputStream output) throws IOException {
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+			objectMapper.writeValue(generator, user);
+		}
+		usersEncoded++;
+	}
+
+	/**
+	 * Copies a run of clean users from the previous users.json, with the comma after the last of them if there is one.
+	 *
+	 * @param previous 			The previous users.json.
+	 * @param previousOffsets 	The offsets of the users in the previous users.json.
+	 * @param from 				The index of the first user of the run.
+	 * @param to 				The index after the last user of the run.
+	 * @param output 			The output.
+	 * @param writtenOffsets 	The offsets of the users in the output, filled in for the run.
+	 * @throws IOException 		The exception thrown if there is an error reading or writing the users.
+	 */
+	private void copies(FileChannel previous, long[] previousOffsets, int from, int to,
+						ChannelOutput output, long[] writtenOffsets) throws IOException {
+		long start = output.getPosition();
+		for (int i = from; i < to; i++) {
+			writtenOffsets[i] = start + previousOffsets[i] - previousOffsets[from];
+		}
+		output.transfers(previous, previousOffsets[from], previousOffsets[to] - previousOffsets[from]);
+		usersCopied += to - from;
+	}
+
+	/**
+	 * A buffered output to a file channel, which counts the bytes written to it,
+	 * and copies ranges of another file without passing them through the buffer.
+	 */
+	private static final class ChannelOutput extends OutputStream {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		private long position;
+
+		ChannelOutput(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		long getPosition() {
+			return position;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (!buffer.hasRemaining()) {
+				flush();
+			}
+			buffer.put((byte) b);
+			position++;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			while (length > 0) {
+				if (!buffer.hasRemaining()) {
+					flush();
+				}
+				int count = Math.min(length, buffer.remaining());
+				buffer.put(bytes, offset, count);
+				offset += count;
+				length -= count;
+				position += count;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		/**
+		 * Copies a range of a file to the output.
+		 *
+		 * @param source 		The file to copy from.
+		 * @param from 			The offset of the range in the file.
+		 * @param count 		The length of the range.
+		 * @throws IOException 	The exception thrown if the file is shorter than the range, or cannot be copied.
+		 */
+		void transfers(FileChannel source, long from, long count) throws IOException {
+			flush();
+			long transferred = 0;
+			while (transferred < count) {
+				long written = source.transferTo(from + transferred, count - transferred, channel);
+				if (written <= 0) {
+					throw new IOException("Unable to copy the users from offset " + (from + transferred) + " of users.json.");
+				}
+				transferred += written;
+			}
+			position += count;
+		}
+
+	}
+
+}
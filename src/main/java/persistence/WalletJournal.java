@@ -0,0 +1,493 @@
+/**
+ * --------------------------------------------------------------------------------
+ * WalletJournal.java
+ * --------------------------------------------------------------------------------
+ * A WalletJournal makes every applied conversion durable with an O(1) append
+ * to a write-ahead journal, instead of a rewrite of users.json.
+ * --------------------------------------------------------------------------------
+ * 1. Every conversion is appended as one compact record:
+ *    the sequence number, the user, the from/to currencies and both amounts.
+ *    The record is flushed to the OS before the append returns, so it survives a crash of the process.
+ *    The journal is synced to disk (group commit) by the record that reaches N records, or T milliseconds,
+ *    since the last sync, so that records also survive a power loss or a crash of the OS.
+ *    Such a crash loses the records appended since the last sync, unless every record is synced (N = 1).
+ * 2. Every N records, once the caller takes a checkpoint, the journal is compacted: the wallets are written to a snapshot
+ *    (and exported to users.json), after which the journal is emptied.
+ * 3. On startup, the latest snapshot is loaded, and the records after it are replayed.
+ * --------------------------------------------------------------------------------
+ * Journal format: a header (magic number, version), followed by records of
+ * [int payload length][payload][int CRC32 of payload].
+ * A torn record at the tail, left behind by a crash, fails its length or checksum,
+ * and is truncated during recovery.
+ * --------------------------------------------------------------------------------
+ */
+
+package persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import model.User;
+import model.UserRegistry;
+
+public class WalletJournal implements WalletPersistence {
+
+	/**
+	 * Journal header: "FXJ1" followed by the format version.
+	 */
+	private static final int MAGIC = 0x46584A31;
+	private static final int VERSION = 1;
+	private static final int HEADER_LENGTH = 8;
+
+	/**
+	 * Upper bound of a record payload. A larger length can only come from a torn or corrupted record.
+	 */
+	private static final int MAX_PAYLOAD_LENGTH = 1 << 16;
+
+	/**
+	 * Suffix of the temporary files written before they are renamed.
+	 */
+	private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+	/**
+	 * The journal, the snapshot it is based on, and users.json, which every snapshot is exported to.
+	 */
+	private final File journalFile;
+	private final File snapshotFile;
+	private final File usersFile;
+
+	/**
+	 * Supplies the users written to every snapshot, in the order they are serialized.
+	 */
+	private final Supplier <? extends List <User>> users;
+
+	/**
+	 * Number of records after which the journal is compacted into a snapshot. 0 disables compaction until shutdown.
+	 */
+	private final int snapshotEveryRecords;
+
+	/**
+	 * Number of records, and number of milliseconds, after which the journal is synced to disk. 0 disables either.
+	 */
+	private final int syncEveryRecords;
+	private final long syncIntervalMillis;
+
+	/**
+	 * ObjectMapper reused for every snapshot. The target is not closed by Jackson,
+	 * so that it can be synced to disk before it is renamed.
+	 */
+	private final ObjectMapper objectMapper = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+	/**
+	 * Reused buffers for the payload of a record, and its checksum.
+	 */
+	private ByteBuffer payload = ByteBuffer.allocate(256);
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * The open journal, the file it is appended to, the sequence number of the last record, and the number of records since the last snapshot.
+	 */
+	private DataOutputStream outputStream;
+	private FileOutputStream fileOutputStream;
+	private long sequence;
+	private int recordsSinceSnapshot;
+
+	/**
+	 * Number of records appended since the last sync, the time of the last sync, and the number of syncs.
+	 */
+	private int recordsSinceSync;
+	private long lastSyncMillis = System.currentTimeMillis();
+	private long syncs;
+
+	/**
+	 * Creation of a journal only synced to disk by its snapshots.
+	 *
+	 * @param journalFile 			The journal file.
+	 * @param snapshotFile 			The snapshot file.
+	 * @param usersFile 			The users.json file, loaded if there is no snapshot yet, and exported to with every snapshot.
+	 * @param users 				Supplies the users written to every snapshot.
+	 * @param snapshotEveryRecords 	Number of records after which the journal is compacted into a snapshot.
+	 */
+	public WalletJournal(File journalFile,
+						 File snapshotFile,
+						 File usersFile,
+						 Supplier <? extends List <User>> users,
+						 int snapshotEveryRecords) {
+		this(journalFile, snapshotFile, usersFile, users, snapshotEveryRecords, 0, 0);
+	}
+
+	/**
+	 * Creation of a journal.
+	 *
+	 * @param journalFile 			The journal file.
+	 * @param snapshotFile 			The snapshot file.
+	 * @param usersFile 			The users.json file, loaded if there is no snapshot yet, and exported to with every snapshot.
+	 * @param users 				Supplies the users written to every snapshot.
+	 * @param snapshotEveryRecords 	Number of records after which the journal is compacted into a snapshot.
+	 * @param syncEveryRecords 		Number of records after which the journal is synced to disk (0 disables).
+	 * @param syncIntervalMillis 	Number of milliseconds after which the journal is synced to disk by the next record (0 disables).
+	 */
+	public WalletJournal(File journalFile,
+						 File snapshotFile,
+						 File usersFile,
+						 Supplier <? extends List <User>> users,
+						 int snapshotEveryRecords,
+						 int syncEveryRecords,
+						 long syncIntervalMillis) {
+		this.journalFile = journalFile;
+		this.snapshotFile = snapshotFile;
+		this.usersFile = usersFile;
+		this.users = users;
+		this.snapshotEveryRecords = snapshotEveryRecords;
+		this.syncEveryRecords = syncEveryRecords;
+		this.syncIntervalMillis = syncIntervalMillis;
+	}
+
+	/**
+	 * Loads the latest snapshot, or users.json if there is none, replays the records of the journal after it,
+	 * and opens the journal for appending.
+	 *
+	 * @return 				a registry of every user, with their wallet after the last record in the journal.
+	 * @throws IOException 	The exception thrown if there is an error reading or writing to the file system.
+	 */
+	public UserRegistry recovers() throws IOException {
+		return recovers(new UserRegistry());
+	}
+
+	/**
+	 * Loads the latest snapshot, or users.json if there is none, into a registry, e.g. one holding its users in a WalletStore,
+	 * replays the records of the journal after it, and opens the journal for appending.
+	 *
+	 * @param into 			The empty registry to add every user to.
+	 * @return 				the registry, with every wallet after the last record in the journal.
+	 * @throws IOException 	The exception thrown if there is an error reading or writing to the file system.
+	 */
+	public UserRegistry recovers(UserRegistry into) throws IOException {
+		UserRegistry recoveredUsers = into;
+		if (snapshotFile.exists()) {
+			JournalSnapshot snapshot = objectMapper.readValue(snapshotFile, JournalSnapshot.class);
+			for (User user : snapshot.getUsers()) {
+				recoveredUsers.add(user);
+			}
+			sequence = snapshot.getSequence();
+		} else {
+			if (usersFile.exists()) {
+				StreamingUsersLoader.loads(usersFile, 1, recoveredUsers);
+			}
+			sequence = 0;
+		}
+
+		long validLength = HEADER_LENGTH;
+		if (journalFile.exists() && journalFile.length() >= HEADER_LENGTH) {
+			validLength = replays(recoveredUsers);
+		} else {
+			writesEmptyJournal();
+		}
+
+		// Truncate a torn record left behind by a crash before appending after it.
+		try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+			if (file.length() > validLength) {
+				file.setLength(validLength);
+			}
+		}
+		opensForAppending();
+		return recoveredUsers;
+	}
+
+	/**
+	 * Appends a record of the conversion to the journal.
+	 */
+	@Override
+	public synchronized void recordsConversion(User user,
+											   String fromCurrency,
+											   String toCurrency,
+											   double amountToConvert,
+											   double amountToIncreaseToCurrencyBy) throws IOException {
+		appends(user.getName(), fromCurrency, toCurrency, amountToConvert, amountToIncreaseToCurrencyBy);
+		outputStream.flush();
+		recordsSinceSnapshot++;
+		recordsSinceSync++;
+		if ((syncEveryRecords > 0 && recordsSinceSync >= syncEveryRecords)
+				|| (syncIntervalMillis > 0 && System.currentTimeMillis() - lastSyncMillis >= syncIntervalMillis)) {
+			syncs();
+		}
+	}
+
+	/**
+	 * Checks if the journal has reached N records since the last snapshot.
+	 */
+	@Override
+	public synchronized boolean isCheckpointDue() {
+		return snapshotEveryRecords > 0 && recordsSinceSnapshot >= snapshotEveryRecords;
+	}
+
+	/**
+	 * Compacts the journal into a snapshot.
+	 */
+	@Override
+	public void checkpoint() throws IOException {
+		compacts();
+	}
+
+	/**
+	 * Writes every appended record to the journal file.
+	 *
+	 * @throws IOException The exception thrown if there is an error writing to the journal.
+	 */
+	public synchronized void flush() throws IOException {
+		outputStream.flush();
+	}
+
+	/**
+	 * Writes every appended record to the journal file, and syncs it to disk.
+	 *
+	 * @throws IOException The exception thrown if there is an error writing to the journal.
+	 */
+	public synchronized void syncs() throws IOException {
+		outputStream.flush();
+		fileOutputStream.getFD().sync();
+		recordsSinceSync = 0;
+		lastSyncMillis = System.currentTimeMillis();
+		syncs++;
+	}
+
+	/**
+	 * Retrieves the number of times the journal has been synced to disk since it was opened.
+	 *
+	 * @return the number of syncs.
+	 */
+	public synchronized long getSyncs() {
+		return syncs;
+	}
+
+	/**
+	 * Compacts the journal into a final snapshot, and closes it.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (outputStream == null) {
+			return;
+		}
+		if (recordsSinceSnapshot > 0 || !snapshotFile.exists()) {
+			compacts();
+		}
+		outputStream.close();
+		outputStream = null;
+		fileOutputStream = null;
+	}
+
+	/**
+	 * Writes every wallet to the snapshot and users.json, and empties the journal.
+	 * The snapshot records the sequence number of the last record it includes,
+	 * so a crash at any point of the compaction never replays a record twice.
+	 *
+	 * @throws IOException The exception thrown if there is an error writing to the file system.
+	 */
+	public synchronized void compacts() throws IOException {
+		outputStream.flush();
+		List <User> snapshot = users.get();
+
+		WriteBehindPersister.writesAtomically(objectMapper, new JournalSnapshot(sequence, snapshot),
+				new File(snapshotFile.getPath() + TEMPORARY_FILE_SUFFIX), snapshotFile);
+		WriteBehindPersister.writesAtomically(objectMapper, snapshot,
+				new File(usersFile.getPath() + TEMPORARY_FILE_SUFFIX), usersFile);
+		for (User user : snapshot) {
+			user.marksClean();
+		}
+
+		outputStream.close();
+		writesEmptyJournal();
+		opensForAppending();
+		recordsSinceSnapshot = 0;
+		// The records are durable in the snapshot.
+		recordsSinceSync = 0;
+		lastSyncMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * Opens the journal for appending records after its last one.
+	 *
+	 * @throws IOException The exception thrown if the journal cannot be opened.
+	 */
+	private void opensForAppending() throws IOException {
+		fileOutputStream = new FileOutputStream(journalFile, true);
+		outputStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream, 1 << 16));
+	}
+
+	/**
+	 * Retrieves the sequence number of the last record appended to or replayed from the journal.
+	 *
+	 * @return the sequence number of the last record.
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Retrieves the number of records appended since the last snapshot.
+	 *
+	 * @return the number of records in the journal.
+	 */
+	public int getRecordsSinceSnapshot() {
+		return recordsSinceSnapshot;
+	}
+
+	/**
+	 * Appends a record to the journal without flushing it.
+	 *
+	 * @param name 							The name of the user.
+	 * @param fromCurrency 					The currency converted from.
+	 * @param toCurrency 					The currency converted to.
+	 * @param amountToConvert 				The amount of the fromCurrency removed from the wallet.
+	 * @param amountToIncreaseToCurrencyBy 	The amount of the toCurrency added to the wallet.
+	 * @throws IOException 					The exception thrown if there is an error writing to the journal.
+	 */
+	void appends(String name,
+				 String fromCurrency,
+				 String toCurrency,
+				 double amountToConvert,
+				 double amountToIncreaseToCurrencyBy) throws IOException {
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		byte[] fromBytes = fromCurrency.getBytes(StandardCharsets.UTF_8);
+		byte[] toBytes = toCurrency.getBytes(StandardCharsets.UTF_8);
+		int length = Long.BYTES + 3 * Short.BYTES + nameBytes.length + fromBytes.length + toBytes.length + 2 * Double.BYTES;
+		if (payload.capacity() < length) {
+			payload = ByteBuffer.allocate(Math.max(length, payload.capacity() * 2));
+		}
+
+		payload.clear();
+		payload.putLong(++sequence);
+		putsString(nameBytes);
+		putsString(fromBytes);
+		putsString(toBytes);
+		payload.putDouble(amountToConvert);
+		payload.putDouble(amountToIncreaseToCurrencyBy);
+
+		crc.reset();
+		crc.update(payload.array(), 0, length);
+		outputStream.writeInt(length);
+		outputStream.write(payload.array(), 0, length);
+		outputStream.writeInt((int) crc.getValue());
+	}
+
+	/**
+	 * Replays every intact record after the loaded snapshot onto the users.
+	 *
+	 * @param recoveredUsers 	The users loaded from the snapshot. Users only found in the journal are added.
+	 * @return 					the length of the journal up to the end of the last intact record.
+	 * @throws IOException 		The exception thrown if there is an error reading the journal.
+	 */
+	private long replays(UserRegistry recoveredUsers) throws IOException {
+		long validLength = HEADER_LENGTH;
+		byte[] buffer = new byte[256];
+		try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile), 1 << 16))) {
+			if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+				throw new IOException("Unsupported journal format: " + journalFile);
+			}
+
+			while (true) {
+				int length;
+				int checksum;
+				try {
+					length = inputStream.readInt();
+					if (length <= 0 || length > MAX_PAYLOAD_LENGTH) {
+						break;
+					}
+					if (buffer.length < length) {
+						buffer = new byte[Math.max(length, buffer.length * 2)];
+					}
+					inputStream.readFully(buffer, 0, length);
+					checksum = inputStream.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+
+				crc.reset();
+				crc.update(buffer, 0, length);
+				if ((int) crc.getValue() != checksum) {
+					break;
+				}
+				validLength += Integer.BYTES + length + Integer.BYTES;
+
+				ByteBuffer record = ByteBuffer.wrap(buffer, 0, length);
+				long recordSequence = record.getLong();
+				String name = getsString(record);
+				String fromCurrency = getsString(record);
+				String toCurrency = getsString(record);
+				double amountToConvert = record.getDouble();
+				double amountToIncreaseToCurrencyBy = record.getDouble();
+				if (recordSequence <= sequence) {
+					continue;
+				}
+
+				User user = recoveredUsers.get(name);
+				if (user == null) {
+					// A registry holding its users in a store copies the user, so the user is looked up again.
+					recoveredUsers.add(new User(name));
+					user = recoveredUsers.get(name);
+				}
+				user.updatesWallet(fromCurrency, toCurrency, amountToConvert, amountToIncreaseToCurrencyBy);
+				sequence = recordSequence;
+				recordsSinceSnapshot++;
+			}
+		}
+		return validLength;
+	}
+
+	/**
+	 * Replaces the journal with one holding only the header.
+	 *
+	 * @throws IOException The exception thrown if there is an error writing the journal.
+	 */
+	private void writesEmptyJournal() throws IOException {
+		File temporaryFile = new File(journalFile.getPath() + TEMPORARY_FILE_SUFFIX);
+		try (FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile);
+			 DataOutputStream headerStream = new DataOutputStream(fileOutputStream)) {
+			headerStream.writeInt(MAGIC);
+			headerStream.writeInt(VERSION);
+			headerStream.flush();
+			fileOutputStream.getFD().sync();
+		}
+		WriteBehindPersister.movesAtomically(temporaryFile, journalFile);
+	}
+
+	/**
+	 * Puts a length-prefixed string into the payload.
+	 *
+	 * @param bytes The UTF-8 bytes of the string.
+	 */
+	private void putsString(byte[] bytes) {
+		payload.putShort((short) bytes.length);
+		payload.put(bytes);
+	}
+
+	/**
+	 * Gets a length-prefixed string from a record.
+	 *
+	 * @param record 	The record positioned at the string.
+	 * @return 			the string.
+	 */
+	private static String getsString(ByteBuffer record) {
+		int length = record.getShort() & 0xFFFF;
+		String value = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+		record.position(record.position() + length);
+		return value;
+	}
+
+}
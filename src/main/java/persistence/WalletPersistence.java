@@ -0,0 +1,60 @@
+/**
+ * --------------------------------------------------------------------------------
+ * WalletPersistence.java
+ * --------------------------------------------------------------------------------
+ * A WalletPersistence makes the wallet updates of valid transactions durable.
+ * Every applied conversion is recorded, and is safe to record from several threads.
+ * --------------------------------------------------------------------------------
+ * Writing every wallet to disk (a checkpoint) reads every user, so it is never
+ * triggered by recording a conversion. Instead, the caller asks whether
+ * a checkpoint is due, and takes it at a point where no conversion is being applied.
+ * --------------------------------------------------------------------------------
+ */
+
+package persistence;
+
+import java.io.IOException;
+
+import model.User;
+
+public interface WalletPersistence extends AutoCloseable {
+
+	/**
+	 * Records a conversion that has been applied to the user's wallet.
+	 *
+	 * @param user 							The user involved in the conversion.
+	 * @param fromCurrency 					The currency converted from.
+	 * @param toCurrency 					The currency converted to.
+	 * @param amountToConvert 				The amount of the fromCurrency removed from the wallet.
+	 * @param amountToIncreaseToCurrencyBy 	The amount of the toCurrency added to the wallet.
+	 * @throws IOException 					The exception thrown if there is an error writing to the file system.
+	 */
+	void recordsConversion(User user,
+						   String fromCurrency,
+						   String toCurrency,
+						   double amountToConvert,
+						   double amountToIncreaseToCurrencyBy) throws IOException;
+
+	/**
+	 * Checks if the policy of the implementation requires a checkpoint.
+	 *
+	 * @return true if a checkpoint is due, false otherwise.
+	 */
+	boolean isCheckpointDue();
+
+	/**
+	 * Writes every wallet to disk. Must not be called while a conversion is being applied.
+	 *
+	 * @throws IOException The exception thrown if there is an error writing to the file system.
+	 */
+	void checkpoint() throws IOException;
+
+	/**
+	 * Writes every recorded conversion to disk at shutdown, and releases the files in use.
+	 *
+	 * @throws IOException The exception thrown if there is an error writing to the file system.
+	 */
+	@Override
+	void close() throws IOException;
+
+}
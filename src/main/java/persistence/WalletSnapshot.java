@@ -0,0 +1,230 @@
+/**
+ * --------------------------------------------------------------------------------
+ * WalletSnapshot.java
+ * --------------------------------------------------------------------------------
+ * A WalletSnapshot is every user and wallet in a compact binary file,
+ * which is memory-mapped and read without parsing at startup, instead of databinding users.json.
+ * --------------------------------------------------------------------------------
+ * Format, big-endian:
+ * 1. A header: the magic number "FXW1", the format version,
+ *    the number of currencies and the number of users.
+ * 2. The currency table: for every currency id, in order, the scale of its minor units,
+ *    and its code, prefixed by its length in bytes.
+ * 3. For every user, in order: the name, prefixed by its length in bytes,
+ *    the number of currencies in the wallet (-1 if the user has no wallet),
+ *    and for every currency its id and its balance in minor units.
+ * --------------------------------------------------------------------------------
+ * Currency ids are local to the file, so codes that cannot be packed (see CurrencyCodes)
+ * are registered again when the snapshot is read.
+ * A balance written at a scale other than the configured one is rescaled when it is read.
+ * --------------------------------------------------------------------------------
+ */
+
+package persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.CurrencyCodes;
+import model.MinorUnits;
+import model.User;
+import model.UserRegistry;
+
+public final class WalletSnapshot {
+
+	/**
+	 * Snapshot header: "FXW1" followed by the format version.
+	 */
+	private static final int MAGIC = 0x46585731;
+	private static final int VERSION = 1;
+
+	/**
+	 * Upper bound of the length of a name or code in bytes, which is prefixed as an unsigned short.
+	 */
+	private static final int MAX_STRING_LENGTH = 0xFFFF;
+
+	/**
+	 * Suffix of the temporary file written before it is renamed over the snapshot.
+	 */
+	private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+	/**
+	 * Static methods only.
+	 */
+	private WalletSnapshot() {
+
+	}
+
+	/**
+	 * Writes every user to a snapshot, through a temporary file that is synced to disk and renamed over it.
+	 *
+	 * @param users 		The users to write, in order.
+	 * @param snapshotFile 	The snapshot file.
+	 * @throws IOException 	The exception thrown if there is an error writing or renaming the file,
+	 * 						or a name or code is longer than 65535 bytes.
+	 */
+	public static void writes(List <User> users, File snapshotFile) throws IOException {
+		// Every currency held by a user gets the next id, in the order it is first seen.
+		int[] idsByCode = new int[CurrencyCodes.CODES_OF_16_BITS];
+		Arrays.fill(idsByCode, -1);
+		List <String> codes = new ArrayList <> ();
+		for (User user : users) {
+			for (int i = 0; i < user.getsNumberOfCurrenciesInWallet(); i++) {
+				int code = user.getsCurrencyCodeAt(i);
+				if (idsByCode[code] < 0) {
+					idsByCode[code] = codes.size();
+					codes.add(CurrencyCodes.unpacks(code));
+				}
+			}
+		}
+
+		File temporaryFile = new File(snapshotFile.getPath() + TEMPORARY_FILE_SUFFIX);
+		try (FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile)) {
+			DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream, 1 << 16));
+			outputStream.writeInt(MAGIC);
+			outputStream.writeInt(VERSION);
+			outputStream.writeInt(codes.size());
+			outputStream.writeInt(users.size());
+			for (String code : codes) {
+				outputStream.writeByte(MinorUnits.of(code).getScale());
+				writesString(outputStream, code);
+			}
+			for (User user : users) {
+				writesString(outputStream, user.getName());
+				int size = user.getsNumberOfCurrenciesInWallet();
+				outputStream.writeShort(size);
+				for (int i = 0; i < size; i++) {
+					outputStream.writeShort(idsByCode[user.getsCurrencyCodeAt(i)]);
+					outputStream.writeLong(user.getsMinorUnitsAt(i));
+				}
+			}
+			outputStream.flush();
+			fileOutputStream.getFD().sync();
+		}
+		WriteBehindPersister.movesAtomically(temporaryFile, snapshotFile);
+	}
+
+	/**
+	 * Reads every user from a memory-mapped snapshot.
+	 *
+	 * @param snapshotFile 	The snapshot file.
+	 * @return 				a registry holding every user in the snapshot, in order.
+	 * @throws IOException 	The exception thrown if the file cannot be read, is not a snapshot of this version, or is truncated.
+	 */
+	public static UserRegistry reads(File snapshotFile) throws IOException {
+		return reads(snapshotFile, null);
+	}
+
+	/**
+	 * Reads every user from a memory-mapped snapshot into a registry, e.g. one holding its users in a WalletStore.
+	 *
+	 * @param snapshotFile 	The snapshot file.
+	 * @param into 			The empty registry to add every user to, in order, or null for a new registry.
+	 * @return 				the registry.
+	 * @throws IOException 	The exception thrown if the file cannot be read, is not a snapshot of this version, or is truncated.
+	 */
+	public static UserRegistry reads(File snapshotFile, UserRegistry into) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("The wallet snapshot " + snapshotFile + " is larger than 2 GB.");
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		try {
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException(snapshotFile + " is not a wallet snapshot.");
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported version " + version + " of the wallet snapshot " + snapshotFile + ".");
+			}
+			int numberOfCurrencies = buffer.getInt();
+			int numberOfUsers = buffer.getInt();
+
+			int[] codesById = new int[numberOfCurrencies];
+			MinorUnits[] rescaledUnitsById = new MinorUnits[numberOfCurrencies];
+			byte[] bytes = new byte[64];
+			for (int id = 0; id < numberOfCurrencies; id++) {
+				int scale = buffer.get();
+				String code = readsString(buffer, bytes);
+				codesById[id] = CurrencyCodes.registers(code);
+				if (scale != MinorUnits.of(code).getScale()) {
+					rescaledUnitsById[id] = new MinorUnits(scale, MinorUnits.DEFAULT.getRoundingMode());
+				}
+			}
+
+			List <User> users = into == null ? new ArrayList <> (numberOfUsers) : null;
+			int[] packedCodes = new int[numberOfCurrencies];
+			long[] balances = new long[numberOfCurrencies];
+			for (int i = 0; i < numberOfUsers; i++) {
+				String name = readsString(buffer, bytes);
+				int size = buffer.getShort();
+				for (int j = 0; j < size; j++) {
+					int id = buffer.getShort();
+					long balance = buffer.getLong();
+					packedCodes[j] = codesById[id];
+					balances[j] = rescaledUnitsById[id] == null ? balance
+							: MinorUnits.of(CurrencyCodes.unpacks(codesById[id])).toMinor(rescaledUnitsById[id].toMajor(balance));
+				}
+				User user = User.restores(name, packedCodes, balances, size);
+				if (into == null) {
+					users.add(user);
+				} else {
+					into.add(user);
+				}
+			}
+			return into == null ? new UserRegistry(users) : into;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new IOException("The wallet snapshot " + snapshotFile + " is truncated or corrupted.", e);
+		}
+	}
+
+	/**
+	 * Writes a string as its length in bytes, followed by its bytes in UTF-8.
+	 *
+	 * @param outputStream 	The output.
+	 * @param string 		The string.
+	 * @throws IOException 	The exception thrown if there is an error writing the string, or it is longer than 65535 bytes.
+	 */
+	private static void writesString(DataOutputStream outputStream, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > MAX_STRING_LENGTH) {
+			throw new IOException("Unable to write a name or code of " + bytes.length + " bytes to a wallet snapshot.");
+		}
+		outputStream.writeShort(bytes.length);
+		outputStream.write(bytes);
+	}
+
+	/**
+	 * Reads a string written by {@link #writesString}.
+	 *
+	 * @param buffer 	The snapshot.
+	 * @param bytes 	A buffer for the bytes of the string, of at least 64 bytes.
+	 * @return 			the string.
+	 */
+	private static String readsString(ByteBuffer buffer, byte[] bytes) {
+		int length = Short.toUnsignedInt(buffer.getShort());
+		if (length <= bytes.length) {
+			buffer.get(bytes, 0, length);
+			return new String(bytes, 0, length, StandardCharsets.UTF_8);
+		}
+		byte[] longer = new byte[length];
+		buffer.get(longer);
+		return new String(longer, StandardCharsets.UTF_8);
+	}
+
+}
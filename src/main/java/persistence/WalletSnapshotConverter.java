@@ -0,0 +1,82 @@
+/**
+ * --------------------------------------------------------------------------------
+ * WalletSnapshotConverter.java
+ * --------------------------------------------------------------------------------
+ * Converts users.json to a binary wallet snapshot, and back.
+ * --------------------------------------------------------------------------------
+ * Usage:
+ *   WalletSnapshotConverter toSnapshot users.json users.snapshot
+ *   WalletSnapshotConverter toJson users.snapshot users.json
+ * The minor units of every currency are configured with -Dfxconvert.minorUnits, as for the engine.
+ * --------------------------------------------------------------------------------
+ */
+
+package persistence;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import config.EngineConfig;
+import model.MinorUnits;
+import model.UserRegistry;
+
+public final class WalletSnapshotConverter {
+
+	/**
+	 * Commands of the converter.
+	 */
+	public static final String TO_SNAPSHOT = "toSnapshot";
+	public static final String TO_JSON = "toJson";
+
+	/**
+	 * Static methods only.
+	 */
+	private WalletSnapshotConverter() {
+
+	}
+
+	/**
+	 * Converts a file given on the command line.
+	 *
+	 * @param args 			The command, the file to convert, and the file to write.
+	 * @throws IOException 	The exception thrown if there is an error reading or writing a file.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3 || !(TO_SNAPSHOT.equals(args[0]) || TO_JSON.equals(args[0]))) {
+			System.err.println("Usage: WalletSnapshotConverter toSnapshot <users.json> <snapshot> | toJson <snapshot> <users.json>");
+			System.exit(2);
+		}
+		MinorUnits.configures(EngineConfig.fromSystemProperties().getMinorUnits());
+		int numberOfUsers = converts(args[0], new File(args[1]), new File(args[2]));
+		System.out.println("Converted " + numberOfUsers + " users from " + args[1] + " to " + args[2] + ".");
+	}
+
+	/**
+	 * Converts users.json to a snapshot, or a snapshot to users.json.
+	 *
+	 * @param command 		{@value #TO_SNAPSHOT} or {@value #TO_JSON}.
+	 * @param source 		The file to convert.
+	 * @param destination 	The file to write.
+	 * @return 				the number of users converted.
+	 * @throws IOException 	The exception thrown if there is an error reading or writing a file.
+	 */
+	public static int converts(String command, File source, File destination) throws IOException {
+		ObjectMapper objectMapper = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		if (TO_SNAPSHOT.equals(command)) {
+			UserRegistry users = UserRegistry.load(source, objectMapper);
+			WalletSnapshot.writes(users.getUsers(), destination);
+			return users.size();
+		}
+		if (TO_JSON.equals(command)) {
+			UserRegistry users = WalletSnapshot.reads(source);
+			WriteBehindPersister.writesAtomically(objectMapper, users.getUsers(),
+					new File(destination.getPath() + ".tmp"), destination);
+			return users.size();
+		}
+		throw new IllegalArgumentException("Unknown command " + command + ", expected " + TO_SNAPSHOT + " or " + TO_JSON + ".");
+	}
+
+}
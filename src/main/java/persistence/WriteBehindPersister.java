@@ -0,0 +1,301 @@
+/**
+ * --------------------------------------------------------------------------------
+ * WriteBehindPersister.java
+ * --------------------------------------------------------------------------------
+ * A WriteBehindPersister batches the writes of users.json.
+ * Instead of rewriting users.json after every valid transaction,
+ * users updated by a transaction are marked dirty, and users.json is flushed
+ * according to the flush policy:
+ * 1. Every N transactions.
+ * 2. Every T milliseconds, checked whenever the caller asks if a checkpoint is due.
+ * 3. At shutdown.
+ * --------------------------------------------------------------------------------
+ * The flush at shutdown runs on a thread of its own, while transactions may still be applied.
+ * Given the lock of checkpoints, it waits for the wallet being updated, so that no wallet
+ * is written credited but not yet debited.
+ * --------------------------------------------------------------------------------
+ * Every flush writes to a temporary file in the same directory as users.json,
+ * and atomically renames it over users.json, so a crash never leaves
+ * a half-written users.json behind.
+ * --------------------------------------------------------------------------------
+ * A streaming persister re-encodes only the dirty users of every flush,
+ * and copies the clean users from the previous users.json (see StreamingUsersWriter).
+ * --------------------------------------------------------------------------------
+ */
+
+package persistence;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import model.User;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class WriteBehindPersister implements WalletPersistence {
+
+	/**
+	 * Logger to log failed flushes at shutdown.
+	 */
+	private static final Logger logger = LogManager.getLogger(WriteBehindPersister.class);
+
+	/**
+	 * Suffix of the temporary file written before it is renamed over users.json.
+	 */
+	private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+	/**
+	 * The users.json file, and the temporary file written before every rename.
+	 */
+	private final File destination;
+	private final File temporaryFile;
+
+	/**
+	 * Supplies the users to write to users.json, in the order they are serialized.
+	 */
+	private final Supplier <? extends List <User>> users;
+
+	/**
+	 * Flush policy: flush after this many transactions, or after this many milliseconds.
+	 * A value of 0 or less disables that trigger.
+	 */
+	private final int flushEveryTransactions;
+	private final long flushIntervalMillis;
+
+	/**
+	 * ObjectMapper reused for every flush. The target is not closed by Jackson,
+	 * so that it can be synced to disk before it is renamed.
+	 */
+	private final ObjectMapper objectMapper = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+	/**
+	 * Writer of the dirty users of every flush, or null if every user is re-serialized.
+	 */
+	private final StreamingUsersWriter streamingWriter;
+
+	/**
+	 * Held by the flush at shutdown, which excludes every update of a wallet, or null.
+	 */
+	private final Lock checkpointLock;
+
+	/**
+	 * Number of transactions recorded since the last flush, and the time of the last flush.
+	 */
+	private int pendingTransactions;
+	private long lastFlushMillis = System.currentTimeMillis();
+
+	/**
+	 * Flushes users.json if the JVM is shut down before {@link #close()} is called.
+	 */
+	private final Thread shutdownHook = new Thread(this::flushesAtShutdown, "users-json-flush");
+
+	/**
+	 * Creation of a persister for users.json.
+	 *
+	 * @param destination 				The users.json file.
+	 * @param users 					Supplies the users to write to users.json.
+	 * @param flushEveryTransactions 	Number of transactions after which users.json is flushed.
+	 * @param flushIntervalMillis 		Number of milliseconds after which users.json is flushed.
+	 */
+	public WriteBehindPersister(File destination,
+								Supplier <? extends List <User>> users,
+								int flushEveryTransactions,
+								long flushIntervalMillis) {
+		this(destination, users, flushEveryTransactions, flushIntervalMillis, false);
+	}
+
+	/**
+	 * Creation of a persister for users.json.
+	 *
+	 * @param destination 				The users.json file.
+	 * @param users 					Supplies the users to write to users.json.
+	 * @param flushEveryTransactions 	Number of transactions after which users.json is flushed.
+	 * @param flushIntervalMillis 		Number of milliseconds after which users.json is flushed.
+	 * @param streaming 				True to re-encode only the dirty users of every flush, false to re-serialize every user.
+	 */
+	public WriteBehindPersister(File destination,
+								Supplier <? extends List <User>> users,
+								int flushEveryTransactions,
+								long flushIntervalMillis,
+								boolean streaming) {
+		this(destination, users, flushEveryTransactions, flushIntervalMillis, streaming, null);
+	}
+
+	/**
+	 * Creation of a persister for users.json.
+	 *
+	 * @param destination 				The users.json file.
+	 * @param users 					Supplies the users to write to users.json.
+	 * @param flushEveryTransactions 	Number of transactions after which users.json is flushed.
+	 * @param flushIntervalMillis 		Number of milliseconds after which users.json is flushed.
+	 * @param streaming 				True to re-encode only the dirty users of every flush, false to re-serialize every user.
+	 * @param checkpointLock 			The lock held by the flush at shutdown, which excludes every update of a wallet, or null.
+	 */
+	public WriteBehindPersister(File destination,
+								Supplier <? extends List <User>> users,
+								int flushEveryTransactions,
+								long flushIntervalMillis,
+								boolean streaming,
+								Lock checkpointLock) {
+		this.destination = destination;
+		this.temporaryFile = new File(destination.getPath() + TEMPORARY_FILE_SUFFIX);
+		this.users = users;
+		this.flushEveryTransactions = flushEveryTransactions;
+		this.flushIntervalMillis = flushIntervalMillis;
+		this.streamingWriter = streaming ? new StreamingUsersWriter() : null;
+		this.checkpointLock = checkpointLock;
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	/**
+	 * Records a conversion applied to a user, who has been marked dirty in {@link User#updatesWallet}.
+	 */
+	@Override
+	public synchronized void recordsConversion(User user,
+											   String fromCurrency,
+											   String toCurrency,
+											   double amountToConvert,
+											   double amountToIncreaseToCurrencyBy) {
+		pendingTransactions++;
+	}
+
+	/**
+	 * Checks if users.json has to be flushed, according to the flush policy.
+	 */
+	@Override
+	public synchronized boolean isCheckpointDue() {
+		if (pendingTransactions == 0) {
+			return false;
+		}
+		return (flushEveryTransactions > 0 && pendingTransactions >= flushEveryTransactions)
+				|| (flushIntervalMillis > 0 && System.currentTimeMillis() - lastFlushMillis >= flushIntervalMillis);
+	}
+
+	/**
+	 * Flushes users.json.
+	 */
+	@Override
+	public void checkpoint() throws IOException {
+		flush();
+	}
+
+	/**
+	 * Writes every user to users.json if any user is dirty, and marks every user clean.
+	 *
+	 * @throws IOException The exception thrown if there is an error writing users.json.
+	 */
+	public synchronized void flush() throws IOException {
+		lastFlushMillis = System.currentTimeMillis();
+		if (pendingTransactions == 0) {
+			return;
+		}
+
+		List <User> snapshot = users.get();
+		writesAtomically(snapshot);
+		for (User user : snapshot) {
+			user.marksClean();
+		}
+		pendingTransactions = 0;
+	}
+
+	/**
+	 * Retrieves the number of transactions recorded since the last flush.
+	 *
+	 * @return the number of transactions not yet written to users.json.
+	 */
+	public synchronized int getPendingTransactions() {
+		return pendingTransactions;
+	}
+
+	/**
+	 * Flushes users.json a final time at shutdown.
+	 *
+	 * @throws IOException The exception thrown if there is an error writing users.json.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// The JVM is already shutting down, and the hook will flush.
+		}
+		flush();
+	}
+
+	/**
+	 * Writes the users to the temporary file, syncs it to disk, and renames it over users.json.
+	 *
+	 * @param snapshot 		The users to write.
+	 * @throws IOException 	The exception thrown if there is an error writing or renaming the file.
+	 */
+	private void writesAtomically(List <User> snapshot) throws IOException {
+		if (streamingWriter != null) {
+			streamingWriter.writesAtomically(snapshot, temporaryFile, destination);
+			return;
+		}
+		writesAtomically(objectMapper, snapshot, temporaryFile, destination);
+	}
+
+	/**
+	 * Writes a value as JSON to a temporary file, syncs it to disk, and renames it over the destination,
+	 * so that the destination is either the previous or the new version, but never a partial write.
+	 *
+	 * @param objectMapper 		The ObjectMapper used to write the value, which must not close its target.
+	 * @param value 			The value to write.
+	 * @param temporaryFile 	The temporary file, in the same directory as the destination.
+	 * @param destination 		The file to replace.
+	 * @throws IOException 		The exception thrown if there is an error writing or renaming the file.
+	 */
+	static void writesAtomically(ObjectMapper objectMapper, Object value, File temporaryFile, File destination) throws IOException {
+		try (FileOutputStream outputStream = new FileOutputStream(temporaryFile)) {
+			objectMapper.writeValue(outputStream, value);
+			outputStream.getFD().sync();
+		}
+		movesAtomically(temporaryFile, destination);
+	}
+
+	/**
+	 * Renames a file over the destination, atomically if the file system supports it.
+	 *
+	 * @param source 		The file to rename.
+	 * @param destination 	The file to replace.
+	 * @throws IOException 	The exception thrown if there is an error renaming the file.
+	 */
+	static void movesAtomically(File source, File destination) throws IOException {
+		try {
+			Files.move(source.toPath(), destination.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Flushes users.json from the shutdown hook, once the wallet being updated, if any, has been updated.
+	 */
+	void flushesAtShutdown() {
+		if (checkpointLock != null) {
+			checkpointLock.lock();
+		}
+		try {
+			flush();
+		} catch (IOException | RuntimeException e) {
+			logger.fatal("Unable to write users.json at shutdown.");
+		} finally {
+			if (checkpointLock != null) {
+				checkpointLock.unlock();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+/**
+ * --------------------------------------------------------------------------------
+ * FxQuoter.java
+ * --------------------------------------------------------------------------------
+ * An FxQuoter answers how much of one currency an amount of another buys,
+ * without a user, a wallet or a write to users.json.
+ * --------------------------------------------------------------------------------
+ * 1. A quote reads the latest RateTable once, so it is converted against a single
+ *    version of fx_rates.json, even while a new version is being published.
+ * 2. The RateTable is immutable and holds the cross rate of every pair of currencies,
+ *    so a quote takes no lock, and is one multiplication by a precomputed rate.
+ * 3. A quote is checked as a transaction is (see TransactionValidator), and is rounded
+ *    to the minor units of the currency, as the amount credited to a wallet would be.
+ *    An amount, or a quoted amount, too large for the minor units of its currency is rejected as INVALID_AMOUNT.
+ * --------------------------------------------------------------------------------
+ * Quotes can be given from any number of threads at once, while transactions are processed.
+ * --------------------------------------------------------------------------------
+ */
+
+package rates;
+
+import java.util.function.Supplier;
+
+import model.MinorUnits;
+import model.RateTable;
+import validation.RejectionReason;
+import validation.TransactionValidator;
+
+public final class FxQuoter {
+
+	/**
+	 * Supplies the latest snapshot of the rates, e.g. by reading a volatile reference.
+	 */
+	private final Supplier <RateTable> rates;
+
+	/**
+	 * Creation of a quoter of the latest snapshot of the rates.
+	 *
+	 * @param rates 	Supplies the latest snapshot of the rates.
+	 */
+	public FxQuoter(Supplier <RateTable> rates) {
+		this.rates = rates;
+	}
+
+	/**
+	 * Retrieves the snapshot of the rates the next quote will be given against.
+	 *
+	 * @return the latest snapshot of the rates.
+	 */
+	public RateTable getRates() {
+		return rates.get();
+	}
+
+	/**
+	 * Quotes an amount at the latest rates.
+	 *
+	 * @param fromCurrency 	The currency of the amount.
+	 * @param toCurrency 	The currency quoted.
+	 * @param amount 		The amount of the fromCurrency.
+	 * @return 				the amount of the toCurrency, rounded to its minor units, or NaN if the quote is rejected.
+	 */
+	public double quotes(String fromCurrency, String toCurrency, double amount) {
+		return quotes(rates.get(), fromCurrency, toCurrency, amount);
+	}
+
+	/**
+	 * Quotes an amount at a snapshot of the rates.
+	 *
+	 * @param snapshot 		The snapshot of the rates.
+	 * @param fromCurrency 	The currency of the amount.
+	 * @param toCurrency 	The currency quoted.
+	 * @param amount 		The amount of the fromCurrency.
+	 * @return 				the amount of the toCurrency, rounded to its minor units, or NaN if the quote is rejected.
+	 */
+	public static double quotes(RateTable snapshot, String fromCurrency, String toCurrency, double amount) {
+		int fromId = snapshot.idOf(fromCurrency);
+		int toId = snapshot.idOf(toCurrency);
+		if (fromId == RateTable.UNKNOWN || toId == RateTable.UNKNOWN || fromId == toId
+				|| TransactionValidator.checksAmount(amount) != RejectionReason.NONE || !MinorUnits.of(fromCurrency).fits(amount)) {
+			return Double.NaN;
+		}
+		double quotedAmount = snapshot.converts(fromId, toId, amount);
+		MinorUnits minorUnits = MinorUnits.of(toCurrency);
+		return minorUnits.fits(quotedAmount) ? minorUnits.toMajor(minorUnits.toMinor(quotedAmount)) : Double.NaN;
+	}
+
+	/**
+	 * Retrieves the reason a quote is rejected, in the order a transaction is checked.
+	 *
+	 * @param snapshot 		The snapshot of the rates.
+	 * @param fromCurrency 	The currency of the amount.
+	 * @param toCurrency 	The currency quoted.
+	 * @param amount 		The amount of the fromCurrency.
+	 * @return 				the reason the quote is rejected, or NONE if quotes gives a quoted amount for it.
+	 */
+	public static RejectionReason checks(RateTable snapshot, String fromCurrency, String toCurrency, double amount) {
+		RejectionReason reason = TransactionValidator.checksSameCurrency(toCurrency, fromCurrency);
+		if (reason == RejectionReason.NONE) {
+			reason = TransactionValidator.checksCurrency(snapshot, fromCurrency);
+		}
+		if (reason == RejectionReason.NONE) {
+			reason = TransactionValidator.checksCurrency(snapshot, toCurrency);
+		}
+		if (reason == RejectionReason.NONE) {
+			reason = TransactionValidator.checksAmount(amount);
+		}
+		if (reason == RejectionReason.NONE && Double.isNaN(quotes(snapshot, fromCurrency, toCurrency, amount))) {
+			reason = RejectionReason.INVALID_AMOUNT;
+		}
+		return reason;
+	}
+
+}
@@ -0,0 +1,176 @@
+/**
+ * --------------------------------------------------------------------------------
+ * FxRatesWatcher.java
+ * --------------------------------------------------------------------------------
+ * An FxRatesWatcher reloads fx_rates.json whenever it changes, off the thread
+ * processing transactions, so that rates can change in the middle of a run
+ * without reloading fx_rates.json for every transaction.
+ * --------------------------------------------------------------------------------
+ * 1. A WatchService watches the directory of fx_rates.json on a daemon thread.
+ * 2. Events on fx_rates.json are debounced, so that a file written in several steps
+ *    is only read once it is complete.
+ * 3. The new currencies are handed to a publisher, which publishes them as a new
+ *    immutable snapshot. A file that cannot be parsed is skipped, and the
+ *    current snapshot stays in use until the next change.
+ * --------------------------------------------------------------------------------
+ */
+
+package rates;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import model.Currency;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class FxRatesWatcher implements AutoCloseable {
+
+	/**
+	 * Logger to log reloads, and versions of fx_rates.json that cannot be parsed.
+	 */
+	private static final Logger logger = LogManager.getLogger(FxRatesWatcher.class);
+
+	/**
+	 * Number of milliseconds without a further event on fx_rates.json before it is read.
+	 */
+	private static final long DEBOUNCE_MILLIS = 50;
+
+	/**
+	 * The fx_rates.json file, and the service watching its directory.
+	 */
+	private final File fxRatesFile;
+	private final WatchService watchService;
+
+	/**
+	 * Publishes the currencies of every version of fx_rates.json read.
+	 */
+	private final Consumer <Map <String, Currency>> publisher;
+
+	/**
+	 * ObjectMapper reused for every reload.
+	 */
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	/**
+	 * The thread waiting for changes of fx_rates.json.
+	 */
+	private final Thread watcher;
+
+	/**
+	 * Creation of a watcher of fx_rates.json, and start of its thread.
+	 *
+	 * @param fxRatesFile 	The fx_rates.json file.
+	 * @param publisher 	Publishes the currencies of every version of fx_rates.json read, on the thread of the watcher.
+	 * @throws IOException 	The exception thrown if the directory of fx_rates.json cannot be watched.
+	 */
+	public FxRatesWatcher(File fxRatesFile, Consumer <Map <String, Currency>> publisher) throws IOException {
+		this.fxRatesFile = fxRatesFile.getAbsoluteFile();
+		this.publisher = publisher;
+		this.watchService = FileSystems.getDefault().newWatchService();
+		this.fxRatesFile.getParentFile().toPath().register(watchService,
+				StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+		this.watcher = new Thread(this::watches, "fx-rates-watcher");
+		this.watcher.setDaemon(true);
+		this.watcher.start();
+	}
+
+	/**
+	 * Reads the currencies of fx_rates.json.
+	 *
+	 * @param fxRatesFile 	The fx_rates.json file.
+	 * @param objectMapper 	The ObjectMapper used to read fx_rates.json.
+	 * @return 				the currencies, by code.
+	 * @throws IOException 	The exception thrown if fx_rates.json cannot be read or parsed.
+	 */
+	public static Map <String, Currency> reads(File fxRatesFile, ObjectMapper objectMapper) throws IOException {
+		return objectMapper.readValue(
+				fxRatesFile,
+				objectMapper.getTypeFactory().constructMapType(HashMap.class, String.class, Currency.class)
+		);
+	}
+
+	/**
+	 * Stops watching fx_rates.json.
+	 *
+	 * @throws IOException 	The exception thrown if the watch service cannot be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+		try {
+			watcher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits for changes of fx_rates.json, and reloads it after every change, until the watcher is closed.
+	 */
+	private void watches() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				boolean changed = isFxRatesFileChanged(key);
+
+				// Wait until fx_rates.json has stopped changing.
+				while ((key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+					changed |= isFxRatesFileChanged(key);
+				}
+				if (changed) {
+					reloads();
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			// The watcher was closed.
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Checks if any event of a key is a change of fx_rates.json, and resets the key.
+	 *
+	 * @param key 	The key of the directory of fx_rates.json.
+	 * @return 		true if fx_rates.json was created or modified, false otherwise.
+	 */
+	private boolean isFxRatesFileChanged(WatchKey key) {
+		boolean changed = false;
+		for (WatchEvent <?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW
+					|| ((Path) event.context()).getFileName().toString().equals(fxRatesFile.getName())) {
+				changed = true;
+			}
+		}
+		key.reset();
+		return changed;
+	}
+
+	/**
+	 * Reads fx_rates.json, and publishes its currencies if it can be parsed and rates built from it.
+	 */
+	private void reloads() {
+		try {
+			publisher.accept(reads(fxRatesFile, objectMapper));
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Unable to reload {}, the current rates stay in use: {}", fxRatesFile, e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,290 @@
+/**
+ * --------------------------------------------------------------------------------
+ * RateHistory.java
+ * --------------------------------------------------------------------------------
+ * A RateHistory holds every dated rate of every currency from many fx_rates.json files,
+ * so that a back-dated transaction is converted at the rates in effect at its timestamp.
+ * --------------------------------------------------------------------------------
+ * 1. Every currency gets a dense id, found through its packed code (see CurrencyCodes).
+ * 2. The rates of a currency are kept in primitive arrays sorted by the time they
+ *    took effect, which is the date of the currency in its fx_rates.json.
+ * 3. The rate in effect at a timestamp is the last rate that took effect at or before it,
+ *    found by a binary search, so a conversion costs one search per leg that is not USD.
+ * --------------------------------------------------------------------------------
+ * A year of daily files of 150 currencies is about 55,000 rates of 24 bytes each.
+ * A RateHistory is immutable once loaded.
+ * --------------------------------------------------------------------------------
+ */
+
+package rates;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import model.Currency;
+import model.CurrencyCodes;
+import model.RateTable;
+
+public class RateHistory {
+
+	/**
+	 * Id returned for a currency that is not in the history.
+	 */
+	public static final int UNKNOWN = -1;
+
+	/**
+	 * Id of USD, which every rate is quoted against, and which is in effect at any time.
+	 */
+	private static final int USD_ID = -2;
+
+	/**
+	 * The code of every id, and the id of every packed code (or UNKNOWN).
+	 */
+	private final List <String> codes = new ArrayList <> ();
+	private final short[] idsByPackedCode = new short[CurrencyCodes.PACKED_CODES];
+
+	/**
+	 * Ids of codes that are not 3 lowercase letters, which cannot be packed.
+	 */
+	private final Map <String, Integer> idsByOtherCode = new HashMap <> ();
+
+	/**
+	 * For every id: the times its rates took effect in ascending order,
+	 * and its rate from USD and inverse rate to USD at each of those times.
+	 */
+	private final long[][] effectiveTimes;
+	private final double[][] rates;
+	private final double[][] inverseRates;
+
+	/**
+	 * Creation of a history from many versions of fx_rates.json.
+	 * If a currency has two rates that took effect at the same time, the later version wins.
+	 *
+	 * @param versions 						The currencies of every version of fx_rates.json, by code.
+	 * @throws IllegalArgumentException 	The exception thrown if the date of a currency is not an RFC 1123 date.
+	 */
+	public RateHistory(List <Map <String, Currency>> versions) {
+		Arrays.fill(idsByPackedCode, (short) UNKNOWN);
+
+		// Count the rates of every currency, then fill in their arrays.
+		Map <String, Integer> counts = new HashMap <> ();
+		for (Map <String, Currency> version : versions) {
+			for (String code : version.keySet()) {
+				if (!code.equals(RateTable.USD) && counts.merge(code, 1, Integer::sum) == 1) {
+					registers(code);
+				}
+			}
+		}
+
+		int size = codes.size();
+		this.effectiveTimes = new long[size][];
+		this.rates = new double[size][];
+		this.inverseRates = new double[size][];
+		int[] filled = new int[size];
+		for (int id = 0; id < size; id++) {
+			int count = counts.get(codes.get(id));
+			effectiveTimes[id] = new long[count];
+			rates[id] = new double[count];
+			inverseRates[id] = new double[count];
+		}
+		for (Map <String, Currency> version : versions) {
+			for (Map.Entry <String, Currency> currency : version.entrySet()) {
+				int id = idOf(currency.getKey());
+				if (id >= 0) {
+					int index = filled[id]++;
+					effectiveTimes[id][index] = effectiveTimeOf(currency.getKey(), currency.getValue());
+					rates[id][index] = currency.getValue().getRate();
+					inverseRates[id][index] = currency.getValue().getInverseRate();
+				}
+			}
+		}
+		for (int id = 0; id < size; id++) {
+			sortsRates(id);
+		}
+	}
+
+	/**
+	 * Loads every fx_rates.json file in a directory, in the order of their names.
+	 *
+	 * @param directory 	The directory of dated fx_rates.json files, each ending in .json.
+	 * @param objectMapper 	The ObjectMapper used to read the files.
+	 * @return 				the history of every rate in the files.
+	 * @throws IOException 	The exception thrown if a file cannot be read or parsed, or has a date that cannot be parsed.
+	 */
+	public static RateHistory loads(File directory, ObjectMapper objectMapper) throws IOException {
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(".json"));
+		if (files == null) {
+			throw new IOException("Unable to list the rate history in " + directory);
+		}
+		Arrays.sort(files);
+
+		List <Map <String, Currency>> versions = new ArrayList <> (files.length);
+		for (File file : files) {
+			versions.add(FxRatesWatcher.reads(file, objectMapper));
+		}
+		try {
+			return new RateHistory(versions);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Unable to load the rate history in " + directory + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Retrieves the id of a currency.
+	 *
+	 * @param code 	The currency code, e.g. usd.
+	 * @return 		the id of the currency, or UNKNOWN if it is not in the history.
+	 */
+	public int idOf(String code) {
+		int packedCode = CurrencyCodes.packs(code);
+		if (packedCode != CurrencyCodes.UNPACKABLE) {
+			int id = idsByPackedCode[packedCode];
+			return id == UNKNOWN && code.equals(RateTable.USD) ? USD_ID : id;
+		}
+		Integer id = idsByOtherCode.get(code);
+		return id == null ? UNKNOWN : id;
+	}
+
+	/**
+	 * Checks if a currency has a rate in effect at a time.
+	 *
+	 * @param code 		The currency code.
+	 * @param timestamp The time, in milliseconds since the epoch.
+	 * @return 			true if the currency is USD, or had a rate at or before the time, false otherwise.
+	 */
+	public boolean isQuotedAt(String code, long timestamp) {
+		int id = idOf(code);
+		return id == USD_ID || (id >= 0 && indexAt(id, timestamp) >= 0);
+	}
+
+	/**
+	 * Converts an amount between two currencies at the rates in effect at a time.
+	 * Both currencies must be quoted at that time.
+	 *
+	 * @param fromCurrency 	The currency to be converted from.
+	 * @param toCurrency 	The currency to be converted to.
+	 * @param amount 		The amount of the fromCurrency.
+	 * @param timestamp 	The time, in milliseconds since the epoch.
+	 * @return 				the amount of the toCurrency.
+	 */
+	public double converts(String fromCurrency, String toCurrency, double amount, long timestamp) {
+		int from = idOf(fromCurrency);
+		int to = idOf(toCurrency);
+		double inverseRate = from == USD_ID ? 1 : inverseRates[from][indexAt(from, timestamp)];
+		double rate = to == USD_ID ? 1 : rates[to][indexAt(to, timestamp)];
+		// The cross rate first, as in a RateTable, so that the same rates convert to the same amount.
+		return amount * (inverseRate * rate);
+	}
+
+	/**
+	 * Retrieves the number of currencies in the history, excluding USD.
+	 *
+	 * @return the number of currencies.
+	 */
+	public int size() {
+		return codes.size();
+	}
+
+	/**
+	 * Retrieves the number of rates in the history, of every currency.
+	 *
+	 * @return the number of rates.
+	 */
+	public int numberOfRates() {
+		int numberOfRates = 0;
+		for (long[] times : effectiveTimes) {
+			numberOfRates += times.length;
+		}
+		return numberOfRates;
+	}
+
+	/**
+	 * Retrieves the index of the rate of a currency in effect at a time.
+	 *
+	 * @param id 		The id of the currency.
+	 * @param timestamp The time, in milliseconds since the epoch.
+	 * @return 			the index of the last rate that took effect at or before the time, or -1 if there is none.
+	 */
+	private int indexAt(int id, long timestamp) {
+		int index = Arrays.binarySearch(effectiveTimes[id], timestamp);
+		return index >= 0 ? index : -index - 2;
+	}
+
+	/**
+	 * Gives the next id to a currency.
+	 *
+	 * @param code 	The currency code.
+	 */
+	private void registers(String code) {
+		int id = codes.size();
+		codes.add(code);
+		int packedCode = CurrencyCodes.packs(code);
+		if (packedCode == CurrencyCodes.UNPACKABLE) {
+			idsByOtherCode.put(code, id);
+		} else {
+			idsByPackedCode[packedCode] = (short) id;
+		}
+	}
+
+	/**
+	 * Sorts the rates of a currency by the time they took effect, keeping the last of the rates that took effect at the same time.
+	 *
+	 * @param id 	The id of the currency.
+	 */
+	private void sortsRates(int id) {
+		long[] times = effectiveTimes[id];
+		Integer[] order = new Integer[times.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		// A stable sort keeps the rates of the same time in the order of the versions.
+		Arrays.sort(order, (a, b) -> Long.compare(times[a], times[b]));
+
+		int size = 0;
+		long[] sortedTimes = new long[times.length];
+		double[] sortedRates = new double[times.length];
+		double[] sortedInverseRates = new double[times.length];
+		for (int i : order) {
+			if (size > 0 && sortedTimes[size - 1] == times[i]) {
+				size--;
+			}
+			sortedTimes[size] = times[i];
+			sortedRates[size] = rates[id][i];
+			sortedInverseRates[size] = inverseRates[id][i];
+			size++;
+		}
+		effectiveTimes[id] = Arrays.copyOf(sortedTimes, size);
+		rates[id] = Arrays.copyOf(sortedRates, size);
+		inverseRates[id] = Arrays.copyOf(sortedInverseRates, size);
+	}
+
+	/**
+	 * Retrieves the time the rate of a currency took effect: its date in fx_rates.json.
+	 *
+	 * @param code 							The currency code.
+	 * @param currency 						The currency.
+	 * @return 								the time, in milliseconds since the epoch.
+	 * @throws IllegalArgumentException 	The exception thrown if the date is missing or not an RFC 1123 date.
+	 */
+	private static long effectiveTimeOf(String code, Currency currency) {
+		if (currency.getDate() == null) {
+			throw new IllegalArgumentException("The rate of " + code + " has no date.");
+		}
+		try {
+			return ZonedDateTime.parse(currency.getDate(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("The rate of " + code + " has a date that is not an RFC 1123 date: " + currency.getDate(), e);
+		}
+	}
+
+}
@@ -0,0 +1,240 @@
+/**
+ * --------------------------------------------------------------------------------
+ * ConversionServer.java
+ * --------------------------------------------------------------------------------
+ * A ConversionServer accepts transactions over TCP, one per line, in the same format
+ * as a line of transactions.txt, and answers every line with one line, in order.
+ * --------------------------------------------------------------------------------
+ * 1. Every connection is handled by its own thread (a virtual thread where available),
+ *    which reads a line, hands it to the handler, and writes the answer.
+ * 2. Answers are flushed once no more request is waiting to be read,
+ *    so a client may send many lines before reading their answers.
+ * 3. Closing the server stops accepting connections, closes every connection,
+ *    and waits for every line being handled to be answered.
+ * --------------------------------------------------------------------------------
+ */
+
+package server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import engine.Threads;
+
+public final class ConversionServer implements AutoCloseable {
+
+	/**
+	 * Number of pending connections queued by the operating system.
+	 */
+	private static final int BACKLOG = 1024;
+
+	/**
+	 * Size of the buffers of every connection.
+	 */
+	private static final int BUFFER_SIZE = 1 << 13;
+
+	private static final Logger logger = LogManager.getLogger(ConversionServer.class);
+
+	/**
+	 * The socket accepting connections.
+	 */
+	private final ServerSocket serverSocket;
+
+	/**
+	 * True to handle connections on virtual threads, where available.
+	 */
+	private final boolean virtualThreads;
+
+	/**
+	 * Answers a line, from any number of connection threads at once.
+	 */
+	private final UnaryOperator <String> handler;
+
+	/**
+	 * Every open connection, and the thread handling it.
+	 */
+	private final Map <Socket, Thread> connections = new ConcurrentHashMap <> ();
+
+	/**
+	 * Number of connections accepted so far, to name their threads.
+	 */
+	private final AtomicLong connectionsAccepted = new AtomicLong();
+
+	/**
+	 * Counted down once the server is closed.
+	 */
+	private final CountDownLatch closed = new CountDownLatch(1);
+
+	/**
+	 * The thread accepting connections, once started.
+	 */
+	private Thread acceptor;
+
+	/**
+	 * Creation of a server bound to a port of every local address, which does not accept connections until started.
+	 *
+	 * @param port 				The port, or 0 for any free port.
+	 * @param virtualThreads 	True to handle connections on virtual threads, where available.
+	 * @param handler 			Answers a line. Called from many threads at once.
+	 * @throws IOException 		The exception thrown if the port cannot be bound.
+	 */
+	public ConversionServer(int port, boolean virtualThreads, UnaryOperator <String> handler) throws IOException {
+		this.serverSocket = new ServerSocket();
+		this.serverSocket.setReuseAddress(true);
+		this.serverSocket.bind(new InetSocketAddress(port), BACKLOG);
+		this.virtualThreads = virtualThreads;
+		this.handler = handler;
+	}
+
+	/**
+	 * Starts accepting connections.
+	 */
+	public synchronized void starts() {
+		if (acceptor == null) {
+			acceptor = Threads.creates("server-accept", false, this::accepts);
+			acceptor.start();
+		}
+	}
+
+	/**
+	 * Retrieves the port the server is bound to.
+	 *
+	 * @return the port.
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Retrieves the number of connections accepted so far.
+	 *
+	 * @return the number of connections.
+	 */
+	public long getConnectionsAccepted() {
+		return connectionsAccepted.get();
+	}
+
+	/**
+	 * Waits until the server is closed.
+	 *
+	 * @throws InterruptedException The exception thrown if the thread is interrupted while waiting.
+	 */
+	public void awaitsClose() throws InterruptedException {
+		closed.await();
+	}
+
+	/**
+	 * Stops accepting connections, closes every connection,
+	 * and waits for the line being handled by every connection to be answered.
+	 *
+	 * @throws IOException The exception thrown if the socket accepting connections cannot be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+		try {
+			Thread acceptingThread;
+			synchronized (this) {
+				acceptingThread = acceptor;
+			}
+			if (acceptingThread != null) {
+				acceptingThread.join();
+			}
+			// Closing the input only, so that a line being handled is still answered.
+			for (Map.Entry <Socket, Thread> connection : connections.entrySet()) {
+				closesInput(connection.getKey());
+				connection.getValue().join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			closed.countDown();
+		}
+	}
+
+	/**
+	 * Accepts connections until the server is closed, and starts a thread handling every one of them.
+	 */
+	private void accepts() {
+		while (!serverSocket.isClosed()) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+			} catch (IOException e) {
+				if (!serverSocket.isClosed()) {
+					logger.error("Unable to accept a connection: {}", e.getMessage());
+				}
+				continue;
+			}
+			Thread thread = Threads.creates("server-connection-" + connectionsAccepted.incrementAndGet(), virtualThreads, () -> serves(socket));
+			// Registered before the acceptor can stop, so that closing the server always waits for it.
+			connections.put(socket, thread);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Answers every line of a connection until the client or the server closes it.
+	 *
+	 * @param socket 	The connection.
+	 */
+	private void serves(Socket socket) {
+		try (socket;
+			 BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), BUFFER_SIZE);
+			 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				writer.write(handler.apply(line));
+				writer.write('\n');
+				if (!reader.ready()) {
+					writer.flush();
+				}
+			}
+		} catch (SocketException e) {
+			// The connection was reset by the client, or closed by the server.
+		} catch (IOException | RuntimeException e) {
+			logger.error("Unable to serve the connection from {}: {}", socket.getRemoteSocketAddress(), e.getMessage());
+		} finally {
+			connections.remove(socket);
+		}
+	}
+
+	/**
+	 * Closes the input of a connection, so that its thread stops once it has answered the line it is handling.
+	 *
+	 * @param socket 	The connection.
+	 */
+	private static void closesInput(Socket socket) {
+		try {
+			socket.shutdownInput();
+		} catch (IOException e) {
+			closesQuietly(socket);
+		}
+	}
+
+	private static void closesQuietly(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// The connection is being discarded.
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+/**
+ * --------------------------------------------------------------------------------
+ * RejectionReason.java
+ * --------------------------------------------------------------------------------
+ * The reasons a transaction is rejected, returned by the TransactionValidator
+ * instead of throwing an exception with its stack trace.
+ * --------------------------------------------------------------------------------
+ * Every check that used to throw one of the exceptions in the exceptions package
+ * has a reason of its own, so every rejection is still logged with the same message.
+ * --------------------------------------------------------------------------------
+ */
+
+package validation;
+
+public enum RejectionReason {
+
+	/**
+	 * The transaction has not been rejected.
+	 */
+	NONE(null),
+
+	/**
+	 * The line does not have exactly 4 components, or 5 with a timestamp (InvalidNumberOfComponentsException).
+	 */
+	INVALID_NUMBER_OF_COMPONENTS("InvalidNumberOfComponentsException"),
+
+	/**
+	 * The user cannot be found (UserNotFoundException).
+	 */
+	USER_NOT_FOUND("UserNotFoundException"),
+
+	/**
+	 * The FROM and TO currencies are the same (SameCurrencyException).
+	 */
+	SAME_CURRENCY("SameCurrencyException"),
+
+	/**
+	 * One or both of the currencies is not in fx_rates.json (InvalidCurrencyException).
+	 */
+	INVALID_CURRENCY("InvalidCurrencyException"),
+
+	/**
+	 * The amount cannot be parsed to a double (NumberFormatException).
+	 */
+	UNPARSABLE_AMOUNT("NumberFormatException"),
+
+	/**
+	 * The amount is less than or equal to 0 (InvalidAmountException).
+	 */
+	INVALID_AMOUNT("InvalidAmountException"),
+
+	/**
+	 * The user does not have the FROM currency (UserHasNoCurrencyException).
+	 */
+	USER_HAS_NO_CURRENCY("UserHasNoCurrencyException"),
+
+	/**
+	 * The user has less of the FROM currency than the amount (InsufficientAmountForConversionException).
+	 */
+	INSUFFICIENT_AMOUNT("InsufficientAmountForConversionException"),
+
+	/**
+	 * users.json or fx_rates.json cannot be parsed (JsonProcessingException).
+	 */
+	UNPARSABLE_JSON("JsonProcessingException"),
+
+	/**
+	 * A file cannot be read or written (IOException).
+	 */
+	INACCESSIBLE_FILE("IOException");
+
+	/**
+	 * The simple name of the exception the reason stands for, or null for NONE.
+	 */
+	private final String exceptionName;
+
+	RejectionReason(String exceptionName) {
+		this.exceptionName = exceptionName;
+	}
+
+	/**
+	 * Retrieves the simple name of the exception the reason stands for, e.g. UserNotFoundException.
+	 *
+	 * @return the name of the exception, or null for NONE.
+	 */
+	public String getExceptionName() {
+		return exceptionName;
+	}
+
+}
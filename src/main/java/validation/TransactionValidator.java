@@ -0,0 +1,204 @@
+/**
+ * --------------------------------------------------------------------------------
+ * TransactionValidator.java
+ * --------------------------------------------------------------------------------
+ * The checks of a transaction, each returning the reason the transaction is rejected,
+ * or NONE, without throwing.
+ * --------------------------------------------------------------------------------
+ * 1. validates runs the checks that do not depend on the user's wallet,
+ *    in the order of the original checks: the user exists, the currencies are
+ *    different and valid, and the amount can be parsed and is above 0.
+ * 2. checksWallet runs the checks against the user's wallet:
+ *    the user has the FROM currency, and enough of it.
+ * --------------------------------------------------------------------------------
+ * The first failed check is the reason, as the first exception thrown used to be.
+ * --------------------------------------------------------------------------------
+ * A back-dated transaction is checked against the rate history, if there is one:
+ * its currencies must have had a rate in effect at its timestamp.
+ * --------------------------------------------------------------------------------
+ */
+
+package validation;
+
+import model.RateTable;
+import model.Transaction;
+import model.User;
+import model.UserRegistry;
+import parser.Timestamps;
+import rates.RateHistory;
+
+public final class TransactionValidator {
+
+	/**
+	 * Number of components of a transaction: username, FROM currency, TO currency and amount,
+	 * and of a back-dated transaction, which also has a timestamp.
+	 */
+	public static final int COMPONENTS = 4;
+	public static final int COMPONENTS_WITH_TIMESTAMP = 5;
+
+	/**
+	 * Static methods only.
+	 */
+	private TransactionValidator() {
+
+	}
+
+	/**
+	 * Runs the checks of a parsed transaction that do not depend on the user's wallet,
+	 * and sets the user of the transaction once found.
+	 *
+	 * @param transaction 	The parsed transaction.
+	 * @param users 		The registry of users.
+	 * @param rates 		The rates of every currency in fx_rates.json.
+	 * @return 				the reason the transaction is rejected, or NONE.
+	 */
+	public static RejectionReason validates(Transaction transaction, UserRegistry users, RateTable rates) {
+		return validates(transaction, users, rates, null);
+	}
+
+	/**
+	 * Runs the checks of a parsed transaction that do not depend on the user's wallet,
+	 * and sets the user of the transaction once found.
+	 * The currencies of a back-dated transaction are checked against the rate history, if there is one.
+	 *
+	 * @param transaction 	The parsed transaction.
+	 * @param users 		The registry of users.
+	 * @param rates 		The rates of every currency in fx_rates.json.
+	 * @param history 		The rate history, or null if there is none.
+	 * @return 				the reason the transaction is rejected, or NONE.
+	 */
+	public static RejectionReason validates(Transaction transaction, UserRegistry users, RateTable rates, RateHistory history) {
+		User user = users.get(transaction.getUsername(), transaction);
+		if (user == null) {
+			return RejectionReason.USER_NOT_FOUND;
+		}
+		transaction.setUser(user);
+
+		RejectionReason reason = checksSameCurrency(transaction.getToCurrency(), transaction.getFromCurrency());
+		if (reason == RejectionReason.NONE && transaction.hasTimestamp() && history != null) {
+			reason = checksCurrencyAt(history, transaction.getFromCurrency(), transaction.getTimestamp());
+			if (reason == RejectionReason.NONE) {
+				reason = checksCurrencyAt(history, transaction.getToCurrency(), transaction.getTimestamp());
+			}
+		} else if (reason == RejectionReason.NONE) {
+			reason = checksCurrency(rates, transaction.getFromCurrency());
+			if (reason == RejectionReason.NONE) {
+				reason = checksCurrency(rates, transaction.getToCurrency());
+			}
+		}
+		if (reason == RejectionReason.NONE && transaction.isAmountUnparsable()) {
+			reason = RejectionReason.UNPARSABLE_AMOUNT;
+		}
+		if (reason == RejectionReason.NONE) {
+			reason = checksAmount(transaction.getAmount());
+		}
+		return reason;
+	}
+
+	/**
+	 * Runs the checks of a validated transaction against the user's wallet.
+	 *
+	 * @param transaction 	The validated transaction.
+	 * @return 				the reason the transaction is rejected, or NONE.
+	 */
+	public static RejectionReason checksWallet(Transaction transaction) {
+		RejectionReason reason = checksUserHasCurrency(transaction.getUser(), transaction.getFromCurrency());
+		if (reason == RejectionReason.NONE) {
+			reason = checksSufficientAmount(transaction.getUser(), transaction.getFromCurrency(), transaction.getAmount());
+		}
+		return reason;
+	}
+
+	/**
+	 * Checks that a transaction has 4 components.
+	 *
+	 * @param components 	The number of components of the transaction.
+	 * @return 				INVALID_NUMBER_OF_COMPONENTS if there are not exactly 4 components, NONE otherwise.
+	 */
+	public static RejectionReason checksComponents(int components) {
+		return checksComponents(components, Timestamps.NONE);
+	}
+
+	/**
+	 * Checks that a transaction has 4 components, or 5 if the fifth is a timestamp.
+	 *
+	 * @param components 	The number of components of the transaction.
+	 * @param timestamp 	The fifth component parsed as a timestamp, or Timestamps.NONE.
+	 * @return 				INVALID_NUMBER_OF_COMPONENTS if there are not exactly 4 components, or 5 with a timestamp, NONE otherwise.
+	 */
+	public static RejectionReason checksComponents(int components, long timestamp) {
+		if (components == COMPONENTS || (components == COMPONENTS_WITH_TIMESTAMP && timestamp != Timestamps.NONE)) {
+			return RejectionReason.NONE;
+		}
+		return RejectionReason.INVALID_NUMBER_OF_COMPONENTS;
+	}
+
+	/**
+	 * Checks that two currencies are different.
+	 *
+	 * @param toCurrency 	The currency to be converted to.
+	 * @param fromCurrency 	The currency to be converted from.
+	 * @return 				SAME_CURRENCY if the currencies are the same, NONE otherwise.
+	 */
+	public static RejectionReason checksSameCurrency(String toCurrency, String fromCurrency) {
+		return toCurrency.equals(fromCurrency) ? RejectionReason.SAME_CURRENCY : RejectionReason.NONE;
+	}
+
+	/**
+	 * Checks that a currency exists in fx_rates.json.
+	 *
+	 * @param rates 	The rates of every currency in fx_rates.json.
+	 * @param currency 	The currency provided in the transaction.
+	 * @return 			INVALID_CURRENCY if the currency does not exist, NONE otherwise.
+	 */
+	public static RejectionReason checksCurrency(RateTable rates, String currency) {
+		return rates.contains(currency) ? RejectionReason.NONE : RejectionReason.INVALID_CURRENCY;
+	}
+
+	/**
+	 * Checks that a currency had a rate in effect at the time of a back-dated transaction.
+	 *
+	 * @param history 		The rate history.
+	 * @param currency 		The currency provided in the transaction.
+	 * @param timestamp 	The timestamp of the transaction.
+	 * @return 				INVALID_CURRENCY if the currency had no rate at that time, NONE otherwise.
+	 */
+	public static RejectionReason checksCurrencyAt(RateHistory history, String currency, long timestamp) {
+		return history.isQuotedAt(currency, timestamp) ? RejectionReason.NONE : RejectionReason.INVALID_CURRENCY;
+	}
+
+	/**
+	 * Checks that an amount to be converted is above 0, and finite.
+	 *
+	 * @param amountToConvert 	The amount involved in a conversion.
+	 * @return 					INVALID_AMOUNT if the amount is less than or equal to 0, NaN or infinite, NONE otherwise.
+	 */
+	public static RejectionReason checksAmount(double amountToConvert) {
+		return !(amountToConvert > 0) || Double.isInfinite(amountToConvert) ? RejectionReason.INVALID_AMOUNT : RejectionReason.NONE;
+	}
+
+	/**
+	 * Checks that a user has the currency to be converted from in his/her wallet.
+	 *
+	 * @param user 			The user involved in the transaction.
+	 * @param fromCurrency 	The currency to be converted from.
+	 * @return 				USER_HAS_NO_CURRENCY if the currency is not in the wallet, NONE otherwise.
+	 */
+	public static RejectionReason checksUserHasCurrency(User user, String fromCurrency) {
+		return user.isCurrencyInWallet(fromCurrency) ? RejectionReason.NONE : RejectionReason.USER_HAS_NO_CURRENCY;
+	}
+
+	/**
+	 * Checks that a user has enough of the currency to be converted from, which is in his/her wallet.
+	 *
+	 * @param user 				The user involved in the conversion.
+	 * @param fromCurrency 		The currency to be converted from.
+	 * @param amountToConvert 	The amount of currency to be converted from.
+	 * @return 					INSUFFICIENT_AMOUNT if the amount is more than the value in the wallet, NONE otherwise.
+	 * @throws NullPointerException 	The exception thrown if the currency is not in the user's wallet.
+	 */
+	public static RejectionReason checksSufficientAmount(User user, String fromCurrency, double amountToConvert) {
+		return user.getCurrencyValueInWallet(fromCurrency) < amountToConvert ? RejectionReason.INSUFFICIENT_AMOUNT : RejectionReason.NONE;
+	}
+
+}
@@ -0,0 +1,56 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+
+import benchmark.Fixtures;
+import config.EngineConfig;
+
+/**
+ * Throughput of logging every transaction through the logger to a file (the File appender of log4j2.xml)
+ * versus recording it in the ring-buffered AuditLog.
+ * The logger writes to a temporary file instead of logging.log, without the console.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> AuditLogBenchmark [users] [lines]}
+ */
+public class AuditLogBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numberOfUsers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int numberOfLines = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+        Path directory = Files.createTempDirectory("fxconvert-audit");
+        Path logFile = directory.resolve("logging.log");
+        Path auditFile = directory.resolve("audit.log");
+
+        ConfigurationBuilder<BuiltConfiguration> builder = ConfigurationBuilderFactory.newConfigurationBuilder();
+        builder.add(builder.newAppender("FILE", "File")
+                .addAttribute("fileName", logFile.toString())
+                .add(builder.newLayout("PatternLayout").addAttribute("pattern", "%d{HH:mm:ss.SSS} | %-5level | %msg%n")));
+        builder.add(builder.newRootLogger(Level.INFO).add(builder.newAppenderRef("FILE")));
+        Configurator.reconfigure(builder.build());
+
+        for (int round = 0; round < 3; round++) {
+            for (boolean audit : new boolean[] { false, true }) {
+                EngineConfig config = Fixtures.generate(numberOfUsers, numberOfLines, 42);
+                config.setAuditLog(audit ? auditFile.toString() : "");
+                // users.json is only written at shutdown, so that the time measured is spent on the transactions and their logging.
+                config.setFlushEveryTransactions(0);
+                config.setFlushIntervalMillis(0);
+                Runner.config = config;
+
+                long start = System.nanoTime();
+                Runner.main(new String[0]);
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                System.out.printf("round=%d %-8s users=%d lines=%d time=%.2fs throughput=%.0f lines/s%n",
+                        round, audit ? "auditLog" : "logger", numberOfUsers, numberOfLines, seconds, numberOfLines / seconds);
+            }
+        }
+        System.out.printf("logger wrote %d MB, audit log wrote %d MB%n", Files.size(logFile) >> 20, Files.size(auditFile) >> 20);
+    }
+
+}
@@ -0,0 +1,45 @@
+import java.nio.file.Paths;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import benchmark.Fixtures;
+import config.EngineConfig;
+
+/**
+ * Throughput of processing bursts of transactions of the same user and currency pair one at a time,
+ * versus netted into one update of the wallet per group, with every update journaled.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> NettingBenchmark [users] [lines] [maxBurst]}
+ */
+public class NettingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numberOfUsers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int numberOfLines = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        int maxBurst = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        Configurator.setLevel("Runner", Level.OFF);
+        System.out.printf("users=%d lines=%d maxBurst=%d%n", numberOfUsers, numberOfLines, maxBurst);
+
+        for (int round = 0; round < 2; round++) {
+            for (int nettingWindow : new int[] { 0, 16, 256 }) {
+                EngineConfig config = Fixtures.generate(numberOfUsers, 0, 42);
+                Fixtures.writeBurstyTransactions(Paths.get(config.getTransactionsFile()), numberOfUsers, numberOfLines, maxBurst, 42);
+                config.setPersistenceMode(EngineConfig.JOURNAL);
+                config.setJournalFile(config.getUsersFile() + ".journal");
+                config.setSnapshotFile(config.getUsersFile() + ".snapshot");
+                config.setSnapshotEveryRecords(0);
+                config.setNettingWindow(nettingWindow);
+                Runner.config = config;
+
+                long start = System.nanoTime();
+                Runner.main(new String[0]);
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                System.out.printf("round=%d nettingWindow=%d time=%.2fs throughput=%.0f lines/s%n",
+                        round, nettingWindow, seconds, numberOfLines / seconds);
+            }
+        }
+    }
+
+}
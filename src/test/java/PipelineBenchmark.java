@@ -0,0 +1,40 @@
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import benchmark.Fixtures;
+import config.EngineConfig;
+
+/**
+ * Throughput of processing a transactions file sequentially, and through the staged pipeline
+ * on platform threads and on virtual threads (where the JVM supports them), with every conversion journaled.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> PipelineBenchmark [users] [lines]}
+ */
+public class PipelineBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numberOfUsers = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int numberOfLines = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Configurator.setLevel("Runner", Level.OFF);
+        System.out.printf("cores=%d users=%d lines=%d%n", Runtime.getRuntime().availableProcessors(), numberOfUsers, numberOfLines);
+
+        String[] modes = { "sequential", "pipeline-platform", "pipeline-virtual" };
+        for (String mode : modes) {
+            EngineConfig config = Fixtures.generate(numberOfUsers, numberOfLines, 42);
+            config.setPersistenceMode(EngineConfig.JOURNAL);
+            config.setJournalFile(config.getUsersFile() + ".journal");
+            config.setSnapshotFile(config.getUsersFile() + ".snapshot");
+            config.setSnapshotEveryRecords(0);
+            config.setPipeline(!mode.equals("sequential"));
+            config.setVirtualThreads(mode.equals("pipeline-virtual"));
+            Runner.config = config;
+
+            long start = System.nanoTime();
+            Runner.main(new String[0]);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("mode=%s time=%.2fs throughput=%.0f lines/s%n", mode, seconds, numberOfLines / seconds);
+        }
+    }
+
+}
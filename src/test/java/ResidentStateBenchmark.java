@@ -0,0 +1,34 @@
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import benchmark.Fixtures;
+import config.EngineConfig;
+
+/**
+ * Before/after throughput of reloading users.json and fx_rates.json per transaction
+ * versus keeping them resident in memory for the whole run.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> ResidentStateBenchmark [users] [lines]}
+ */
+public class ResidentStateBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numberOfUsers = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int numberOfLines = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        Configurator.setLevel("Runner", Level.OFF);
+
+        for (boolean residentState : new boolean[] { false, true }) {
+            EngineConfig config = Fixtures.generate(numberOfUsers, numberOfLines, 42);
+            config.setResidentState(residentState);
+            Runner.config = config;
+
+            long start = System.nanoTime();
+            Runner.main(new String[0]);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("residentState=%-5s users=%d lines=%d time=%.2fs throughput=%.0f lines/s%n",
+                    residentState, numberOfUsers, numberOfLines, seconds, numberOfLines / seconds);
+        }
+    }
+
+}
@@ -1,23 +1,49 @@
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import benchmark.Fixtures;
+import config.EngineConfig;
 import model.Currency;
+import model.MinorUnits;
+import model.RateTable;
+import model.Transaction;
 import model.User;
+import model.UserRegistry;
+import persistence.WalletSnapshot;
+import rates.RateHistory;
 import exceptions.InsufficientAmountForConversionException;
 import exceptions.InvalidAmountException;
 import exceptions.InvalidCurrencyException;
 import exceptions.SameCurrencyException;
 import exceptions.UserHasNoCurrencyException;
 import exceptions.UserNotFoundException;
+import validation.RejectionReason;
 
 class RunnerTest {
 
@@ -89,7 +115,7 @@ class RunnerTest {
                         "Tue, 13 Sep 2022 11:55:01 GMT"
                 );
 
-        Runner.users = new ArrayList<> ();
+        Runner.users = new UserRegistry();
         user1 = new User("Ali");
         user1.addCurrencyToWallet("jpy", 10.0);
         user1.addCurrencyToWallet("aud", 56.4);
@@ -108,6 +134,442 @@ class RunnerTest {
         Runner.currencies.put("gbp", gbp);
         Runner.currencies.put("jpy", jpy);
         Runner.currencies.put("aud", aud);
+        Runner.rates = new RateTable(Runner.currencies);
+    }
+
+    @Test
+    public void testParallelProcessingUpdatesWalletsExactlyAsSequentialProcessing() throws IOException {
+        EngineConfig originalConfig = Runner.config;
+        try {
+            EngineConfig sequential = Fixtures.generate(50, 300, 11);
+            Runner.config = sequential;
+            Runner.main(new String[0]);
+
+            EngineConfig parallel = Fixtures.generate(50, 300, 11);
+            parallel.setShards(4);
+            Runner.config = parallel;
+            Runner.main(new String[0]);
+
+            assertEquals(
+                    new String(Files.readAllBytes(Paths.get(sequential.getUsersFile()))),
+                    new String(Files.readAllBytes(Paths.get(parallel.getUsersFile()))));
+        } finally {
+            Runner.config = originalConfig;
+        }
+    }
+
+    @Test
+    public void testWalletSnapshotWrittenAtShutdownAndPreferredAtStartup() throws IOException {
+        EngineConfig originalConfig = Runner.config;
+        try {
+            EngineConfig config = Fixtures.generate(50, 300, 17);
+            Path snapshotFile = Paths.get(config.getUsersFile()).resolveSibling("users.snapshot");
+            snapshotFile.toFile().deleteOnExit();
+            config.setWalletSnapshot(snapshotFile.toString());
+            Runner.config = config;
+            Runner.main(new String[0]);
+            assertEquals(
+                    new String(Files.readAllBytes(Paths.get(config.getUsersFile()))),
+                    new ObjectMapper().writeValueAsString(WalletSnapshot.reads(snapshotFile.toFile())));
+
+            // users.json is not read while the snapshot is at least as recent.
+            Files.writeString(Paths.get(config.getUsersFile()), "[]");
+            snapshotFile.toFile().setLastModified(System.currentTimeMillis() + 1000);
+            Runner.main(new String[0]);
+            assertEquals(50, WalletSnapshot.reads(snapshotFile.toFile()).size());
+            assertEquals(50, new ObjectMapper().readValue(Paths.get(config.getUsersFile()).toFile(), User[].class).length);
+        } finally {
+            Runner.config = originalConfig;
+        }
+    }
+
+    @Test
+    public void testPipelinedProcessingUpdatesWalletsExactlyAsSequentialProcessing() throws IOException {
+        EngineConfig originalConfig = Runner.config;
+        try {
+            EngineConfig sequential = Fixtures.generate(50, 300, 13);
+            Runner.config = sequential;
+            Runner.main(new String[0]);
+
+            EngineConfig pipelined = Fixtures.generate(50, 300, 13);
+            pipelined.setPipeline(true);
+            pipelined.setPipelineQueueCapacity(2);
+            Runner.config = pipelined;
+            Runner.main(new String[0]);
+
+            assertEquals(
+                    new String(Files.readAllBytes(Paths.get(sequential.getUsersFile()))),
+                    new String(Files.readAllBytes(Paths.get(pipelined.getUsersFile()))));
+        } finally {
+            Runner.config = originalConfig;
+        }
+    }
+
+    @Test
+    public void testOffHeapWalletsUpdatedExactlyAsWalletsOnTheHeap() throws IOException {
+        EngineConfig originalConfig = Runner.config;
+        try {
+            EngineConfig onHeap = Fixtures.generate(50, 300, 19);
+            onHeap.setFlushEveryTransactions(40);
+            onHeap.setPersistenceMode(EngineConfig.STREAMING);
+            Runner.config = onHeap;
+            Runner.main(new String[0]);
+
+            EngineConfig offHeap = Fixtures.generate(50, 300, 19);
+            offHeap.setFlushEveryTransactions(40);
+            offHeap.setPersistenceMode(EngineConfig.STREAMING);
+            offHeap.setOffHeapWallets(true);
+            Runner.config = offHeap;
+            Runner.main(new String[0]);
+
+            assertEquals(
+                    new String(Files.readAllBytes(Paths.get(onHeap.getUsersFile()))),
+                    new String(Files.readAllBytes(Paths.get(offHeap.getUsersFile()))));
+        } finally {
+            Runner.config = originalConfig;
+        }
+    }
+
+    @Test
+    public void testOffHeapWalletsRecoveredFromTheJournalExactlyAsWalletsOnTheHeap() throws IOException {
+        EngineConfig originalConfig = Runner.config;
+        try {
+            List<String> wallets = new ArrayList<>();
+            for (boolean offHeapWallets : new boolean[] { false, true }) {
+                EngineConfig config = Fixtures.generate(50, 300, 37);
+                config.setPersistenceMode(EngineConfig.JOURNAL);
+                config.setJournalFile(config.getUsersFile() + ".journal");
+                config.setSnapshotFile(config.getUsersFile() + ".snapshot");
+                config.setSnapshotEveryRecords(40);
+                config.setOffHeapWallets(offHeapWallets);
+                Runner.config = config;
+
+                // The second run recovers the wallets from the snapshot written by the first one.
+                Runner.main(new String[0]);
+                Runner.main(new String[0]);
+                // A user held off the heap is a new view on every lookup.
+                assertEquals(offHeapWallets, Runner.users.get(Fixtures.userName(0)) != Runner.users.get(Fixtures.userName(0)));
+                wallets.add(new String(Files.readAllBytes(Paths.get(config.getUsersFile()))));
+                new File(config.getJournalFile()).deleteOnExit();
+                new File(config.getSnapshotFile()).deleteOnExit();
+            }
+            assertEquals(wallets.get(0), wallets.get(1));
+        } finally {
+            Runner.config = originalConfig;
+        }
+    }
+
+    @Test
+    public void testServedTransactionsUpdateWalletsExactlyAsSequentialProcessing() throws Exception {
+        EngineConfig originalConfig = Runner.config;
+        try {
+            EngineConfig sequential = Fixtures.generate(50, 300, 23);
+            Runner.config = sequential;
+            Runner.main(new String[0]);
+
+            EngineConfig served = Fixtures.generate(50, 300, 23);
+            served.setServerPort(0);
+            Runner.config = served;
+            Thread main = new Thread(() -> {
+                try {
+                    Runner.main(new String[0]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            main.start();
+            while (Runner.server == null) {
+                Thread.sleep(10);
+            }
+
+            List<String> answers = new ArrayList<>();
+            try (Socket socket = new Socket("localhost", Runner.server.getPort())) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                for (String line : Files.readAllLines(Paths.get(served.getTransactionsFile()))) {
+                    writer.write(line + "\n");
+                    writer.flush();
+                    answers.add(reader.readLine());
+                }
+            }
+            try (Socket socket = new Socket("localhost", Runner.server.getPort())) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                writer.write("QUOTE usd eur 100\nQUOTE usd usd 100\nQUOTE usd eur abc\nQUOTE usd sgd 1e17\nQUOTE usd sgd Infinity\nQUOTE usd eur 1\n");
+                writer.flush();
+                long version = Runner.rates.getVersion();
+                assertEquals("OK usd 100 eur " + MinorUnits.of("eur").formats(Runner.quoter.quotes("usd", "eur", 100)) + " " + version, reader.readLine());
+                assertEquals("REJECTED SAME_CURRENCY " + version, reader.readLine());
+                assertEquals("REJECTED UNPARSABLE_AMOUNT -", reader.readLine());
+                // Amounts too large for minor units are rejected, and the connection keeps being served.
+                assertEquals("REJECTED INVALID_AMOUNT " + version, reader.readLine());
+                assertEquals("REJECTED INVALID_AMOUNT " + version, reader.readLine());
+                assertTrue(reader.readLine().startsWith("OK usd 1 eur "));
+            }
+            Runner.server.close();
+            main.join();
+
+            assertEquals(300, answers.size());
+            assertTrue(answers.stream().anyMatch(answer -> answer.startsWith("OK ")));
+            assertTrue(answers.contains("REJECTED SAME_CURRENCY " + Runner.rates.getVersion()));
+            assertTrue(answers.stream().filter(answer -> answer.startsWith("OK ")).allMatch(answer -> answer.endsWith(" " + Runner.rates.getVersion())));
+            assertEquals(
+                    new String(Files.readAllBytes(Paths.get(sequential.getUsersFile()))),
+                    new String(Files.readAllBytes(Paths.get(served.getUsersFile()))));
+        } finally {
+            Runner.config = originalConfig;
+        }
+    }
+
+    @Test
+    public void testConcurrentlyServedUsersUpdatedExactlyAsSequentialProcessing() throws Exception {
+        EngineConfig originalConfig = Runner.config;
+        try {
+            EngineConfig sequential = Fixtures.generate(5, 2_000, 29);
+            Runner.config = sequential;
+            Runner.main(new String[0]);
+
+            EngineConfig served = Fixtures.generate(5, 2_000, 29);
+            served.setServerPort(0);
+            served.setWalletLockStripes(2);
+            Runner.config = served;
+            Thread main = new Thread(() -> {
+                try {
+                    Runner.main(new String[0]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            main.start();
+            while (Runner.server == null) {
+                Thread.sleep(10);
+            }
+
+            // Every connection sends the transactions of its own users, in order, while the others send theirs.
+            List<String> lines = Files.readAllLines(Paths.get(served.getTransactionsFile()));
+            Thread[] clients = new Thread[4];
+            for (int c = 0; c < clients.length; c++) {
+                int connection = c;
+                clients[c] = new Thread(() -> {
+                    try (Socket socket = new Socket("localhost", Runner.server.getPort())) {
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                        Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                        for (String line : lines) {
+                            if (Math.floorMod(line.split(" ")[0].hashCode(), clients.length) == connection) {
+                                writer.write(line + "\n");
+                                writer.flush();
+                                reader.readLine();
+                            }
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                clients[c].start();
+            }
+            for (Thread client : clients) {
+                client.join();
+            }
+            Runner.server.close();
+            main.join();
+
+            assertEquals(
+                    new String(Files.readAllBytes(Paths.get(sequential.getUsersFile()))),
+                    new String(Files.readAllBytes(Paths.get(served.getUsersFile()))));
+        } finally {
+            Runner.config = originalConfig;
+        }
+    }
+
+    @Test
+    public void testMappedIngestionUpdatesWalletsExactlyAsSequentialProcessing() throws IOException {
+        EngineConfig originalConfig = Runner.config;
+        try {
+            EngineConfig sequential = Fixtures.generate(50, 300, 17);
+            Runner.config = sequential;
+            Runner.main(new String[0]);
+
+            EngineConfig mapped = Fixtures.generate(50, 300, 17);
+            mapped.setMappedIngestion(true);
+            mapped.setIngestionChunkBytes(512);
+            mapped.setIngestionThreads(3);
+            Runner.config = mapped;
+            Runner.main(new String[0]);
+
+            assertEquals(
+                    new String(Files.readAllBytes(Paths.get(sequential.getUsersFile()))),
+                    new String(Files.readAllBytes(Paths.get(mapped.getUsersFile()))));
+        } finally {
+            Runner.config = originalConfig;
+        }
+    }
+
+    @Test
+    public void testNettedBurstsUpdateWalletsAndAuditExactlyAsSequentialProcessing() throws IOException {
+        EngineConfig originalConfig = Runner.config;
+        try {
+            List<List<String>> audits = new ArrayList<>();
+            List<String> wallets = new ArrayList<>();
+            for (String mode : new String[] { "sequential", "netted", "nettedMapped", "nettedOffHeap" }) {
+                EngineConfig config = Fixtures.generate(5, 0, 31);
+                Fixtures.writeBurstyTransactions(Paths.get(config.getTransactionsFile()), 5, 3_000, 40, 31);
+                config.setAuditLog(config.getUsersFile() + ".audit");
+                if (!mode.equals("sequential")) {
+                    config.setNettingWindow(16);
+                }
+                if (mode.equals("nettedMapped")) {
+                    config.setMappedIngestion(true);
+                    config.setIngestionChunkBytes(512);
+                }
+                if (mode.equals("nettedOffHeap")) {
+                    config.setOffHeapWallets(true);
+                }
+                Runner.config = config;
+                Runner.main(new String[0]);
+
+                if (!mode.equals("sequential")) {
+                    assertTrue(Runner.netter.getNettedTransactions() > 2 * Runner.netter.getGroups(), mode);
+                }
+                wallets.add(new String(Files.readAllBytes(Paths.get(config.getUsersFile()))));
+                List<String> audit = new ArrayList<>();
+                String version = " | " + Runner.rates.getVersion();
+                for (String record : Files.readAllLines(Paths.get(config.getAuditLog()))) {
+                    // Without the time of the record, and the version of the rates loaded by this run.
+                    assertTrue(record.endsWith(version), record);
+                    audit.add(record.substring(record.indexOf(" | ") + 3, record.length() - version.length()));
+                }
+                audits.add(audit);
+                new File(config.getAuditLog()).deleteOnExit();
+            }
+
+            assertEquals(3_000, audits.get(0).size());
+            assertTrue(audits.get(0).stream().anyMatch(record -> record.contains(RejectionReason.INSUFFICIENT_AMOUNT.getExceptionName())));
+            for (int i = 1; i < wallets.size(); i++) {
+                assertEquals(wallets.get(0), wallets.get(i));
+                assertEquals(audits.get(0), audits.get(i));
+            }
+        } finally {
+            Runner.config = originalConfig;
+        }
+    }
+
+    @Test
+    public void testUserWithoutWalletRejectedWithoutAbortingTheRun() throws IOException {
+        EngineConfig originalConfig = Runner.config;
+        try {
+            EngineConfig config = Fixtures.generate(1, 0, 41);
+            Files.writeString(Paths.get(config.getUsersFile()), "[{\"name\":\"Zed\"},{\"name\":\"Bob\",\"wallet\":{\"usd\":100.0}}]");
+            Files.writeString(Paths.get(config.getTransactionsFile()), "Zed usd eur 10\nBob usd cad 10\n");
+            Runner.config = config;
+            Runner.main(new String[0]);
+
+            User[] users = new ObjectMapper().readValue(Paths.get(config.getUsersFile()).toFile(), User[].class);
+            assertEquals(2, users.length);
+            assertEquals(-1, users[0].getsNumberOfCurrenciesInWallet());
+            assertEquals(90, users[1].getCurrencyValueInWallet("usd"));
+            assertTrue(users[1].isCurrencyInWallet("cad"));
+
+            Transaction transaction = new Transaction("Zed usd eur 10");
+            Runner.parsesTransaction(transaction);
+            Runner.validatesTransaction(transaction);
+            Runner.appliesTransaction(transaction);
+            assertEquals(RejectionReason.USER_HAS_NO_CURRENCY, transaction.getRejection());
+        } finally {
+            Runner.config = originalConfig;
+        }
+    }
+
+    @Test
+    public void testUsersWithTheSameNameKeptInUsersJsonAndFirstOneConverted() throws IOException {
+        EngineConfig originalConfig = Runner.config;
+        try {
+            for (boolean offHeapWallets : new boolean[] { false, true }) {
+                EngineConfig config = Fixtures.generate(1, 0, 47);
+                Files.writeString(Paths.get(config.getUsersFile()), "[{\"name\":\"Bob\",\"wallet\":{\"usd\":100.0}},{\"name\":\"Bob\",\"wallet\":{\"eur\":5.0}}]");
+                Files.writeString(Paths.get(config.getTransactionsFile()), "Bob usd cad 10\nBob eur cad 1\n");
+                config.setOffHeapWallets(offHeapWallets);
+                Runner.config = config;
+                Runner.main(new String[0]);
+
+                User[] users = new ObjectMapper().readValue(Paths.get(config.getUsersFile()).toFile(), User[].class);
+                assertEquals(2, users.length);
+                assertEquals(90, users[0].getCurrencyValueInWallet("usd"));
+                assertTrue(users[0].isCurrencyInWallet("cad"));
+                assertEquals(5, users[1].getCurrencyValueInWallet("eur"));
+                assertEquals(1, users[1].getsNumberOfCurrenciesInWallet());
+            }
+        } finally {
+            Runner.config = originalConfig;
+        }
+    }
+
+    @Test
+    public void testNonFiniteAmountsRejectedWithoutAbortingTheRun() throws IOException {
+        EngineConfig originalConfig = Runner.config;
+        try {
+            EngineConfig config = Fixtures.generate(1, 0, 43);
+            Files.writeString(Paths.get(config.getUsersFile()), "[{\"name\":\"Bob\",\"wallet\":{\"usd\":100.0}}]");
+            Files.writeString(Paths.get(config.getTransactionsFile()), "Bob usd cad NaN\nBob usd cad Infinity\nBob usd cad 10\n");
+            Runner.config = config;
+            Runner.main(new String[0]);
+
+            User[] users = new ObjectMapper().readValue(Paths.get(config.getUsersFile()).toFile(), User[].class);
+            assertEquals(90, users[0].getCurrencyValueInWallet("usd"));
+            assertTrue(users[0].isCurrencyInWallet("cad"));
+            assertTrue(Runner.servesQuote("QUOTE usd eur NaN").startsWith("REJECTED " + RejectionReason.INVALID_AMOUNT.name()));
+            assertTrue(Runner.servesQuote("QUOTE usd eur Infinity").startsWith("REJECTED " + RejectionReason.INVALID_AMOUNT.name()));
+        } finally {
+            Runner.config = originalConfig;
+        }
+    }
+
+    @Test
+    public void testTransactionConvertedAgainstSnapshotItWasValidatedAgainst() {
+        RateTable validatedRates = new RateTable(Runner.currencies, 7);
+        Runner.rates = validatedRates;
+        Transaction transaction = new Transaction("Ali eur gbp 10");
+        Runner.parsesTransaction(transaction);
+        Runner.validatesTransaction(transaction);
+
+        // fx_rates.json is reloaded between validation and conversion.
+        Map<String, Currency> reloaded = new HashMap<>(Runner.currencies);
+        reloaded.remove("gbp");
+        Runner.rates = new RateTable(reloaded, 8);
+        Runner.appliesTransaction(transaction);
+
+        assertFalse(transaction.isRejected());
+        assertEquals(7, transaction.getRatesVersion());
+        assertEquals(78, user1.getCurrencyValueInWallet("eur"));
+        assertEquals(1331.4 + validatedRates.converts(validatedRates.idOf("eur"), validatedRates.idOf("gbp"), 10),
+                user1.getCurrencyValueInWallet("gbp"), 0.005);
+    }
+
+    @Test
+    public void testBackDatedTransactionConvertedAtRatesInEffectAtItsTimestamp() {
+        Map<String, Currency> earlier = new HashMap<>();
+        earlier.put("eur", new Currency(0.5, 2, "eur", "EUR", "EUR", "978", "Euro", "Mon, 12 Sep 2022 00:00:00 GMT"));
+        earlier.put("gbp", new Currency(0.25, 4, "gbp", "GBP", "GBP", "826", "U.K. Pound Sterling", "Mon, 12 Sep 2022 00:00:00 GMT"));
+        Runner.rateHistory = new RateHistory(List.of(earlier, Runner.currencies));
+        try {
+            Transaction backDated = new Transaction("Ali eur gbp 10 2022-09-12T12:00:00Z");
+            Runner.parsesTransaction(backDated);
+            Runner.validatesTransaction(backDated);
+            Runner.appliesTransaction(backDated);
+            assertFalse(backDated.isRejected());
+            assertEquals(1331.4 + 5, user1.getCurrencyValueInWallet("gbp"), 0.005);
+
+            // Before the first rate of a currency, it cannot be converted.
+            Transaction tooEarly = new Transaction("Ali eur gbp 10 2022-09-11");
+            Runner.parsesTransaction(tooEarly);
+            Runner.validatesTransaction(tooEarly);
+            assertEquals(RejectionReason.INVALID_CURRENCY, tooEarly.getRejection());
+
+            Transaction notATimestamp = new Transaction("Ali eur gbp 10 yesterday");
+            Runner.parsesTransaction(notATimestamp);
+            assertEquals(RejectionReason.INVALID_NUMBER_OF_COMPONENTS, notATimestamp.getRejection());
+        } finally {
+            Runner.rateHistory = null;
+        }
     }
 
     @Test
@@ -0,0 +1,96 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import benchmark.Fixtures;
+import config.EngineConfig;
+import metrics.LatencyHistogram;
+
+/**
+ * Round-trip latency and throughput of transactions served over local TCP connections,
+ * every client sending a transaction and waiting for its answer before sending the next one.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> ServerBenchmark [users] [requests]}
+ */
+public class ServerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numberOfUsers = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int numberOfRequests = args.length > 1 ? Integer.parseInt(args[1]) : 400_000;
+        Configurator.setLevel("Runner", Level.OFF);
+        System.out.printf("cores=%d users=%d requests=%d%n", Runtime.getRuntime().availableProcessors(), numberOfUsers, numberOfRequests);
+
+        EngineConfig config = Fixtures.generate(numberOfUsers, numberOfRequests, 42);
+        config.setServerPort(0);
+        Runner.config = config;
+        List<String> lines = Files.readAllLines(Paths.get(config.getTransactionsFile()));
+        Thread main = new Thread(() -> {
+            try {
+                Runner.main(new String[0]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        main.start();
+        while (Runner.server == null) {
+            Thread.sleep(10);
+        }
+        int port = Runner.server.getPort();
+
+        for (int connections : new int[] { 1, 8, 64 }) {
+            for (int round = 0; round < 2; round++) {
+                LatencyHistogram latencies = new LatencyHistogram("roundTrip");
+                ExecutorService clients = Executors.newFixedThreadPool(connections);
+                List<Future<?>> results = new ArrayList<>();
+                int requestsPerConnection = numberOfRequests / 4 / connections;
+                long start = System.nanoTime();
+                for (int c = 0; c < connections; c++) {
+                    int first = c * requestsPerConnection;
+                    results.add(clients.submit(() -> {
+                        try (Socket socket = new Socket("localhost", port)) {
+                            socket.setTcpNoDelay(true);
+                            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                            for (int i = 0; i < requestsPerConnection; i++) {
+                                long sent = System.nanoTime();
+                                writer.write(lines.get((first + i) % lines.size()));
+                                writer.write('\n');
+                                writer.flush();
+                                reader.readLine();
+                                latencies.records(System.nanoTime() - sent);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                clients.shutdown();
+                System.out.printf("connections=%d round=%d throughput=%.0f requests/s p50=%.1fus p99=%.1fus max=%.1fus%n",
+                        connections, round, latencies.getCount() / seconds,
+                        latencies.getPercentileNanos(50) / 1e3, latencies.getPercentileNanos(99) / 1e3, latencies.getMaxNanos() / 1e3);
+            }
+        }
+
+        Runner.server.close();
+        main.join();
+    }
+
+}
@@ -0,0 +1,36 @@
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import benchmark.Fixtures;
+import config.EngineConfig;
+
+/**
+ * Throughput of processing a transactions file with many distinct users
+ * sequentially and on 2, 4 and 8 shards. Scaling is bounded by the number of cores available.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> ShardedEngineBenchmark [users] [lines]}
+ */
+public class ShardedEngineBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numberOfUsers = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int numberOfLines = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Configurator.setLevel("Runner", Level.OFF);
+        System.out.printf("cores=%d users=%d lines=%d%n", Runtime.getRuntime().availableProcessors(), numberOfUsers, numberOfLines);
+
+        for (int shards : new int[] { 1, 2, 4, 8 }) {
+            EngineConfig config = Fixtures.generate(numberOfUsers, numberOfLines, 42);
+            config.setShards(shards);
+            config.setFlushEveryTransactions(0);
+            config.setFlushIntervalMillis(0);
+            Runner.config = config;
+
+            long start = System.nanoTime();
+            Runner.main(new String[0]);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("shards=%d time=%.2fs throughput=%.0f lines/s%n", shards, seconds, numberOfLines / seconds);
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import benchmark.Fixtures;
+import model.Currency;
+import model.RateTable;
+import model.Transaction;
+import model.User;
+import model.UserRegistry;
+import validation.RejectionReason;
+import validation.TransactionValidator;
+
+/**
+ * Cost of validating reject-heavy input through the checks that throw an exception per rejection
+ * (as Runner.validatesTransaction and Runner.appliesTransaction did), versus the TransactionValidator,
+ * which returns a RejectionReason.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> ValidationBenchmark [rejectedPercent]}
+ */
+public class ValidationBenchmark {
+
+    private static RejectionReason validatesByThrowing(Transaction transaction) {
+        try {
+            User user = Runner.getsUser(transaction.getUsername());
+            Runner.isSameCurrency(transaction.getToCurrency(), transaction.getFromCurrency());
+            Runner.isValidCurrency(transaction.getFromCurrency());
+            Runner.isValidCurrency(transaction.getToCurrency());
+            Runner.isValidAmount(transaction.getAmount());
+            Runner.doesUserHaveCurrency(user, transaction.getFromCurrency());
+            Runner.isSufficientAmountForConversion(user, transaction.getFromCurrency(), transaction.getAmount());
+            return RejectionReason.NONE;
+        } catch (Exception e) {
+            return RejectionReason.INACCESSIBLE_FILE;
+        }
+    }
+
+    private static RejectionReason validatesByReason(Transaction transaction) {
+        RejectionReason reason = TransactionValidator.validates(transaction, Runner.users, Runner.rates);
+        return reason == RejectionReason.NONE ? TransactionValidator.checksWallet(transaction) : reason;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rejectedPercent = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, Currency> currencies = objectMapper.readValue(new File("src/main/resources/fx_rates.json"),
+                objectMapper.getTypeFactory().constructMapType(HashMap.class, String.class, Currency.class));
+        Runner.rates = new RateTable(currencies);
+        List<User> users = Fixtures.users(10_000, 42);
+        Runner.users = new UserRegistry(users);
+
+        // Valid lines, and lines rejected by every check in turn.
+        Random random = new Random(42);
+        Transaction[] transactions = new Transaction[8192];
+        for (int i = 0; i < transactions.length; i++) {
+            User user = users.get(random.nextInt(users.size()));
+            String fromCurrency = user.getWallet().keySet().iterator().next();
+            String toCurrency = fromCurrency.equals("usd") ? "eur" : "usd";
+            String username = user.getName();
+            double amount = 1;
+            if (random.nextInt(100) < rejectedPercent) {
+                switch (random.nextInt(6)) {
+                case 0: username = "unknown" + i; break;
+                case 1: toCurrency = fromCurrency; break;
+                case 2: toCurrency = "xyz"; break;
+                case 3: amount = -1; break;
+                case 4: fromCurrency = fromCurrency.equals("sek") ? "nok" : "sek"; break;
+                default: amount = 1e9;
+                }
+            }
+            transactions[i] = new Transaction();
+            transactions[i].setComponents(username, fromCurrency, toCurrency);
+            transactions[i].setAmount(amount);
+        }
+
+        int validations = 5_000_000;
+        for (int round = 0; round < 3; round++) {
+            int rejected = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < validations; i++) {
+                rejected += validatesByThrowing(transactions[i & 8191]) == RejectionReason.NONE ? 0 : 1;
+            }
+            double throwingNanos = (System.nanoTime() - start) / (double) validations;
+
+            start = System.nanoTime();
+            for (int i = 0; i < validations; i++) {
+                rejected += validatesByReason(transactions[i & 8191]) == RejectionReason.NONE ? 0 : 1;
+            }
+            double reasonNanos = (System.nanoTime() - start) / (double) validations;
+
+            System.out.printf("round=%d rejected=%d%% exceptions=%.1f ns/line reasons=%.1f ns/line (rejections=%d)%n",
+                    round, rejectedPercent, throwingNanos, reasonNanos, rejected);
+        }
+    }
+
+}
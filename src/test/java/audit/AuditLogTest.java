@@ -0,0 +1,122 @@
+package audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import validation.RejectionReason;
+
+class AuditLogTest {
+
+    @TempDir
+    Path directory;
+
+    private static String[] fieldsOf(String line) {
+        return line.split(" \\| ");
+    }
+
+    @Test
+    public void testRecordsWrittenAsFixedFieldsAtClose() throws IOException {
+        File file = directory.resolve("audit.log").toFile();
+        try (AuditLog auditLog = new AuditLog(file, 1 << 20, 60_000)) {
+            auditLog.recordsConversion("Ali", "eur", "gbp", 10.5, 8.971, 3);
+            auditLog.recordsRejection(RejectionReason.USER_NOT_FOUND, "Bob", "eur", "gbp", 1, 3);
+            auditLog.recordsRejection(RejectionReason.INVALID_NUMBER_OF_COMPONENTS, null, null, null, 0);
+            auditLog.recordsRejection(RejectionReason.UNPARSABLE_AMOUNT, "Ali", "eur", "gbp", Double.NaN);
+            auditLog.recordsRejection(RejectionReason.INVALID_AMOUNT, "Ali", "eur", "gbp", -0.05);
+            assertEquals(5, auditLog.getRecords());
+        }
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(5, lines.size());
+        String[] converted = fieldsOf(lines.get(0));
+        assertEquals(9, converted.length);
+        assertTrue(Long.parseLong(converted[0]) > 0);
+        assertEquals("0", converted[1]);
+        assertEquals("CONVERTED | Ali | eur | gbp | 10.50 | 8.97 | 3", lines.get(0).substring(lines.get(0).indexOf("CONVERTED")));
+        assertEquals("UserNotFoundException | Bob | eur | gbp | 1.00 | - | 3", lines.get(1).substring(lines.get(1).indexOf("User")));
+        assertEquals("InvalidNumberOfComponentsException | - | - | - | - | - | -", lines.get(2).substring(lines.get(2).indexOf("Invalid")));
+        assertEquals("NumberFormatException | Ali | eur | gbp | - | - | -", lines.get(3).substring(lines.get(3).indexOf("Number")));
+        assertEquals("InvalidAmountException | Ali | eur | gbp | -0.05 | - | -", lines.get(4).substring(lines.get(4).indexOf("Invalid")));
+    }
+
+    @Test
+    public void testRecordsWrittenAfterFlushInterval() throws Exception {
+        File file = directory.resolve("audit.log").toFile();
+        try (AuditLog auditLog = new AuditLog(file, 1 << 20, 10)) {
+            auditLog.recordsConversion("Ali", "eur", "gbp", 1, 2);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (file.length() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(file.length() > 0);
+        }
+    }
+
+    @Test
+    public void testEveryRecordOfManyThreadsWrittenOnceThroughSmallBuffer() throws Exception {
+        File file = directory.resolve("audit.log").toFile();
+        int threads = 4;
+        int recordsPerThread = AuditLog.CAPACITY * 2;
+        try (AuditLog auditLog = new AuditLog(file, 256, 1)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            for (int thread = 0; thread < threads; thread++) {
+                String username = "user" + thread + "é";
+                executor.execute(() -> {
+                    for (int i = 0; i < recordsPerThread; i++) {
+                        auditLog.recordsConversion(username, "eur", "gbp", i, i);
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        }
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(threads * recordsPerThread, lines.size());
+        boolean[] sequences = new boolean[lines.size()];
+        for (String line : lines) {
+            String[] fields = fieldsOf(line);
+            assertTrue(fields[3].startsWith("user") && fields[3].endsWith("é"), line);
+            int sequence = Integer.parseInt(fields[1]);
+            assertTrue(!sequences[sequence], line);
+            sequences[sequence] = true;
+        }
+    }
+
+    @Test
+    public void testRecordingAllocatesNothing() throws IOException {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        File file = directory.resolve("audit.log").toFile();
+        try (AuditLog auditLog = new AuditLog(file, 4096, 1)) {
+            for (int i = 0; i < 100_000; i++) {
+                auditLog.recordsConversion("Ali", "eur", "gbp", i, i);
+            }
+            long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            for (int i = 0; i < 100_000; i++) {
+                auditLog.recordsConversion("Ali", "eur", "gbp", i, i);
+                auditLog.recordsRejection(RejectionReason.INSUFFICIENT_AMOUNT, "Ali", "eur", "gbp", i);
+            }
+            long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+            assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+        }
+    }
+
+}
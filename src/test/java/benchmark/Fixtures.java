@@ -0,0 +1,131 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import config.EngineConfig;
+import model.User;
+
+/**
+ * Generates users.json, fx_rates.json and transactions.txt fixtures in a temporary directory,
+ * so that benchmarks run offline and never touch the files in src/main/resources.
+ */
+public final class Fixtures {
+
+    /**
+     * Currencies used in generated wallets and transactions. All of them exist in fx_rates.json.
+     */
+    public static final String[] CURRENCIES = { "usd", "eur", "gbp", "jpy", "aud", "cad", "chf", "sgd", "myr", "krw" };
+
+    private Fixtures() {
+
+    }
+
+    /**
+     * Name of the i-th generated user.
+     */
+    public static String userName(int i) {
+        return "user" + i;
+    }
+
+    /**
+     * Creates users with a wallet of three currencies each.
+     */
+    public static List<User> users(int numberOfUsers, long seed) {
+        Random random = new Random(seed);
+        List<User> users = new ArrayList<>(numberOfUsers);
+        for (int i = 0; i < numberOfUsers; i++) {
+            User user = new User(userName(i));
+            for (int c = 0; c < 3; c++) {
+                user.addCurrencyToWallet(CURRENCIES[random.nextInt(CURRENCIES.length)], 1_000 + random.nextInt(100_000));
+            }
+            users.add(user);
+        }
+        return users;
+    }
+
+    /**
+     * Writes transactions.txt with a mix of valid and invalid lines for the generated users.
+     */
+    public static void writeTransactions(Path file, int numberOfUsers, int numberOfLines, long seed) throws IOException {
+        Random random = new Random(seed);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < numberOfLines; i++) {
+                String from = CURRENCIES[random.nextInt(CURRENCIES.length)];
+                String to = CURRENCIES[random.nextInt(CURRENCIES.length)];
+                writer.write(userName(random.nextInt(numberOfUsers)));
+                writer.write(' ');
+                writer.write(from);
+                writer.write(' ');
+                writer.write(to);
+                writer.write(' ');
+                writer.write(Integer.toString(1 + random.nextInt(500)));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Writes transactions.txt as bursts of lines of the same user and currency pair, of random lengths up to a maximum,
+     * so that a burst eventually runs out of the FROM currency.
+     */
+    public static void writeBurstyTransactions(Path file, int numberOfUsers, int numberOfLines, int maxBurst, long seed) throws IOException {
+        Random random = new Random(seed);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            int i = 0;
+            while (i < numberOfLines) {
+                String user = userName(random.nextInt(numberOfUsers));
+                String from = CURRENCIES[random.nextInt(CURRENCIES.length)];
+                String to = CURRENCIES[random.nextInt(CURRENCIES.length)];
+                for (int burst = 1 + random.nextInt(maxBurst); burst > 0 && i < numberOfLines; burst--, i++) {
+                    writer.write(user);
+                    writer.write(' ');
+                    writer.write(from);
+                    writer.write(' ');
+                    writer.write(to);
+                    writer.write(' ');
+                    writer.write(random.nextInt(20) == 0 ? "-1" : String.valueOf((1 + random.nextInt(5_000)) / 100.0));
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a directory holding users.json, fx_rates.json and transactions.txt,
+     * and returns a configuration pointing at them.
+     */
+    public static EngineConfig generate(int numberOfUsers, int numberOfLines, long seed) throws IOException {
+        Path directory = Files.createTempDirectory("fxconvert-bench");
+        directory.toFile().deleteOnExit();
+
+        Path users = directory.resolve("users.json");
+        Path fxRates = directory.resolve("fx_rates.json");
+        Path transactions = directory.resolve("transactions.txt");
+
+        new ObjectMapper().writeValue(users.toFile(), users(numberOfUsers, seed));
+        Files.copy(Paths.get(EngineConfig.DEFAULT_FX_RATES_FILE), fxRates, StandardCopyOption.REPLACE_EXISTING);
+        writeTransactions(transactions, numberOfUsers, numberOfLines, seed);
+
+        EngineConfig config = new EngineConfig();
+        config.setUsersFile(users.toString());
+        config.setFxRatesFile(fxRates.toString());
+        config.setTransactionsFile(transactions.toString());
+        for (Path path : new Path[] { users, fxRates, transactions }) {
+            new File(path.toString()).deleteOnExit();
+        }
+        return config;
+    }
+
+}
@@ -0,0 +1,55 @@
+package engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class OrderedChunkExecutorTest {
+
+    @Test
+    public void testResultsConsumedInChunkOrder() throws Exception {
+        List<Integer> consumed = new ArrayList<> ();
+        new OrderedChunkExecutor<Integer> (4).runs(200, chunk -> {
+            try {
+                TimeUnit.MICROSECONDS.sleep(ThreadLocalRandom.current().nextInt(500));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return chunk;
+        }, consumed::add);
+
+        assertEquals(200, consumed.size());
+        for (int i = 0; i < consumed.size(); i++) {
+            assertEquals(i, consumed.get(i));
+        }
+    }
+
+    @Test
+    public void testNoChunksConsumesNothing() throws Exception {
+        List<Integer> consumed = new ArrayList<> ();
+        new OrderedChunkExecutor<Integer> (2).runs(0, chunk -> chunk, consumed::add);
+        assertEquals(0, consumed.size());
+    }
+
+    @Test
+    public void testFailureOfProcessorRethrown() {
+        assertThrows(IllegalArgumentException.class, () -> new OrderedChunkExecutor<Integer> (2).runs(10, chunk -> {
+            if (chunk == 3) {
+                throw new IllegalArgumentException("chunk " + chunk);
+            }
+            return chunk;
+        }, chunk -> { }));
+    }
+
+    @Test
+    public void testAtLeastOneWorkerRequired() {
+        assertThrows(IllegalArgumentException.class, () -> new OrderedChunkExecutor<Integer> (0));
+    }
+
+}
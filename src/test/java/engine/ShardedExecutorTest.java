@@ -0,0 +1,81 @@
+package engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class ShardedExecutorTest {
+
+    @Test
+    public void testTasksOfSameKeyAppliedInSubmissionOrder() throws InterruptedException {
+        Map<Integer, List<Integer>> appliedByKey = new ConcurrentHashMap<> ();
+        try (ShardedExecutor<int[]> executor = new ShardedExecutor<> (4, 4, 8, task -> task[0],
+                task -> appliedByKey.computeIfAbsent(task[0], key -> Collections.synchronizedList(new ArrayList<> ())).add(task[1]))) {
+            for (int i = 0; i < 10_000; i++) {
+                executor.submit(new int[] { i % 37, i });
+            }
+        }
+
+        assertEquals(37, appliedByKey.size());
+        for (List<Integer> applied : appliedByKey.values()) {
+            for (int i = 1; i < applied.size(); i++) {
+                assertTrue(applied.get(i - 1) < applied.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testEveryTaskAppliedAfterAwaitingIdle() throws InterruptedException {
+        AtomicInteger applied = new AtomicInteger();
+        try (ShardedExecutor<Integer> executor = new ShardedExecutor<> (3, 2, 16, task -> task, task -> applied.incrementAndGet())) {
+            for (int i = 0; i < 1_001; i++) {
+                executor.submit(i);
+            }
+            executor.awaitsIdle();
+            assertEquals(1_001, applied.get());
+        }
+    }
+
+    @Test
+    public void testTasksOfSameKeyAppliedOnSameShard() throws InterruptedException {
+        Map<Integer, String> threadByKey = new ConcurrentHashMap<> ();
+        AtomicInteger mismatches = new AtomicInteger();
+        try (ShardedExecutor<Integer> executor = new ShardedExecutor<> (4, 4, 4, task -> task % 10, task -> {
+            String thread = threadByKey.putIfAbsent(task % 10, Thread.currentThread().getName());
+            if (thread != null && !thread.equals(Thread.currentThread().getName())) {
+                mismatches.incrementAndGet();
+            }
+        })) {
+            for (int i = 0; i < 1_000; i++) {
+                executor.submit(i);
+            }
+        }
+        assertEquals(0, mismatches.get());
+    }
+
+    @Test
+    public void testFailureOfTaskRethrownToSubmittingThread() {
+        ShardedExecutor<Integer> executor = new ShardedExecutor<> (2, 2, 1, task -> task, task -> {
+            throw new IllegalArgumentException("task " + task);
+        });
+        assertThrows(IllegalStateException.class, () -> {
+            executor.submit(1);
+            executor.awaitsIdle();
+        });
+    }
+
+    @Test
+    public void testAtLeastOneShardRequired() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedExecutor<Integer> (0, 1, 1, task -> task, task -> { }));
+    }
+
+}
@@ -0,0 +1,84 @@
+package engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class StagedPipelineTest {
+
+    @Test
+    public void testItemsPassThroughEveryStageInReadOrder() throws Exception {
+        List<Integer> parsed = new ArrayList<> ();
+        List<Integer> applied = new ArrayList<> ();
+        AtomicInteger next = new AtomicInteger();
+        StagedPipeline<Integer> pipeline = new StagedPipeline<Integer> (2, 7, true)
+                .addsStage("parse", parsed::add)
+                .addsStage("apply", applied::add);
+
+        pipeline.runs("read", () -> next.get() < 1_000 ? next.getAndIncrement() : null);
+
+        assertEquals(1_000, applied.size());
+        assertEquals(parsed, applied);
+        for (int i = 0; i < applied.size(); i++) {
+            assertEquals(i, applied.get(i));
+        }
+    }
+
+    @Test
+    public void testStatisticsCountItemsOfEveryStage() throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        StagedPipeline<Integer> pipeline = new StagedPipeline<Integer> (4, 16, false)
+                .addsStage("parse", item -> { })
+                .addsStage("validate", item -> { })
+                .addsStage("apply", item -> { });
+
+        pipeline.runs("read", () -> next.get() < 100 ? next.getAndIncrement() : null);
+
+        List<StageStatistics> statistics = pipeline.getStatistics();
+        assertEquals(4, statistics.size());
+        assertEquals("read", statistics.get(0).getName());
+        assertEquals("apply", statistics.get(3).getName());
+        for (StageStatistics stage : statistics) {
+            assertEquals(100, stage.getProcessed());
+            assertEquals(0, stage.getQueueDepth());
+        }
+    }
+
+    @Test
+    public void testFailureOfStageRethrownAndPipelineDrained() {
+        AtomicInteger next = new AtomicInteger();
+        IllegalArgumentException failure = new IllegalArgumentException("item 50");
+        StagedPipeline<Integer> pipeline = new StagedPipeline<Integer> (1, 1, true)
+                .addsStage("parse", item -> {
+                    if (item == 50) {
+                        throw failure;
+                    }
+                })
+                .addsStage("apply", item -> { });
+
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> pipeline.runs("read", () -> next.get() < 10_000 ? next.getAndIncrement() : null));
+        assertSame(failure, thrown);
+    }
+
+    @Test
+    public void testFailureOfSourceRethrown() {
+        StagedPipeline<Integer> pipeline = new StagedPipeline<Integer> (1, 1, true).addsStage("apply", item -> { });
+        assertThrows(IOException.class, () -> pipeline.runs("read", () -> {
+            throw new IOException("unreadable");
+        }));
+    }
+
+    @Test
+    public void testAtLeastOneStageRequired() {
+        assertThrows(IllegalStateException.class, () -> new StagedPipeline<Integer> (1, 1, true).runs("read", () -> null));
+    }
+
+}
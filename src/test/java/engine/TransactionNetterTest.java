@@ -0,0 +1,122 @@
+package engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.Currency;
+import model.RateTable;
+import model.Transaction;
+import model.User;
+import validation.RejectionReason;
+
+class TransactionNetterTest {
+
+    RateTable rates;
+
+    User tommy;
+
+    @BeforeEach
+    void setUp() {
+        Map <String, Currency> currencies = new HashMap<> ();
+        currencies.put("aud", new Currency(1.4, 0.71, "aud"));
+        currencies.put("eur", new Currency(0.98535489535028, 1.0148627714936, "eur"));
+        rates = new RateTable(currencies, 1);
+        tommy = new User("Tommy");
+        tommy.addCurrencyToWallet("usd", 10);
+    }
+
+    private boolean adds(TransactionNetter netter, User user, String fromCurrency, String toCurrency, double amount) {
+        Transaction transaction = netter.getsNext();
+        transaction.clears();
+        transaction.setComponents(user.getName(), fromCurrency, toCurrency);
+        transaction.setAmount(amount);
+        transaction.setUser(user);
+        transaction.setRates(rates);
+        return netter.adds(transaction);
+    }
+
+    @Test
+    public void testOnlyTransactionsOfTheSameUserAndPairJoinTheGroup() {
+        TransactionNetter netter = new TransactionNetter(3);
+        assertTrue(adds(netter, tommy, "usd", "aud", 1));
+        assertTrue(adds(netter, tommy, "usd", "aud", 1));
+        assertFalse(adds(netter, tommy, "usd", "eur", 1));
+        assertFalse(adds(netter, new User("Ali"), "usd", "aud", 1));
+        assertTrue(adds(netter, tommy, "usd", "aud", 1));
+        assertFalse(adds(netter, tommy, "usd", "aud", 1));
+        assertEquals(3, netter.size());
+
+        // The transaction that did not join is kept as the first of the next group.
+        Transaction next = netter.getsNext();
+        netter.clears();
+        assertSame(next, netter.get(0));
+        assertTrue(netter.adds(next));
+
+        Transaction rejected = netter.getsNext();
+        rejected.clears();
+        rejected.setRejection(RejectionReason.INVALID_AMOUNT);
+        assertFalse(netter.adds(rejected));
+    }
+
+    @Test
+    public void testTransactionsCheckedOnTheBalanceLeftByTheOnesBefore() {
+        TransactionNetter netter = new TransactionNetter(8);
+        adds(netter, tommy, "usd", "aud", 4);
+        adds(netter, tommy, "usd", "aud", 4);
+        adds(netter, tommy, "usd", "aud", 4);
+        adds(netter, tommy, "usd", "aud", 1.5);
+        netter.nets();
+
+        assertFalse(netter.get(0).isRejected());
+        assertFalse(netter.get(1).isRejected());
+        assertEquals(RejectionReason.INSUFFICIENT_AMOUNT, netter.get(2).getRejection());
+        assertFalse(netter.get(3).isRejected());
+        assertEquals(3, netter.getConversions());
+        assertEquals(1, netter.getSplits());
+        assertEquals(9.5, netter.getNettedAmount());
+        assertEquals(5.6 + 5.6 + 2.1, netter.getNettedConvertedAmount(), 1e-9);
+        assertEquals(4 * 1.4, netter.get(0).getConvertedAmount(), 1e-9);
+
+        // The wallet is left to the caller.
+        assertEquals(10, tommy.getCurrencyValueInWallet("usd"));
+    }
+
+    @Test
+    public void testCurrencyEmptiedInsideTheGroupIsNoLongerHeld() {
+        TransactionNetter netter = new TransactionNetter(8);
+        adds(netter, tommy, "usd", "eur", 6);
+        adds(netter, tommy, "usd", "eur", 4);
+        adds(netter, tommy, "usd", "eur", 1);
+        netter.nets();
+
+        assertEquals(2, netter.getConversions());
+        assertEquals(RejectionReason.USER_HAS_NO_CURRENCY, netter.get(2).getRejection());
+        assertEquals(10, netter.getNettedAmount());
+
+        tommy.updatesWallet("usd", "eur", netter.getNettedAmount(), netter.getNettedConvertedAmount());
+        assertFalse(tommy.isCurrencyInWallet("usd"));
+    }
+
+    @Test
+    public void testCurrencyNotHeldRejectsEveryTransaction() {
+        TransactionNetter netter = new TransactionNetter(8);
+        adds(netter, tommy, "aud", "eur", 1);
+        adds(netter, tommy, "aud", "eur", 1);
+        netter.nets();
+
+        assertEquals(0, netter.getConversions());
+        assertEquals(RejectionReason.USER_HAS_NO_CURRENCY, netter.get(0).getRejection());
+        assertEquals(RejectionReason.USER_HAS_NO_CURRENCY, netter.get(1).getRejection());
+        assertEquals(1, netter.getGroups());
+        assertEquals(2, netter.getNettedTransactions());
+    }
+
+}
@@ -0,0 +1,73 @@
+package engine;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Conversions per second of 1, 2, 4 and 8 threads checking and converting wallets under WalletLocks,
+ * for hot users (1 and 16) and users spread over 100K wallets, with a global lock (1 stripe) versus 1024 stripes.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> engine.WalletLocksBenchmark [millisPerRun]}
+ */
+public class WalletLocksBenchmark {
+
+    private static double[] conversionsPerSecond(WalletLocks locks, String[] names, long[] balances, int threads, long millis)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder conversions = new LongAdder();
+        Thread[] converters = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 7919;
+            converters[t] = new Thread(() -> {
+                long count = 0;
+                int i = offset;
+                while (running.get()) {
+                    int u = i++ % names.length;
+                    locks.locks(names[u]);
+                    try {
+                        if (balances[u] > 0) {
+                            balances[u]--;
+                        } else {
+                            balances[u] += 1_000;
+                        }
+                    } finally {
+                        locks.unlocks(names[u]);
+                    }
+                    count++;
+                }
+                conversions.add(count);
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread thread : converters) {
+            thread.start();
+        }
+        Thread.sleep(millis);
+        running.set(false);
+        for (Thread thread : converters) {
+            thread.join();
+        }
+        return new double[] { conversions.sum() / ((System.nanoTime() - start) / 1e9), conversions.sum() };
+    }
+
+    public static void main(String[] args) throws Exception {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        System.out.printf("cores=%d%n", Runtime.getRuntime().availableProcessors());
+        for (int users : new int[] { 1, 16, 100_000 }) {
+            String[] names = new String[users];
+            for (int u = 0; u < users; u++) {
+                names[u] = "user" + u;
+            }
+            long[] balances = new long[users];
+            for (int stripes : new int[] { 1, 1024 }) {
+                for (int threads : new int[] { 1, 2, 4, 8 }) {
+                    WalletLocks locks = new WalletLocks(stripes);
+                    double[] result = conversionsPerSecond(locks, names, balances, threads, millis);
+                    System.out.printf("users=%d stripes=%d threads=%d conversions=%.1fM/s contended=%.2f%%%n", users, stripes, threads,
+                            result[0] / 1e6, 100.0 * locks.getContendedAcquisitions() / Math.max(1, locks.getAcquisitions()));
+                }
+            }
+        }
+    }
+
+}
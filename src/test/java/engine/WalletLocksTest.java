@@ -0,0 +1,123 @@
+package engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+class WalletLocksTest {
+
+    @Test
+    public void testStripesRoundedUpToAPowerOfTwo() {
+        assertEquals(1, new WalletLocks(1).getStripes());
+        assertEquals(8, new WalletLocks(5).getStripes());
+        assertEquals(1024, new WalletLocks(1024).getStripes());
+        assertThrows(IllegalArgumentException.class, () -> new WalletLocks(0));
+        assertThrows(IllegalArgumentException.class, () -> new WalletLocks((1 << 16) + 1));
+    }
+
+    @Test
+    public void testConcurrentChecksAndConversionsNeverOverdrawAWallet() throws Exception {
+        WalletLocks locks = new WalletLocks(16);
+        String[] names = { "alice", "bob", "carol" };
+        long[] sgd = new long[names.length];
+        long[] usd = new long[names.length];
+        for (int u = 0; u < names.length; u++) {
+            sgd[u] = 1_000;
+        }
+        AtomicBoolean overdrawn = new AtomicBoolean();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    int u = i % names.length;
+                    locks.locks(names[u]);
+                    try {
+                        if (sgd[u] >= 3) {
+                            Thread.yield();
+                            sgd[u] -= 3;
+                            usd[u] += 2;
+                        }
+                        if (sgd[u] < 0) {
+                            overdrawn.set(true);
+                        }
+                    } finally {
+                        locks.unlocks(names[u]);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(overdrawn.get());
+        for (int u = 0; u < names.length; u++) {
+            assertEquals(1, sgd[u]);
+            assertEquals(666, usd[u]);
+        }
+        assertEquals(80_000, locks.getAcquisitions());
+    }
+
+    @Test
+    public void testLocksAllWaitsForConversionsBeingApplied() throws Exception {
+        WalletLocks locks = new WalletLocks(4);
+        CountDownLatch converting = new CountDownLatch(1);
+        CountDownLatch checkpointed = new CountDownLatch(1);
+        locks.locks("alice");
+        Thread checkpoint = new Thread(() -> {
+            converting.countDown();
+            locks.locksAll();
+            checkpointed.countDown();
+            locks.unlocksAll();
+        });
+        checkpoint.start();
+        converting.await();
+
+        assertFalse(checkpointed.await(100, TimeUnit.MILLISECONDS));
+        locks.unlocks("alice");
+        assertTrue(checkpointed.await(5, TimeUnit.SECONDS));
+        checkpoint.join();
+    }
+
+    @Test
+    public void testWaitForAHeldStripeCounted() throws Exception {
+        WalletLocks locks = new WalletLocks(1);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            locks.locks("alice");
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            locks.unlocks("alice");
+        });
+        holder.start();
+        locked.await();
+        Thread waiter = new Thread(() -> {
+            locks.locks("bob");
+            locks.unlocks("bob");
+        });
+        waiter.start();
+        while (!waiter.getState().equals(Thread.State.WAITING)) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        holder.join();
+        waiter.join();
+
+        assertEquals(2, locks.getAcquisitions());
+        assertEquals(1, locks.getContendedAcquisitions());
+    }
+
+}
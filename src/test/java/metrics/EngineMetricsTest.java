@@ -0,0 +1,80 @@
+package metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.jupiter.api.Test;
+
+import validation.RejectionReason;
+
+class EngineMetricsTest {
+
+    @Test
+    public void testOutcomesCountedByExceptionAndPair() {
+        EngineMetrics metrics = new EngineMetrics();
+        metrics.recordsOutcome(RejectionReason.NONE, "eur", "gbp", 10.5);
+        metrics.recordsOutcome(RejectionReason.NONE, "eur", "gbp", 4.5);
+        metrics.recordsOutcome(RejectionReason.NONE, "gbp", "eur", 1);
+        metrics.recordsOutcome(RejectionReason.USER_NOT_FOUND, "eur", "gbp", 1);
+        metrics.recordsOutcome(RejectionReason.INSUFFICIENT_AMOUNT, "eur", "gbp", 1);
+        metrics.recordsOutcome(RejectionReason.INSUFFICIENT_AMOUNT, null, null, 0);
+
+        assertEquals(6, metrics.getTransactions());
+        assertEquals(3, metrics.getValidTransactions());
+        assertEquals(3, metrics.getRejectedTransactions());
+        assertEquals(1, metrics.getRejections().get("UserNotFoundException"));
+        assertEquals(2, metrics.getRejections().get("InsufficientAmountForConversionException"));
+        assertEquals(0, metrics.getRejections().get("InvalidNumberOfComponentsException"));
+        assertEquals(2, metrics.getCurrencyPairConversions().get("eur/gbp"));
+        assertEquals(1, metrics.getCurrencyPairConversions().get("gbp/eur"));
+        assertEquals(15.0, metrics.getCurrencyPairVolumes().get("eur/gbp"));
+        assertTrue(metrics.summarises().get(0).startsWith("transactions=6 valid=3 rejected=3"));
+    }
+
+    @Test
+    public void testMetricsPublishedAsMXBean() throws Exception {
+        EngineMetrics metrics = new EngineMetrics();
+        metrics.getParse().records(1_000);
+        metrics.recordsOutcome(RejectionReason.SAME_CURRENCY, "eur", "eur", 1);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(EngineMetrics.OBJECT_NAME);
+        metrics.registers();
+        try {
+            // A second run replaces the metrics of the first.
+            new EngineMetrics().registers();
+            metrics.registers();
+
+            CompositeData parseLatency = (CompositeData) server.getAttribute(name, "ParseLatency");
+            assertEquals(1L, parseLatency.get("count"));
+            assertEquals(1_000L, parseLatency.get("maxNanos"));
+            assertEquals(1L, server.getAttribute(name, "RejectedTransactions"));
+        } finally {
+            metrics.unregisters();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testPairsBeyondCapacityCountedAsOverflow() {
+        CurrencyPairCounters counters = new CurrencyPairCounters();
+        String letters = "abcdefghijklmnopqrstuvwxyz";
+        int pairs = 0;
+        for (int from = 0; from < 26 * 26 && pairs <= CurrencyPairCounters.CAPACITY; from++) {
+            for (int to = 0; to < 26 * 26 && pairs <= CurrencyPairCounters.CAPACITY; to++, pairs++) {
+                counters.counts("a" + letters.charAt(from / 26) + letters.charAt(from % 26), "z" + letters.charAt(to / 26) + letters.charAt(to % 26), 1);
+            }
+        }
+        assertEquals(CurrencyPairCounters.CAPACITY, counters.getConversions().size());
+        assertEquals(1, counters.getOverflow());
+    }
+
+}
@@ -0,0 +1,81 @@
+package metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+    @Test
+    public void testEveryLatencyFallsInBucketBoundingIt() {
+        long[] latencies = { 0, 1, 31, 32, 33, 63, 64, 65, 1_000, 123_456_789, Long.MAX_VALUE >>> 1, Long.MAX_VALUE };
+        for (long latency : latencies) {
+            int bucket = LatencyHistogram.bucketOf(latency);
+            assertTrue(latency <= LatencyHistogram.upperBoundOf(bucket), Long.toString(latency));
+            assertTrue(bucket == 0 || latency > LatencyHistogram.upperBoundOf(bucket - 1), Long.toString(latency));
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long latency = random.nextLong() >>> (1 + random.nextInt(63));
+            int bucket = LatencyHistogram.bucketOf(latency);
+            assertTrue(latency <= LatencyHistogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0 || latency > LatencyHistogram.upperBoundOf(bucket - 1));
+        }
+    }
+
+    @Test
+    public void testPercentilesWithinOneSixteenthOfExactPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        Random random = new Random(42);
+        long[] latencies = new long[100_000];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = (long) Math.exp(random.nextDouble() * 20);
+            histogram.records(latencies[i]);
+        }
+        Arrays.sort(latencies);
+
+        for (double percentile : new double[] { 50, 90, 99, 99.9, 100 }) {
+            long exact = latencies[(int) Math.ceil(latencies.length * percentile / 100) - 1];
+            long estimated = histogram.getPercentileNanos(percentile);
+            assertTrue(estimated >= exact && estimated <= exact + exact / 16, percentile + ": " + exact + " vs " + estimated);
+        }
+        assertEquals(latencies.length, histogram.getCount());
+        assertEquals(latencies[latencies.length - 1], histogram.getMaxNanos());
+        assertEquals(Arrays.stream(latencies).sum(), histogram.getTotalNanos());
+    }
+
+    @Test
+    public void testEmptyHistogramSummarisedAsZeros() {
+        LatencySummary summary = new LatencyHistogram("test").summarises();
+        assertEquals(0, summary.getCount());
+        assertEquals(0, summary.getMeanNanos());
+        assertEquals(0, summary.getP99Nanos());
+        assertEquals(0, summary.getMaxNanos());
+    }
+
+    @Test
+    public void testLatenciesRecordedFromManyThreadsAllCounted() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        for (int thread = 0; thread < 4; thread++) {
+            threads.execute(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.records(i % 1_000);
+                }
+            });
+        }
+        threads.shutdown();
+        assertTrue(threads.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(400_000, histogram.getCount());
+        assertEquals(999, histogram.getMaxNanos());
+    }
+
+}
@@ -0,0 +1,44 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class CurrencyCodesTest {
+
+    @Test
+    public void testLowercaseCodesPackedAndUnpacked() {
+        for (String code : new String[] { "aaa", "usd", "sgd", "zzz" }) {
+            int packedCode = CurrencyCodes.packs(code);
+            assertEquals(code, CurrencyCodes.unpacks(packedCode));
+        }
+        assertEquals(0, CurrencyCodes.packs("aaa"));
+    }
+
+    @Test
+    public void testOtherCodesCannotBePacked() {
+        for (String code : new String[] { "", "us", "usdt", "USD", "us1", "u d" }) {
+            assertEquals(CurrencyCodes.UNPACKABLE, CurrencyCodes.packs(code));
+        }
+    }
+
+    @Test
+    public void testSameStringUnpackedEveryTime() {
+        int packedCode = CurrencyCodes.packs("eur");
+        assertSame(CurrencyCodes.unpacks(packedCode), CurrencyCodes.unpacks(packedCode));
+    }
+
+    @Test
+    public void testOtherCodesRegisteredAbovePackedCodes() {
+        assertEquals(CurrencyCodes.UNPACKABLE, CurrencyCodes.codeOf("XYZT"));
+        int code = CurrencyCodes.registers("XYZT");
+        assertTrue(code >= CurrencyCodes.PACKED_CODES && code < CurrencyCodes.CODES_OF_16_BITS);
+        assertEquals(code, CurrencyCodes.codeOf("XYZT"));
+        assertEquals(code, CurrencyCodes.registers("XYZT"));
+        assertEquals("XYZT", CurrencyCodes.unpacks(code));
+        assertEquals(CurrencyCodes.packs("usd"), CurrencyCodes.registers("usd"));
+    }
+
+}
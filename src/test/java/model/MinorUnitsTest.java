@@ -0,0 +1,153 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class MinorUnitsTest {
+
+    @Test
+    public void testRoundingMatchesBigDecimalOnExactValueForHalfEvenAndOnShortestDecimalOtherwise() {
+        Random random = new Random(11);
+        for (RoundingMode roundingMode : RoundingMode.values()) {
+            if (roundingMode == RoundingMode.UNNECESSARY) {
+                continue;
+            }
+            for (int scale = 0; scale <= 4; scale++) {
+                MinorUnits units = new MinorUnits(scale, roundingMode);
+                for (int i = 0; i < 20_000; i++) {
+                    double amount = amountOf(random);
+                    BigDecimal decimal = roundingMode == RoundingMode.HALF_EVEN ? new BigDecimal(amount) : BigDecimal.valueOf(amount);
+                    long expected = decimal.setScale(scale, roundingMode).unscaledValue().longValueExact();
+                    assertEquals(expected, units.toMinor(amount), roundingMode + " " + scale + " " + amount);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTrippingMajorRoundsBackToTheSameMinorUnits() {
+        Random random = new Random(13);
+        for (RoundingMode roundingMode : RoundingMode.values()) {
+            if (roundingMode == RoundingMode.UNNECESSARY) {
+                continue;
+            }
+            for (int scale = 0; scale <= 4; scale++) {
+                MinorUnits units = new MinorUnits(scale, roundingMode);
+                for (int i = 0; i < 20_000; i++) {
+                    long minor = random.nextInt(10_000_000) - 5_000_000;
+                    assertEquals(minor, units.toMinor(units.toRoundTrippingMajor(minor)), roundingMode + " " + scale + " " + minor);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTiesRoundedByMode() {
+        assertEquals(2, new MinorUnits(0, RoundingMode.HALF_EVEN).toMinor(2.5));
+        assertEquals(4, new MinorUnits(0, RoundingMode.HALF_EVEN).toMinor(3.5));
+        assertEquals(3, new MinorUnits(0, RoundingMode.HALF_UP).toMinor(2.5));
+        assertEquals(-3, new MinorUnits(0, RoundingMode.HALF_UP).toMinor(-2.5));
+        assertEquals(2, new MinorUnits(0, RoundingMode.HALF_DOWN).toMinor(2.5));
+        // 0.125 is exact in binary, so it is a tie at 2 decimals.
+        assertEquals(12, MinorUnits.DEFAULT.toMinor(0.125));
+        assertEquals(13, new MinorUnits(2, RoundingMode.HALF_UP).toMinor(0.125));
+        // 1.005 is just below 1.005 in binary, which only HALF_EVEN rounds on, as DecimalFormat does.
+        assertEquals(100, MinorUnits.DEFAULT.toMinor(1.005));
+        assertEquals(101, new MinorUnits(2, RoundingMode.HALF_UP).toMinor(1.005));
+    }
+
+    @Test
+    public void testDirectedRoundingKeepsAmountsOfTwoDecimals() {
+        // 0.29 and 1.15 are just below themselves in binary, and 0.1 just above.
+        assertEquals(29, new MinorUnits(2, RoundingMode.FLOOR).toMinor(0.29));
+        assertEquals(115, new MinorUnits(2, RoundingMode.FLOOR).toMinor(1.15));
+        assertEquals(10, new MinorUnits(2, RoundingMode.CEILING).toMinor(0.1));
+        assertEquals(-10, new MinorUnits(2, RoundingMode.FLOOR).toMinor(-0.1));
+        assertEquals(28, new MinorUnits(2, RoundingMode.FLOOR).toMinor(0.289));
+        assertEquals(11, new MinorUnits(2, RoundingMode.CEILING).toMinor(0.101));
+    }
+
+    @Test
+    public void testUnnecessaryRoundingRejected() {
+        MinorUnits units = new MinorUnits(2, RoundingMode.UNNECESSARY);
+        assertEquals(25, units.toMinor(0.25));
+        assertThrows(ArithmeticException.class, () -> units.toMinor(0.125));
+        assertThrows(ArithmeticException.class, () -> MinorUnits.DEFAULT.toMinor(Double.NaN));
+        assertThrows(ArithmeticException.class, () -> MinorUnits.DEFAULT.toMinor(1e17));
+    }
+
+    @Test
+    public void testFormattingMatchesDecimalFormat() {
+        DecimalFormat df = new DecimalFormat("#.##");
+        Random random = new Random(12);
+        for (int i = 0; i < 20_000; i++) {
+            double amount = amountOf(random);
+            assertEquals(df.format(amount), MinorUnits.DEFAULT.formats(amount), String.valueOf(amount));
+        }
+        assertEquals("0", MinorUnits.DEFAULT.formats(0));
+        assertEquals("100", MinorUnits.DEFAULT.formats(100.0));
+        assertEquals("0.05", MinorUnits.DEFAULT.formats(0.05));
+        assertEquals("1420.5", MinorUnits.DEFAULT.formats(1420.5));
+    }
+
+    @Test
+    public void testMinorUnitsConfiguredPerCurrency() {
+        MinorUnits.configures("xjp=0, xkr=3:HALF_UP");
+        assertEquals(0, MinorUnits.of("xjp").getScale());
+        assertEquals(RoundingMode.HALF_EVEN, MinorUnits.of("xjp").getRoundingMode());
+        assertEquals(3, MinorUnits.of("xkr").getScale());
+        assertEquals(RoundingMode.HALF_UP, MinorUnits.of("xkr").getRoundingMode());
+        assertEquals(MinorUnits.DEFAULT, MinorUnits.of("xyz"));
+        assertThrows(IllegalArgumentException.class, () -> MinorUnits.configures("xjp"));
+        assertThrows(IllegalArgumentException.class, () -> MinorUnits.configures("xjp=10"));
+    }
+
+    @Test
+    public void testRoundingAllocatesNothing() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        double[] amounts = new double[1_000];
+        Random random = new Random(13);
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = amountOf(random);
+        }
+        long sum = 0;
+        for (double amount : amounts) {
+            sum += MinorUnits.DEFAULT.toMinor(amount);
+        }
+
+        int iterations = 200;
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            for (double amount : amounts) {
+                sum += MinorUnits.DEFAULT.toMinor(amount);
+            }
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(0.0, (double) allocated / (iterations * amounts.length), 0.1);
+    }
+
+    /**
+     * An amount with up to 5 decimals, or a conversion result with every bit of its mantissa used.
+     */
+    private static double amountOf(Random random) {
+        if (random.nextBoolean()) {
+            return random.nextInt(100_000_000) / 1e5;
+        }
+        return random.nextDouble() * random.nextInt(100_000) * (random.nextInt(10) == 0 ? -1 : 1);
+    }
+
+}
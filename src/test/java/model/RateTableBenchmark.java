@@ -0,0 +1,63 @@
+package model;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Cost of a conversion between two currencies through two lookups of the currencies map
+ * and two multiplications via USD (as Runner.conversionInvolvingUsd did),
+ * versus a single multiplication by the cross rate of the RateTable.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> model.RateTableBenchmark}
+ */
+public class RateTableBenchmark {
+
+    private static double convertsThroughUsd(Map<String, Currency> currencies, String from, String to, double amount) {
+        if (to.equals("usd")) {
+            return amount * currencies.get(from).getInverseRate();
+        } else if (from.equals("usd")) {
+            return amount * currencies.get(to).getRate();
+        }
+        return amount * currencies.get(from).getInverseRate() * currencies.get(to).getRate();
+    }
+
+    public static void main(String[] args) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, Currency> currencies = objectMapper.readValue(new File("src/main/resources/fx_rates.json"),
+                objectMapper.getTypeFactory().constructMapType(HashMap.class, String.class, Currency.class));
+        RateTable rates = new RateTable(currencies);
+
+        String[] codes = currencies.keySet().toArray(new String[0]);
+        Random random = new Random(42);
+        String[] froms = new String[4096];
+        String[] tos = new String[4096];
+        for (int i = 0; i < froms.length; i++) {
+            froms[i] = new String(codes[random.nextInt(codes.length)]);
+            tos[i] = new String(codes[random.nextInt(codes.length)]);
+        }
+
+        int conversions = 20_000_000;
+        double checksum = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < conversions; i++) {
+                checksum += convertsThroughUsd(currencies, froms[i & 4095], tos[i & 4095], i);
+            }
+            double mapNanos = (System.nanoTime() - start) / (double) conversions;
+
+            start = System.nanoTime();
+            for (int i = 0; i < conversions; i++) {
+                checksum += rates.converts(rates.idOf(froms[i & 4095]), rates.idOf(tos[i & 4095]), i);
+            }
+            double tableNanos = (System.nanoTime() - start) / (double) conversions;
+
+            System.out.printf("round=%d throughUsd=%.1f ns/conversion rateTable=%.1f ns/conversion (checksum=%.0f)%n",
+                    round, mapNanos, tableNanos, checksum);
+        }
+    }
+
+}
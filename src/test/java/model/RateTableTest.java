@@ -0,0 +1,91 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class RateTableTest {
+
+    Map <String, Currency> currencies;
+
+    RateTable rates;
+
+    @BeforeEach
+    void setUp() {
+        currencies = new HashMap<> ();
+        currencies.put("eur", new Currency(0.98535489535028, 1.0148627714936, "eur"));
+        currencies.put("gbp", new Currency(0.85438980693642, 1.1704259482983, "gbp"));
+        currencies.put("jpy", new Currency(142.32291211472, 0.007026275566888, "jpy"));
+        rates = new RateTable(currencies);
+    }
+
+    @Test
+    public void testUsdHasIdZeroAndOtherCurrenciesFollowAlphabetically() {
+        assertEquals(4, rates.size());
+        assertEquals("usd", rates.codeOf(0));
+        assertEquals("eur", rates.codeOf(1));
+        assertEquals("gbp", rates.codeOf(2));
+        assertEquals("jpy", rates.codeOf(3));
+        for (int id = 0; id < rates.size(); id++) {
+            assertEquals(id, rates.idOf(rates.codeOf(id)));
+        }
+    }
+
+    @Test
+    public void testUnknownCurrencyNotInTable() {
+        assertEquals(RateTable.UNKNOWN, rates.idOf("ppp"));
+        assertEquals(RateTable.UNKNOWN, rates.idOf("EUR"));
+        assertEquals(RateTable.UNKNOWN, rates.idOf("euro"));
+        assertEquals(RateTable.UNKNOWN, rates.idOf(""));
+        assertFalse(rates.contains("ppp"));
+        assertTrue(rates.contains("usd"));
+    }
+
+    @Test
+    public void testConversionsInvolvingUsdUseRateOrInverseRate() {
+        assertEquals(100 * 1.1704259482983, rates.converts(rates.idOf("gbp"), rates.idOf("usd"), 100));
+        assertEquals(100 * 142.32291211472, rates.converts(rates.idOf("usd"), rates.idOf("jpy"), 100));
+    }
+
+    @Test
+    public void testCrossRateConvertsThroughUsd() {
+        double throughUsd = 100 * 1.0148627714936 * 0.85438980693642;
+        assertEquals(throughUsd, rates.converts(rates.idOf("eur"), rates.idOf("gbp"), 100), Math.ulp(throughUsd) * 2);
+    }
+
+    @Test
+    public void testCodeThatCannotBePackedStillFound() {
+        currencies.put("x1", new Currency(2, 0.5, "x1"));
+        RateTable table = new RateTable(currencies);
+        assertEquals(2 * 3.0, table.converts(table.idOf("usd"), table.idOf("x1"), 3.0));
+    }
+
+    @Test
+    public void testEveryPairOfFxRatesMatchesConversionThroughUsd() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map <String, Currency> fxRates = objectMapper.readValue(new File("src/main/resources/fx_rates.json"),
+                objectMapper.getTypeFactory().constructMapType(HashMap.class, String.class, Currency.class));
+        RateTable table = new RateTable(fxRates);
+        assertEquals(fxRates.size() + 1, table.size());
+
+        for (String from : fxRates.keySet()) {
+            for (String to : fxRates.keySet()) {
+                if (!from.equals(to)) {
+                    double throughUsd = 250 * fxRates.get(from).getInverseRate() * fxRates.get(to).getRate();
+                    assertEquals(throughUsd, table.converts(table.idOf(from), table.idOf(to), 250), Math.ulp(throughUsd) * 2);
+                }
+            }
+        }
+    }
+
+}
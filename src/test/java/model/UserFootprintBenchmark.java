@@ -0,0 +1,68 @@
+package model;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import benchmark.Fixtures;
+
+/**
+ * Heap used per user, loaded from users.json, with the wallet as a HashMap of boxed balances
+ * (as User used to keep it) versus the compact wallet of User, at 1M users of 3 currencies each.
+ * Names alone are measured too, so the footprint of the wallets can be told apart from the rest of a user.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> model.UserFootprintBenchmark [users]}
+ */
+public class UserFootprintBenchmark {
+
+    public static class NameOnlyUser {
+        public String name;
+    }
+
+    public static class HashMapWalletUser {
+        public String name;
+        public HashMap<String, Double> wallet;
+        public boolean dirty;
+    }
+
+    private static Object retained;
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static <T> double bytesPerUser(ObjectMapper objectMapper, File usersFile, TypeReference<List<T>> type, int numberOfUsers) throws Exception {
+        retained = null;
+        long before = usedHeap();
+        retained = objectMapper.readValue(usersFile, type);
+        long after = usedHeap();
+        return (after - before) / (double) numberOfUsers;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numberOfUsers = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        File usersFile = File.createTempFile("fxconvert-users", ".json");
+        usersFile.deleteOnExit();
+        ObjectMapper objectMapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        objectMapper.writeValue(usersFile, Fixtures.users(numberOfUsers, 42));
+
+        double names = bytesPerUser(objectMapper, usersFile, new TypeReference<List<NameOnlyUser>>() { }, numberOfUsers);
+        double hashMap = bytesPerUser(objectMapper, usersFile, new TypeReference<List<HashMapWalletUser>>() { }, numberOfUsers);
+        double compact = bytesPerUser(objectMapper, usersFile, new TypeReference<List<User>>() { }, numberOfUsers);
+
+        System.out.printf("users=%,d%n", numberOfUsers);
+        System.out.printf("per user:   hashMap=%.0f B compact=%.0f B (%.1fx)%n", hashMap, compact, hashMap / compact);
+        System.out.printf("per wallet: hashMap=%.0f B compact=%.0f B (%.1fx), names alone=%.0f B%n",
+                hashMap - names, compact - names, (hashMap - names) / (compact - names), names);
+    }
+
+}
@@ -0,0 +1,66 @@
+package model;
+
+import java.util.List;
+import java.util.Random;
+
+import benchmark.Fixtures;
+
+/**
+ * Lookup cost of finding a user by name with a scan of the users list (as Runner.getsUser used to)
+ * versus the name index of the UserRegistry, at 1K, 100K and 1M users.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> model.UserRegistryBenchmark}
+ */
+public class UserRegistryBenchmark {
+
+    private static User scans(List<User> users, String name) {
+        for (User currentUser : users) {
+            if (currentUser.getName().equals(name)) {
+                return currentUser;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) {
+        for (int numberOfUsers : new int[] { 1_000, 100_000, 1_000_000 }) {
+            List<User> users = Fixtures.users(numberOfUsers, 42);
+            UserRegistry registry = new UserRegistry(users);
+
+            // Keep the number of scanned lookups bounded, since every scan is O(users).
+            int scanLookups = Math.max(200, 20_000_000 / numberOfUsers);
+            int registryLookups = 2_000_000;
+            String[] names = new String[4096];
+            Random random = new Random(7);
+            for (int i = 0; i < names.length; i++) {
+                names[i] = Fixtures.userName(random.nextInt(numberOfUsers));
+            }
+
+            long found = 0;
+            for (int warmup = 0; warmup < 2; warmup++) {
+                for (int i = 0; i < scanLookups; i++) {
+                    found += scans(users, names[i & 4095]) != null ? 1 : 0;
+                }
+                for (int i = 0; i < registryLookups; i++) {
+                    found += registry.get(names[i & 4095]) != null ? 1 : 0;
+                }
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < scanLookups; i++) {
+                found += scans(users, names[i & 4095]) != null ? 1 : 0;
+            }
+            double scanNanos = (System.nanoTime() - start) / (double) scanLookups;
+
+            start = System.nanoTime();
+            for (int i = 0; i < registryLookups; i++) {
+                found += registry.get(names[i & 4095]) != null ? 1 : 0;
+            }
+            double registryNanos = (System.nanoTime() - start) / (double) registryLookups;
+
+            System.out.printf("users=%,d scan=%,.0f ns/lookup registry=%,.1f ns/lookup speedup=%,.0fx (found=%d)%n",
+                    numberOfUsers, scanNanos, registryNanos, scanNanos / registryNanos, found);
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class UserRegistryTest {
+
+    @TempDir
+    Path directory;
+
+    UserRegistry registry;
+
+    User user1;
+
+    User user2;
+
+    @BeforeEach
+    void setUp() {
+        registry = new UserRegistry();
+        user1 = new User("Luke");
+        user1.addCurrencyToWallet("sgd", 10);
+        user2 = new User("Tim");
+        user2.addCurrencyToWallet("eur", 1230);
+    }
+
+    @Test
+    public void testRegistryIsEmptyWhenNoUsersAdded() {
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testUserFoundByNameAfterAddingUser() {
+        registry.add(user1);
+        assertSame(user1, registry.get("Luke"));
+        assertTrue(registry.contains("Luke"));
+    }
+
+    @Test
+    public void testNullReturnedForNonExistentUser() {
+        registry.add(user1);
+        assertNull(registry.get("Harry"));
+        assertFalse(registry.contains("Harry"));
+    }
+
+    @Test
+    public void testUserWithSameNameKeptButFirstOneFoundByName() {
+        User duplicate = new User("Luke");
+        registry.add(user1);
+        assertFalse(registry.add(duplicate));
+        assertEquals(2, registry.size());
+        assertSame(user1, registry.get("Luke"));
+        assertEquals(Arrays.asList(user1, duplicate), registry.getUsers());
+    }
+
+    @Test
+    public void testUsersKeptInInsertionOrder() {
+        registry.add(user2);
+        registry.add(user1);
+        assertEquals(Arrays.asList(user2, user1), registry.getUsers());
+    }
+
+    @Test
+    public void testRegistrySerialisedAndLoadedAsListOfUsers() throws IOException {
+        registry.add(user1);
+        registry.add(user2);
+        File usersFile = directory.resolve("users.json").toFile();
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.writeValue(usersFile, registry);
+
+        assertEquals(2, objectMapper.readValue(usersFile, User[].class).length);
+        UserRegistry loaded = UserRegistry.load(usersFile, objectMapper);
+        assertEquals(2, loaded.size());
+        assertEquals("Luke", loaded.getUsers().get(0).getName());
+        assertEquals(1230, loaded.get("Tim").getCurrencyValueInWallet("eur"));
+    }
+
+}
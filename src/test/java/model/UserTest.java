@@ -1,16 +1,21 @@
 package model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 class UserTest {
 
     @Mock
@@ -147,4 +152,56 @@ class UserTest {
         assertNotEquals(11414, user1.getCurrencyValueInWallet("sgd"));
     }
 
+    @Test
+    public void testWalletSerializedInSameShapeAsMapOfCurrencyToValue() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        String json = "{\"name\":\"Tommy\",\"wallet\":{\"usd\":252.34,\"aud\":3267.12,\"USDT\":5.0,\"krw\":398.0}}";
+        User user = objectMapper.readValue(json, User.class);
+
+        assertEquals(4, user.getsNumberOfCurrenciesInWallet());
+        assertEquals(5.0, user.getCurrencyValueInWallet("USDT"));
+        assertEquals(objectMapper.readTree(json), objectMapper.readTree(objectMapper.writeValueAsString(user)));
+    }
+
+    @Test
+    public void testUserWithoutWalletHasNoWallet() throws Exception {
+        User user = new ObjectMapper().readValue("{\"name\":\"Tim\"}", User.class);
+        assertNull(user.getWallet());
+        assertEquals(-1, user.getsNumberOfCurrenciesInWallet());
+    }
+
+    @Test
+    public void testCurrencyRemovedAfterConvertingAllOfIt() {
+        user1.addCurrencyToWallet("sgd", 50);
+        user1.addCurrencyToWallet("eur", 10);
+        user1.addCurrencyToWallet("usd", 5);
+        user1.updatesWallet("eur", "jpy", 10, 1420.5);
+
+        assertFalse(user1.isCurrencyInWallet("eur"));
+        assertEquals(Arrays.asList("sgd", "usd", "jpy"), new ArrayList<> (user1.getWallet().keySet()));
+        assertEquals(1420.5, user1.getCurrencyValueInWallet("jpy"));
+    }
+
+    @Test
+    public void testBalanceDoesNotDriftOverRepeatedUpdates() {
+        user1.addCurrencyToWallet("sgd", 0);
+        for (int i = 0; i < 1000; i++) {
+            user1.increaseCurrencyValueInWallet("sgd", 0.1);
+        }
+        assertEquals(100, user1.getCurrencyValueInWallet("sgd"));
+        for (int i = 0; i < 1000; i++) {
+            user1.decreaseCurrencyValueInWallet("sgd", 0.1);
+        }
+        assertEquals(0, user1.getCurrencyValueInWallet("sgd"));
+    }
+
+    @Test
+    public void testBalanceRoundedToTwoDecimalsHalfEven() {
+        user1.addCurrencyToWallet("sgd", 10);
+        user1.increaseCurrencyValueInWallet("sgd", 0.125);
+        assertEquals(10.12, user1.getCurrencyValueInWallet("sgd"));
+        user1.increaseCurrencyValueInWallet("sgd", 1 / 3.0);
+        assertEquals(10.45, user1.getCurrencyValueInWallet("sgd"));
+    }
+
 }
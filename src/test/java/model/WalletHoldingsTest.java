@@ -0,0 +1,61 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class WalletHoldingsTest {
+
+    @Test
+    public void testSizeDerivedFromLengthOfHoldings() {
+        long[] holdings = WalletHoldings.EMPTY;
+        for (int size = 1; size <= 40; size++) {
+            holdings = WalletHoldings.adds(holdings, size, size * 150L);
+            assertEquals(size, WalletHoldings.sizeOf(holdings));
+            assertEquals(size + (size + 3) / 4, holdings.length);
+        }
+    }
+
+    @Test
+    public void testCurrenciesKeptInOrderTheyWereAdded() {
+        long[] holdings = WalletHoldings.EMPTY;
+        for (int i = 0; i < 9; i++) {
+            holdings = WalletHoldings.adds(holdings, CurrencyCodes.PACKED_CODES - 1 - i, -i);
+        }
+        for (int i = 0; i < 9; i++) {
+            assertEquals(CurrencyCodes.PACKED_CODES - 1 - i, WalletHoldings.codeAt(holdings, 9, i));
+            assertEquals(-i, WalletHoldings.balanceAt(holdings, i));
+            assertEquals(i, WalletHoldings.indexOf(holdings, CurrencyCodes.PACKED_CODES - 1 - i));
+        }
+        assertEquals(-1, WalletHoldings.indexOf(holdings, 0));
+    }
+
+    @Test
+    public void testRemovalKeepsOrderOfOtherCurrencies() {
+        long[] holdings = WalletHoldings.EMPTY;
+        for (int i = 0; i < 6; i++) {
+            holdings = WalletHoldings.adds(holdings, 100 + i, i);
+        }
+        holdings = WalletHoldings.removes(holdings, 2);
+        assertEquals(5, WalletHoldings.sizeOf(holdings));
+        int[] expectedCodes = { 100, 101, 103, 104, 105 };
+        for (int i = 0; i < expectedCodes.length; i++) {
+            assertEquals(expectedCodes[i], WalletHoldings.codeAt(holdings, 5, i));
+            assertEquals(expectedCodes[i] - 100, WalletHoldings.balanceAt(holdings, i));
+        }
+        for (int i = 0; i < 5; i++) {
+            holdings = WalletHoldings.removes(holdings, 0);
+        }
+        assertEquals(0, holdings.length);
+    }
+
+    @Test
+    public void testBalanceUpdatedInPlace() {
+        long[] holdings = WalletHoldings.adds(WalletHoldings.adds(WalletHoldings.EMPTY, 1, 10), 2, 20);
+        WalletHoldings.setsBalanceAt(holdings, 1, 2575);
+        assertEquals(10, WalletHoldings.balanceAt(holdings, 0));
+        assertEquals(2575, WalletHoldings.balanceAt(holdings, 1));
+        assertEquals(2, WalletHoldings.codeAt(holdings, 2, 1));
+    }
+
+}
@@ -0,0 +1,90 @@
+package model;
+
+import java.lang.management.ManagementFactory;
+
+import benchmark.Fixtures;
+
+/**
+ * Retained heap of users of 3 currencies each held on the heap by a UserRegistry versus off the heap by a WalletStore,
+ * and time and allocation of a balance update through a view of the user and directly on its slot.
+ * The heap of the store should stay flat as users are added, while its off-heap bytes grow by about 100 B per user.
+ * <p>
+ * Run with: {@code java -Xmx3g -XX:MaxDirectMemorySize=4g -cp target/classes:target/test-classes:<deps> model.WalletStoreBenchmark [users]}
+ */
+public class WalletStoreBenchmark {
+
+    private static Object retained;
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static UserRegistry fills(UserRegistry registry, int numberOfUsers) {
+        for (int i = 0; i < numberOfUsers; i++) {
+            User user = new User(Fixtures.userName(i));
+            for (int j = 0; j < 3; j++) {
+                user.addCurrencyToWallet(Fixtures.CURRENCIES[(i + 3 * j) % Fixtures.CURRENCIES.length], 100 + i % 1000);
+            }
+            registry.add(user);
+        }
+        return registry;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numberOfUsers = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long before = usedHeap();
+        retained = fills(new UserRegistry(), numberOfUsers);
+        double heapPerUser = (usedHeap() - before) / (double) numberOfUsers;
+        retained = null;
+
+        before = usedHeap();
+        WalletStore store = new WalletStore();
+        UserRegistry offHeap = fills(new UserRegistry(store), numberOfUsers);
+        double storeHeapPerUser = (usedHeap() - before) / (double) numberOfUsers;
+        double storeOffHeapPerUser = store.getOffHeapBytes() / (double) numberOfUsers;
+
+        System.out.printf("users=%,d%n", numberOfUsers);
+        System.out.printf("per user: heap=%.0f B, store heap=%.2f B off-heap=%.0f B%n", heapPerUser, storeHeapPerUser, storeOffHeapPerUser);
+        System.out.printf("projected at 50M users: heap=%.1f GB, store heap=%.0f MB off-heap=%.1f GB%n",
+                heapPerUser * 50e6 / (1 << 30), storeHeapPerUser * 50e6 / (1 << 20), storeOffHeapPerUser * 50e6 / (1 << 30));
+
+        int updates = 5_000_000;
+        int packedCode = CurrencyCodes.codeOf(Fixtures.CURRENCIES[0]);
+        for (int round = 0; round < 3; round++) {
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < updates; i++) {
+                User user = offHeap.getUsers().get((int) ((i * 2654435761L) % numberOfUsers));
+                user.increaseCurrencyValueInWallet(Fixtures.CURRENCIES[0], 1);
+            }
+            double viewNanos = (System.nanoTime() - start) / (double) updates;
+            double viewBytes = (threads.getThreadAllocatedBytes(threadId) - allocatedBefore) / (double) updates;
+
+            allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            start = System.nanoTime();
+            long sum = 0;
+            for (int i = 0; i < updates; i++) {
+                int slot = (int) ((i * 2654435761L) % numberOfUsers);
+                int index = store.indexOf(slot, packedCode);
+                if (index >= 0) {
+                    store.setsBalanceAt(slot, index, store.balanceAt(slot, index) + 1);
+                    sum += store.balanceAt(slot, index);
+                }
+            }
+            double slotNanos = (System.nanoTime() - start) / (double) updates;
+            double slotBytes = (threads.getThreadAllocatedBytes(threadId) - allocatedBefore) / (double) updates;
+
+            System.out.printf("round=%d view=%.1f ns %.1f B/update slot=%.1f ns %.2f B/update (checksum %d)%n",
+                    round, viewNanos, viewBytes, slotNanos, slotBytes, sum);
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import persistence.StreamingUsersLoader;
+
+class WalletStoreTest {
+
+    @TempDir
+    Path directory;
+
+    WalletStore store;
+
+    UserRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        // Chunks of 4 KB, so that a few thousand users span many chunks of every buffer.
+        store = new WalletStore(12);
+        registry = new UserRegistry(store);
+    }
+
+    @Test
+    public void testUserFoundByNameAfterAddingUser() {
+        User luke = new User("Luke");
+        luke.addCurrencyToWallet("sgd", 10.5);
+        assertTrue(registry.add(luke));
+        assertFalse(registry.add(new User("Luke")));
+
+        User view = registry.get("Luke");
+        assertEquals("Luke", view.getName());
+        assertEquals(10.5, view.getCurrencyValueInWallet("sgd"));
+        assertTrue(registry.contains("Luke"));
+        assertNull(registry.get("Tim"));
+        // The second Luke is kept, but is never found by name.
+        assertEquals(2, registry.size());
+        assertEquals(0, store.indexOf("Luke"));
+        assertEquals(0, registry.getUsers().get(1).getsNumberOfCurrenciesInWallet());
+    }
+
+    @Test
+    public void testEveryUserFoundAcrossChunksAndIndexGrowth() {
+        for (int i = 0; i < 5000; i++) {
+            User user = new User("user" + i);
+            user.addCurrencyToWallet("usd", i);
+            registry.add(user);
+            // A user with the same name, which the growth of the index must not find instead.
+            if (i % 100 == 0) {
+                assertFalse(registry.add(new User("user" + i)));
+            }
+        }
+        assertEquals(5050, registry.size());
+        for (int i = 0; i < 5000; i++) {
+            User view = registry.get("user" + i);
+            assertEquals("user" + i, store.nameOf(store.indexOf("user" + i)));
+            assertEquals(i, view.getCurrencyValueInWallet("usd"));
+        }
+        assertEquals(WalletStore.NOT_FOUND, store.indexOf("user5000"));
+    }
+
+    @Test
+    public void testWalletOverflowsSlotAndKeepsOrderWhenCurrencyRemoved() {
+        registry.add(new User("Luke"));
+        User view = registry.get("Luke");
+        String[] currencies = { "usd", "eur", "gbp", "jpy", "sgd", "aud", "chf" };
+        for (int i = 0; i < currencies.length; i++) {
+            view.increaseCurrencyValueInWallet(currencies[i], i + 1);
+        }
+        assertEquals(7, view.getsNumberOfCurrenciesInWallet());
+
+        view.updatesWallet("eur", "usd", 2, 1);
+        assertEquals("{usd=2.0, gbp=3.0, jpy=4.0, sgd=5.0, aud=6.0, chf=7.0}", view.getWallet().toString());
+        assertTrue(view.isDirty());
+
+        view.increaseCurrencyValueInWallet("eur", 8);
+        assertEquals("{usd=2.0, gbp=3.0, jpy=4.0, sgd=5.0, aud=6.0, chf=7.0, eur=8.0}", registry.get("Luke").getWallet().toString());
+    }
+
+    @Test
+    public void testViewsOfTheSameUserShareItsWalletAndDirtyFlag() {
+        registry.add(new User("Luke"));
+        User first = registry.get("Luke");
+        User second = registry.getUsers().get(0);
+        first.increaseCurrencyValueInWallet("usd", 100);
+        first.updatesWallet("usd", "eur", 40, 30);
+
+        assertEquals(60, second.getCurrencyValueInWallet("usd"));
+        assertEquals(30, second.getCurrencyValueInWallet("eur"));
+        assertTrue(second.isDirty());
+        second.marksClean();
+        assertFalse(first.isDirty());
+        assertThrows(UnsupportedOperationException.class, () -> first.setName("Tim"));
+    }
+
+    @Test
+    public void testUsersWithoutWalletOrWithEmptyWalletRoundTrip() throws IOException {
+        File usersFile = directory.resolve("users.json").toFile();
+        String json = "[{\"name\":\"Luke\",\"wallet\":null},{\"name\":\"Tim\",\"wallet\":{}},"
+                + "{\"name\":\"Ann\",\"wallet\":{\"SGD\":1.25,\"EUR\":2.5}}]";
+        Files.writeString(usersFile.toPath(), json);
+
+        UserRegistry users = StreamingUsersLoader.loads(usersFile, 1, registry);
+        assertEquals(-1, users.get("Luke").getsNumberOfCurrenciesInWallet());
+        assertEquals(0, users.get("Tim").getsNumberOfCurrenciesInWallet());
+        assertEquals(json, new ObjectMapper().writeValueAsString(users));
+    }
+
+    @Test
+    public void testLookupsOfATransactionReuseItsView() {
+        registry.add(new User("Luke"));
+        registry.add(new User("Tim"));
+        registry.get("Tim").increaseCurrencyValueInWallet("usd", 100);
+        Transaction transaction = new Transaction();
+
+        User luke = registry.get("Luke", transaction);
+        assertEquals("Luke", luke.getName());
+        User tim = registry.get("Tim", transaction);
+        assertSame(luke, tim);
+        assertEquals("Tim", tim.getName());
+        assertEquals(100, tim.getCurrencyValueInWallet("usd"));
+        assertNull(registry.get("Ann", transaction));
+    }
+
+    @Test
+    public void testLookupsOfATransactionAllocateNothing() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        String[] names = new String[1_000];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "user" + i;
+            registry.add(new User(names[i]));
+        }
+        Transaction transaction = new Transaction();
+        int found = 0;
+        for (String name : names) {
+            found += registry.get(name, transaction) == null ? 0 : 1;
+        }
+
+        int iterations = 200;
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            for (String name : names) {
+                found += registry.get(name, transaction) == null ? 0 : 1;
+            }
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(0.0, (double) allocated / (iterations * names.length), 0.1);
+        assertEquals((iterations + 1) * names.length, found);
+    }
+
+}
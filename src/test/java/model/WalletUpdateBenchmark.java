@@ -0,0 +1,57 @@
+package model;
+
+import java.lang.management.ManagementFactory;
+import java.text.DecimalFormat;
+import java.util.Random;
+
+/**
+ * Time and allocation of a wallet update rounded through a DecimalFormat("#.##") String round trip
+ * (as User.increaseCurrencyValueInWallet did), versus an addition of minor units.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> model.WalletUpdateBenchmark}
+ */
+public class WalletUpdateBenchmark {
+
+    private static double roundsThroughDecimalFormat(double balance, double amount) {
+        DecimalFormat df = new DecimalFormat("#.##");
+        return Double.parseDouble(df.format(balance + amount));
+    }
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        Random random = new Random(42);
+        double[] amounts = new double[4096];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = random.nextDouble() * 1000;
+        }
+        User user = new User("Tommy");
+        user.addCurrencyToWallet("sgd", 0);
+
+        int updates = 2_000_000;
+        for (int round = 0; round < 3; round++) {
+            double balance = 0;
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < updates; i++) {
+                balance = roundsThroughDecimalFormat(balance, amounts[i & 4095]);
+            }
+            double formatNanos = (System.nanoTime() - start) / (double) updates;
+            double formatBytes = (threads.getThreadAllocatedBytes(threadId) - allocatedBefore) / (double) updates;
+
+            allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            start = System.nanoTime();
+            for (int i = 0; i < updates; i++) {
+                user.increaseCurrencyValueInWallet("sgd", amounts[i & 4095]);
+            }
+            double minorNanos = (System.nanoTime() - start) / (double) updates;
+            double minorBytes = (threads.getThreadAllocatedBytes(threadId) - allocatedBefore) / (double) updates;
+
+            System.out.printf("round=%d decimalFormat=%.0f ns %.0f B/update minorUnits=%.1f ns %.1f B/update (balances %.2f, %.2f)%n",
+                    round, formatNanos, formatBytes, minorNanos, minorBytes, balance, user.getCurrencyValueInWallet("sgd"));
+            user.addCurrencyToWallet("sgd", 0);
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class LineReaderTest {
+
+    private static List<String> readsWithLineReader(String text, int bufferSize) throws IOException {
+        LineReader reader = new LineReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), bufferSize);
+        List<String> lines = new ArrayList<> ();
+        while (reader.readsLine()) {
+            lines.add(new String(reader.getBuffer(), reader.getStart(), reader.getEnd() - reader.getStart(), StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    private static List<String> readsWithBufferedReader(String text) throws IOException {
+        BufferedReader reader = new BufferedReader(new StringReader(text));
+        List<String> lines = new ArrayList<> ();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    @Test
+    public void testLinesSplitAsBufferedReaderSplitsThem() throws IOException {
+        String[] texts = { "", "\n", "a", "a\n", "a\nb", "a\r\nb\r\n", "a\rb\r", "a\r\rb", "\n\n\na", "a\n\r\nb\r\n\r",
+                "Ali usd sgd 10\nBob sgd usd 5\n" };
+        for (String text : texts) {
+            for (int bufferSize : new int[] { 1, 2, 3, 64 }) {
+                assertEquals(readsWithBufferedReader(text), readsWithLineReader(text, bufferSize), text);
+            }
+        }
+    }
+
+    @Test
+    public void testBufferGrowsForLinesLongerThanIt() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("user").append(i).append(" usd sgd ").append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        assertEquals(readsWithBufferedReader(text.toString()), readsWithLineReader(text.toString(), 4));
+    }
+
+}
@@ -0,0 +1,98 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedChunksTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<String> describes(ParsedChunk chunk) {
+        List<String> lines = new ArrayList<> ();
+        for (int i = 0; i < chunk.size(); i++) {
+            lines.add(chunk.getUsername(i) + " " + chunk.getFromCurrency(i) + " " + chunk.getToCurrency(i) + " "
+                    + chunk.getAmount(i) + " " + chunk.getError(i));
+        }
+        return lines;
+    }
+
+    private static List<String> parsesWhole(String text) throws IOException {
+        LineReader reader = new LineReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        TransactionParser parser = new TransactionParser();
+        TransactionRecord record = new TransactionRecord();
+        ParsedChunk chunk = new ParsedChunk();
+        while (reader.readsLine()) {
+            parser.parses(reader.getBuffer(), reader.getStart(), reader.getEnd(), record);
+            chunk.adds(record, parser);
+        }
+        return describes(chunk);
+    }
+
+    private List<String> parsesInChunks(String text, int chunkBytes) throws IOException {
+        Path file = tempDir.resolve("transactions.txt");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        List<String> lines = new ArrayList<> ();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] boundaries = MappedChunks.splits(channel, chunkBytes);
+            assertEquals(0, boundaries[0]);
+            assertEquals(channel.size(), boundaries[boundaries.length - 1]);
+            for (int i = 0; i + 1 < boundaries.length; i++) {
+                assertTrue(boundaries[i] < boundaries[i + 1]);
+                lines.addAll(describes(MappedChunks.parses(channel, boundaries[i], boundaries[i + 1], new TransactionParser())));
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void testChunksParseToSameLinesAsWholeFile() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("user").append(i % 17).append(" usd sgd ").append(i).append(".5");
+            text.append(i % 5 == 0 ? "\r\n" : i % 7 == 0 ? "\r" : i % 11 == 0 ? " extra\n" : "\n");
+        }
+        text.append("Ali sgd usd 1a");
+
+        List<String> expected = parsesWhole(text.toString());
+        for (int chunkBytes : new int[] { 1, 2, 7, 64, 4096, 1 << 20 }) {
+            assertEquals(expected, parsesInChunks(text.toString(), chunkBytes), "chunkBytes=" + chunkBytes);
+        }
+    }
+
+    @Test
+    public void testCarriageReturnLineFeedNeverSplit() throws IOException {
+        String text = "a usd sgd 1\r\nb usd sgd 2\r\nc usd sgd 3\r\n";
+        for (int chunkBytes = 1; chunkBytes <= text.length(); chunkBytes++) {
+            assertEquals(parsesWhole(text), parsesInChunks(text, chunkBytes), "chunkBytes=" + chunkBytes);
+        }
+    }
+
+    @Test
+    public void testEmptyFileHasNoChunks() throws IOException {
+        assertEquals(0, parsesInChunks("", 16).size());
+    }
+
+    @Test
+    public void testChunkOfAtLeastOneByteRequired() throws IOException {
+        Path file = Files.write(tempDir.resolve("transactions.txt"), new byte[0]);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertThrows(IllegalArgumentException.class, () -> MappedChunks.splits(channel, 0));
+        }
+    }
+
+}
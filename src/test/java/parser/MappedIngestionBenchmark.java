@@ -0,0 +1,68 @@
+package parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import benchmark.Fixtures;
+import engine.OrderedChunkExecutor;
+
+/**
+ * Ingestion throughput (read and parse, without applying) of a large transactions file
+ * through BufferedReader and String.split, as Runner used to read it,
+ * versus memory-mapped chunks parsed on 1, 2, 4 and 8 threads. Scaling is bounded by the number of cores available.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> parser.MappedIngestionBenchmark [lines] [users]}
+ */
+public class MappedIngestionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numberOfLines = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+        int numberOfUsers = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        Path file = Files.createTempFile("fxconvert-transactions", ".txt");
+        file.toFile().deleteOnExit();
+        Fixtures.writeTransactions(file, numberOfUsers, numberOfLines, 42);
+        double megabytes = Files.size(file) / 1e6;
+        System.out.printf("cores=%d users=%d lines=%d size=%.0fMB%n", Runtime.getRuntime().availableProcessors(), numberOfUsers, numberOfLines, megabytes);
+
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            long lines = 0;
+            try (BufferedReader reader = Files.newBufferedReader(file)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] components = line.split(" ");
+                    lines += Double.parseDouble(components[3]) > 0 ? 1 : 0;
+                }
+            }
+            report("bufferedReader", lines, megabytes, start);
+
+            for (int threads : new int[] { 1, 2, 4, 8 }) {
+                start = System.nanoTime();
+                long[] parsed = new long[1];
+                ThreadLocal<TransactionParser> parsers = ThreadLocal.withInitial(TransactionParser::new);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    long[] boundaries = MappedChunks.splits(channel, 8 * 1024 * 1024);
+                    new OrderedChunkExecutor<ParsedChunk> (threads).runs(boundaries.length - 1, chunk -> {
+                        try {
+                            return MappedChunks.parses(channel, boundaries[chunk], boundaries[chunk + 1], parsers.get());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, chunk -> parsed[0] += chunk.size());
+                }
+                report("mapped threads=" + threads, parsed[0], megabytes, start);
+            }
+        }
+    }
+
+    private static void report(String mode, long lines, double megabytes, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s: lines=%d time=%.2fs throughput=%.0f MB/s%n", mode, lines, seconds, megabytes / seconds);
+    }
+
+}
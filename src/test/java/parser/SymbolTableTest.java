@@ -0,0 +1,57 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class SymbolTableTest {
+
+    @Test
+    public void testDistinctTokensGetDenseIds() {
+        SymbolTable symbols = new SymbolTable(2);
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, symbols.interns("user" + i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, symbols.interns("user" + i));
+            assertEquals("user" + i, symbols.nameOf(i));
+        }
+        assertEquals(10_000, symbols.size());
+    }
+
+    @Test
+    public void testTokenInternedFromWithinBuffer() {
+        SymbolTable symbols = new SymbolTable();
+        byte[] line = "Ali usd sgd 10".getBytes(StandardCharsets.UTF_8);
+        int usd = symbols.interns(line, 4, 7);
+        assertEquals(usd, symbols.interns("usd"));
+        assertNotEquals(usd, symbols.interns(line, 8, 11));
+        assertEquals("usd", symbols.nameOf(usd));
+    }
+
+    @Test
+    public void testNonAsciiTokenDecodedAsUtf8() {
+        SymbolTable symbols = new SymbolTable();
+        assertEquals("Zoë", symbols.nameOf(symbols.interns("Zoë")));
+    }
+
+    @Test
+    public void testFullTableEvictsEveryTokenInsteadOfGrowing() {
+        SymbolTable symbols = new SymbolTable(2, 100);
+        for (int i = 0; i < 1_000; i++) {
+            int id = symbols.interns("user" + i);
+            // An id resolves to its token until the next token is interned.
+            assertEquals("user" + i, symbols.nameOf(id));
+            assertEquals(i % 100, id);
+        }
+        assertEquals(100, symbols.size());
+        assertEquals(9, symbols.getEvictions());
+        assertEquals(99, symbols.interns("user999"));
+        assertEquals(0, symbols.interns("user0"));
+        assertEquals("user0", symbols.nameOf(0));
+    }
+
+}
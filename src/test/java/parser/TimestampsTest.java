@@ -0,0 +1,40 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+
+class TimestampsTest {
+
+    @Test
+    public void testDatesParsedToStartOfDayInUtc() {
+        String[] dates = { "1970-01-01", "2022-09-13", "2000-02-29", "1900-03-01", "1969-12-31", "0001-01-01", "9999-12-31" };
+        for (String date : dates) {
+            long expected = LocalDate.parse(date).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            assertEquals(expected, Timestamps.parses(date), date);
+        }
+    }
+
+    @Test
+    public void testInstantsParsedAsInstantParsesThem() {
+        String[] instants = { "2022-09-13T11:55:01Z", "1970-01-01T00:00:00Z", "2024-02-29T23:59:59Z", "1960-06-15T12:30:45Z" };
+        for (String instant : instants) {
+            assertEquals(Instant.parse(instant).toEpochMilli(), Timestamps.parses(instant), instant);
+        }
+    }
+
+    @Test
+    public void testInvalidTimestampsRejected() {
+        String[] timestamps = { "", "10", "2022-9-13", "2022/09/13", "2022-13-01", "2022-00-10", "2022-02-29", "2022-04-31",
+                "2022-09-13T11:55:01", "2022-09-13 11:55:01Z", "2022-09-13T24:00:00Z", "2022-09-13T11:60:01Z", "2022-09-13T11:55:61Z",
+                "2022-09-1a", "+022-09-13" };
+        for (String timestamp : timestamps) {
+            assertEquals(Timestamps.NONE, Timestamps.parses(timestamp), timestamp);
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package parser;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import benchmark.Fixtures;
+
+/**
+ * Time and allocation per line of parsing transactions with String.split and Double.parseDouble
+ * (as Runner.processesTransaction does) versus the TransactionParser working on bytes.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> parser.TransactionParserBenchmark [lines]}
+ */
+public class TransactionParserBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static void main(String[] args) {
+        int numberOfLines = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Random random = new Random(42);
+        String[] lines = new String[4096];
+        byte[][] bytes = new byte[lines.length][];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = Fixtures.userName(random.nextInt(100_000)) + " "
+                    + Fixtures.CURRENCIES[random.nextInt(Fixtures.CURRENCIES.length)] + " "
+                    + Fixtures.CURRENCIES[random.nextInt(Fixtures.CURRENCIES.length)] + " "
+                    + random.nextInt(10_000) + "." + random.nextInt(100);
+            bytes[i] = lines[i].getBytes(StandardCharsets.UTF_8);
+        }
+
+        TransactionParser parser = new TransactionParser();
+        TransactionRecord record = new TransactionRecord();
+        double checksum = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long allocated = allocatedBytes();
+            for (int i = 0; i < numberOfLines; i++) {
+                String[] components = lines[i & 4095].split(" ");
+                checksum += Double.parseDouble(components[3]) + components[0].length();
+            }
+            double splitNanos = (System.nanoTime() - start) / (double) numberOfLines;
+            double splitBytes = (allocatedBytes() - allocated) / (double) numberOfLines;
+
+            start = System.nanoTime();
+            allocated = allocatedBytes();
+            for (int i = 0; i < numberOfLines; i++) {
+                byte[] line = bytes[i & 4095];
+                parser.parses(line, 0, line.length, record);
+                checksum += record.getAmount() + record.getUserId();
+            }
+            double parserNanos = (System.nanoTime() - start) / (double) numberOfLines;
+            double parserBytes = (allocatedBytes() - allocated) / (double) numberOfLines;
+
+            System.out.printf("round=%d split=%.1f ns/line %.1f B/line parser=%.1f ns/line %.2f B/line (checksum=%.0f)%n",
+                    round, splitNanos, splitBytes, parserNanos, parserBytes, checksum);
+        }
+    }
+
+}
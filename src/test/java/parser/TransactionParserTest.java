@@ -0,0 +1,136 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TransactionParserTest {
+
+    private final TransactionParser parser = new TransactionParser();
+    private final TransactionRecord record = new TransactionRecord();
+
+    private void parses(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        parser.parses(bytes, 0, bytes.length, record);
+    }
+
+    private static double parsesAmount(String amount) {
+        byte[] bytes = amount.getBytes(StandardCharsets.UTF_8);
+        return TransactionParser.parsesAmount(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void testValidLineParsedIntoRecord() {
+        parses("Ali usd sgd 100.25");
+        assertEquals(ParseError.NONE, record.getError());
+        assertEquals("Ali", parser.getUsers().nameOf(record.getUserId()));
+        assertEquals("usd", parser.getCurrencies().nameOf(record.getFromCurrencyId()));
+        assertEquals("sgd", parser.getCurrencies().nameOf(record.getToCurrencyId()));
+        assertEquals(100.25, record.getAmount());
+    }
+
+    @Test
+    public void testComponentsCountedAsStringSplitCountsThem() {
+        String[] lines = { "", " ", "Ali", "Ali usd sgd", "Ali usd sgd 10 ", "Ali usd sgd 10   ", " Ali usd sgd", " Ali usd sgd 10",
+                "Ali  usd sgd 10", "Ali usd sgd 10 5", "Ali\tusd sgd 10", "   ", "a b c d e f", "a b c  " };
+        for (String line : lines) {
+            parses(line);
+            boolean hasFourComponents = line.split(" ").length == 4;
+            assertEquals(hasFourComponents, record.getError() != ParseError.INVALID_NUMBER_OF_COMPONENTS, line);
+        }
+    }
+
+    @Test
+    public void testFifthComponentParsedAsTimestamp() {
+        parses("Ali usd sgd 100.25");
+        assertEquals(Timestamps.NONE, record.getTimestamp());
+
+        parses("Ali usd sgd 100.25 2022-09-13T11:55:01Z");
+        assertEquals(ParseError.NONE, record.getError());
+        assertEquals(100.25, record.getAmount());
+        assertEquals(Timestamps.parses("2022-09-13T11:55:01Z"), record.getTimestamp());
+
+        parses("Ali usd sgd 100.25 2022-13-13");
+        assertEquals(ParseError.INVALID_NUMBER_OF_COMPONENTS, record.getError());
+    }
+
+    @Test
+    public void testInvalidAmountReportedWithComponents() {
+        parses("Ali usd sgd 10a");
+        assertEquals(ParseError.INVALID_AMOUNT, record.getError());
+        assertEquals("Ali", parser.getUsers().nameOf(record.getUserId()));
+    }
+
+    @Test
+    public void testAmountsParsedAsDoubleParseDoubleParsesThem() {
+        String[] amounts = { "0", "-0", "+5", "5.", ".5", "-.5", "100", "0.1", "0.3", "123456.789", "999999999999999",
+                "0.000000000000001", "12345678901234567890", "1e3", "1E-2", "NaN", "-Infinity", "0x1p3", "10d", " 10", "10\t" };
+        for (String amount : amounts) {
+            assertEquals(Double.parseDouble(amount), parsesAmount(amount), amount);
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            String amount = random.nextInt(1_000_000) + "." + random.nextInt(1_000);
+            assertEquals(Double.parseDouble(amount), parsesAmount(amount), amount);
+        }
+    }
+
+    @Test
+    public void testUnparsableAmountsRejectedAsDoubleParseDoubleRejectsThem() {
+        String[] amounts = { "", "-", "+", ".", "1.2.3", "1,000", "abc", "--1", "1 000" };
+        for (String amount : amounts) {
+            assertThrows(NumberFormatException.class, () -> Double.parseDouble(amount), amount);
+            assertThrows(NumberFormatException.class, () -> parsesAmount(amount), amount);
+        }
+    }
+
+    @Test
+    public void testSameTokenInternedToSameIdAndName() {
+        parses("Ali usd sgd 1");
+        int userId = record.getUserId();
+        String name = parser.getUsers().nameOf(userId);
+        parses("Bob sgd usd 2");
+        parses("Ali sgd usd 3");
+        assertEquals(userId, record.getUserId());
+        assertSame(name, parser.getUsers().nameOf(record.getUserId()));
+        assertEquals(2, parser.getUsers().size());
+        assertEquals(2, parser.getCurrencies().size());
+    }
+
+    @Test
+    public void testParsingKnownTokensAllocatesNothingPerLine() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        byte[][] lines = new byte[100][];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = ("user" + i + " usd sgd " + i + ".5").getBytes(StandardCharsets.UTF_8);
+        }
+        for (byte[] line : lines) {
+            parser.parses(line, 0, line.length, record);
+        }
+
+        int iterations = 2_000;
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            for (byte[] line : lines) {
+                parser.parses(line, 0, line.length, record);
+            }
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(ParseError.NONE, record.getError());
+        assertEquals(0.0, (double) allocated / (iterations * lines.length), 0.1);
+    }
+
+}
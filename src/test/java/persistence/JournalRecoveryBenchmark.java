@@ -0,0 +1,71 @@
+package persistence;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import benchmark.Fixtures;
+import model.User;
+import model.UserRegistry;
+
+/**
+ * Recovery time of a journal of N records (default 10M) replayed onto a users.json of U users,
+ * compared against a target time in milliseconds.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> persistence.JournalRecoveryBenchmark [records] [users] [targetMillis]}
+ */
+public class JournalRecoveryBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numberOfRecords = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int numberOfUsers = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        long targetMillis = args.length > 2 ? Long.parseLong(args[2]) : 10_000;
+
+        Path directory = Files.createTempDirectory("fxconvert-journal");
+        File journalFile = directory.resolve("users.journal").toFile();
+        File snapshotFile = directory.resolve("users.snapshot.json").toFile();
+        File usersFile = directory.resolve("users.json").toFile();
+        // Every user holds every currency, so that any generated record can be replayed.
+        List<User> initialUsers = new ArrayList<>(numberOfUsers);
+        for (int i = 0; i < numberOfUsers; i++) {
+            User user = new User(Fixtures.userName(i));
+            for (String currency : Fixtures.CURRENCIES) {
+                user.addCurrencyToWallet(currency, 1_000_000_000);
+            }
+            initialUsers.add(user);
+        }
+        new ObjectMapper().writeValue(usersFile, initialUsers);
+
+        WalletJournal writer = new WalletJournal(journalFile, snapshotFile, usersFile, () -> null, 0);
+        writer.recovers();
+        Random random = new Random(42);
+        for (int i = 0; i < numberOfRecords; i++) {
+            int from = random.nextInt(Fixtures.CURRENCIES.length);
+            int to = (from + 1 + random.nextInt(Fixtures.CURRENCIES.length - 1)) % Fixtures.CURRENCIES.length;
+            writer.appends(Fixtures.userName(random.nextInt(numberOfUsers)),
+                    Fixtures.CURRENCIES[from], Fixtures.CURRENCIES[to], 0.01, 0.01);
+        }
+        writer.flush();
+        System.out.printf("journal: %d records, %.1f MB%n", numberOfRecords, journalFile.length() / 1e6);
+
+        long start = System.nanoTime();
+        WalletJournal reader = new WalletJournal(journalFile, snapshotFile, usersFile, () -> null, 0);
+        UserRegistry users = reader.recovers();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("recovered %d users up to record %d in %d ms (%.0f records/s), target %d ms: %s%n",
+                users.size(), reader.getSequence(), elapsedMillis, numberOfRecords * 1000.0 / Math.max(1, elapsedMillis),
+                targetMillis, elapsedMillis <= targetMillis ? "PASS" : "FAIL");
+
+        for (File file : new File[] { journalFile, snapshotFile, usersFile }) {
+            file.delete();
+        }
+        directory.toFile().delete();
+    }
+
+}
@@ -0,0 +1,96 @@
+package persistence;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import benchmark.Fixtures;
+import model.UserRegistry;
+
+/**
+ * Load time and peak heap of users.json of N users (default 1M), databound into a UserRegistry
+ * versus loaded by the StreamingUsersLoader on 1, 2, 4 and 8 threads.
+ * The peak heap is measured from the heap in use before the load, so it includes the users retained.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> persistence.StreamingUsersLoaderBenchmark [users]}
+ */
+public class StreamingUsersLoaderBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private interface Loader {
+        UserRegistry loads(File usersFile) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numberOfUsers = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Path directory = Files.createTempDirectory("fxconvert-loader");
+        File usersFile = directory.resolve("users.json").toFile();
+        new ObjectMapper().writeValue(usersFile, Fixtures.users(numberOfUsers, 42));
+        System.out.printf("users.json: %d users, %.1f MB, %d cores%n",
+                numberOfUsers, usersFile.length() / 1e6, Runtime.getRuntime().availableProcessors());
+
+        runs("databind", usersFile, file -> UserRegistry.load(file, new ObjectMapper()));
+        for (int threads : new int[] { 1, 2, 4, 8 }) {
+            runs("streaming, " + threads + " threads", usersFile, file -> StreamingUsersLoader.loads(file, threads));
+        }
+
+        usersFile.delete();
+        directory.toFile().delete();
+    }
+
+    private static void runs(String name, File usersFile, Loader loader) throws Exception {
+        long[] nanos = new long[ROUNDS];
+        long peakBytes = 0;
+        long retainedBytes = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = usedHeap();
+            resetsPeakHeap();
+            long start = System.nanoTime();
+            UserRegistry users = loader.loads(usersFile);
+            nanos[round] = System.nanoTime() - start;
+            peakBytes = Math.max(peakBytes, peakHeap() - before);
+            retainedBytes = usedHeap() - before;
+            if (users.size() == 0) {
+                throw new IllegalStateException("No users loaded.");
+            }
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-22s %5d ms, peak %6.1f MB, retained %6.1f MB%n",
+                name + ":", nanos[ROUNDS / 2] / 1_000_000, peakBytes / 1e6, retainedBytes / 1e6);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void resetsPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+}
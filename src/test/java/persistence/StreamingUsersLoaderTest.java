@@ -0,0 +1,126 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import benchmark.Fixtures;
+import config.EngineConfig;
+import model.MinorUnits;
+import model.User;
+import model.UserRegistry;
+
+class StreamingUsersLoaderTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private void assertLoadedAsByDatabind(File usersFile, int threads) throws IOException {
+        assertEquals(
+                objectMapper.writeValueAsString(UserRegistry.load(usersFile, objectMapper)),
+                objectMapper.writeValueAsString(StreamingUsersLoader.loads(usersFile, threads)));
+    }
+
+    @Test
+    public void testUsersJsonLoadedAsByDatabind() throws IOException {
+        assertLoadedAsByDatabind(new File(EngineConfig.DEFAULT_USERS_FILE), 1);
+    }
+
+    @Test
+    public void testLargeUsersJsonLoadedInParallelAsByDatabind() throws IOException {
+        // Names with brackets, commas and escaped quotes must not be taken for the end of a user.
+        List<User> users = new ArrayList<>(Fixtures.users(20_000, 7));
+        for (int i = 0; i < 2_000; i++) {
+            User user = new User("\"},{\\\"name\\\":" + i + ",[");
+            user.addCurrencyToWallet("eur", i + 0.25);
+            users.add(i * 10, user);
+        }
+        File usersFile = directory.resolve("users.json").toFile();
+        objectMapper.writeValue(usersFile, users);
+        assertTrue(usersFile.length() > 1 << 20);
+
+        assertLoadedAsByDatabind(usersFile, 1);
+        assertLoadedAsByDatabind(usersFile, 3);
+        assertLoadedAsByDatabind(usersFile, 8);
+    }
+
+    @Test
+    public void testWalletsLoadedAsByDatabind() throws IOException {
+        File usersFile = directory.resolve("users.json").toFile();
+        Files.writeString(usersFile.toPath(), "[{\"name\":\"Ali\",\"wallet\":{\"eur\":1.5,\"gbp\":\"2\",\"eur\":3}},"
+                + "{\"name\":\"Bob\",\"wallet\":null},{\"name\":\"Cat\"},{\"wallet\":{}}]");
+        assertLoadedAsByDatabind(usersFile, 1);
+
+        UserRegistry users = StreamingUsersLoader.loads(usersFile, 1);
+        assertEquals(3.0, users.get("Ali").getCurrencyValueInWallet("eur"));
+        assertNull(users.get("Bob").getWallet());
+        assertNull(users.get("Cat").getWallet());
+        assertEquals(4, users.size());
+    }
+
+    @Test
+    public void testAmountsConvertedToMinorUnitsAsByDatabind() throws IOException {
+        MinorUnits.configures("xfl", new MinorUnits(2, RoundingMode.FLOOR));
+        MinorUnits.configures("xjp", new MinorUnits(0, RoundingMode.HALF_EVEN));
+        try {
+            Random random = new Random(5);
+            String[] currencies = { "eur", "xfl", "xjp" };
+            String[] formats = { "%.0f", "%.1f", "%.2f", "%.3f", "%.2e", "%.9f" };
+            StringBuilder json = new StringBuilder("[");
+            for (int i = 0; i < 3_000; i++) {
+                String amount = String.format(Locale.ROOT, formats[random.nextInt(formats.length)], random.nextDouble() * Math.pow(10, random.nextInt(12)));
+                json.append(i == 0 ? "" : ",").append("{\"name\":\"u").append(i).append("\",\"wallet\":{\"")
+                        .append(currencies[i % 3]).append("\":").append(random.nextBoolean() ? "-" : "").append(amount).append("}}");
+            }
+            File usersFile = directory.resolve("users.json").toFile();
+            Files.writeString(usersFile.toPath(), json.append("]"));
+            assertLoadedAsByDatabind(usersFile, 1);
+        } finally {
+            MinorUnits.configures("xfl", MinorUnits.DEFAULT);
+            MinorUnits.configures("xjp", MinorUnits.DEFAULT);
+        }
+    }
+
+    @Test
+    public void testUnknownFieldOrNotAnArrayThrows() throws IOException {
+        File usersFile = directory.resolve("users.json").toFile();
+        Files.writeString(usersFile.toPath(), "[{\"name\":\"Ali\",\"age\":3}]");
+        assertThrows(IOException.class, () -> StreamingUsersLoader.loads(usersFile, 1));
+
+        Files.writeString(usersFile.toPath(), "{\"name\":\"Ali\"}");
+        assertThrows(IOException.class, () -> StreamingUsersLoader.loads(usersFile, 1));
+    }
+
+    @Test
+    public void testSplitsAfterCommasBetweenUsers() {
+        byte[] bytes = "[{\"name\":\"a,b\"},{\"name\":\"c\"},{\"name\":\"d\"}]".getBytes(StandardCharsets.UTF_8);
+        int[] boundaries = StreamingUsersLoader.splits(ByteBuffer.wrap(bytes), 3);
+        assertEquals(0, boundaries[0]);
+        assertEquals(bytes.length, boundaries[boundaries.length - 1]);
+        for (int i = 1; i < boundaries.length - 1; i++) {
+            assertEquals(',', bytes[boundaries[i] - 1]);
+            assertEquals('{', bytes[boundaries[i]]);
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package persistence;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import benchmark.Fixtures;
+import model.User;
+
+/**
+ * Time of a write of users.json of N users (default 1M) with P% of them dirty (default 1),
+ * re-serialized through databind versus written by the StreamingUsersWriter.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> persistence.StreamingUsersWriterBenchmark [users] [dirtyPercent]}
+ */
+public class StreamingUsersWriterBenchmark {
+
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int numberOfUsers = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        double dirtyPercent = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+
+        Path directory = Files.createTempDirectory("fxconvert-streaming");
+        File usersFile = directory.resolve("users.json").toFile();
+        File temporaryFile = directory.resolve("users.json.tmp").toFile();
+        List<User> users = Fixtures.users(numberOfUsers, 42);
+        int dirtyUsers = (int) (numberOfUsers * dirtyPercent / 100);
+        Random random = new Random(42);
+
+        ObjectMapper objectMapper = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        long[] databindNanos = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            marksDirty(users, dirtyUsers, random);
+            long start = System.nanoTime();
+            WriteBehindPersister.writesAtomically(objectMapper, users, temporaryFile, usersFile);
+            databindNanos[round] = System.nanoTime() - start;
+            marksClean(users);
+        }
+        System.out.printf("users.json: %d users, %.1f MB, %d dirty per write%n", numberOfUsers, usersFile.length() / 1e6, dirtyUsers);
+
+        StreamingUsersWriter writer = new StreamingUsersWriter();
+        writer.writesAtomically(users, temporaryFile, usersFile);
+        long[] streamingNanos = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            marksDirty(users, dirtyUsers, random);
+            long start = System.nanoTime();
+            writer.writesAtomically(users, temporaryFile, usersFile);
+            streamingNanos[round] = System.nanoTime() - start;
+            marksClean(users);
+        }
+
+        long databindMillis = median(databindNanos) / 1_000_000;
+        long streamingMillis = median(streamingNanos) / 1_000_000;
+        System.out.printf("databind:  %d ms per write%n", databindMillis);
+        System.out.printf("streaming: %d ms per write (%d encoded, %d copied), %.1f%% of databind%n",
+                streamingMillis, writer.getUsersEncoded(), writer.getUsersCopied(), streamingMillis * 100.0 / Math.max(1, databindMillis));
+
+        usersFile.delete();
+        directory.toFile().delete();
+    }
+
+    private static void marksDirty(List<User> users, int dirtyUsers, Random random) {
+        for (int i = 0; i < dirtyUsers; i++) {
+            User user = users.get(random.nextInt(users.size()));
+            String from = user.getWallet().keySet().iterator().next();
+            String to = Fixtures.CURRENCIES[random.nextInt(Fixtures.CURRENCIES.length)];
+            if (!to.equals(from)) {
+                user.updatesWallet(from, to, 0.01, 0.01);
+            }
+        }
+    }
+
+    private static void marksClean(List<User> users) {
+        for (User user : users) {
+            user.marksClean();
+        }
+    }
+
+    private static long median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+}
@@ -0,0 +1,125 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import model.User;
+
+class StreamingUsersWriterTest {
+
+    @TempDir
+    Path directory;
+
+    File usersFile;
+
+    File temporaryFile;
+
+    List<User> users;
+
+    StreamingUsersWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        usersFile = directory.resolve("users.json").toFile();
+        temporaryFile = directory.resolve("users.json.tmp").toFile();
+        users = new ArrayList<> ();
+        String[] names = { "Ali", "Bob", "Chloé", "Dan", "Eve" };
+        for (int i = 0; i < names.length; i++) {
+            User user = new User(names[i]);
+            user.addCurrencyToWallet("eur", 88.0 + i);
+            user.addCurrencyToWallet("gbp", 10.25 * i);
+            users.add(user);
+        }
+    }
+
+    private void writesAndMarksClean() throws IOException {
+        writer.writesAtomically(users, temporaryFile, usersFile);
+        for (User user : users) {
+            user.marksClean();
+        }
+    }
+
+    private void assertWrittenAsByObjectMapper() throws IOException {
+        assertArrayEquals(new ObjectMapper().writeValueAsBytes(users), Files.readAllBytes(usersFile.toPath()));
+    }
+
+    @Test
+    public void testFirstWriteEncodesEveryUser() throws IOException {
+        writer = new StreamingUsersWriter();
+        writesAndMarksClean();
+        assertWrittenAsByObjectMapper();
+        assertEquals(5, writer.getUsersEncoded());
+        assertEquals(0, writer.getUsersCopied());
+        assertFalse(temporaryFile.exists());
+    }
+
+    @Test
+    public void testOnlyDirtyUsersEncoded() throws IOException {
+        writer = new StreamingUsersWriter();
+        writesAndMarksClean();
+        users.get(1).updatesWallet("eur", "gbp", 1.5, 2.0);
+        users.get(4).updatesWallet("gbp", "usd", 40.0, 50.0);
+        writesAndMarksClean();
+        assertWrittenAsByObjectMapper();
+        assertEquals(2, writer.getUsersEncoded());
+        assertEquals(3, writer.getUsersCopied());
+
+        writesAndMarksClean();
+        assertWrittenAsByObjectMapper();
+        assertEquals(0, writer.getUsersEncoded());
+        assertEquals(5, writer.getUsersCopied());
+    }
+
+    @Test
+    public void testUsersFileChangedSinceLastWriteEncodesEveryUser() throws IOException {
+        writer = new StreamingUsersWriter();
+        writesAndMarksClean();
+        Files.writeString(usersFile.toPath(), "[]");
+        users.get(0).updatesWallet("eur", "gbp", 1.0, 1.0);
+        writesAndMarksClean();
+        assertWrittenAsByObjectMapper();
+        assertEquals(5, writer.getUsersEncoded());
+    }
+
+    @Test
+    public void testRandomDirtyUsersWrittenAsByObjectMapper() throws IOException {
+        Random random = new Random(42);
+        for (int i = users.size(); i < 200; i++) {
+            User user = new User("user" + i);
+            user.addCurrencyToWallet("usd", random.nextInt(100_000) / 100.0);
+            users.add(user);
+        }
+        writer = new StreamingUsersWriter();
+        writesAndMarksClean();
+        for (int flush = 0; flush < 20; flush++) {
+            int dirty = random.nextInt(10);
+            for (int i = 0; i < dirty; i++) {
+                User user = users.get(random.nextInt(users.size()));
+                String from = user.isCurrencyInWallet("usd") ? "usd" : "eur";
+                String to = from.equals("usd") ? "jpy" : "usd";
+                if (user.isCurrencyInWallet(from)) {
+                    user.updatesWallet(from, to, user.getCurrencyValueInWallet(from) / 2, random.nextInt(10_000) / 100.0);
+                }
+            }
+            writesAndMarksClean();
+            assertWrittenAsByObjectMapper();
+            assertEquals(users.size(), writer.getUsersEncoded() + writer.getUsersCopied());
+        }
+    }
+
+}
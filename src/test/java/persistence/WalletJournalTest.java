@@ -0,0 +1,147 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import model.User;
+import model.UserRegistry;
+
+class WalletJournalTest {
+
+    @TempDir
+    Path directory;
+
+    File journalFile;
+
+    File snapshotFile;
+
+    File usersFile;
+
+    UserRegistry users;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        journalFile = directory.resolve("users.journal").toFile();
+        snapshotFile = directory.resolve("users.snapshot.json").toFile();
+        usersFile = directory.resolve("users.json").toFile();
+
+        List<User> initialUsers = new ArrayList<> ();
+        User user = new User("Ali");
+        user.addCurrencyToWallet("eur", 88.0);
+        initialUsers.add(user);
+        new ObjectMapper().writeValue(usersFile, initialUsers);
+    }
+
+    private WalletJournal opensJournal(int snapshotEveryRecords) throws IOException {
+        WalletJournal journal = new WalletJournal(journalFile, snapshotFile, usersFile, () -> users.getUsers(), snapshotEveryRecords);
+        users = journal.recovers();
+        return journal;
+    }
+
+    private void converts(WalletJournal journal, String fromCurrency, String toCurrency, double amount, double amountToIncreaseToCurrencyBy) throws IOException {
+        User user = users.getUsers().get(0);
+        user.updatesWallet(fromCurrency, toCurrency, amount, amountToIncreaseToCurrencyBy);
+        journal.recordsConversion(user, fromCurrency, toCurrency, amount, amountToIncreaseToCurrencyBy);
+    }
+
+    @Test
+    public void testUsersLoadedFromUsersFileWhenThereIsNoSnapshot() throws IOException {
+        opensJournal(0);
+        assertEquals(88.0, users.getUsers().get(0).getCurrencyValueInWallet("eur"));
+    }
+
+    @Test
+    public void testJournalReplayedAfterCrashWithoutSnapshot() throws IOException {
+        WalletJournal journal = opensJournal(0);
+        converts(journal, "eur", "gbp", 8.0, 7.0);
+        converts(journal, "gbp", "usd", 2.0, 2.5);
+
+        opensJournal(0);
+        assertEquals(80.0, users.getUsers().get(0).getCurrencyValueInWallet("eur"));
+        assertEquals(5.0, users.getUsers().get(0).getCurrencyValueInWallet("gbp"));
+        assertEquals(2.5, users.getUsers().get(0).getCurrencyValueInWallet("usd"));
+    }
+
+    @Test
+    public void testJournalEmptiedAfterCompaction() throws IOException {
+        WalletJournal journal = opensJournal(2);
+        converts(journal, "eur", "gbp", 8.0, 7.0);
+        assertFalse(journal.isCheckpointDue());
+        converts(journal, "eur", "gbp", 8.0, 7.0);
+        assertTrue(journal.isCheckpointDue());
+        journal.checkpoint();
+        assertTrue(snapshotFile.exists());
+        assertEquals(0, journal.getRecordsSinceSnapshot());
+        assertEquals(8, journalFile.length());
+    }
+
+    @Test
+    public void testJournalSyncedToDiskEveryNRecords() throws IOException {
+        WalletJournal journal = new WalletJournal(journalFile, snapshotFile, usersFile, () -> users.getUsers(), 0, 2, 0);
+        users = journal.recovers();
+        converts(journal, "eur", "gbp", 8.0, 7.0);
+        assertEquals(0, journal.getSyncs());
+        converts(journal, "eur", "gbp", 8.0, 7.0);
+        assertEquals(1, journal.getSyncs());
+        converts(journal, "eur", "gbp", 8.0, 7.0);
+        converts(journal, "eur", "gbp", 8.0, 7.0);
+        assertEquals(2, journal.getSyncs());
+
+        opensJournal(0);
+        assertEquals(56.0, users.getUsers().get(0).getCurrencyValueInWallet("eur"));
+    }
+
+    @Test
+    public void testRecordsIncludedInSnapshotNotReplayedTwice() throws IOException {
+        WalletJournal journal = opensJournal(0);
+        converts(journal, "eur", "gbp", 8.0, 7.0);
+        // Crash after the snapshot is written, but before the journal is emptied.
+        new ObjectMapper().writeValue(snapshotFile, new JournalSnapshot(journal.getSequence(), users.getUsers()));
+
+        opensJournal(0);
+        assertEquals(80.0, users.getUsers().get(0).getCurrencyValueInWallet("eur"));
+        assertEquals(7.0, users.getUsers().get(0).getCurrencyValueInWallet("gbp"));
+    }
+
+    @Test
+    public void testTornRecordTruncatedDuringRecovery() throws IOException {
+        WalletJournal journal = opensJournal(0);
+        converts(journal, "eur", "gbp", 8.0, 7.0);
+        long intactLength = journalFile.length();
+        converts(journal, "eur", "gbp", 8.0, 7.0);
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        WalletJournal recovered = opensJournal(0);
+        assertEquals(80.0, users.getUsers().get(0).getCurrencyValueInWallet("eur"));
+        assertEquals(intactLength, journalFile.length());
+        assertEquals(1, recovered.getSequence());
+    }
+
+    @Test
+    public void testCloseExportsUsersFile() throws IOException {
+        WalletJournal journal = opensJournal(0);
+        converts(journal, "eur", "gbp", 88.0, 77.0);
+        journal.close();
+
+        User[] written = new ObjectMapper().readValue(usersFile, User[].class);
+        assertFalse(written[0].isCurrencyInWallet("eur"));
+        assertEquals(77.0, written[0].getCurrencyValueInWallet("gbp"));
+    }
+
+}
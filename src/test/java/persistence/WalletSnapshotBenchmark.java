@@ -0,0 +1,81 @@
+package persistence;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import benchmark.Fixtures;
+import model.User;
+import model.UserRegistry;
+
+/**
+ * Startup time of N users (default 1M): users.json databound into a UserRegistry
+ * versus the binary WalletSnapshot read from a memory-mapped file, with the heap retained by each.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> persistence.WalletSnapshotBenchmark [users]}
+ */
+public class WalletSnapshotBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int numberOfUsers = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Path directory = Files.createTempDirectory("fxconvert-snapshot");
+        File usersFile = directory.resolve("users.json").toFile();
+        File snapshotFile = directory.resolve("users.snapshot").toFile();
+        List<User> users = Fixtures.users(numberOfUsers, 42);
+        new ObjectMapper().writeValue(usersFile, users);
+        WalletSnapshot.writes(users, snapshotFile);
+        users = null;
+        System.out.printf("users.json: %.1f MB, snapshot: %.1f MB, %d users%n",
+                usersFile.length() / 1e6, snapshotFile.length() / 1e6, numberOfUsers);
+
+        long[] jsonNanos = new long[ROUNDS];
+        long[] snapshotNanos = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            UserRegistry fromJson = UserRegistry.load(usersFile, new ObjectMapper());
+            jsonNanos[round] = System.nanoTime() - start;
+            fromJson = null;
+
+            start = System.nanoTime();
+            UserRegistry fromSnapshot = WalletSnapshot.reads(snapshotFile);
+            snapshotNanos[round] = System.nanoTime() - start;
+            fromSnapshot = null;
+        }
+        System.out.printf("users.json: %d ms to start%n", median(jsonNanos) / 1_000_000);
+        System.out.printf("snapshot:   %d ms to start%n", median(snapshotNanos) / 1_000_000);
+
+        long before = usedHeap();
+        UserRegistry retained = UserRegistry.load(usersFile, new ObjectMapper());
+        System.out.printf("users.json: %.1f MB retained%n", (usedHeap() - before) / 1e6);
+        retained = null;
+        before = usedHeap();
+        retained = WalletSnapshot.reads(snapshotFile);
+        System.out.printf("snapshot:   %.1f MB retained (%d users)%n", (usedHeap() - before) / 1e6, retained.size());
+
+        usersFile.delete();
+        snapshotFile.delete();
+        directory.toFile().delete();
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+}
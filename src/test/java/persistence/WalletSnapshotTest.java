@@ -0,0 +1,106 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import model.MinorUnits;
+import model.User;
+import model.UserRegistry;
+
+class WalletSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    File snapshotFile;
+
+    List<User> users;
+
+    @BeforeEach
+    void setUp() {
+        snapshotFile = directory.resolve("users.snapshot").toFile();
+        users = new ArrayList<> ();
+        User ali = new User("Ali");
+        ali.addCurrencyToWallet("eur", 88.0);
+        ali.addCurrencyToWallet("gbp", 1331.4);
+        users.add(ali);
+        User chloe = new User("Chloé");
+        chloe.addCurrencyToWallet("usd", 0.01);
+        chloe.addCurrencyToWallet("x-btc", 2.5);
+        users.add(chloe);
+        users.add(new User("Empty"));
+    }
+
+    @Test
+    public void testSnapshotReadBackAsUsersJson() throws IOException {
+        WalletSnapshot.writes(users, snapshotFile);
+        UserRegistry read = WalletSnapshot.reads(snapshotFile);
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertEquals(objectMapper.writeValueAsString(users), objectMapper.writeValueAsString(read));
+        assertEquals(2.5, read.get("Chloé").getCurrencyValueInWallet("x-btc"));
+        assertEquals(0, read.get("Empty").getsNumberOfCurrenciesInWallet());
+        assertFalse(new File(snapshotFile.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testUserWithoutWalletReadBackWithoutWallet() throws IOException {
+        User noWallet = new User();
+        noWallet.setName("Nobody");
+        users.add(noWallet);
+        WalletSnapshot.writes(users, snapshotFile);
+        assertNull(WalletSnapshot.reads(snapshotFile).get("Nobody").getWallet());
+    }
+
+    @Test
+    public void testBalanceRescaledToConfiguredMinorUnits() throws IOException {
+        User user = new User("Ken");
+        user.addCurrencyToWallet("sek", 12.34);
+        WalletSnapshot.writes(List.of(user), snapshotFile);
+        MinorUnits.configures("sek", new MinorUnits(0, RoundingMode.HALF_EVEN));
+        try {
+            assertEquals(12.0, WalletSnapshot.reads(snapshotFile).get("Ken").getCurrencyValueInWallet("sek"));
+        } finally {
+            MinorUnits.configures("sek", MinorUnits.DEFAULT);
+        }
+    }
+
+    @Test
+    public void testNotASnapshotOrTruncatedSnapshotThrows() throws IOException {
+        Files.writeString(snapshotFile.toPath(), "[{\"name\":\"Ali\"}]");
+        assertThrows(IOException.class, () -> WalletSnapshot.reads(snapshotFile));
+
+        WalletSnapshot.writes(users, snapshotFile);
+        byte[] bytes = Files.readAllBytes(snapshotFile.toPath());
+        Files.write(snapshotFile.toPath(), Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> WalletSnapshot.reads(snapshotFile));
+    }
+
+    @Test
+    public void testConverterRoundTripsUsersJson() throws IOException {
+        File usersFile = directory.resolve("users.json").toFile();
+        File convertedFile = directory.resolve("converted.json").toFile();
+        new ObjectMapper().writeValue(usersFile, users);
+        assertEquals(3, WalletSnapshotConverter.converts(WalletSnapshotConverter.TO_SNAPSHOT, usersFile, snapshotFile));
+        assertEquals(3, WalletSnapshotConverter.converts(WalletSnapshotConverter.TO_JSON, snapshotFile, convertedFile));
+        assertArrayEquals(Files.readAllBytes(usersFile.toPath()), Files.readAllBytes(convertedFile.toPath()));
+    }
+
+}
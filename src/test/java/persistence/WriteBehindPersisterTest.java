@@ -0,0 +1,145 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import engine.WalletLocks;
+import model.User;
+
+class WriteBehindPersisterTest {
+
+    @TempDir
+    Path directory;
+
+    File usersFile;
+
+    List<User> users;
+
+    WriteBehindPersister persister;
+
+    @BeforeEach
+    void setUp() {
+        usersFile = directory.resolve("users.json").toFile();
+        users = new ArrayList<> ();
+        User user = new User("Ali");
+        user.addCurrencyToWallet("eur", 88.0);
+        user.addCurrencyToWallet("gbp", 10.0);
+        users.add(user);
+        persister = new WriteBehindPersister(usersFile, () -> users, 3, 0);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        persister.close();
+    }
+
+    private void convertsAndRecords() throws IOException {
+        User user = users.get(0);
+        user.updatesWallet("eur", "gbp", 1.0, 2.0);
+        persister.recordsConversion(user, "eur", "gbp", 1.0, 2.0);
+    }
+
+    @Test
+    public void testCheckpointNotDueBeforeFlushThreshold() throws IOException {
+        convertsAndRecords();
+        convertsAndRecords();
+        assertFalse(persister.isCheckpointDue());
+        assertFalse(usersFile.exists());
+        assertEquals(2, persister.getPendingTransactions());
+    }
+
+    @Test
+    public void testCheckpointDueAtFlushThreshold() throws IOException {
+        convertsAndRecords();
+        convertsAndRecords();
+        convertsAndRecords();
+        assertTrue(persister.isCheckpointDue());
+        persister.checkpoint();
+        assertTrue(usersFile.exists());
+        assertEquals(0, persister.getPendingTransactions());
+    }
+
+    @Test
+    public void testUsersMarkedCleanAfterFlush() throws IOException {
+        convertsAndRecords();
+        assertTrue(users.get(0).isDirty());
+        persister.flush();
+        assertFalse(users.get(0).isDirty());
+    }
+
+    @Test
+    public void testTemporaryFileRenamedOverUsersFile() throws IOException {
+        convertsAndRecords();
+        persister.flush();
+        assertTrue(usersFile.exists());
+        assertFalse(new File(usersFile.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testCloseWritesPendingTransactions() throws IOException {
+        convertsAndRecords();
+        persister.close();
+        User[] written = new ObjectMapper().readValue(usersFile, User[].class);
+        assertEquals(87.0, written[0].getCurrencyValueInWallet("eur"));
+        assertEquals(12.0, written[0].getCurrencyValueInWallet("gbp"));
+    }
+
+    @Test
+    public void testFlushWithoutTransactionsDoesNotWriteUsersFile() throws IOException {
+        persister.flush();
+        assertFalse(usersFile.exists());
+    }
+
+    @Test
+    public void testStreamingFlushWritesSameUsersFile() throws IOException {
+        persister.close();
+        persister = new WriteBehindPersister(usersFile, () -> users, 0, 0, true);
+        convertsAndRecords();
+        persister.flush();
+        convertsAndRecords();
+        persister.flush();
+        assertArrayEquals(new ObjectMapper().writeValueAsBytes(users), Files.readAllBytes(usersFile.toPath()));
+    }
+
+    @Test
+    public void testFlushAtShutdownWaitsForWalletBeingUpdated() throws Exception {
+        persister.close();
+        WalletLocks walletLocks = new WalletLocks(1);
+        persister = new WriteBehindPersister(usersFile, () -> users, 0, 0, false, walletLocks.getCheckpointLock());
+        User user = users.get(0);
+
+        // Credited, but not yet debited, as in the middle of User.updatesWallet.
+        walletLocks.locksUpdate();
+        user.increaseCurrencyValueInWallet("gbp", 2.0);
+        persister.recordsConversion(user, "eur", "gbp", 1.0, 2.0);
+        Thread shutdownFlush = new Thread(persister::flushesAtShutdown);
+        shutdownFlush.start();
+        shutdownFlush.join(200);
+        assertTrue(shutdownFlush.isAlive());
+        assertFalse(usersFile.exists());
+
+        user.decreaseCurrencyValueInWallet("eur", 1.0);
+        walletLocks.unlocksUpdate();
+        shutdownFlush.join();
+        User[] written = new ObjectMapper().readValue(usersFile, User[].class);
+        assertEquals(87.0, written[0].getCurrencyValueInWallet("eur"));
+        assertEquals(12.0, written[0].getCurrencyValueInWallet("gbp"));
+    }
+
+}
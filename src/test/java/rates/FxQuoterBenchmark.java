@@ -0,0 +1,133 @@
+package rates;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import benchmark.Fixtures;
+import config.EngineConfig;
+import model.Currency;
+import model.RateTable;
+
+/**
+ * Quotes per second of the FxQuoter on 1, 2, 4 and 8 threads, alone, and while transactions are processed
+ * and a new version of the rates is published every millisecond.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> rates.FxQuoterBenchmark [millisPerRun]}
+ */
+public class FxQuoterBenchmark {
+
+    private static volatile double sink;
+
+    private static double quotesPerSecond(FxQuoter quoter, String[] froms, String[] tos, int threads, long millis) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder quotes = new LongAdder();
+        Thread[] quoters = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 997;
+            quoters[t] = new Thread(() -> {
+                long count = 0;
+                double sum = 0;
+                while (running.get()) {
+                    for (int i = 0; i < 1024; i++) {
+                        int pair = (offset + i) & (froms.length - 1);
+                        sum += quoter.quotes(froms[pair], tos[pair], 100 + i);
+                    }
+                    count += 1024;
+                }
+                quotes.add(count);
+                sink = sum;
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread thread : quoters) {
+            thread.start();
+        }
+        Thread.sleep(millis);
+        running.set(false);
+        for (Thread thread : quoters) {
+            thread.join();
+        }
+        return quotes.sum() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    public static void main(String[] args) throws Exception {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        Configurator.setLevel("Runner", Level.OFF);
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, Currency> currencies = objectMapper.readValue(new File("src/main/resources/fx_rates.json"),
+                objectMapper.getTypeFactory().constructMapType(HashMap.class, String.class, Currency.class));
+        AtomicReference<RateTable> rates = new AtomicReference<>(new RateTable(currencies, 1));
+        FxQuoter quoter = new FxQuoter(rates::get);
+
+        String[] codes = currencies.keySet().toArray(new String[0]);
+        Random random = new Random(42);
+        String[] froms = new String[4096];
+        String[] tos = new String[4096];
+        for (int i = 0; i < froms.length; i++) {
+            froms[i] = codes[random.nextInt(codes.length)];
+            tos[i] = codes[random.nextInt(codes.length)];
+        }
+        System.out.printf("cores=%d currencies=%d%n", Runtime.getRuntime().availableProcessors(), codes.length);
+
+        for (boolean busy : new boolean[] { false, true }) {
+            AtomicBoolean running = new AtomicBoolean(busy);
+            Thread publisher = new Thread(() -> {
+                long version = 1;
+                while (running.get()) {
+                    rates.set(new RateTable(currencies, ++version));
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            Thread processor = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        EngineConfig config = Fixtures.generate(10_000, 200_000, 42);
+                        setsRunnerConfig(config);
+                        Class.forName("Runner").getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            if (busy) {
+                publisher.start();
+                processor.start();
+            }
+            for (int threads : new int[] { 1, 2, 4, 8 }) {
+                double rate = quotesPerSecond(quoter, froms, tos, threads, millis);
+                System.out.printf("mode=%s threads=%d quotes=%.1fM/s%n", busy ? "withTransactions" : "alone", threads, rate / 1e6);
+            }
+            running.set(false);
+            publisher.join();
+            processor.join();
+        }
+    }
+
+    /**
+     * Runner is in the default package, which cannot be imported, so its configuration is set reflectively.
+     */
+    private static void setsRunnerConfig(EngineConfig config) throws ReflectiveOperationException {
+        Field field = Class.forName("Runner").getField("config");
+        field.set(null, config);
+    }
+
+}
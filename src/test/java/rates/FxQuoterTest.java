@@ -0,0 +1,83 @@
+package rates;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.Currency;
+import model.RateTable;
+import model.User;
+import validation.RejectionReason;
+
+class FxQuoterTest {
+
+    AtomicReference<RateTable> rates;
+
+    FxQuoter quoter;
+
+    @BeforeEach
+    void setUp() {
+        Map <String, Currency> currencies = new HashMap<> ();
+        currencies.put("eur", new Currency(0.98535489535028, 1.0148627714936, "eur"));
+        currencies.put("gbp", new Currency(0.85438980693642, 1.1704259482983, "gbp"));
+        currencies.put("jpy", new Currency(142.32291211472, 0.007026275566888, "jpy"));
+        rates = new AtomicReference<>(new RateTable(currencies, 1));
+        quoter = new FxQuoter(rates::get);
+    }
+
+    @Test
+    public void testQuoteRoundedToMinorUnitsOfToCurrency() {
+        assertEquals(117.04, quoter.quotes("gbp", "usd", 100));
+        assertEquals(Math.round(100 * 1.1704259482983 * 142.32291211472 * 100) / 100.0, quoter.quotes("gbp", "jpy", 100));
+    }
+
+    @Test
+    public void testQuoteMatchesAmountCreditedToWallet() {
+        User user = new User("Tommy");
+        user.addCurrencyToWallet("eur", 0);
+        user.increaseCurrencyValueInWallet("eur", rates.get().converts(rates.get().idOf("gbp"), rates.get().idOf("eur"), 33.33));
+        assertEquals(user.getCurrencyValueInWallet("eur"), quoter.quotes("gbp", "eur", 33.33));
+    }
+
+    @Test
+    public void testRejectedQuotesAreNaNWithReasonOfTransaction() {
+        assertTrue(Double.isNaN(quoter.quotes("gbp", "gbp", 100)));
+        assertTrue(Double.isNaN(quoter.quotes("ppp", "gbp", 100)));
+        assertTrue(Double.isNaN(quoter.quotes("gbp", "eur", 0)));
+        assertEquals(RejectionReason.SAME_CURRENCY, FxQuoter.checks(rates.get(), "gbp", "gbp", 100));
+        assertEquals(RejectionReason.INVALID_CURRENCY, FxQuoter.checks(rates.get(), "gbp", "ppp", 100));
+        assertEquals(RejectionReason.INVALID_AMOUNT, FxQuoter.checks(rates.get(), "gbp", "eur", -1));
+        assertEquals(RejectionReason.INVALID_AMOUNT, FxQuoter.checks(rates.get(), "gbp", "eur", Double.NaN));
+        assertEquals(RejectionReason.INVALID_AMOUNT, FxQuoter.checks(rates.get(), "gbp", "eur", Double.POSITIVE_INFINITY));
+        assertEquals(RejectionReason.NONE, FxQuoter.checks(rates.get(), "gbp", "eur", 1));
+    }
+
+    @Test
+    public void testAmountsTooLargeForMinorUnitsRejectedAsInvalidAmount() {
+        assertTrue(Double.isNaN(quoter.quotes("usd", "eur", 1e17)));
+        assertTrue(Double.isNaN(quoter.quotes("usd", "eur", Double.POSITIVE_INFINITY)));
+        // 5e16 gbp fits in minor units, but the yen it buys does not.
+        assertTrue(Double.isNaN(quoter.quotes("gbp", "jpy", 5e16)));
+        assertEquals(RejectionReason.INVALID_AMOUNT, FxQuoter.checks(rates.get(), "usd", "eur", 1e17));
+        assertEquals(RejectionReason.INVALID_AMOUNT, FxQuoter.checks(rates.get(), "gbp", "jpy", 5e16));
+        assertEquals(RejectionReason.NONE, FxQuoter.checks(rates.get(), "gbp", "eur", 1e15));
+    }
+
+    @Test
+    public void testQuoteAtLatestPublishedRates() {
+        double before = quoter.quotes("eur", "usd", 100);
+        Map <String, Currency> currencies = new HashMap<> ();
+        currencies.put("eur", new Currency(0.5, 2, "eur"));
+        rates.set(new RateTable(currencies, 2));
+        assertEquals(101.49, before);
+        assertEquals(200, quoter.quotes("eur", "usd", 100));
+        assertEquals(2, quoter.getRates().getVersion());
+    }
+
+}
@@ -0,0 +1,79 @@
+package rates;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import model.Currency;
+
+class FxRatesWatcherTest {
+
+    @TempDir
+    Path directory;
+
+    private static String fxRatesOf(double eurRate) {
+        return "{\"eur\":{\"code\":\"EUR\",\"alphaCode\":\"EUR\",\"numericCode\":\"978\",\"name\":\"Euro\","
+                + "\"rate\":" + eurRate + ",\"date\":\"Tue, 13 Sep 2022 11:55:01 GMT\",\"inverseRate\":" + (1 / eurRate) + "}}";
+    }
+
+    private static void writes(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testChangedFileReloadedAndPublished() throws Exception {
+        File fxRatesFile = directory.resolve("fx_rates.json").toFile();
+        writes(fxRatesFile, fxRatesOf(0.9));
+        BlockingQueue<Map<String, Currency>> published = new LinkedBlockingQueue<>();
+
+        try (FxRatesWatcher watcher = new FxRatesWatcher(fxRatesFile, published::add)) {
+            writes(fxRatesFile, fxRatesOf(0.95));
+            Map<String, Currency> currencies = published.poll(30, TimeUnit.SECONDS);
+            assertNotNull(currencies);
+            assertEquals(0.95, currencies.get("eur").getRate());
+        }
+    }
+
+    @Test
+    public void testUnparsableFileSkippedUntilNextChange() throws Exception {
+        File fxRatesFile = directory.resolve("fx_rates.json").toFile();
+        writes(fxRatesFile, fxRatesOf(0.9));
+        BlockingQueue<Map<String, Currency>> published = new LinkedBlockingQueue<>();
+
+        try (FxRatesWatcher watcher = new FxRatesWatcher(fxRatesFile, published::add)) {
+            writes(fxRatesFile, "{\"eur\":");
+            assertNull(published.poll(1, TimeUnit.SECONDS));
+
+            writes(fxRatesFile, fxRatesOf(0.97));
+            Map<String, Currency> currencies = published.poll(30, TimeUnit.SECONDS);
+            assertNotNull(currencies);
+            assertEquals(0.97, currencies.get("eur").getRate());
+        }
+    }
+
+    @Test
+    public void testOtherFilesInDirectoryIgnored() throws Exception {
+        File fxRatesFile = directory.resolve("fx_rates.json").toFile();
+        writes(fxRatesFile, fxRatesOf(0.9));
+        BlockingQueue<Map<String, Currency>> published = new LinkedBlockingQueue<>();
+
+        try (FxRatesWatcher watcher = new FxRatesWatcher(fxRatesFile, published::add)) {
+            writes(directory.resolve("users.json").toFile(), "[]");
+            assertNull(published.poll(1, TimeUnit.SECONDS));
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package rates;
+
+import java.io.File;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import model.Currency;
+import model.RateTable;
+
+/**
+ * Cost of a back-dated conversion at the rates in effect at a random time of a year of daily rates,
+ * versus a conversion at the latest rates of a RateTable, and the memory of the RateHistory.
+ * <p>
+ * Run with: {@code java -cp target/classes:target/test-classes:<deps> rates.RateHistoryBenchmark}
+ */
+public class RateHistoryBenchmark {
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, Currency> latest = objectMapper.readValue(new File("src/main/resources/fx_rates.json"),
+                objectMapper.getTypeFactory().constructMapType(HashMap.class, String.class, Currency.class));
+
+        // A year of daily versions of fx_rates.json, every rate drifting by up to 1% a day.
+        int days = 365;
+        ZonedDateTime firstDay = ZonedDateTime.of(2022, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        Random random = new Random(42);
+        List<Map<String, Currency>> versions = new ArrayList<>(days);
+        for (int day = 0; day < days; day++) {
+            String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(firstDay.plusDays(day));
+            Map<String, Currency> version = new HashMap<>();
+            for (Map.Entry<String, Currency> entry : latest.entrySet()) {
+                double rate = entry.getValue().getRate() * (1 + (random.nextDouble() - 0.5) / 50);
+                version.put(entry.getKey(), new Currency(rate, 1 / rate, entry.getKey(), entry.getKey().toUpperCase(),
+                        entry.getKey().toUpperCase(), "0", entry.getValue().getName(), date));
+            }
+            versions.add(version);
+        }
+
+        long before = usedMemory();
+        RateHistory history = new RateHistory(versions);
+        long retained = usedMemory() - before;
+        System.out.printf("currencies=%d rates=%d retained=%d KB (%d KB of rates at 24 B each)%n",
+                history.size(), history.numberOfRates(), retained / 1024, history.numberOfRates() * 24L / 1024);
+
+        RateTable rates = new RateTable(latest);
+        String[] codes = latest.keySet().toArray(new String[0]);
+        long firstMillis = firstDay.toInstant().toEpochMilli();
+        long yearMillis = days * 86_400_000L;
+        String[] froms = new String[4096];
+        String[] tos = new String[4096];
+        long[] timestamps = new long[4096];
+        for (int i = 0; i < froms.length; i++) {
+            froms[i] = codes[random.nextInt(codes.length)];
+            tos[i] = codes[random.nextInt(codes.length)];
+            timestamps[i] = firstMillis + (long) (random.nextDouble() * yearMillis);
+        }
+
+        int conversions = 10_000_000;
+        double checksum = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < conversions; i++) {
+                checksum += rates.converts(rates.idOf(froms[i & 4095]), rates.idOf(tos[i & 4095]), i);
+            }
+            double tableNanos = (System.nanoTime() - start) / (double) conversions;
+
+            start = System.nanoTime();
+            for (int i = 0; i < conversions; i++) {
+                checksum += history.converts(froms[i & 4095], tos[i & 4095], i, timestamps[i & 4095]);
+            }
+            double historyNanos = (System.nanoTime() - start) / (double) conversions;
+
+            System.out.printf("round=%d latestRates=%.1f ns/conversion rateHistory=%.1f ns/conversion (checksum=%.0f)%n",
+                    round, tableNanos, historyNanos, checksum);
+        }
+    }
+
+}
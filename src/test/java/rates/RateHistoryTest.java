@@ -0,0 +1,101 @@
+package rates;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import model.Currency;
+import model.RateTable;
+import parser.Timestamps;
+
+class RateHistoryTest {
+
+    @TempDir
+    Path directory;
+
+    private static Map<String, Currency> versionOf(String date, double eurRate, double gbpRate) {
+        Map<String, Currency> currencies = new HashMap<>();
+        currencies.put("eur", new Currency(eurRate, 1 / eurRate, "eur", "EUR", "EUR", "978", "Euro", date));
+        currencies.put("gbp", new Currency(gbpRate, 1 / gbpRate, "gbp", "GBP", "GBP", "826", "U.K. Pound Sterling", date));
+        return currencies;
+    }
+
+    private static final String FIRST = "Tue, 13 Sep 2022 00:00:00 GMT";
+    private static final String SECOND = "Wed, 14 Sep 2022 00:00:00 GMT";
+
+    @Test
+    public void testRateInEffectIsLastRateAtOrBeforeTimestamp() {
+        RateHistory history = new RateHistory(List.of(versionOf(SECOND, 0.8, 0.6), versionOf(FIRST, 0.9, 0.7)));
+        assertEquals(2, history.size());
+        assertEquals(4, history.numberOfRates());
+
+        assertFalse(history.isQuotedAt("eur", Timestamps.parses("2022-09-12T23:59:59Z")));
+        assertTrue(history.isQuotedAt("eur", Timestamps.parses("2022-09-13")));
+        assertEquals(90, history.converts("usd", "eur", 100, Timestamps.parses("2022-09-13")), 1e-9);
+        assertEquals(90, history.converts("usd", "eur", 100, Timestamps.parses("2022-09-13T23:59:59Z")), 1e-9);
+        assertEquals(80, history.converts("usd", "eur", 100, Timestamps.parses("2022-09-14")), 1e-9);
+        assertEquals(80, history.converts("usd", "eur", 100, Timestamps.parses("2030-01-01")), 1e-9);
+    }
+
+    @Test
+    public void testCrossRateConvertedAsRateTableConvertsIt() {
+        Map<String, Currency> version = versionOf(FIRST, 0.98535489535028, 0.85438980693642);
+        RateHistory history = new RateHistory(List.of(version));
+        RateTable rates = new RateTable(version);
+        long timestamp = Timestamps.parses("2022-09-13");
+
+        String[] codes = { "usd", "eur", "gbp" };
+        for (String from : codes) {
+            for (String to : codes) {
+                assertEquals(rates.converts(rates.idOf(from), rates.idOf(to), 123.45), history.converts(from, to, 123.45, timestamp), from + to);
+            }
+        }
+    }
+
+    @Test
+    public void testLaterVersionWinsAtSameEffectiveTime() {
+        RateHistory history = new RateHistory(List.of(versionOf(FIRST, 0.9, 0.7), versionOf(FIRST, 0.95, 0.75)));
+        assertEquals(2, history.numberOfRates());
+        assertEquals(95, history.converts("usd", "eur", 100, Timestamps.parses("2022-09-13")), 1e-9);
+    }
+
+    @Test
+    public void testUsdAlwaysQuotedAndUnknownCurrencyNever() {
+        RateHistory history = new RateHistory(List.of(versionOf(FIRST, 0.9, 0.7)));
+        assertTrue(history.isQuotedAt("usd", Long.MIN_VALUE + 1));
+        assertFalse(history.isQuotedAt("sgd", Timestamps.parses("2022-09-13")));
+        assertEquals(RateHistory.UNKNOWN, history.idOf("sgd"));
+        assertEquals(RateHistory.UNKNOWN, history.idOf("SGD1"));
+    }
+
+    @Test
+    public void testFilesLoadedInOrderOfTheirNames() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.writeValue(directory.resolve("2022-09-13.json").toFile(), versionOf(FIRST, 0.9, 0.7));
+        objectMapper.writeValue(directory.resolve("2022-09-14.json").toFile(), versionOf(FIRST, 0.95, 0.75));
+        Files.write(directory.resolve("README.txt"), "not a rate".getBytes(StandardCharsets.UTF_8));
+
+        RateHistory history = RateHistory.loads(directory.toFile(), objectMapper);
+        assertEquals(95, history.converts("usd", "eur", 100, Timestamps.parses("2022-09-13")), 1e-9);
+    }
+
+    @Test
+    public void testRateWithoutRfc1123DateRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new RateHistory(List.of(versionOf("2022-09-13", 0.9, 0.7))));
+    }
+
+}
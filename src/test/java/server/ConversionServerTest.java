@@ -0,0 +1,115 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ConversionServerTest {
+
+    ConversionServer server;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testEveryLineAnsweredInOrder() throws IOException {
+        server = new ConversionServer(0, true, line -> "echo " + line);
+        server.starts();
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            writer.write("Tommy sgd usd 100\n");
+            writer.flush();
+            assertEquals("echo Tommy sgd usd 100", reader.readLine());
+
+            // Several lines sent before any answer is read.
+            for (int i = 0; i < 1000; i++) {
+                writer.write("line " + i + "\n");
+            }
+            writer.flush();
+            for (int i = 0; i < 1000; i++) {
+                assertEquals("echo line " + i, reader.readLine());
+            }
+        }
+        assertEquals(1, server.getConnectionsAccepted());
+    }
+
+    @Test
+    public void testConnectionsServedConcurrently() throws Exception {
+        int connections = 16;
+        CountDownLatch everyConnectionWaiting = new CountDownLatch(connections);
+        server = new ConversionServer(0, true, line -> {
+            everyConnectionWaiting.countDown();
+            try {
+                // Only answered once every connection has sent a line, which blocks if connections are served one at a time.
+                return everyConnectionWaiting.await(10, TimeUnit.SECONDS) ? "OK " + line : "TIMEOUT";
+            } catch (InterruptedException e) {
+                return "INTERRUPTED";
+            }
+        });
+        server.starts();
+
+        ExecutorService clients = Executors.newFixedThreadPool(connections);
+        try {
+            List<Future<String>> answers = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                String line = "user" + i;
+                answers.add(clients.submit(() -> {
+                    try (Socket socket = new Socket("localhost", server.getPort())) {
+                        socket.getOutputStream().write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+                    }
+                }));
+            }
+            for (int i = 0; i < connections; i++) {
+                assertEquals("OK user" + i, answers.get(i).get(20, TimeUnit.SECONDS));
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCloseEndsConnectionsAndStopsAccepting() throws Exception {
+        server = new ConversionServer(0, false, line -> line);
+        server.starts();
+        int port = server.getPort();
+        try (Socket socket = new Socket("localhost", port)) {
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            writer.write("ping\n");
+            writer.flush();
+            assertEquals("ping", reader.readLine());
+
+            server.close();
+            server.awaitsClose();
+            assertNull(reader.readLine());
+        }
+        assertThrows(ConnectException.class, () -> new Socket("localhost", port).close());
+    }
+
+}
@@ -0,0 +1,90 @@
+package validation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.Currency;
+import model.RateTable;
+import model.Transaction;
+import model.User;
+import model.UserRegistry;
+
+class TransactionValidatorTest {
+
+    private UserRegistry users;
+    private RateTable rates;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, Currency> currencies = new HashMap<>();
+        currencies.put("eur", new Currency(0.98535489535028, 1.0148627714936, "eur", "EUR", "EUR", "978", "Euro", "Tue, 13 Sep 2022 11:55:01 GMT"));
+        currencies.put("gbp", new Currency(0.85438980693642, 1.1704259482983, "gbp", "GBP", "GBP", "826", "U.K. Pound Sterling", "Tue, 13 Sep 2022 11:55:01 GMT"));
+        rates = new RateTable(currencies);
+
+        User user = new User("Ali");
+        user.addCurrencyToWallet("eur", 88.0);
+        users = new UserRegistry();
+        users.add(user);
+    }
+
+    private Transaction transactionOf(String username, String fromCurrency, String toCurrency, double amount) {
+        Transaction transaction = new Transaction();
+        transaction.setComponents(username, fromCurrency, toCurrency);
+        transaction.setAmount(amount);
+        return transaction;
+    }
+
+    @Test
+    public void testValidTransactionHasNoRejectionReason() {
+        Transaction transaction = transactionOf("Ali", "eur", "gbp", 50);
+        assertEquals(RejectionReason.NONE, TransactionValidator.validates(transaction, users, rates));
+        assertSame(users.get("Ali"), transaction.getUser());
+        assertEquals(RejectionReason.NONE, TransactionValidator.checksWallet(transaction));
+    }
+
+    @Test
+    public void testEveryCheckReturnsItsReason() {
+        assertEquals(RejectionReason.USER_NOT_FOUND, TransactionValidator.validates(transactionOf("Bob", "eur", "gbp", 50), users, rates));
+        assertEquals(RejectionReason.SAME_CURRENCY, TransactionValidator.validates(transactionOf("Ali", "eur", "eur", 50), users, rates));
+        assertEquals(RejectionReason.INVALID_CURRENCY, TransactionValidator.validates(transactionOf("Ali", "sgd", "gbp", 50), users, rates));
+        assertEquals(RejectionReason.INVALID_CURRENCY, TransactionValidator.validates(transactionOf("Ali", "eur", "sgd", 50), users, rates));
+        assertEquals(RejectionReason.INVALID_AMOUNT, TransactionValidator.validates(transactionOf("Ali", "eur", "gbp", 0), users, rates));
+        assertEquals(RejectionReason.INVALID_AMOUNT, TransactionValidator.validates(transactionOf("Ali", "eur", "gbp", Double.NaN), users, rates));
+        assertEquals(RejectionReason.INVALID_AMOUNT, TransactionValidator.validates(transactionOf("Ali", "eur", "gbp", Double.POSITIVE_INFINITY), users, rates));
+        assertEquals(RejectionReason.INVALID_NUMBER_OF_COMPONENTS, TransactionValidator.checksComponents(3));
+        assertEquals(RejectionReason.NONE, TransactionValidator.checksComponents(4));
+
+        Transaction unparsable = transactionOf("Ali", "eur", "gbp", 0);
+        unparsable.setAmountUnparsable(true);
+        assertEquals(RejectionReason.UNPARSABLE_AMOUNT, TransactionValidator.validates(unparsable, users, rates));
+    }
+
+    @Test
+    public void testFirstFailedCheckIsTheReason() {
+        // The currencies are checked before the amount, and the user before the currencies.
+        assertEquals(RejectionReason.INVALID_CURRENCY, TransactionValidator.validates(transactionOf("Ali", "sgd", "gbp", -1), users, rates));
+        assertEquals(RejectionReason.USER_NOT_FOUND, TransactionValidator.validates(transactionOf("Bob", "eur", "eur", -1), users, rates));
+
+        Transaction unparsable = transactionOf("Ali", "eur", "eur", 0);
+        unparsable.setAmountUnparsable(true);
+        assertEquals(RejectionReason.SAME_CURRENCY, TransactionValidator.validates(unparsable, users, rates));
+    }
+
+    @Test
+    public void testWalletChecksReturnTheirReason() {
+        Transaction noCurrency = transactionOf("Ali", "gbp", "eur", 50);
+        assertEquals(RejectionReason.NONE, TransactionValidator.validates(noCurrency, users, rates));
+        assertEquals(RejectionReason.USER_HAS_NO_CURRENCY, TransactionValidator.checksWallet(noCurrency));
+
+        Transaction insufficient = transactionOf("Ali", "eur", "gbp", 88.01);
+        assertEquals(RejectionReason.NONE, TransactionValidator.validates(insufficient, users, rates));
+        assertEquals(RejectionReason.INSUFFICIENT_AMOUNT, TransactionValidator.checksWallet(insufficient));
+    }
+
+}